@@ -141,6 +141,10 @@ public abstract class ClassGenerator {
     }
 
     protected String formatParameterString(Parameter parameter) {
+        return formatParameterString(parameter, stringToLowerCamelCase(parameter.name));
+    }
+
+    protected String formatParameterString(Parameter parameter, String value) {
         if (parameter.displayType != null) {
             switch (parameter.displayType.toLowerCase()) {
                 case "hex":
@@ -148,10 +152,10 @@ public abstract class ClassGenerator {
                     if (parameter.displayLength != 0) {
                         size = "0" + parameter.displayLength;
                     }
-                    return "String.format(\"%" + size + "X\", " + stringToLowerCamelCase(parameter.name) + ")";
+                    return "String.format(\"%" + size + "X\", " + value + ")";
             }
         }
-        return stringToLowerCamelCase(parameter.name);
+        return value;
     }
 
     protected String getClassName(int classId) {
@@ -46,6 +46,10 @@ public class CommandGenerator extends ClassGenerator {
         }
     }
 
+    private String getByteLiteral(int value) {
+        return (value > 0x7F ? "(byte) " : "") + String.format("0x%02X", value);
+    }
+
     private void createCommandClass(String packageName, String className, Command command, List<Parameter> parameters)
             throws FileNotFoundException {
 
@@ -73,12 +77,28 @@ public class CommandGenerator extends ClassGenerator {
         out.println(" * @author Chris Jackson - Initial contribution of Java code generator");
         out.println(" */");
 
-        if (className.endsWith("Event")) {
+        boolean connectionEvent = className.endsWith("Event") && isConnectionEvent(parameters);
+        boolean connectionCommand = className.endsWith("Command") && isConnectionEvent(parameters);
+        boolean resultResponse = className.endsWith("Response") && isResultResponse(parameters);
+        if (connectionEvent) {
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent");
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse");
+            out.println("public class " + className + " extends BlueGigaResponse implements BlueGigaConnectionEvent {");
+        } else if (className.endsWith("Event")) {
             addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse");
             out.println("public class " + className + " extends BlueGigaResponse {");
+        } else if (connectionCommand) {
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand");
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand");
+            out.println(
+                    "public class " + className + " extends BlueGigaCommand implements BlueGigaConnectionCommand {");
         } else if (className.endsWith("Command")) {
             addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand");
             out.println("public class " + className + " extends BlueGigaCommand {");
+        } else if (resultResponse) {
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse");
+            addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse");
+            out.println("public class " + className + " extends BlueGigaResponse implements BlueGigaResultResponse {");
         } else {
             addImport("com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse");
             out.println("public class " + className + " extends BlueGigaResponse {");
@@ -88,13 +108,29 @@ public class CommandGenerator extends ClassGenerator {
         out.println("    public static int COMMAND_METHOD = " + String.format("0x%02X", command.id) + ";");
         out.println();
 
+        if (className.endsWith("Command")) {
+            addImport("java.nio.ByteBuffer");
+            out.println("    /**");
+            out.println("     * The constant bytes of the frame header. The payload length is filled in as the frame "
+                    + "is serialized.");
+            out.println("     */");
+            out.println("    private static final byte[] HEADER = { 0x00, 0x00, " + getByteLiteral(command.cmdClass)
+                    + ", " + getByteLiteral(command.id) + " };");
+            out.println();
+        }
+
         // out.println(" private static final Logger logger =
         // LoggerFactory.getLogger(" + className + ".class);");
 
+        boolean isCommand = className.endsWith("Command");
         for (Parameter parameter : parameters) {
             if (parameter.auto_size != null) {
                 continue;
             }
+            if (!isCommand && isPrimitive(parameter)) {
+                // Primitive response fields are read directly from the frame
+                continue;
+            }
 
             out.println("    /**");
             outputWithLinebreak(out, "    ", parameter.description);
@@ -106,7 +142,17 @@ public class CommandGenerator extends ClassGenerator {
             }
             out.println("     */");
 
-            if (parameter.multiple) {
+            if (!isCommand) {
+                // Response fields are decoded on first use and cached
+                if (parameter.multiple) {
+                    addImport("java.util.Set");
+                    out.println("    private volatile Set<" + getTypeClass(parameter.data_type) + "> "
+                            + stringToLowerCamelCase(parameter.name) + ";");
+                } else {
+                    out.println("    private volatile " + getTypeClass(parameter.data_type) + " "
+                            + stringToLowerCamelCase(parameter.name) + ";");
+                }
+            } else if (parameter.multiple) {
                 addImport("java.util.Set");
                 addImport("java.util.HashSet");
                 out.println("    private Set<" + getTypeClass(parameter.data_type) + "> "
@@ -151,39 +197,28 @@ public class CommandGenerator extends ClassGenerator {
                 out.println("     * Response constructor");
             }
             out.println("     */");
-            out.println("    public " + className + "(int[] inputBuffer) {");
-            out.println("        // Super creates deserializer and reads header fields");
+            out.println("    public " + className + "(byte[] inputBuffer) {");
+            out.println("        // Super holds the frame - fields are deserialized when they are first requested");
             out.println("        super(inputBuffer);");
             out.println();
             out.println("        event = (inputBuffer[0] & 0x80) != 0;");
+            out.println("    }");
             out.println();
-            out.println("        // Deserialize the fields");
-            Map<String, String> autoSizers = new HashMap<String, String>();
+        }
+
+        // Work out the offset of each response field in the frame. Variable length fields must be last.
+        Map<Parameter, Integer> offsets = new HashMap<Parameter, Integer>();
+        if (!isCommand) {
+            int offset = 4;
             for (Parameter parameter : parameters) {
-                if (parameter.auto_size != null) {
-                    out.println("        int " + stringToLowerCamelCase(parameter.name) + " = deserialize"
-                            + getTypeSerializer(parameter.data_type) + "();");
-                    autoSizers.put(parameter.auto_size, parameter.name);
-                    continue;
-                }
-                if (autoSizers.get(parameter.name) != null) {
-                    out.println("        " + parameter.name + "= deserialize" + getTypeSerializer(parameter.data_type)
-                            + "(" + autoSizers.get(parameter.name) + ");");
-                    continue;
-                }
-                if (parameter.data_type.contains("[") && parameter.data_type.contains("]")
-                        && !parameter.data_type.contains("[]")) {
-                    int length = Integer.parseInt(parameter.data_type.substring(parameter.data_type.indexOf("[") + 1,
-                            parameter.data_type.indexOf("]")));
-                    out.println("        " + stringToLowerCamelCase(parameter.name) + " = deserialize"
-                            + getTypeSerializer(parameter.data_type) + "(" + length + ");");
-                    continue;
+                if (offset == -1) {
+                    throw new IllegalStateException(
+                            "Variable length parameter in " + command.name + " must be the last parameter");
                 }
-                out.println("        " + stringToLowerCamelCase(parameter.name) + " = deserialize"
-                        + getTypeSerializer(parameter.data_type) + "();");
+                offsets.put(parameter, offset);
+                int size = getTypeSize(parameter.data_type);
+                offset = size == -1 ? -1 : offset + size;
             }
-            out.println("    }");
-            out.println();
         }
 
         for (Parameter parameter : parameters) {
@@ -227,6 +262,23 @@ public class CommandGenerator extends ClassGenerator {
                             + stringToLowerCamelCase(parameter.name) + ";");
                 }
                 out.println("    }");
+                if (parameter.data_type.equals("bd_addr")) {
+                    out.println();
+                    out.println("    /**");
+                    outputWithLinebreak(out, "    ", parameter.description);
+                    out.println("     *");
+                    out.println("     * @param " + stringToLowerCamelCase(parameter.name) + " the "
+                            + stringToLowerCamelCase(parameter.name) + " to set as a {@link String}");
+                    out.println("     * @deprecated use {@link #set" + stringToUpperCamelCase(parameter.name)
+                            + "(BluetoothAddress)}");
+                    out.println("     */");
+                    out.println("    @Deprecated");
+                    out.println("    public void set" + stringToUpperCamelCase(parameter.name) + "(String "
+                            + stringToLowerCamelCase(parameter.name) + ") {");
+                    out.println("        this." + stringToLowerCamelCase(parameter.name)
+                            + " = BluetoothAddress.fromString(" + stringToLowerCamelCase(parameter.name) + ");");
+                    out.println("    }");
+                }
             } else {
                 out.println("    /**");
                 outputWithLinebreak(out, "    ", parameter.description);
@@ -249,33 +301,65 @@ public class CommandGenerator extends ClassGenerator {
                     out.println("    public " + getTypeClass(parameter.data_type) + " get"
                             + stringToUpperCamelCase(parameter.name) + "() {");
                 }
-                out.println("        return " + stringToLowerCamelCase(parameter.name) + ";");
+                String deserializer = "deserialize" + getTypeSerializer(parameter.data_type) + "("
+                        + offsets.get(parameter) + ")";
+                int next = parameters.indexOf(parameter) + 1;
+                if (parameter.data_type.equals("bd_addr") && next < parameters.size()
+                        && parameters.get(next).data_type.equals("BluetoothAddressType")) {
+                    // Include the address type in the address
+                    deserializer = "deserializeAddress(" + offsets.get(parameter) + ", "
+                            + offsets.get(parameters.get(next)) + ")";
+                }
+                if (isPrimitive(parameter)) {
+                    out.println("        return " + deserializer + ";");
+                } else {
+                    out.println("        if (" + stringToLowerCamelCase(parameter.name) + " == null) {");
+                    out.println("            " + stringToLowerCamelCase(parameter.name) + " = " + deserializer + ";");
+                    out.println("        }");
+                    out.println("        return " + stringToLowerCamelCase(parameter.name) + ";");
+                }
                 out.println("    }");
             }
         }
 
+        if (connectionEvent && !parameters.get(0).name.equals("connection")) {
+            out.println();
+            out.println("    @Override");
+            out.println("    public int getConnection() {");
+            out.println("        return get" + stringToUpperCamelCase(parameters.get(0).name) + "();");
+            out.println("    }");
+        }
+
+        if (connectionCommand) {
+            out.println();
+            out.println("    @Override");
+            out.println("    public int getConnection() {");
+            out.println("        return " + stringToLowerCamelCase(parameters.get(0).name) + ";");
+            out.println("    }");
+        }
+
         if (className.endsWith("Command")) {
             out.println();
             out.println("    @Override");
-            out.println("    public int[] serialize() {");
+            out.println("    public void serializeFrame(ByteBuffer buffer) {");
             out.println("        // Serialize the header");
-            out.println("        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);");
+            out.println("        int frameStart = serializeHeader(buffer, HEADER);");
             out.println();
 
             if (parameters != null && parameters.size() != 0) {
                 out.println("        // Serialize the fields");
                 for (Parameter parameter : parameters) {
                     if (parameter.auto_size != null) {
-                        out.println("        serialize" + getTypeSerializer(parameter.data_type) + "("
+                        out.println("        serialize" + getTypeSerializer(parameter.data_type) + "(buffer, "
                                 + parameter.auto_size + ".length);");
                         continue;
                     }
-                    out.println("        serialize" + getTypeSerializer(parameter.data_type) + "("
+                    out.println("        serialize" + getTypeSerializer(parameter.data_type) + "(buffer, "
                             + stringToLowerCamelCase(parameter.name) + ");");
                 }
                 out.println();
             }
-            out.println("        return getPayload();");
+            out.println("        completeFrame(buffer, frameStart);");
             out.println("    }");
         } else {
 
@@ -302,17 +386,26 @@ public class CommandGenerator extends ClassGenerator {
                     out.println("        builder.append(\", " + stringToLowerCamelCase(parameter.name) + "=\");");
                 }
                 first = false;
+                String value = stringToLowerCamelCase(parameter.name);
+                if (!isCommand) {
+                    value = "get" + (parameter.multiple ? upperCaseFirstCharacter(parameter.name)
+                            : stringToUpperCamelCase(parameter.name)) + "()";
+                }
                 if (parameter.data_type.equals("uint8array")) {
+                    if (!isCommand) {
+                        out.println("        int[] " + stringToLowerCamelCase(parameter.name) + " = " + value + ";");
+                        value = stringToLowerCamelCase(parameter.name);
+                    }
                     out.println("        for (int c = 0; c < " + stringToLowerCamelCase(parameter.name)
                             + ".length; c++) {");
                     out.println("            if (c > 0) {");
                     out.println("                builder.append(' ');");
                     out.println("            }");
-                    out.println("            builder.append(String.format(\"%02X\", " + formatParameterString(parameter)
-                            + "[c]));");
+                    out.println("            builder.append(String.format(\"%02X\", "
+                            + formatParameterString(parameter, value) + "[c]));");
                     out.println("        }");
                 } else {
-                    out.println("        builder.append(" + formatParameterString(parameter) + ");");
+                    out.println("        builder.append(" + formatParameterString(parameter, value) + ");");
                 }
             }
             out.println("        builder.append(']');");
@@ -484,7 +577,8 @@ public class CommandGenerator extends ClassGenerator {
             case "uint8array":
                 return "int[]";
             case "bd_addr":
-                return "String";
+                addImport("com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress");
+                return "BluetoothAddress";
             case "uuid":
                 addImport("java.util.UUID");
                 return "UUID";
@@ -494,6 +588,82 @@ public class CommandGenerator extends ClassGenerator {
         }
     }
 
+    /**
+     * Returns true if the first parameter of an event or command is the connection handle. The connection handle is
+     * normally called connection, but some events and commands call it handle and describe it as the connection handle.
+     */
+    protected boolean isConnectionEvent(List<Parameter> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return false;
+        }
+        Parameter parameter = parameters.get(0);
+        if (!parameter.data_type.equals("uint8")) {
+            return false;
+        }
+        return parameter.name.equals("connection") || (parameter.description != null
+                && parameter.description.toLowerCase().contains("connection handle"));
+    }
+
+    /**
+     * Returns true if the response has a result parameter reporting the outcome of the command
+     */
+    protected boolean isResultResponse(List<Parameter> parameters) {
+        if (parameters == null) {
+            return false;
+        }
+        for (Parameter parameter : parameters) {
+            if (parameter.name.equals("result") && parameter.data_type.equals("BgApiResponse")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the parameter is held as a Java primitive, and can therefore be read directly from the frame
+     * each time it is requested rather than being cached.
+     */
+    protected boolean isPrimitive(Parameter parameter) {
+        if (parameter.multiple) {
+            return false;
+        }
+        switch (parameter.data_type) {
+            case "boolean":
+            case "int8":
+            case "uint8":
+            case "uint16":
+            case "uint32":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the data type in the frame, or -1 if the type is variable length
+     */
+    protected int getTypeSize(String dataType) {
+        switch (dataType) {
+            case "boolean":
+            case "int8":
+            case "uint8":
+                return 1;
+            case "uint16":
+            case "BgApiResponse":
+                return 2;
+            case "uint32":
+                return 4;
+            case "bd_addr":
+                return 6;
+            case "uint8array":
+            case "uuid":
+                return -1;
+            default:
+                // Other enumerations are uint8
+                return 1;
+        }
+    }
+
     protected String getTypeSerializer(String dataType) {
         String dataTypeLocal = new String(dataType);
 
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.zsmartsystems.bluetooth.bluegiga.autocode.xml.Command;
 import com.zsmartsystems.bluetooth.bluegiga.autocode.xml.Protocol;
@@ -20,22 +22,35 @@ public class PacketProcessing extends ClassGenerator {
 
         clearImports();
 
-        out.println("import java.util.HashMap;");
-        out.println("import java.util.Map;");
-        out.println("import java.util.Objects;");
-        out.println();
-        out.println("import java.lang.reflect.Constructor;");
-        out.println("import java.lang.reflect.InvocationTargetException;");
-        out.println("import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;");
-        out.println("import org.slf4j.Logger;");
-        out.println("import org.slf4j.LoggerFactory;");
+        // Size the dispatch table to cover all classes and methods, and check that each packet has a unique slot
+        int classCount = 0;
+        int methodCount = 0;
+        Map<String, String> slots = new HashMap<String, String>();
+        for (Command command : protocol.commands) {
+            classCount = Math.max(classCount, command.cmdClass + 1);
+            methodCount = Math.max(methodCount, command.id + 1);
+
+            String slot = String.format("[%d][0x%02X][0x%02X]", command.name.endsWith("Event") ? 1 : 0,
+                    command.cmdClass, command.id);
+            if (slots.containsKey(slot)) {
+                throw new IllegalStateException("Packets " + slots.get(slot) + " and " + command.name
+                        + " both use dispatch slot " + slot);
+            }
+            slots.put(slot, command.name);
+        }
 
-        out.println();
+        addImport("java.util.HashMap");
+        addImport("java.util.Map");
+        addImport("org.slf4j.Logger");
+        addImport("org.slf4j.LoggerFactory");
 
         out.println("/**");
         out.println(
                 " * Helper class to create BlueGiga BLE Response and Event packets (ie packets that we will receive).");
         out.println(" * <p>");
+        out.println(" * Each packet type has a slot in a dispatch table, computed from the event flag, class and method");
+        out.println(" * in the packet header. The table holds a reference to the constructor of each packet class.");
+        out.println(" * <p>");
         out.println(" * Note that this code is autogenerated. Manual changes may be overwritten.");
         out.println(" *");
         out.println(" * @author Chris Jackson - Initial contribution of Java code generator");
@@ -45,63 +60,137 @@ public class PacketProcessing extends ClassGenerator {
         out.println();
         out.println("    private static Logger logger = LoggerFactory.getLogger(BlueGigaResponsePackets.class);");
         out.println();
-        out.println("    final private static Map<Integer, Class<?>> packetMap = new HashMap<Integer, Class<?>>();");
+        out.println("    /**");
+        out.println("     * Number of command classes in the dispatch table");
+        out.println("     */");
+        out.println("    private static final int CLASS_COUNT = " + classCount + ";");
+        out.println();
+        out.println("    /**");
+        out.println("     * Number of command methods in the dispatch table");
+        out.println("     */");
+        out.println("    private static final int METHOD_COUNT = " + methodCount + ";");
+        out.println();
+        out.println("    /**");
+        out.println("     * Number of slots in the dispatch table");
+        out.println("     */");
+        out.println("    static final int SLOT_COUNT = 2 * CLASS_COUNT * METHOD_COUNT;");
+        out.println();
+        out.println("    /**");
+        out.println("     * Factory used to construct a packet from the received frame");
+        out.println("     */");
+        out.println("    interface PacketFactory {");
+        out.println("        BlueGigaResponse create(byte[] data);");
+        out.println("    }");
+        out.println();
+        out.println("    final private static PacketFactory[] packetTable = new PacketFactory[SLOT_COUNT];");
+        out.println();
+        out.println("    final private static boolean[] connectionTable = new boolean[SLOT_COUNT];");
+        out.println();
+        out.println(
+                "    final private static Map<Class<? extends BlueGigaResponse>, Integer> slotMapping = new HashMap<>();");
         out.println();
 
         out.println("    static {");
         for (Command command : protocol.commands) {
-            out.print("        packetMap.put(Objects.hash(");
-            out.print(String.format("0x%02X, ", command.cmdClass));
-            out.print(String.format("0x%02X, ", command.id));
-            out.print(command.name.endsWith("Event"));
-            out.print("), ");
-            out.print("BlueGiga" + upperCaseFirstCharacter(command.name));
+            String className = "BlueGiga" + upperCaseFirstCharacter(command.name);
             if (!command.name.endsWith("Event")) {
-                out.print("Response");
-            }
-            out.print(".class");
-            out.print(")");
-
-            if (command.name.endsWith("Event")) {
-                addImport(commandPackage + "." + getClassName(command.cmdClass) + ".BlueGiga"
-                        + upperCaseFirstCharacter(command.name));
-            } else {
-                addImport(commandPackage + "." + getClassName(command.cmdClass) + ".BlueGiga"
-                        + upperCaseFirstCharacter(command.name) + "Response");
+                className += "Response";
             }
-            out.println(";");
+            addImport(commandPackage + "." + getClassName(command.cmdClass) + "." + className);
+
+            out.print("        register(" + (command.name.endsWith("Event") ? 1 : 0));
+            out.print(String.format(", 0x%02X", command.cmdClass));
+            out.print(String.format(", 0x%02X", command.id));
+            out.println(", " + className + ".class, " + className + "::new);");
         }
         out.println("    }");
+        out.println();
 
+        out.println("    private static void register(int isEvent, int cmdClass, int cmdMethod,");
+        out.println("            Class<? extends BlueGigaResponse> packetClass, PacketFactory factory) {");
+        out.println("        int slot = (isEvent * CLASS_COUNT + cmdClass) * METHOD_COUNT + cmdMethod;");
+        out.println("        packetTable[slot] = factory;");
+        out.println("        connectionTable[slot] = BlueGigaConnectionEvent.class.isAssignableFrom(packetClass);");
+        out.println("        slotMapping.put(packetClass, slot);");
+        out.println("    }");
         out.println();
 
-        out.println("    public static BlueGigaResponse getPacket(int[] data) {");
+        out.println("    /**");
+        out.println("     * Gets the dispatch slot for a received frame");
+        out.println("     *");
+        out.println("     * @param data the received frame");
+        out.println("     * @return the slot, or -1 if the frame header is outside the dispatch table");
+        out.println("     */");
+        out.println("    static int getSlot(byte[] data) {");
+        out.println("        int cmdClass = data[2] & 0xFF;");
+        out.println("        int cmdMethod = data[3] & 0xFF;");
+        out.println("        int isEvent = (data[0] & 0x80) >> 7;");
+        out.println();
+        out.println("        if (cmdClass >= CLASS_COUNT || cmdMethod >= METHOD_COUNT) {");
+        out.println("            return -1;");
+        out.println("        }");
+        out.println();
+        out.println("        return (isEvent * CLASS_COUNT + cmdClass) * METHOD_COUNT + cmdMethod;");
+        out.println("    }");
+        out.println();
 
-        out.println("        int cmdClass = data[2];");
-        out.println("        int cmdMethod = data[3];");
-        out.println("        boolean isEvent = (data[0] & 0x80) != 0;");
+        out.println("    /**");
+        out.println("     * Gets the dispatch slot for a packet class");
+        out.println("     *");
+        out.println("     * @param packetClass the response or event class");
+        out.println("     * @return the slot, or -1 if the class is not a known packet");
+        out.println("     */");
+        out.println("    static int getSlot(Class<?> packetClass) {");
+        out.println("        Integer slot = slotMapping.get(packetClass);");
+        out.println("        return slot == null ? -1 : slot;");
+        out.println("    }");
         out.println();
 
-        out.println("    	Class<?> bleClass = packetMap.get(Objects.hash(cmdClass, cmdMethod, isEvent));");
+        out.println("    /**");
+        out.println("     * Checks if the packet in a dispatch slot is a {@link BlueGigaConnectionEvent}. The connection");
+        out.println("     * handle of these events is the first byte of the payload.");
+        out.println("     *");
+        out.println("     * @param slot the dispatch slot");
+        out.println("     * @return true if the packet relates to a single connection");
+        out.println("     */");
+        out.println("    static boolean isConnectionEvent(int slot) {");
+        out.println("        return connectionTable[slot];");
+        out.println("    }");
         out.println();
-        out.println("    	if (bleClass == null) {");
-        out.println("    		return null;");
-        out.println("    	}");
+
+        out.println("    public static BlueGigaResponse getPacket(byte[] data) {");
+        out.println("        int slot = getSlot(data);");
+        out.println("        if (slot == -1) {");
+        out.println("            return null;");
+        out.println("        }");
         out.println();
-        out.println("    	Constructor<?> ctor;");
+        out.println("        PacketFactory factory = packetTable[slot];");
+        out.println("        if (factory == null) {");
+        out.println("            return null;");
+        out.println("        }");
         out.println();
-        out.println("    	try {");
-        out.println("    		ctor = bleClass.getConstructor(int[].class);");
-        out.println("    		BlueGigaResponse bleFrame = (BlueGigaResponse) ctor.newInstance(data);");
-        out.println("    		return bleFrame;");
-        out.println(
-                "    	} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException");
-        out.println("    			| IllegalArgumentException | InvocationTargetException e) {");
-        out.println("    		logger.error(\"Error instantiating BLE class\", e);");
-        out.println("    	}");
+        out.println("        try {");
+        out.println("            return factory.create(data);");
+        out.println("        } catch (RuntimeException e) {");
+        out.println("            logger.error(\"Error instantiating BLE class\", e);");
+        out.println("        }");
         out.println();
         out.println("        return null;");
         out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Creates a response packet from a frame held as an int[].");
+        out.println("     *");
+        out.println("     * @deprecated use {@link #getPacket(byte[])}");
+        out.println("     */");
+        out.println("    @Deprecated");
+        out.println("    public static BlueGigaResponse getPacket(int[] data) {");
+        out.println("        byte[] bytes = new byte[data.length];");
+        out.println("        for (int cnt = 0; cnt < data.length; cnt++) {");
+        out.println("            bytes[cnt] = (byte) data[cnt];");
+        out.println("        }");
+        out.println("        return getPacket(bytes);");
+        out.println("    }");
 
         out.println("}");
 
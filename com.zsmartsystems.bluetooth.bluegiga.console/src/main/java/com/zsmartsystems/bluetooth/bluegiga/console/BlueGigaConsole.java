@@ -15,6 +15,7 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
 import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
 import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaFindInformationCommand;
 import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByGroupTypeCommand;
@@ -55,7 +56,8 @@ public final class BlueGigaConsole implements BlueGigaEventListener {
 
     private BlueGigaSerialHandler bleHandler;
 
-    private Map<String, Map<EirDataType, Object>> deviceMap = new TreeMap<String, Map<EirDataType, Object>>();
+    private Map<BluetoothAddress, Map<EirDataType, Object>> deviceMap =
+            new TreeMap<BluetoothAddress, Map<EirDataType, Object>>();
 
     /**
      * The flag reflecting that shutdown is in process.
@@ -78,6 +80,12 @@ public final class BlueGigaConsole implements BlueGigaEventListener {
         this.bleHandler = handler;
 
         handler.addEventListener(this);
+        handler.addEventListener(BlueGigaScanResponseEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                scanResponseReceived((BlueGigaScanResponseEvent) event);
+            }
+        });
 
         commands.put("bonds", new BondsCommand());
         commands.put("connect", new ConnectCommand());
@@ -517,7 +525,7 @@ public final class BlueGigaConsole implements BlueGigaEventListener {
             bleHandler.sendTransaction(modeCommand);
 
             BlueGigaConnectDirectCommand connect = new BlueGigaConnectDirectCommand();
-            connect.setAddress(address);
+            connect.setAddress(BluetoothAddress.fromString(address, addressType));
             connect.setAddrType(addressType);
             connect.setConnIntervalMin(connIntervalMin);
             connect.setConnIntervalMax(connIntervalMax);
@@ -903,7 +911,7 @@ public final class BlueGigaConsole implements BlueGigaEventListener {
          */
         @Override
         public boolean process(final String[] args, PrintStream out) throws Exception {
-            for (String addr : deviceMap.keySet()) {
+            for (BluetoothAddress addr : deviceMap.keySet()) {
                 print(addr + "  " + deviceMap.get(addr), System.out);
             }
             return true;
@@ -913,18 +921,16 @@ public final class BlueGigaConsole implements BlueGigaEventListener {
     @Override
     public void bluegigaEventReceived(BlueGigaResponse event) {
         print("Event received: " + event, System.out);
+    }
 
-        if (event instanceof BlueGigaScanResponseEvent) {
-            EirPacket eir = new EirPacket(((BlueGigaScanResponseEvent) event).getData());
-            print("              : " + eir, System.out);
-
-            BlueGigaScanResponseEvent scanResponse = (BlueGigaScanResponseEvent) event;
+    private void scanResponseReceived(BlueGigaScanResponseEvent scanResponse) {
+        EirPacket eir = new EirPacket(scanResponse.getData());
+        print("              : " + eir, System.out);
 
-            if (deviceMap.get(scanResponse.getSender()) != null) {
-                deviceMap.get(scanResponse.getSender()).putAll(eir.getRecords());
-            } else {
-                deviceMap.put(scanResponse.getSender(), eir.getRecords());
-            }
+        if (deviceMap.get(scanResponse.getSender()) != null) {
+            deviceMap.get(scanResponse.getSender()).putAll(eir.getRecords());
+        } else {
+            deviceMap.put(scanResponse.getSender(), eir.getRecords());
         }
     }
 
@@ -127,7 +127,7 @@ public class SerialInputStream extends InputStream {
 
         try {
             byte[] readBuf = serialPort.readBytes(available);
-            System.arraycopy(readBuf, 0, buf, offset, length);
+            System.arraycopy(readBuf, 0, buf, offset, readBuf.length);
             return readBuf.length;
         } catch (Exception e) {
             throw new IOException(e);
@@ -52,7 +52,7 @@ public class UnsignedByteSerialInputStream extends SerialInputStream {
         if (length > 0) {
             byte[] unsignedBytes = new byte[length];
             for (int i = 0; i < length; i++) {
-                int s = inputArray[i] & 0xf;
+                int s = inputArray[i] & 0xff;
                 unsignedBytes[i] = (byte) s;
             }
             System.arraycopy(unsignedBytes, 0, inputArray, 0, length);
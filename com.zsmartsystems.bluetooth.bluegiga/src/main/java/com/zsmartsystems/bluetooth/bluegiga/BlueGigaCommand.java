@@ -1,5 +1,7 @@
 package com.zsmartsystems.bluetooth.bluegiga;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.UUID;
 
@@ -17,23 +19,42 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.SmpIoCapabilities;
  *
  */
 public abstract class BlueGigaCommand extends BlueGigaPacket {
-    protected int[] buffer = new int[131];
-    protected int length = 0;
+    /**
+     * The longest frame the handler expects to send. Longer frames can be sent, but may need a transmit buffer to
+     * themselves.
+     */
+    public static final int MAX_FRAME_LENGTH = 131;
 
-    protected void serializeHeader(int classId, int commandId) {
+    /**
+     * Writes the header of a frame. The payload length is filled in by {@link #completeFrame(ByteBuffer, int)} once
+     * the fields are written.
+     *
+     * @param buffer the {@link ByteBuffer} to write to
+     * @param header the 4 header bytes with the class and command IDs
+     * @return the position of the frame in the buffer
+     */
+    protected int serializeHeader(ByteBuffer buffer, byte[] header) {
         // Octet 0 7 1 bit Message Type (MT) 0: Command
         // -------6:3 4 bits Technology Type (TT) 0000: Smart Bluetooth
         // -------2:0 3 bits Length High (LH) Payload length (high bits)
-        buffer[length++] = 0;
-
         // Octet 1 7:0 8 bits Length Low (LL) Payload length (low bits)
-        buffer[length++] = 0;
-
         // Octet 2 7:0 8 bits Class ID (CID) Command class ID
-        buffer[length++] = classId;
-
         // Octet 3 7:0 8 bits Command ID (CMD) Command ID
-        buffer[length++] = commandId;
+        int start = buffer.position();
+        buffer.put(header);
+        return start;
+    }
+
+    /**
+     * Fills in the payload length of a frame once its fields are written
+     *
+     * @param buffer the {@link ByteBuffer} holding the frame
+     * @param start the position of the frame in the buffer
+     */
+    protected void completeFrame(ByteBuffer buffer, int start) {
+        int payloadLength = buffer.position() - start - 4;
+        buffer.put(start, (byte) ((payloadLength >> 8) & 0x07));
+        buffer.put(start + 1, (byte) payloadLength);
     }
 
     /**
@@ -41,12 +62,12 @@ public abstract class BlueGigaCommand extends BlueGigaPacket {
      *
      * @param val
      */
-    protected void serializeUInt8(int val) {
-        buffer[length++] = val & 0xFF;
+    protected void serializeUInt8(ByteBuffer buffer, int val) {
+        buffer.put((byte) val);
     }
 
-    protected void serializeBoolean(boolean val) {
-        buffer[length++] = val ? 1 : 0;
+    protected void serializeBoolean(ByteBuffer buffer, boolean val) {
+        buffer.put((byte) (val ? 1 : 0));
     }
 
     /**
@@ -54,9 +75,9 @@ public abstract class BlueGigaCommand extends BlueGigaPacket {
      *
      * @param val
      */
-    protected void serializeUInt16(int val) {
-        buffer[length++] = val & 0xFF;
-        buffer[length++] = (val >> 8) & 0xFF;
+    protected void serializeUInt16(ByteBuffer buffer, int val) {
+        buffer.put((byte) val);
+        buffer.put((byte) (val >> 8));
     }
 
     /**
@@ -64,72 +85,96 @@ public abstract class BlueGigaCommand extends BlueGigaPacket {
      *
      * @param passkey
      */
-    protected void serializeUInt32(long passkey) {
-        buffer[length++] = (int) (passkey & 0xFF);
-        buffer[length++] = (int) ((passkey >> 8) & 0xFF);
-        buffer[length++] = (int) ((passkey >> 16) & 0xFF);
-        buffer[length++] = (int) ((passkey >> 24) & 0xFF);
+    protected void serializeUInt32(ByteBuffer buffer, long passkey) {
+        buffer.put((byte) passkey);
+        buffer.put((byte) (passkey >> 8));
+        buffer.put((byte) (passkey >> 16));
+        buffer.put((byte) (passkey >> 24));
     }
 
-    protected void serializeUInt8Array(int[] array) {
-        serializeUInt8(array.length);
+    protected void serializeUInt8Array(ByteBuffer buffer, int[] array) {
+        serializeUInt8(buffer, array.length);
 
         for (int val : array) {
-            serializeUInt8(val);
+            serializeUInt8(buffer, val);
         }
     }
 
-    protected void serializeUuid(UUID uuid) {
+    protected void serializeUuid(ByteBuffer buffer, UUID uuid) {
         // TODO this probably needs to support longer UUIDs?
-        buffer[length++] = 2;
+        buffer.put((byte) 2);
         long high = uuid.getMostSignificantBits();
 
-        buffer[length++] = (int) ((high >> 32) & 0xff);
-        buffer[length++] = (int) ((high >> 40) & 0xff);
+        buffer.put((byte) (high >> 32));
+        buffer.put((byte) (high >> 40));
     }
 
-    protected void serializeAddress(String address) {
-        String[] bytes = address.split(":");
-        if (bytes.length == 0) {
-            serializeUInt8(0);
-            serializeUInt8(0);
-            serializeUInt8(0);
-            serializeUInt8(0);
-            serializeUInt8(0);
-            serializeUInt8(0);
-
-            return;
-        }
-
-        for (int cnt = 5; cnt >= 0; cnt--) {
-            serializeUInt8(Integer.parseInt(bytes[cnt], 16));
+    protected void serializeAddress(ByteBuffer buffer, BluetoothAddress address) {
+        long val = address == null ? 0 : address.getAddress();
+        for (int cnt = 0; cnt < 6; cnt++) {
+            buffer.put((byte) (val >> (cnt * 8)));
         }
     }
 
-    protected void serializeSmpIoCapabilities(SmpIoCapabilities capabilities) {
-        serializeUInt8(capabilities.getKey());
+    protected void serializeSmpIoCapabilities(ByteBuffer buffer, SmpIoCapabilities capabilities) {
+        serializeUInt8(buffer, capabilities.getKey());
     }
 
-    protected void serializeBluetoothAddressType(BluetoothAddressType addrType) {
-        serializeUInt8(addrType.getKey());
+    protected void serializeBluetoothAddressType(ByteBuffer buffer, BluetoothAddressType addrType) {
+        serializeUInt8(buffer, addrType.getKey());
     }
 
-    protected void serializeGapDiscoverableMode(GapDiscoverableMode mode) {
-        serializeUInt8(mode.getKey());
+    protected void serializeGapDiscoverableMode(ByteBuffer buffer, GapDiscoverableMode mode) {
+        serializeUInt8(buffer, mode.getKey());
     }
 
-    protected void serializeGapConnectableMode(GapConnectableMode mode) {
-        serializeUInt8(mode.getKey());
+    protected void serializeGapConnectableMode(ByteBuffer buffer, GapConnectableMode mode) {
+        serializeUInt8(buffer, mode.getKey());
     }
 
-    protected void serializeGapDiscoverMode(GapDiscoverMode mode) {
-        serializeUInt8(mode.getKey());
+    protected void serializeGapDiscoverMode(ByteBuffer buffer, GapDiscoverMode mode) {
+        serializeUInt8(buffer, mode.getKey());
     }
 
-    protected int[] getPayload() {
-        buffer[1] = length - 4;
-        return Arrays.copyOfRange(buffer, 0, length);
+    /**
+     * Serializes the command into a BGAPI frame, including the header, ready to send to the NCP. The frame is written
+     * at the position of the buffer, and the position is moved past the frame. Nothing is allocated, so the handler
+     * can serialize straight into its transmit buffer, and a command can be changed and sent again without creating
+     * a new instance.
+     * <p>
+     * The handler keeps a reference to a queued command and only serializes it when it is sent, so a command must not
+     * be changed until it has been sent, or until its transaction has completed. A command that is changed earlier
+     * is sent with the new values, and a command queued twice is sent twice with the values it has when it is sent.
+     *
+     * @param buffer the {@link ByteBuffer} to write the frame to
+     * @throws BufferOverflowException if the frame doesn't fit in the space remaining in the buffer
+     */
+    public abstract void serializeFrame(ByteBuffer buffer);
+
+    /**
+     * Serializes the command into a BGAPI frame, including the header, ready to send to the NCP.
+     *
+     * @return the frame as a byte array
+     */
+    public byte[] serializeFrame() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+        serializeFrame(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
     }
 
-    public abstract int[] serialize();
+    /**
+     * Serializes the command into a BGAPI frame, with each byte held as an int.
+     *
+     * @return the frame as an int array
+     * @deprecated use {@link #serializeFrame()}
+     */
+    @Deprecated
+    public int[] serialize() {
+        byte[] frame = serializeFrame();
+        int[] payload = new int[frame.length];
+        for (int cnt = 0; cnt < frame.length; cnt++) {
+            payload[cnt] = frame[cnt] & 0xFF;
+        }
+        return payload;
+    }
 }
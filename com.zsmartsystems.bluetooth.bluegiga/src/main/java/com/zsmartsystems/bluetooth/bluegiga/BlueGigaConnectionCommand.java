@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+/**
+ * Implemented by commands that relate to a single connection. The {@link BlueGigaSerialHandler} shares the transmit
+ * bandwidth fairly between connections using the connection handle of these commands.
+ *
+ * @author Chris Jackson
+ *
+ */
+public interface BlueGigaConnectionCommand {
+    /**
+     * Gets the connection handle the command relates to
+     *
+     * @return the connection handle
+     */
+    int getConnection();
+}
@@ -0,0 +1,679 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectedEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetConnectionsCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetConnectionsResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.ConnectionStatusFlag;
+
+/**
+ * Spreads outgoing connections across the adapters of a {@link BlueGigaHandlerGroup}.
+ * <p>
+ * Each dongle supports a fixed number of connections, and runs one connection procedure at a time. Connection requests
+ * are queued, and each is sent to the best adapter that has a free connection and no connection procedure running.
+ * Adapters are scored by the recent RSSI of the target device, as seen in the scan responses received by the adapter,
+ * by the number of free connections, and by the depth of the transmit queue. If an adapter refuses the connection,
+ * for example because it is scanning, the request is tried on the other adapters.
+ * <p>
+ * The connection count of each adapter is tracked from the connection status and disconnection events, so
+ * connections made or closed outside the scheduler are included.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaConnectionScheduler {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaConnectionScheduler.class);
+
+    /**
+     * Default time in milliseconds an adapter is given to make a connection
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Default time in milliseconds that an RSSI reading is used for
+     */
+    public static final long DEFAULT_RSSI_TIMEOUT = 10000;
+
+    /**
+     * RSSI used for adapters that haven't recently received the target device
+     */
+    public static final int UNKNOWN_RSSI = -110;
+
+    /**
+     * Score given for each free connection on the adapter, in dB of RSSI
+     */
+    private static final int FREE_CONNECTION_WEIGHT = 2;
+
+    /**
+     * Score taken for each frame waiting to be sent by the adapter, in dB of RSSI
+     */
+    private static final int QUEUE_DEPTH_WEIGHT = 3;
+
+    /**
+     * Time in milliseconds before asking an adapter for its connections again after the first query fails. The delay
+     * doubles with each failure, up to {@link #MAX_QUERY_RETRY_DELAY}.
+     */
+    private static final long QUERY_RETRY_DELAY = 250;
+    private static final long MAX_QUERY_RETRY_DELAY = 30000;
+
+    private static final int DEFAULT_CONN_INTERVAL_MIN = 60;
+    private static final int DEFAULT_CONN_INTERVAL_MAX = 100;
+    private static final int DEFAULT_LATENCY = 0;
+    private static final int DEFAULT_SUPERVISION_TIMEOUT = 100;
+
+    /**
+     * The last RSSI of a device received by an adapter. Written by the event thread and read without locking.
+     */
+    private static class RssiSample {
+        volatile int rssi;
+        volatile long time;
+    }
+
+    /**
+     * State of an adapter. Guarded by the scheduler, apart from the RSSI samples.
+     */
+    private static class Adapter {
+        final String name;
+        final BlueGigaSerialHandler handler;
+        final Map<BluetoothAddress, RssiSample> rssi = new ConcurrentHashMap<BluetoothAddress, RssiSample>();
+        final Set<Integer> connections = new HashSet<Integer>();
+
+        /**
+         * Maximum number of connections, or 0 until the dongle has reported it
+         */
+        int maxConnections = 0;
+
+        /**
+         * True while the dongle is being asked for its connections
+         */
+        boolean querying = false;
+
+        /**
+         * Number of times in a row the connection query has failed, and the time the query can next be sent, as
+         * {@link System#nanoTime()}
+         */
+        int queryFailures = 0;
+        long nextQuery = 0;
+
+        /**
+         * The request the dongle is connecting, or null if no connection procedure is running
+         */
+        Request connecting = null;
+
+        Adapter(String name, BlueGigaSerialHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * A connection request
+     */
+    private static class Request {
+        final BluetoothAddress address;
+        final BlueGigaConnectDirectCommand command;
+        final CompletableFuture<BlueGigaConnectionStatusEvent> future = new CompletableFuture<>();
+
+        /**
+         * Adapters that have refused the connection
+         */
+        final Set<String> refused = new HashSet<String>();
+
+        /**
+         * The adapter the request has been sent to, or null while it is waiting
+         */
+        Adapter adapter = null;
+
+        BlueGigaWheelTimer.Timeout timeout = null;
+
+        Request(BluetoothAddress address, BlueGigaConnectDirectCommand command) {
+            this.address = address;
+            this.command = command;
+        }
+    }
+
+    private final BlueGigaHandlerGroup group;
+
+    /**
+     * The adapters of the group, indexed by name. Modified while synchronised on the scheduler.
+     */
+    private final Map<String, Adapter> adapters = new ConcurrentHashMap<String, Adapter>();
+
+    /**
+     * Requests waiting for an adapter. Guarded by the scheduler.
+     */
+    private final Deque<Request> waiting = new ArrayDeque<Request>();
+
+    private volatile long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile long rssiTimeout = DEFAULT_RSSI_TIMEOUT;
+
+    private BlueGigaWheelTimer.Timeout pruneTimeout;
+    private boolean closed = false;
+
+    private final BlueGigaEventListener scanListener = new BlueGigaEventListener() {
+        @Override
+        public void bluegigaEventReceived(BlueGigaResponse event) {
+            scanResponse((BlueGigaScanResponseEvent) event);
+        }
+    };
+
+    private final BlueGigaEventListener connectionListener = new BlueGigaEventListener() {
+        @Override
+        public void bluegigaEventReceived(BlueGigaResponse event) {
+            if (event instanceof BlueGigaConnectionStatusEvent) {
+                connectionStatus((BlueGigaConnectionStatusEvent) event);
+            } else if (event instanceof BlueGigaDisconnectedEvent) {
+                disconnected((BlueGigaDisconnectedEvent) event);
+            }
+        }
+    };
+
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    private final Runnable pruneTask = new Runnable() {
+        @Override
+        public void run() {
+            prune();
+        }
+    };
+
+    /**
+     * Creates a scheduler for the adapters of a group. Adapters added to the group later are used once the scheduler
+     * next looks for an adapter.
+     *
+     * @param group the {@link BlueGigaHandlerGroup}
+     */
+    public BlueGigaConnectionScheduler(BlueGigaHandlerGroup group) {
+        this.group = group;
+
+        // Lost scan responses only make the RSSI a little older
+        group.addEventListener(BlueGigaScanResponseEvent.class, scanListener, BlueGigaEventMailbox.DEFAULT_CAPACITY,
+                BlueGigaEventMailbox.OverflowPolicy.DROP_OLDEST);
+        // Connection events must not be lost, so their mailbox blocks when full. The listener only updates the
+        // adapter state and queues commands, so it never holds up the receive thread for long.
+        group.addEventListener(BlueGigaConnectionStatusEvent.class, connectionListener,
+                BlueGigaEventMailbox.DEFAULT_CAPACITY, BlueGigaEventMailbox.OverflowPolicy.BLOCK);
+        group.addEventListener(BlueGigaDisconnectedEvent.class, connectionListener,
+                BlueGigaEventMailbox.DEFAULT_CAPACITY, BlueGigaEventMailbox.OverflowPolicy.BLOCK);
+
+        synchronized (this) {
+            pruneTimeout = group.getTimer().newTimeout(pruneTask, rssiTimeout, TimeUnit.MILLISECONDS);
+        }
+        dispatch();
+    }
+
+    /**
+     * Sets the time an adapter is given to make a connection. The time spent waiting for an adapter is not included.
+     *
+     * @param connectTimeout the timeout in milliseconds
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the time that an RSSI reading is used for when choosing an adapter
+     *
+     * @param rssiTimeout the timeout in milliseconds
+     */
+    public void setRssiTimeout(long rssiTimeout) {
+        this.rssiTimeout = rssiTimeout;
+    }
+
+    /**
+     * Connects to a device with the default connection parameters
+     *
+     * @param address the {@link BluetoothAddress} of the device
+     * @return a {@link CompletableFuture} completed with the {@link BlueGigaConnectionStatusEvent} of the connection.
+     *         {@link BlueGigaResponse#getAdapter()} gives the adapter that made the connection.
+     */
+    public CompletableFuture<BlueGigaConnectionStatusEvent> connect(BluetoothAddress address) {
+        return connect(address, DEFAULT_CONN_INTERVAL_MIN, DEFAULT_CONN_INTERVAL_MAX, DEFAULT_LATENCY,
+                DEFAULT_SUPERVISION_TIMEOUT);
+    }
+
+    /**
+     * Connects to a device. The request waits until an adapter is available, and can be cancelled with the returned
+     * {@link CompletableFuture}.
+     *
+     * @param address the {@link BluetoothAddress} of the device. The address type must match the address type in
+     *            the scan responses for the RSSI to be used.
+     * @param connIntervalMin the minimum connection interval in units of 1.25ms
+     * @param connIntervalMax the maximum connection interval in units of 1.25ms
+     * @param latency the slave latency
+     * @param timeout the supervision timeout in units of 10ms
+     * @return a {@link CompletableFuture} completed with the {@link BlueGigaConnectionStatusEvent} of the connection
+     */
+    public CompletableFuture<BlueGigaConnectionStatusEvent> connect(BluetoothAddress address, int connIntervalMin,
+            int connIntervalMax, int latency, int timeout) {
+        BlueGigaConnectDirectCommand command = new BlueGigaConnectDirectCommand();
+        command.setAddress(address);
+        command.setAddrType(address.getAddressType());
+        command.setConnIntervalMin(connIntervalMin);
+        command.setConnIntervalMax(connIntervalMax);
+        command.setLatency(latency);
+        command.setTimeout(timeout);
+
+        final Request request = new Request(address, command);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("BlueGiga connection scheduler is closed");
+            }
+            waiting.add(request);
+        }
+        // However the request completes, the adapter is released
+        request.future.whenComplete((event, exception) -> release(request));
+        dispatch();
+        return request.future;
+    }
+
+    /**
+     * Gets the number of connections the scheduler has seen on an adapter
+     *
+     * @param adapter the name of the adapter
+     * @return the number of connections
+     */
+    public synchronized int getConnections(String adapter) {
+        Adapter state = adapters.get(adapter);
+        return state == null ? 0 : state.connections.size();
+    }
+
+    /**
+     * Gets the number of requests waiting for an adapter
+     *
+     * @return the number of waiting requests
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    /**
+     * Gets the recent RSSI of a device, as received by an adapter
+     *
+     * @param adapter the name of the adapter
+     * @param address the {@link BluetoothAddress} of the device
+     * @return the RSSI in dBm, or {@link #UNKNOWN_RSSI} if the adapter hasn't recently received the device
+     */
+    public int getRssi(String adapter, BluetoothAddress address) {
+        Adapter state = adapters.get(adapter);
+        return state == null ? UNKNOWN_RSSI : getRssi(state, address, System.nanoTime());
+    }
+
+    private int getRssi(Adapter adapter, BluetoothAddress address, long now) {
+        RssiSample sample = adapter.rssi.get(address);
+        if (sample == null || now - sample.time > TimeUnit.MILLISECONDS.toNanos(rssiTimeout)) {
+            return UNKNOWN_RSSI;
+        }
+        return sample.rssi;
+    }
+
+    /**
+     * Stops the scheduler. Waiting requests are failed, and connection procedures that are running are left to
+     * complete.
+     */
+    public void close() {
+        List<Request> failed;
+        synchronized (this) {
+            closed = true;
+            pruneTimeout.cancel();
+            failed = new ArrayList<Request>(waiting);
+            waiting.clear();
+        }
+        group.removeEventListener(scanListener);
+        group.removeEventListener(connectionListener);
+
+        BlueGigaException exception = new BlueGigaException("BlueGiga connection scheduler closed");
+        for (Request request : failed) {
+            request.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Sends waiting requests to the best available adapters. The commands are sent without holding the lock, as their
+     * completion may be handled on the calling thread.
+     */
+    private void dispatch() {
+        List<Request> sending = new ArrayList<Request>();
+        List<Request> failed = new ArrayList<Request>();
+        List<Adapter> querying = new ArrayList<Adapter>();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            updateAdapters();
+
+            long now = System.nanoTime();
+            for (Adapter adapter : adapters.values()) {
+                // Keep asking until the dongle reports its connections, as the adapter can't be used before then
+                if (adapter.maxConnections == 0 && !adapter.querying && now - adapter.nextQuery >= 0) {
+                    adapter.querying = true;
+                    querying.add(adapter);
+                }
+            }
+
+            Iterator<Request> iterator = waiting.iterator();
+            while (iterator.hasNext()) {
+                Request request = iterator.next();
+                if (request.future.isDone()) {
+                    iterator.remove();
+                    continue;
+                }
+                if (!adapters.isEmpty() && request.refused.containsAll(adapters.keySet())) {
+                    iterator.remove();
+                    failed.add(request);
+                    continue;
+                }
+
+                Adapter adapter = select(request, now);
+                if (adapter == null) {
+                    // Later requests may still be able to use adapters this request has been refused by
+                    continue;
+                }
+                iterator.remove();
+                adapter.connecting = request;
+                request.adapter = adapter;
+                sending.add(request);
+            }
+        }
+
+        for (Adapter adapter : querying) {
+            queryConnections(adapter);
+        }
+        for (Request request : failed) {
+            request.future.completeExceptionally(
+                    new BlueGigaException("No adapter could connect to " + request.address));
+        }
+        for (Request request : sending) {
+            send(request);
+        }
+    }
+
+    /**
+     * Matches the adapters to the handlers in the group. Must be called while synchronised on the scheduler.
+     */
+    private void updateAdapters() {
+        Map<String, BlueGigaSerialHandler> handlers = group.getHandlers();
+        adapters.keySet().retainAll(handlers.keySet());
+        for (Map.Entry<String, BlueGigaSerialHandler> entry : handlers.entrySet()) {
+            if (!adapters.containsKey(entry.getKey())) {
+                Adapter adapter = new Adapter(entry.getKey(), entry.getValue());
+                adapters.put(adapter.name, adapter);
+            }
+        }
+    }
+
+    /**
+     * Chooses the adapter for a request. Must be called while synchronised on the scheduler.
+     *
+     * @return the best {@link Adapter} or null if none is available
+     */
+    private Adapter select(Request request, long now) {
+        Adapter best = null;
+        int bestScore = 0;
+        for (Adapter adapter : adapters.values()) {
+            int free = adapter.maxConnections - adapter.connections.size();
+            if (adapter.connecting != null || free <= 0 || request.refused.contains(adapter.name)
+                    || !adapter.handler.isAlive()) {
+                continue;
+            }
+            int score = getRssi(adapter, request.address, now) + FREE_CONNECTION_WEIGHT * free
+                    - QUEUE_DEPTH_WEIGHT * adapter.handler.getQueueDepth();
+            if (best == null || score > bestScore) {
+                best = adapter;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads the number of connections the dongle supports. The dongle also reports its existing connections. If the
+     * query fails it is sent again by a later dispatch, after a backoff.
+     */
+    private void queryConnections(final Adapter adapter) {
+        try {
+            adapter.handler.sendTransactionAsync(new BlueGigaGetConnectionsCommand(),
+                    BlueGigaGetConnectionsResponse.class).whenComplete((response, exception) -> {
+                        if (exception != null) {
+                            logger.debug("BlueGiga adapter {} failed to report its connections", adapter.name,
+                                    exception);
+                            retryQuery(adapter);
+                            return;
+                        }
+                        synchronized (this) {
+                            adapter.querying = false;
+                            adapter.queryFailures = 0;
+                            adapter.maxConnections = response.getMaxconn();
+                        }
+                        dispatch();
+                    });
+        } catch (IllegalStateException e) {
+            logger.debug("BlueGiga adapter {} is closed", adapter.name);
+            retryQuery(adapter);
+        }
+    }
+
+    /**
+     * Schedules the connection query of an adapter to be sent again after a failure
+     */
+    private void retryQuery(Adapter adapter) {
+        long delay;
+        synchronized (this) {
+            adapter.querying = false;
+            delay = Math.min(QUERY_RETRY_DELAY << Math.min(adapter.queryFailures, 16), MAX_QUERY_RETRY_DELAY);
+            adapter.queryFailures++;
+            adapter.nextQuery = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            if (closed || !adapter.handler.isAlive()) {
+                return;
+            }
+        }
+        group.getTimer().newTimeout(dispatchTask, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(final Request request) {
+        final Adapter adapter = request.adapter;
+        logger.debug("BlueGiga scheduling connection to {} on adapter {}", request.address, adapter.name);
+
+        request.timeout = group.getTimer().newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                request.future.completeExceptionally(
+                        new TimeoutException("Timeout connecting to " + request.address + " on " + adapter.name));
+            }
+        }, connectTimeout, TimeUnit.MILLISECONDS);
+
+        try {
+            adapter.handler.sendTransactionAsync(request.command, BlueGigaConnectDirectResponse.class)
+                    .whenComplete((response, exception) -> {
+                        if (exception != null) {
+                            logger.debug("BlueGiga adapter {} failed to connect to {}", adapter.name,
+                                    request.address, exception);
+                            refuse(request, adapter);
+                        } else if (response.getResult() != BgApiResponse.SUCCESS) {
+                            logger.debug("BlueGiga adapter {} refused connection to {}: {}", adapter.name,
+                                    request.address, response.getResult());
+                            refuse(request, adapter);
+                        }
+                    });
+        } catch (IllegalStateException e) {
+            refuse(request, adapter);
+        }
+    }
+
+    /**
+     * Returns a request to the front of the queue after an adapter refused it, so it is tried on another adapter
+     */
+    private void refuse(Request request, Adapter adapter) {
+        boolean stopped;
+        synchronized (this) {
+            if (adapter.connecting != request) {
+                return;
+            }
+            adapter.connecting = null;
+            request.adapter = null;
+            request.refused.add(adapter.name);
+            request.timeout.cancel();
+            stopped = closed;
+            if (!stopped) {
+                waiting.addFirst(request);
+            }
+        }
+        if (stopped) {
+            request.future.completeExceptionally(new BlueGigaException("BlueGiga connection scheduler closed"));
+        }
+        dispatch();
+    }
+
+    /**
+     * Frees the adapter once a request completes. If the request timed out or was cancelled while the dongle was
+     * connecting, the connection procedure is stopped.
+     */
+    private void release(Request request) {
+        Adapter adapter;
+        synchronized (this) {
+            waiting.remove(request);
+            adapter = request.adapter;
+            if (adapter != null && adapter.connecting == request) {
+                adapter.connecting = null;
+            } else {
+                adapter = null;
+            }
+        }
+        if (request.timeout != null) {
+            request.timeout.cancel();
+        }
+
+        if (adapter != null) {
+            try {
+                adapter.handler.sendTransactionAsync(new BlueGigaEndProcedureCommand(),
+                        BlueGigaEndProcedureResponse.class);
+            } catch (IllegalStateException e) {
+                logger.debug("BlueGiga adapter {} is closed", adapter.name);
+            }
+        }
+        dispatch();
+    }
+
+    private void scanResponse(BlueGigaScanResponseEvent event) {
+        Adapter adapter = adapters.get(event.getAdapter());
+        if (adapter == null) {
+            return;
+        }
+        BluetoothAddress sender = event.getSender();
+        RssiSample sample = adapter.rssi.get(sender);
+        if (sample == null) {
+            sample = new RssiSample();
+            RssiSample existing = adapter.rssi.putIfAbsent(sender, sample);
+            if (existing != null) {
+                sample = existing;
+            }
+        }
+        sample.rssi = event.getRssi();
+        sample.time = System.nanoTime();
+    }
+
+    private void connectionStatus(BlueGigaConnectionStatusEvent event) {
+        if (!event.getFlags().contains(ConnectionStatusFlag.CONNECTION_CONNECTED)) {
+            return;
+        }
+
+        Request completed = null;
+        Adapter adapter;
+        synchronized (this) {
+            adapter = adapters.get(event.getAdapter());
+            if (adapter == null) {
+                return;
+            }
+            adapter.connections.add(event.getConnection());
+            Request connecting = adapter.connecting;
+            if (connecting != null && connecting.address.getAddress() == event.getAddress().getAddress()) {
+                adapter.connecting = null;
+                completed = connecting;
+            }
+        }
+
+        if (completed != null && !completed.future.complete(event)) {
+            // The request was cancelled as the connection completed
+            BlueGigaDisconnectCommand disconnect = new BlueGigaDisconnectCommand();
+            disconnect.setConnection(event.getConnection());
+            try {
+                adapter.handler.sendTransactionAsync(disconnect, BlueGigaDisconnectResponse.class);
+            } catch (IllegalStateException e) {
+                logger.debug("BlueGiga adapter {} is closed", adapter.name);
+            }
+        }
+    }
+
+    private void disconnected(BlueGigaDisconnectedEvent event) {
+        synchronized (this) {
+            Adapter adapter = adapters.get(event.getAdapter());
+            if (adapter == null || !adapter.connections.remove(event.getConnection())) {
+                return;
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes old RSSI readings, and retries any requests waiting for an adapter
+     */
+    private void prune() {
+        long oldest = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rssiTimeout);
+        for (Adapter adapter : adapters.values()) {
+            Iterator<RssiSample> iterator = adapter.rssi.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().time - oldest < 0) {
+                    iterator.remove();
+                }
+            }
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            pruneTimeout = group.getTimer().newTimeout(pruneTask, rssiTimeout, TimeUnit.MILLISECONDS);
+        }
+        dispatch();
+    }
+}
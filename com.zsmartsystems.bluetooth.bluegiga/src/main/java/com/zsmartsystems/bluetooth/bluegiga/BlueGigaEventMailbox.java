@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue of events waiting to be delivered to a single {@link BlueGigaEventListener}.
+ * <p>
+ * Events are delivered in the order they were received. The mailbox does not own a thread - when events are waiting,
+ * a single drain task is run on the shared notification executor, so a listener is never called from two threads at
+ * once and each listener uses at most one thread at a time.
+ * <p>
+ * When the mailbox is full, the {@link OverflowPolicy} decides what happens to a new event. Events are posted from the
+ * receive thread, so the default {@link #DEFAULT_POLICY} drops events rather than waiting for a slow listener.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaEventMailbox {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaEventMailbox.class);
+
+    /**
+     * Defines what happens when an event is posted to a full mailbox
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for space in the mailbox. This must be chosen explicitly, and only for a listener that never blocks.
+         * <p>
+         * <b>Warning:</b> a full mailbox stops the receive thread until the listener catches up. No responses are read
+         * meanwhile, so a listener that sends a transaction from its callback deadlocks until the transaction times
+         * out, pending transactions are held up, and every adapter sharing a selector thread is stalled.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest event in the mailbox to make space for the new event
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the new event
+         */
+        DROP_NEWEST
+    }
+
+    /**
+     * Default number of events that can be waiting for a listener
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * The overflow policy used when none is given. Dropped events are counted by {@link #getDropped()}.
+     */
+    public static final OverflowPolicy DEFAULT_POLICY = OverflowPolicy.DROP_OLDEST;
+
+    private final BlueGigaEventListener listener;
+    private final BlockingQueue<BlueGigaResponse> queue;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+
+    /**
+     * Set while a drain task is scheduled or running
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a mailbox for a listener
+     *
+     * @param listener the {@link BlueGigaEventListener} to receive the events
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link OverflowPolicy} to use when the mailbox is full
+     * @param executor the {@link Executor} used to deliver the events
+     */
+    BlueGigaEventMailbox(BlueGigaEventListener listener, int capacity, OverflowPolicy policy, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Mailbox capacity must be at least 1");
+        }
+        this.listener = listener;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.executor = executor;
+        queue = new ArrayBlockingQueue<BlueGigaResponse>(capacity);
+    }
+
+    /**
+     * Adds an event to the mailbox, applying the overflow policy if the mailbox is full, and schedules delivery
+     *
+     * @param event the {@link BlueGigaResponse} to deliver
+     */
+    void post(BlueGigaResponse event) {
+        if (closed) {
+            return;
+        }
+
+        switch (policy) {
+            case BLOCK:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    BlueGigaResponse oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        logger.debug("Event mailbox full - dropping {}", oldest);
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                    logger.debug("Event mailbox full - dropping {}", event);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        schedule();
+    }
+
+    /**
+     * Stops delivery of events to the listener and discards any waiting events
+     */
+    void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            // The drain task is already scheduled and will pick up the event
+            return;
+        }
+
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            // The handler is closing
+            scheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        BlueGigaResponse event;
+        while (!closed && (event = queue.poll()) != null) {
+            try {
+                listener.bluegigaEventReceived(event);
+            } catch (Exception e) {
+                logger.warn("Execution error of a BlueGigaEventListener listener.", e);
+            }
+            delivered.incrementAndGet();
+        }
+
+        scheduled.set(false);
+
+        // An event may have been posted after the queue was emptied but before the flag was cleared
+        if (!closed && !queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Gets the listener this mailbox delivers to
+     *
+     * @return the {@link BlueGigaEventListener}
+     */
+    public BlueGigaEventListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Gets the maximum number of events that can wait in the mailbox
+     *
+     * @return the mailbox capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the overflow policy of the mailbox
+     *
+     * @return the {@link OverflowPolicy}
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Gets the number of events currently waiting to be delivered
+     *
+     * @return the mailbox depth
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of events that have been discarded because the mailbox was full
+     *
+     * @return the count of dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of events that have been delivered to the listener
+     *
+     * @return the count of delivered events
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointSetWatermarksCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointSetWatermarksResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointWatermarkRxEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointWatermarkTxEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaProtocolErrorEvent;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+
+/**
+ * Paces the transmit path of a {@link BlueGigaSerialHandler} to the rate the dongle can sustain.
+ * <p>
+ * The controller keeps a minimum interval between frames sent to the dongle. The interval is zero while the dongle
+ * keeps up, so frames are sent as fast as the transport allows. Signs of buffer pressure double the interval, up to
+ * {@link #setMaxSendInterval(long)}, and each successful response shortens it again, so the link settles at the
+ * highest rate that doesn't cause errors. Buffer pressure is signalled by:
+ * <ul>
+ * <li>a response with a result of {@link BgApiResponse#OUT_OF_MEMORY}, {@link BgApiResponse#BUFFERS_FULL} or
+ * {@link BgApiResponse#WAITING_RESPONSE}</li>
+ * <li>a {@link BlueGigaProtocolErrorEvent}, which the dongle raises when it drops a partly received command</li>
+ * <li>a {@link BlueGigaEndpointWatermarkRxEvent}, once the receive watermark is configured with
+ * {@link #configureWatermarks(int, int, int)}</li>
+ * </ul>
+ * A {@link BlueGigaEndpointWatermarkTxEvent} shows the dongle has buffer space again, and clears the interval.
+ * <p>
+ * Transactions rejected with one of the transient results above are sent again after a backoff, rather than being
+ * completed with the error, as long as their timeout allows.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaFlowController {
+    /**
+     * The default maximum interval between frames in milliseconds
+     */
+    public static final long DEFAULT_MAX_SEND_INTERVAL = 50;
+
+    /**
+     * The default number of times a transaction is sent again after a transient error
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * The interval used when pressure is first detected, and the interval below which the interval is cleared
+     */
+    private static final long MIN_SEND_INTERVAL = TimeUnit.MICROSECONDS.toNanos(500);
+
+    /**
+     * The backoff before the first retry. The backoff doubles with each retry.
+     */
+    private static final long RETRY_BACKOFF = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaFlowController.class);
+
+    private final BlueGigaSerialHandler handler;
+
+    private static final int PROTOCOL_ERROR_SLOT = BlueGigaResponsePackets.getSlot(BlueGigaProtocolErrorEvent.class);
+    private static final int WATERMARK_RX_SLOT = BlueGigaResponsePackets
+            .getSlot(BlueGigaEndpointWatermarkRxEvent.class);
+    private static final int WATERMARK_TX_SLOT = BlueGigaResponsePackets
+            .getSlot(BlueGigaEndpointWatermarkTxEvent.class);
+
+    private long maxSendInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_SEND_INTERVAL);
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * The current interval between frames in nanoseconds. Only changed while holding this.
+     */
+    private volatile long sendInterval = 0;
+
+    /**
+     * The time the last frame was sent, as {@link System#nanoTime()}. Only used by the writer thread.
+     */
+    private long lastSent;
+
+    private final AtomicLong pressureEvents = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    BlueGigaFlowController(BlueGigaSerialHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the longest interval the controller will leave between frames
+     *
+     * @param maxSendInterval the interval in milliseconds
+     */
+    public synchronized void setMaxSendInterval(long maxSendInterval) {
+        this.maxSendInterval = TimeUnit.MILLISECONDS.toNanos(maxSendInterval);
+        sendInterval = Math.min(sendInterval, this.maxSendInterval);
+    }
+
+    /**
+     * Sets the number of times a transaction is sent again after the dongle rejects it for lack of resources. Set to
+     * 0 to complete the transaction with the error straight away.
+     *
+     * @param maxRetries the number of retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Configures the watermarks of a dongle endpoint, so that the dongle reports when its buffers fill and empty. A
+     * watermark of 0 disables the watermark, and 0xFF leaves it unchanged.
+     *
+     * @param endpoint the endpoint index of the interface to the host
+     * @param rx the receive buffer level at which the dongle reports pressure
+     * @param tx the transmit buffer space at which the dongle reports it has room again
+     * @return a {@link CompletableFuture} completed with the {@link BlueGigaEndpointSetWatermarksResponse}
+     */
+    public CompletableFuture<BlueGigaEndpointSetWatermarksResponse> configureWatermarks(int endpoint, int rx,
+            int tx) {
+        BlueGigaEndpointSetWatermarksCommand command = new BlueGigaEndpointSetWatermarksCommand();
+        command.setEndpoint(endpoint);
+        command.setRx(rx);
+        command.setTx(tx);
+        return handler.sendTransactionAsync(command, BlueGigaEndpointSetWatermarksResponse.class, 1000,
+                BlueGigaPriority.CONTROL);
+    }
+
+    /**
+     * Gets the current interval between frames
+     *
+     * @return the interval in microseconds, or 0 if frames are not being paced
+     */
+    public long getSendInterval() {
+        return TimeUnit.NANOSECONDS.toMicros(sendInterval);
+    }
+
+    /**
+     * Gets the number of times buffer pressure has been detected
+     *
+     * @return the count of pressure signals
+     */
+    public long getPressureEvents() {
+        return pressureEvents.get();
+    }
+
+    /**
+     * Gets the number of times a transaction has been sent again after a transient error
+     *
+     * @return the count of retries
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Gets the time the writer must wait before sending the next frame. Only called from the writer thread.
+     *
+     * @return the time to wait in nanoseconds, or 0 or less if a frame can be sent now
+     */
+    long getSendDelay() {
+        long interval = sendInterval;
+        if (interval == 0) {
+            return 0;
+        }
+        return lastSent + interval - System.nanoTime();
+    }
+
+    /**
+     * Records that a frame has been sent. Only called from the writer thread.
+     */
+    void frameSent() {
+        lastSent = System.nanoTime();
+    }
+
+    /**
+     * Processes a received event frame, before it is passed to the listeners
+     *
+     * @param slot the dispatch slot of the event
+     */
+    void eventReceived(int slot) {
+        if (slot == PROTOCOL_ERROR_SLOT || slot == WATERMARK_RX_SLOT) {
+            pressure();
+        } else if (slot == WATERMARK_TX_SLOT) {
+            synchronized (this) {
+                sendInterval = 0;
+            }
+        }
+    }
+
+    /**
+     * Processes a received response, and checks if the command should be sent again
+     *
+     * @param response the {@link BlueGigaResponse}
+     * @return true if the dongle rejected the command for lack of resources
+     */
+    boolean responseReceived(BlueGigaResponse response) {
+        if (response instanceof BlueGigaResultResponse
+                && isTransient(((BlueGigaResultResponse) response).getResult())) {
+            pressure();
+            return true;
+        }
+        if (sendInterval == 0) {
+            return false;
+        }
+        synchronized (this) {
+            sendInterval -= sendInterval / 8;
+            if (sendInterval < MIN_SEND_INTERVAL) {
+                sendInterval = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the backoff before a rejected transaction is sent again
+     *
+     * @param attempt the number of times the transaction has already been retried
+     * @param timeLeft the time left before the transaction times out in nanoseconds
+     * @return the backoff in nanoseconds, or -1 if the transaction should not be retried
+     */
+    long getRetryBackoff(int attempt, long timeLeft) {
+        if (attempt >= maxRetries) {
+            return -1;
+        }
+        long backoff = RETRY_BACKOFF << Math.min(attempt, 16);
+        // Spread the retries so a burst of rejected commands isn't sent again as a burst
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 2);
+        if (backoff >= timeLeft) {
+            return -1;
+        }
+        retries.incrementAndGet();
+        return backoff;
+    }
+
+    private boolean isTransient(BgApiResponse result) {
+        return result == BgApiResponse.OUT_OF_MEMORY || result == BgApiResponse.BUFFERS_FULL
+                || result == BgApiResponse.WAITING_RESPONSE;
+    }
+
+    private synchronized void pressure() {
+        pressureEvents.incrementAndGet();
+        sendInterval = Math.min(Math.max(sendInterval * 2, MIN_SEND_INTERVAL), maxSendInterval);
+        logger.debug("BlueGiga buffer pressure - send interval now {}us",
+                TimeUnit.NANOSECONDS.toMicros(sendInterval));
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransport;
+
+/**
+ * Splits the raw BGAPI byte stream into frames. Data is read from the stream in bulk into a receive buffer, and all
+ * complete frames in the buffer are then carved out in a single pass.
+ * <p>
+ * The BGAPI protocol has no packet framing, and no error detection, so we do a few sanity checks on the header to try
+ * and allow resynchronisation should there be an error. If the header is invalid, the first byte is discarded and the
+ * search for a valid header continues from the next byte.
+ * <p>
+ * This class is not thread safe - it is intended to be used from a single receive thread.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaFrameDecoder {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaFrameDecoder.class);
+
+    /**
+     * Length of the BGAPI header
+     */
+    public static final int HEADER_LENGTH = 4;
+
+    /**
+     * Maximum length of a BGAPI frame, including the header. The header check limits the payload to 63 bytes.
+     */
+    public static final int MAX_FRAME_LENGTH = HEADER_LENGTH + 63;
+
+    /**
+     * Default size of the receive buffer
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    /**
+     * Masks used to sanity check the header.
+     * Byte 0: Check technology type is bluetooth and high length is 0
+     * Byte 1: Check length is less than 64 bytes
+     * Byte 2: Check class ID is less than 8
+     */
+    private static final int[] FRAMECHECK_PARAMS = new int[] { 0x7F, 0xC0, 0xF8 };
+
+    /**
+     * The receive buffer. This is always left in write mode (ie ready to receive more data), with the unprocessed
+     * data held between {@link #readPosition} and the buffer position.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The position in the receive buffer of the first byte that has not been returned in a frame
+     */
+    private int readPosition = 0;
+
+    /**
+     * Count of framing errors detected
+     */
+    private volatile long framingErrors = 0;
+
+    /**
+     * Creates a decoder with the default receive buffer size
+     */
+    public BlueGigaFrameDecoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a decoder with the specified receive buffer size
+     *
+     * @param bufferSize the size of the receive buffer. Must be at least {@link #MAX_FRAME_LENGTH}.
+     */
+    public BlueGigaFrameDecoder(int bufferSize) {
+        if (bufferSize < MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Receive buffer must be at least " + MAX_FRAME_LENGTH + " bytes");
+        }
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Reads data from the {@link InputStream} into the receive buffer. If no data is available, this will block in a
+     * single byte read until data arrives, and will then read everything that is available in bulk. This avoids
+     * spinning on streams that don't block in their bulk read methods.
+     *
+     * @param inputStream the {@link InputStream} to read
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if there is an error reading the stream
+     */
+    public int read(InputStream inputStream) throws IOException {
+        int count = 0;
+        int available = inputStream.available();
+        if (available <= 0) {
+            int val = inputStream.read();
+            if (val == -1) {
+                return -1;
+            }
+            buffer.put((byte) val);
+            count++;
+            available = inputStream.available();
+        }
+
+        if (available > 0 && buffer.hasRemaining()) {
+            int length = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    Math.min(available, buffer.remaining()));
+            if (length > 0) {
+                buffer.position(buffer.position() + length);
+                count += length;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the data that is available from a {@link BlueGigaTransport} directly into the receive buffer
+     *
+     * @param transport the {@link BlueGigaTransport} to read
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if there is an error reading the transport
+     */
+    public int read(BlueGigaTransport transport) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        return transport.read(buffer);
+    }
+
+    /**
+     * Adds data to the receive buffer. This allows the decoder to be used with data that is received by other means
+     * than an {@link InputStream}. Any data that doesn't fit into the buffer is not consumed.
+     *
+     * @param data the {@link ByteBuffer} containing the data to add
+     * @return the number of bytes added
+     */
+    public int write(ByteBuffer data) {
+        int length = Math.min(data.remaining(), buffer.remaining());
+        if (length == data.remaining()) {
+            buffer.put(data);
+        } else {
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + length);
+            buffer.put(slice);
+            data.position(data.position() + length);
+        }
+        return length;
+    }
+
+    /**
+     * Gets the next complete frame from the receive buffer. Frames are returned in the order they were received, and
+     * the buffer is only compacted once all complete frames have been consumed.
+     *
+     * @return the next frame, or null if there is no complete frame in the buffer
+     */
+    public byte[] nextFrame() {
+        final byte[] data = buffer.array();
+        final int offset = buffer.arrayOffset();
+        final int end = buffer.position();
+
+        while (end - readPosition >= HEADER_LENGTH) {
+            if (!checkHeader(data, offset + readPosition)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("BlueGiga framing error {}",
+                            String.format("%02X", data[offset + readPosition] & 0xFF));
+                }
+                framingErrors++;
+                readPosition++;
+                continue;
+            }
+
+            int frameLength = (data[offset + readPosition + 1] & 0xFF) + HEADER_LENGTH;
+            if (end - readPosition < frameLength) {
+                // Wait for the rest of the frame
+                break;
+            }
+
+            byte[] frame = new byte[frameLength];
+            System.arraycopy(data, offset + readPosition, frame, 0, frameLength);
+            readPosition += frameLength;
+            return frame;
+        }
+
+        // No more complete frames - move any partial frame to the start of the buffer
+        if (readPosition != 0) {
+            System.arraycopy(data, offset + readPosition, data, offset, end - readPosition);
+            buffer.position(end - readPosition);
+            readPosition = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of bytes currently held in the receive buffer that have not yet been returned in a frame
+     *
+     * @return the number of bytes pending in the receive buffer
+     */
+    public int getPending() {
+        return buffer.position() - readPosition;
+    }
+
+    /**
+     * Gets the number of framing errors that have been detected since the decoder was created
+     *
+     * @return the count of framing errors
+     */
+    public long getFramingErrors() {
+        return framingErrors;
+    }
+
+    private boolean checkHeader(byte[] data, int start) {
+        for (int cnt = 0; cnt < FRAMECHECK_PARAMS.length; cnt++) {
+            if ((data[start + cnt] & FRAMECHECK_PARAMS[cnt]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
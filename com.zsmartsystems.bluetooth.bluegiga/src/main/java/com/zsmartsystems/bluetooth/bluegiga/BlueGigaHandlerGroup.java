@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaSelectorPool;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTcpTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransport;
+
+/**
+ * A group of {@link BlueGigaSerialHandler}s driving several dongles from one JVM.
+ * <p>
+ * The handlers in the group share a single timer, a single pool of event delivery threads and, for channel
+ * transports, a {@link BlueGigaSelectorPool}, so the number of threads doesn't grow with the number of adapters. Each
+ * handler keeps its own writer thread, so a slow dongle doesn't hold up the others.
+ * <p>
+ * Each handler is named when it's added to the group. Responses are tagged with the name of the adapter that
+ * received them, see {@link BlueGigaResponse#getAdapter()}, and listeners registered with the group receive the
+ * events of all adapters through a single mailbox.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaHandlerGroup {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaHandlerGroup.class);
+
+    private final BlueGigaWheelTimer timer = new BlueGigaWheelTimer("BlueGigaGroupTimer",
+            BlueGigaWheelTimer.DEFAULT_TICK_DURATION, BlueGigaWheelTimer.DEFAULT_WHEEL_SIZE);
+
+    private final ExecutorService notificationService = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BlueGigaGroupNotifier-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Selector pool for channel transports, created when first requested
+     */
+    private BlueGigaSelectorPool selectorPool = null;
+
+    /**
+     * The handlers in the group, indexed by adapter name. Guarded by this group.
+     */
+    private final Map<String, BlueGigaSerialHandler> handlers = new LinkedHashMap<String, BlueGigaSerialHandler>();
+
+    /**
+     * The mailboxes of the group listeners. Guarded by this group.
+     */
+    private final Map<BlueGigaEventListener, BlueGigaEventMailbox> eventMailboxes =
+            new LinkedHashMap<BlueGigaEventListener, BlueGigaEventMailbox>();
+
+    /**
+     * The dispatch slots each group mailbox has subscribed to. A slot of -1 receives all events. Guarded by this group.
+     */
+    private final Map<BlueGigaEventMailbox, List<Integer>> eventSlots =
+            new LinkedHashMap<BlueGigaEventMailbox, List<Integer>>();
+
+    private boolean closed = false;
+
+    /**
+     * Creates a handler for a dongle and adds it to the group. The group listeners receive the events of the new
+     * adapter as soon as it's added.
+     *
+     * @param adapter the unique name of the adapter
+     * @param transport the {@link BlueGigaTransport} to the dongle. The handler takes ownership of the transport.
+     * @return the {@link BlueGigaSerialHandler}
+     */
+    public synchronized BlueGigaSerialHandler addHandler(String adapter, BlueGigaTransport transport) {
+        if (closed) {
+            throw new IllegalStateException("BlueGiga handler group is closed");
+        }
+        if (adapter == null || handlers.containsKey(adapter)) {
+            throw new IllegalArgumentException("Adapter name must be unique: " + adapter);
+        }
+
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport, adapter, timer, notificationService);
+        for (Map.Entry<BlueGigaEventMailbox, List<Integer>> subscription : eventSlots.entrySet()) {
+            for (int slot : subscription.getValue()) {
+                handler.addGroupMailbox(slot, subscription.getKey());
+            }
+        }
+        handlers.put(adapter, handler);
+        logger.debug("BlueGiga handler group added adapter {}", adapter);
+        return handler;
+    }
+
+    /**
+     * Connects to a dongle shared over TCP, and adds its handler to the group. The transport is served by the
+     * selector pool of the group.
+     *
+     * @param adapter the unique name of the adapter
+     * @param host the host name or address
+     * @param port the TCP port
+     * @return the {@link BlueGigaSerialHandler}
+     * @throws IOException if the connection fails
+     */
+    public BlueGigaSerialHandler addTcpHandler(String adapter, String host, int port) throws IOException {
+        return addHandler(adapter, BlueGigaTcpTransport.connect(host, port, getSelectorPool()));
+    }
+
+    /**
+     * Removes a handler from the group and closes it
+     *
+     * @param adapter the name of the adapter
+     * @param timeout milliseconds to wait for the handler to close
+     * @return true if the adapter was in the group
+     */
+    public boolean removeHandler(String adapter, long timeout) {
+        BlueGigaSerialHandler handler;
+        synchronized (this) {
+            handler = handlers.remove(adapter);
+        }
+        if (handler == null) {
+            return false;
+        }
+        handler.close(timeout);
+        return true;
+    }
+
+    /**
+     * Gets the handler of an adapter
+     *
+     * @param adapter the name of the adapter
+     * @return the {@link BlueGigaSerialHandler} or null if the adapter is not in the group
+     */
+    public synchronized BlueGigaSerialHandler getHandler(String adapter) {
+        return handlers.get(adapter);
+    }
+
+    /**
+     * Gets the handlers in the group, in the order they were added
+     *
+     * @return map of adapter name to {@link BlueGigaSerialHandler}
+     */
+    public synchronized Map<String, BlueGigaSerialHandler> getHandlers() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, BlueGigaSerialHandler>(handlers));
+    }
+
+    /**
+     * Gets the timer shared by the handlers in the group. Tasks are run on the timer thread and must not block.
+     *
+     * @return the {@link BlueGigaWheelTimer}
+     */
+    public BlueGigaWheelTimer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Gets the selector pool of the group, creating it if needed. Channel transports for the adapters in the group
+     * should use this pool, and it is closed when the group is closed.
+     *
+     * @return the {@link BlueGigaSelectorPool}
+     * @throws IOException if the pool can't be created
+     */
+    public synchronized BlueGigaSelectorPool getSelectorPool() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("BlueGiga handler group is closed");
+        }
+        if (selectorPool == null) {
+            selectorPool = new BlueGigaSelectorPool(BlueGigaSelectorPool.DEFAULT_THREADS);
+        }
+        return selectorPool;
+    }
+
+    /**
+     * Adds a listener for the events of all adapters with the default mailbox capacity and
+     * {@link BlueGigaEventMailbox#DEFAULT_POLICY}. If the mailbox is full, the oldest event is dropped, so a slow
+     * listener never holds up the receive threads of the adapters.
+     *
+     * @param listener the {@link BlueGigaEventListener} to add
+     */
+    public void addEventListener(BlueGigaEventListener listener) {
+        addEventListener(listener, BlueGigaEventMailbox.DEFAULT_CAPACITY, BlueGigaEventMailbox.DEFAULT_POLICY);
+    }
+
+    /**
+     * Adds a listener for the events of all adapters. The events of all adapters are queued in a single mailbox, and
+     * {@link BlueGigaResponse#getAdapter()} gives the adapter of each event.
+     *
+     * @param listener the {@link BlueGigaEventListener} to add
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link BlueGigaEventMailbox.OverflowPolicy} to use when the mailbox is full
+     */
+    public void addEventListener(BlueGigaEventListener listener, int capacity,
+            BlueGigaEventMailbox.OverflowPolicy policy) {
+        subscribe(-1, listener, capacity, policy);
+    }
+
+    /**
+     * Adds a listener for events of the specified class from all adapters, with the default mailbox capacity and
+     * {@link BlueGigaEventMailbox#DEFAULT_POLICY}
+     *
+     * @param eventClass the event class to subscribe to
+     * @param listener the {@link BlueGigaEventListener} to add
+     */
+    public <T extends BlueGigaResponse> void addEventListener(Class<T> eventClass, BlueGigaEventListener listener) {
+        addEventListener(eventClass, listener, BlueGigaEventMailbox.DEFAULT_CAPACITY,
+                BlueGigaEventMailbox.DEFAULT_POLICY);
+    }
+
+    /**
+     * Adds a listener for events of the specified class from all adapters. If the listener is already registered,
+     * its existing mailbox is used and the capacity and policy are ignored.
+     *
+     * @param eventClass the event class to subscribe to
+     * @param listener the {@link BlueGigaEventListener} to add
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link BlueGigaEventMailbox.OverflowPolicy} to use when the mailbox is full
+     */
+    public <T extends BlueGigaResponse> void addEventListener(Class<T> eventClass, BlueGigaEventListener listener,
+            int capacity, BlueGigaEventMailbox.OverflowPolicy policy) {
+        if (eventClass == BlueGigaResponse.class) {
+            addEventListener(listener, capacity, policy);
+            return;
+        }
+
+        int slot = BlueGigaResponsePackets.getSlot(eventClass);
+        if (slot == -1) {
+            throw new IllegalArgumentException(eventClass.getSimpleName() + " is not a BlueGiga packet class");
+        }
+        subscribe(slot, listener, capacity, policy);
+    }
+
+    private synchronized void subscribe(int slot, BlueGigaEventListener listener, int capacity,
+            BlueGigaEventMailbox.OverflowPolicy policy) {
+        BlueGigaEventMailbox mailbox = eventMailboxes.get(listener);
+        if (mailbox == null) {
+            mailbox = new BlueGigaEventMailbox(listener, capacity, policy, notificationService);
+            eventMailboxes.put(listener, mailbox);
+            eventSlots.put(mailbox, new ArrayList<Integer>());
+        }
+
+        List<Integer> slots = eventSlots.get(mailbox);
+        if (slots.contains(-1) || slots.contains(slot)) {
+            return;
+        }
+        if (slot == -1) {
+            // The listener now receives all events, so the class subscriptions are replaced
+            slots.clear();
+        }
+        slots.add(slot);
+
+        for (BlueGigaSerialHandler handler : handlers.values()) {
+            handler.addGroupMailbox(slot, mailbox);
+        }
+    }
+
+    /**
+     * Removes a listener from the events of all adapters
+     *
+     * @param listener the {@link BlueGigaEventListener} to remove
+     */
+    public synchronized void removeEventListener(BlueGigaEventListener listener) {
+        BlueGigaEventMailbox mailbox = eventMailboxes.remove(listener);
+        if (mailbox == null) {
+            return;
+        }
+        eventSlots.remove(mailbox);
+        for (BlueGigaSerialHandler handler : handlers.values()) {
+            handler.removeGroupMailbox(mailbox);
+        }
+        mailbox.close();
+    }
+
+    /**
+     * Gets the mailbox of a group listener. This can be used to monitor the depth of the mailbox and the number of
+     * dropped events.
+     *
+     * @param listener the {@link BlueGigaEventListener}
+     * @return the {@link BlueGigaEventMailbox} or null if the listener is not registered
+     */
+    public synchronized BlueGigaEventMailbox getEventMailbox(BlueGigaEventListener listener) {
+        return eventMailboxes.get(listener);
+    }
+
+    /**
+     * Gets the counters of a single adapter
+     *
+     * @param adapter the name of the adapter
+     * @return the {@link BlueGigaHandlerMetrics} or null if the adapter is not in the group
+     */
+    public synchronized BlueGigaHandlerMetrics getMetrics(String adapter) {
+        BlueGigaSerialHandler handler = handlers.get(adapter);
+        return handler == null ? null : handler.getMetrics();
+    }
+
+    /**
+     * Gets the sum of the counters of all adapters in the group. Events dropped by the group listener mailboxes are
+     * included.
+     *
+     * @return the aggregate {@link BlueGigaHandlerMetrics}
+     */
+    public synchronized BlueGigaHandlerMetrics getMetrics() {
+        long eventsDropped = 0;
+        for (BlueGigaEventMailbox mailbox : eventMailboxes.values()) {
+            eventsDropped += mailbox.getDropped();
+        }
+        BlueGigaHandlerMetrics metrics = new BlueGigaHandlerMetrics(0, 0, 0, 0, eventsDropped, 0, 0, 0, 0);
+        for (BlueGigaSerialHandler handler : handlers.values()) {
+            metrics = metrics.plus(handler.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Closes all the handlers in the group, and stops the shared threads. The handlers remain in the group, so their
+     * final counters can still be read.
+     *
+     * @param timeout milliseconds to wait for each handler to close
+     */
+    public void close(long timeout) {
+        List<BlueGigaSerialHandler> closing;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closing = new ArrayList<BlueGigaSerialHandler>(handlers.values());
+            for (BlueGigaEventMailbox mailbox : eventMailboxes.values()) {
+                mailbox.close();
+            }
+        }
+
+        for (BlueGigaSerialHandler handler : closing) {
+            handler.close(timeout);
+        }
+
+        notificationService.shutdownNow();
+        timer.stop();
+        synchronized (this) {
+            if (selectorPool != null) {
+                selectorPool.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+/**
+ * A snapshot of the counters of a {@link BlueGigaSerialHandler}, or the sum of the counters of the handlers in a
+ * {@link BlueGigaHandlerGroup}. The counters are read without stopping the handler, so they may not be consistent
+ * with each other.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaHandlerMetrics {
+    private final long framesReceived;
+    private final long framesSent;
+    private final long framesExpired;
+    private final long eventsReceived;
+    private final long eventsDropped;
+    private final long transactionsCompleted;
+    private final long transactionsTimedOut;
+    private final long framingErrors;
+    private final long transportErrors;
+
+    BlueGigaHandlerMetrics(long framesReceived, long framesSent, long framesExpired, long eventsReceived,
+            long eventsDropped, long transactionsCompleted, long transactionsTimedOut, long framingErrors,
+            long transportErrors) {
+        this.framesReceived = framesReceived;
+        this.framesSent = framesSent;
+        this.framesExpired = framesExpired;
+        this.eventsReceived = eventsReceived;
+        this.eventsDropped = eventsDropped;
+        this.transactionsCompleted = transactionsCompleted;
+        this.transactionsTimedOut = transactionsTimedOut;
+        this.framingErrors = framingErrors;
+        this.transportErrors = transportErrors;
+    }
+
+    /**
+     * Adds the counters of another snapshot to this one
+     *
+     * @param other the {@link BlueGigaHandlerMetrics} to add
+     * @return a new {@link BlueGigaHandlerMetrics} holding the sum
+     */
+    BlueGigaHandlerMetrics plus(BlueGigaHandlerMetrics other) {
+        return new BlueGigaHandlerMetrics(framesReceived + other.framesReceived, framesSent + other.framesSent,
+                framesExpired + other.framesExpired, eventsReceived + other.eventsReceived,
+                eventsDropped + other.eventsDropped, transactionsCompleted + other.transactionsCompleted,
+                transactionsTimedOut + other.transactionsTimedOut, framingErrors + other.framingErrors,
+                transportErrors + other.transportErrors);
+    }
+
+    /**
+     * Gets the number of frames received from the dongle
+     *
+     * @return the count of frames received
+     */
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    /**
+     * Gets the number of frames sent to the dongle, including transaction commands
+     *
+     * @return the count of frames sent
+     */
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * Gets the number of queued frames that were dropped rather than sent because their deadline had passed
+     *
+     * @return the count of frames expired
+     */
+    public long getFramesExpired() {
+        return framesExpired;
+    }
+
+    /**
+     * Gets the number of events received from the dongle
+     *
+     * @return the count of events received
+     */
+    public long getEventsReceived() {
+        return eventsReceived;
+    }
+
+    /**
+     * Gets the number of events dropped because a listener mailbox was full
+     *
+     * @return the count of events dropped
+     */
+    public long getEventsDropped() {
+        return eventsDropped;
+    }
+
+    /**
+     * Gets the number of transactions completed with a response
+     *
+     * @return the count of transactions completed
+     */
+    public long getTransactionsCompleted() {
+        return transactionsCompleted;
+    }
+
+    /**
+     * Gets the number of transactions that timed out waiting for a response
+     *
+     * @return the count of transactions timed out
+     */
+    public long getTransactionsTimedOut() {
+        return transactionsTimedOut;
+    }
+
+    /**
+     * Gets the number of framing errors detected in the received data
+     *
+     * @return the count of framing errors
+     */
+    public long getFramingErrors() {
+        return framingErrors;
+    }
+
+    /**
+     * Gets the number of errors reported by the transport
+     *
+     * @return the count of transport errors
+     */
+    public long getTransportErrors() {
+        return transportErrors;
+    }
+
+    @Override
+    public String toString() {
+        return "BlueGigaHandlerMetrics [framesReceived=" + framesReceived + ", framesSent=" + framesSent
+                + ", framesExpired=" + framesExpired + ", eventsReceived=" + eventsReceived + ", eventsDropped="
+                + eventsDropped + ", transactionsCompleted=" + transactionsCompleted + ", transactionsTimedOut="
+                + transactionsTimedOut + ", framingErrors=" + framingErrors + ", transportErrors="
+                + transportErrors + "]";
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaExecuteWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaPrepareWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaWriteCommandCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributedb.BlueGigaSendAttributesCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributedb.BlueGigaWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaResetCommand;
+
+/**
+ * The priority of a command on the transmit path of the {@link BlueGigaSerialHandler}. Commands of a higher priority
+ * are sent before commands of a lower priority that are already queued, so commands of different priorities may be
+ * sent in a different order to the order they were queued. Commands of the same priority for the same connection are
+ * always sent in order, while the connections take turns so that a busy connection doesn't delay the others.
+ *
+ * @author Chris Jackson
+ *
+ */
+public enum BlueGigaPriority {
+    /**
+     * Commands that stop or reset activity on the dongle, such as disconnecting and ending a procedure
+     */
+    CONTROL,
+
+    /**
+     * Commands that the application is waiting for, such as reads and discovery. This is the default.
+     */
+    INTERACTIVE,
+
+    /**
+     * Commands that move data in volume, such as attribute writes
+     */
+    BULK;
+
+    /**
+     * Gets the default priority of a command
+     *
+     * @param command the {@link BlueGigaCommand}
+     * @return the {@link BlueGigaPriority} of the command
+     */
+    public static BlueGigaPriority forCommand(BlueGigaCommand command) {
+        if (command instanceof BlueGigaDisconnectCommand || command instanceof BlueGigaEndProcedureCommand
+                || command instanceof BlueGigaResetCommand) {
+            return CONTROL;
+        }
+        // Prepared writes are executed in the bulk lane, so they stay in order
+        if (command instanceof BlueGigaAttributeWriteCommand || command instanceof BlueGigaWriteCommandCommand
+                || command instanceof BlueGigaPrepareWriteCommand || command instanceof BlueGigaExecuteWriteCommand
+                || command instanceof BlueGigaWriteCommand || command instanceof BlueGigaSendAttributesCommand) {
+            return BULK;
+        }
+        return INTERACTIVE;
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue with a lane for each {@link BlueGigaPriority}. Items may be added and removed from any thread without
+ * locking. Items are taken by one thread at a time, which does all of the scheduling, so callers taking items from
+ * more than one thread must hold a common lock.
+ * <p>
+ * Items are taken from the highest priority lane that isn't empty. To stop a busy lane starving the lanes below it,
+ * each lower lane counts the items taken ahead of it, and once a lane has been passed over
+ * {@link #STARVATION_LIMIT} times it is served next. The {@link BlueGigaPriority#CONTROL} lane is always served
+ * first.
+ * <p>
+ * Within a lane, each connection has its own queue, and the connections are served by deficit round robin. Each time
+ * a connection comes round it may send as many items as its weight, so one busy connection can't hold up the others.
+ * Items for the same connection are always taken in order. Items that don't relate to a connection share the
+ * {@link #NO_CONNECTION} queue, which is served in turn with the connections.
+ *
+ * @author Chris Jackson
+ *
+ */
+class BlueGigaPriorityQueue<T> {
+    /**
+     * Number of items taken from higher lanes before a waiting lower lane is served
+     */
+    static final int STARVATION_LIMIT = 8;
+
+    /**
+     * The connection used for items that don't relate to a connection
+     */
+    static final int NO_CONNECTION = -1;
+
+    /**
+     * The weight of connections that haven't been given a weight
+     */
+    static final int DEFAULT_WEIGHT = 1;
+
+    private static final int LANES = BlueGigaPriority.values().length;
+
+    private final Lane[] lanes;
+
+    /**
+     * Number of items taken while each lane was waiting. Only used when taking items.
+     */
+    private final int[] passedOver = new int[LANES];
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Map<Integer, Integer> weights = new ConcurrentHashMap<Integer, Integer>();
+
+    @SuppressWarnings("unchecked")
+    BlueGigaPriorityQueue() {
+        lanes = new BlueGigaPriorityQueue.Lane[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            lanes[lane] = new Lane();
+        }
+    }
+
+    /**
+     * Adds an item that doesn't relate to a connection to the lane of its priority
+     *
+     * @param item the item to add
+     * @param priority the {@link BlueGigaPriority} of the item
+     */
+    void add(T item, BlueGigaPriority priority) {
+        add(item, priority, NO_CONNECTION);
+    }
+
+    /**
+     * Adds an item to the queue of its connection in the lane of its priority
+     *
+     * @param item the item to add
+     * @param priority the {@link BlueGigaPriority} of the item
+     * @param connection the connection handle, or {@link #NO_CONNECTION}
+     */
+    void add(T item, BlueGigaPriority priority, int connection) {
+        lanes[priority.ordinal()].add(item, connection);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Sets the number of items a connection may send each time it is served. A connection with a weight of 2 gets
+     * twice the share of a lane of a connection with a weight of 1 when both are busy.
+     *
+     * @param connection the connection handle, or {@link #NO_CONNECTION}
+     * @param weight the weight, which must be at least 1
+     */
+    void setWeight(int connection, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1");
+        }
+        if (weight == DEFAULT_WEIGHT) {
+            weights.remove(connection);
+        } else {
+            weights.put(connection, weight);
+        }
+    }
+
+    /**
+     * Gets the weight of a connection
+     *
+     * @param connection the connection handle, or {@link #NO_CONNECTION}
+     * @return the weight
+     */
+    int getWeight(int connection) {
+        Integer weight = weights.get(connection);
+        return weight == null ? DEFAULT_WEIGHT : weight;
+    }
+
+    /**
+     * Gets the lane the next item will be taken from
+     *
+     * @return the lane index, which is the ordinal of its {@link BlueGigaPriority}, or -1 if the queue is empty
+     */
+    int nextLane() {
+        if (!lanes[0].isEmpty()) {
+            return 0;
+        }
+        for (int lane = LANES - 1; lane > 0; lane--) {
+            if (passedOver[lane] >= STARVATION_LIMIT && !lanes[lane].isEmpty()) {
+                return lane;
+            }
+        }
+        for (int lane = 1; lane < LANES; lane++) {
+            if (!lanes[lane].isEmpty()) {
+                return lane;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes the next item
+     *
+     * @return the next item, or null if the queue is empty
+     */
+    T poll() {
+        int lane = nextLane();
+        if (lane == -1) {
+            return null;
+        }
+        T item = lanes[lane].poll();
+        if (item == null) {
+            // Removed by another thread since the lane was checked
+            return null;
+        }
+        size.decrementAndGet();
+
+        passedOver[lane] = 0;
+        for (int lower = lane + 1; lower < LANES; lower++) {
+            if (!lanes[lower].isEmpty()) {
+                passedOver[lower]++;
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Removes an item that is no longer wanted, such as a cancelled transaction, so that it isn't sent. This may be
+     * called from any thread.
+     *
+     * @param item the item to remove
+     * @return true if the item was removed, or false if it wasn't in the queue
+     */
+    boolean remove(T item) {
+        for (Lane lane : lanes) {
+            if (lane.remove(item)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of items in all lanes
+     *
+     * @return the number of items
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * The items waiting for a single connection in a lane
+     */
+    private class Flow {
+        private final int connection;
+        private final ConcurrentLinkedQueue<T> items = new ConcurrentLinkedQueue<T>();
+
+        /**
+         * Set while the flow is in the lane's active or pending queue, so it is only scheduled once
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Number of items the connection may still send in its current turn. Only used when taking items.
+         */
+        private int deficit;
+
+        private Flow(int connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * A priority lane. Items are added and removed without locking: each connection's items go on its own concurrent
+     * queue, and a connection that becomes busy is put on the pending queue. Taking an item moves pending
+     * connections onto the end of the active queue, which holds the connections in the order they will be served, and
+     * does all of the round robin bookkeeping.
+     * <p>
+     * Flows are kept once created, as there are only a few connection handles.
+     */
+    private class Lane {
+        private final ConcurrentMap<Integer, Flow> flows = new ConcurrentHashMap<Integer, Flow>();
+        private final ConcurrentLinkedQueue<Flow> pending = new ConcurrentLinkedQueue<Flow>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Only used when taking items
+         */
+        private final ArrayDeque<Flow> active = new ArrayDeque<Flow>();
+
+        private void add(T item, int connection) {
+            Flow flow = flows.get(connection);
+            if (flow == null) {
+                Flow created = new Flow(connection);
+                flow = flows.putIfAbsent(connection, created);
+                if (flow == null) {
+                    flow = created;
+                }
+            }
+            flow.items.add(item);
+            if (flow.scheduled.compareAndSet(false, true)) {
+                pending.add(flow);
+            }
+            // Counted after scheduling, so a lane that isn't empty always has a flow for the taker to find
+            count.incrementAndGet();
+        }
+
+        private boolean isEmpty() {
+            return count.get() == 0;
+        }
+
+        private T poll() {
+            Flow flow;
+            while ((flow = pending.poll()) != null) {
+                active.addLast(flow);
+            }
+            while ((flow = active.peekFirst()) != null) {
+                T item = flow.items.poll();
+                if (item == null) {
+                    // Emptied by remove()
+                    deactivate(flow);
+                    continue;
+                }
+                count.decrementAndGet();
+
+                if (flow.deficit == 0) {
+                    // Start of the connection's turn
+                    flow.deficit = getWeight(flow.connection);
+                }
+                flow.deficit--;
+
+                if (flow.items.isEmpty()) {
+                    deactivate(flow);
+                } else if (flow.deficit == 0) {
+                    active.addLast(active.pollFirst());
+                }
+                return item;
+            }
+            return null;
+        }
+
+        /**
+         * Takes an empty flow off the head of the active queue. An item may have been added since the flow was found
+         * empty, in which case whichever of the taking and adding threads claims the flow schedules it again.
+         */
+        private void deactivate(Flow flow) {
+            active.pollFirst();
+            // An idle connection doesn't save up its turn
+            flow.deficit = 0;
+            flow.scheduled.set(false);
+            if (!flow.items.isEmpty() && flow.scheduled.compareAndSet(false, true)) {
+                active.addLast(flow);
+            }
+        }
+
+        private boolean remove(T item) {
+            for (Flow flow : flows.values()) {
+                if (flow.items.remove(item)) {
+                    count.decrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -14,19 +14,34 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.ScanResponseType;
 /**
  * Abstract class for response and event packets. This provides the deserialization methods to convert wire data to Java
  * classes.
+ * <p>
+ * The response holds a reference to the received frame, and fields are deserialized from their offset in the frame
+ * when they are requested. The frame must therefore not be modified once the response is created.
  * 
  * @author Chris Jackson
  *
  */
 public class BlueGigaResponse extends BlueGigaPacket {
-    private int[] buffer = new int[131];
-    private int position = 0;
+    private byte[] buffer;
     protected boolean event = false;
+    private String adapter;
 
-    protected BlueGigaResponse(int[] inputBuffer) {
-        // TODO Auto-generated constructor stub
+    protected BlueGigaResponse(byte[] inputBuffer) {
         buffer = inputBuffer;
-        position = 4;
+    }
+
+    /**
+     * Creates the response from a frame held as an int[].
+     *
+     * @param inputBuffer the received frame
+     * @deprecated use {@link #BlueGigaResponse(byte[])}
+     */
+    @Deprecated
+    protected BlueGigaResponse(int[] inputBuffer) {
+        buffer = new byte[inputBuffer.length];
+        for (int cnt = 0; cnt < inputBuffer.length; cnt++) {
+            buffer[cnt] = (byte) inputBuffer[cnt];
+        }
     }
 
     /**
@@ -39,81 +54,86 @@ public class BlueGigaResponse extends BlueGigaPacket {
     }
 
     /**
-     * Reads a int8 from the output stream
+     * Gets the name of the adapter that received this response. This is set for handlers in a
+     * {@link BlueGigaHandlerGroup}, so listeners registered with the group can tell the adapters apart.
      *
+     * @return the adapter name, or null if the handler isn't named
+     */
+    public String getAdapter() {
+        return adapter;
+    }
+
+    void setAdapter(String adapter) {
+        this.adapter = adapter;
+    }
+
+    /**
+     * Reads a int8 from the input
+     *
+     * @param offset the offset of the value in the frame
      * @return value read from input
      */
-    protected int deserializeInt8() {
-        if (buffer[position] >= 128) {
-            return buffer[position++] - 256;
-        } else {
-            return buffer[position++];
-        }
+    protected int deserializeInt8(int offset) {
+        return buffer[offset];
     }
 
     /**
-     * Reads a uint8 from the output stream
+     * Reads a uint8 from the input
      *
+     * @param offset the offset of the value in the frame
      * @return value read from input
      */
-    protected int deserializeUInt8() {
-        return buffer[position++];
+    protected int deserializeUInt8(int offset) {
+        return buffer[offset] & 0xFF;
     }
 
-    protected boolean deserializeBoolean() {
-        return buffer[position++] != 0;
+    protected boolean deserializeBoolean(int offset) {
+        return buffer[offset] != 0;
     }
 
     /**
-     * Reads a uint16 from the output stream
+     * Reads a uint16 from the input
      *
+     * @param offset the offset of the value in the frame
      * @return value read from input
      */
-    protected int deserializeUInt16() {
-        return buffer[position++] + (buffer[position++] << 8);
+    protected int deserializeUInt16(int offset) {
+        return (buffer[offset] & 0xFF) + ((buffer[offset + 1] & 0xFF) << 8);
     }
 
-    protected UUID deserializeUuid() {
+    protected UUID deserializeUuid(int offset) {
         long low;
         long high;
 
         // This is a uint8array type so first byte is the length
-        int length = buffer[position++];
+        int length = deserializeUInt8(offset);
         switch (length) {
             case 2:
                 low = 0;
-                high = ((long) buffer[position++] << 32) + ((long) buffer[position++] << 40);
+                high = deserializeLong(offset + 1, 2) << 32;
                 break;
             case 4:
                 low = 0;
-                high = ((long) buffer[position++] << 32) + ((long) buffer[position++] << 40)
-                        + ((long) buffer[position++] << 48) + ((long) buffer[position++] << 56);
+                high = deserializeLong(offset + 1, 4) << 32;
                 break;
             case 16:
-                low = (buffer[position++]) + ((long) buffer[position++] << 8) + ((long) buffer[position++] << 16)
-                        + ((long) buffer[position++] << 24) + ((long) buffer[position++] << 32)
-                        + ((long) buffer[position++] << 40) + ((long) buffer[position++] << 48)
-                        + ((long) buffer[position++] << 56);
-                high = (buffer[position++]) + ((long) buffer[position++] << 8) + ((long) buffer[position++] << 16)
-                        + ((long) buffer[position++] << 24) + ((long) buffer[position++] << 32)
-                        + ((long) buffer[position++] << 40) + ((long) buffer[position++] << 48)
-                        + ((long) buffer[position++] << 56);
+                low = deserializeLong(offset + 1, 8);
+                high = deserializeLong(offset + 9, 8);
                 break;
             default:
                 low = 0;
                 high = 0;
-                position += length;
                 break;
         }
         return new UUID(high, low);
     }
 
-    protected BgApiResponse deserializeBgApiResponse() {
-        return BgApiResponse.getBgApiResponse(deserializeUInt16());
+    protected BgApiResponse deserializeBgApiResponse(int offset) {
+        return BgApiResponse.getBgApiResponse(deserializeUInt16(offset));
     }
 
-    public Set<ConnectionStatusFlag> deserializeConnectionStatusFlag() {
-        int val = deserializeUInt8();
+    public Set<ConnectionStatusFlag> deserializeConnectionStatusFlag(int offset) {
+        int val = deserializeUInt8(offset);
         Set<ConnectionStatusFlag> options = new HashSet<ConnectionStatusFlag>();
         for (ConnectionStatusFlag option : ConnectionStatusFlag.values()) {
             if (option == ConnectionStatusFlag.UNKNOWN) {
@@ -126,48 +146,64 @@ public class BlueGigaResponse extends BlueGigaPacket {
         return options;
     }
 
-    protected AttributeValueType deserializeAttributeValueType() {
-        return AttributeValueType.getAttributeValueType(deserializeUInt8());
+    protected AttributeValueType deserializeAttributeValueType(int offset) {
+        return AttributeValueType.getAttributeValueType(deserializeUInt8(offset));
     }
 
-    protected BluetoothAddressType deserializeBluetoothAddressType() {
-        return BluetoothAddressType.getBluetoothAddressType(deserializeUInt8());
+    protected BluetoothAddressType deserializeBluetoothAddressType(int offset) {
+        return BluetoothAddressType.getBluetoothAddressType(deserializeUInt8(offset));
     }
 
-    protected AttributeChangeReason deserializeAttributeChangeReason() {
-        return AttributeChangeReason.getAttributeChangeReason(deserializeUInt8());
+    protected AttributeChangeReason deserializeAttributeChangeReason(int offset) {
+        return AttributeChangeReason.getAttributeChangeReason(deserializeUInt8(offset));
     }
 
-    protected ScanResponseType deserializeScanResponseType() {
-        return ScanResponseType.getScanResponseType(deserializeUInt8());
+    protected ScanResponseType deserializeScanResponseType(int offset) {
+        return ScanResponseType.getScanResponseType(deserializeUInt8(offset));
     }
 
-    protected long deserializeUInt32() {
-        return buffer[position++] + (buffer[position++] << 8) + (buffer[position++] << 16) + (buffer[position++] << 24);
+    protected long deserializeUInt32(int offset) {
+        return deserializeLong(offset, 4);
     }
 
-    protected int[] deserializeUInt8Array() {
-        int length = buffer[position++];
+    /**
+     * Reads an unsigned little endian value of up to 8 bytes from the input
+     *
+     * @param offset the offset of the value in the frame
+     * @param bytes the number of bytes to read
+     * @return value read from input
+     */
+    private long deserializeLong(int offset, int bytes) {
+        long val = 0;
+        for (int cnt = 0; cnt < bytes; cnt++) {
+            val |= (buffer[offset + cnt] & 0xFFL) << (cnt * 8);
+        }
+        return val;
+    }
+
+    protected int[] deserializeUInt8Array(int offset) {
+        int length = deserializeUInt8(offset);
         int[] val = new int[length];
 
         for (int cnt = 0; cnt < length; cnt++) {
-            val[cnt] = deserializeUInt8();
+            val[cnt] = buffer[offset + 1 + cnt] & 0xFF;
         }
 
         return val;
     }
 
-    protected String deserializeAddress() {
-        StringBuilder builder = new StringBuilder();
-
-        for (int cnt = 5; cnt >= 0; cnt--) {
-            if (cnt < 5) {
-                builder.append(':');
-            }
-            builder.append(String.format("%02X", buffer[position + cnt]));
-        }
-        position += 6;
+    protected BluetoothAddress deserializeAddress(int offset) {
+        return new BluetoothAddress(deserializeLong(offset, 6));
+    }
 
-        return builder.toString();
+    /**
+     * Reads an address along with its address type
+     *
+     * @param offset the offset of the address in the frame
+     * @param typeOffset the offset of the {@link BluetoothAddressType} in the frame
+     * @return the {@link BluetoothAddress}
+     */
+    protected BluetoothAddress deserializeAddress(int offset, int typeOffset) {
+        return new BluetoothAddress(deserializeLong(offset, 6), deserializeBluetoothAddressType(typeOffset));
     }
 }
@@ -66,6 +66,7 @@ import com.zsmartsystems.bluetooth.bluegiga.command.security.BlueGigaSetParamete
 import com.zsmartsystems.bluetooth.bluegiga.command.security.BlueGigaWhitelistBondsResponse;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaAddressGetResponse;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaBootEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointSetWatermarksResponse;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointWatermarkRxEvent;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaEndpointWatermarkTxEvent;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetConnectionsResponse;
@@ -78,20 +79,17 @@ import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaResetResponse
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaWhitelistAppendResponse;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaWhitelistClearResponse;
 import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaWhitelistRemoveResponse;
-
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Helper class to create BlueGiga BLE Response and Event packets (ie packets that we will receive).
  * <p>
+ * Each packet type has a slot in a dispatch table, computed from the event flag, class and method
+ * in the packet header. The table holds a reference to the constructor of each packet class.
+ * <p>
  * Note that this code is autogenerated. Manual changes may be overwritten.
  *
  * @author Chris Jackson - Initial contribution of Java code generator
@@ -100,103 +98,187 @@ class BlueGigaResponsePackets {
 
     private static Logger logger = LoggerFactory.getLogger(BlueGigaResponsePackets.class);
 
-    final private static Map<Integer, Class<?>> packetMap = new HashMap<Integer, Class<?>>();
+    /**
+     * Number of command classes in the dispatch table
+     */
+    private static final int CLASS_COUNT = 7;
+
+    /**
+     * Number of command methods in the dispatch table
+     */
+    private static final int METHOD_COUNT = 15;
+
+    /**
+     * Number of slots in the dispatch table
+     */
+    static final int SLOT_COUNT = 2 * CLASS_COUNT * METHOD_COUNT;
+
+    /**
+     * Factory used to construct a packet from the received frame
+     */
+    interface PacketFactory {
+        BlueGigaResponse create(byte[] data);
+    }
+
+    final private static PacketFactory[] packetTable = new PacketFactory[SLOT_COUNT];
+
+    final private static boolean[] connectionTable = new boolean[SLOT_COUNT];
+
+    final private static Map<Class<? extends BlueGigaResponse>, Integer> slotMapping = new HashMap<>();
 
     static {
-        packetMap.put(Objects.hash(0x00, 0x06, true), BlueGigaProtocolErrorEvent.class);
-        packetMap.put(Objects.hash(0x00, 0x02, true), BlueGigaEndpointWatermarkRxEvent.class);
-        packetMap.put(Objects.hash(0x00, 0x03, true), BlueGigaEndpointWatermarkTxEvent.class);
-        packetMap.put(Objects.hash(0x00, 0x05, true), BlueGigaNoLicenseKeyEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x05, false), BlueGigaAttributeWriteResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x0A, false), BlueGigaExecuteWriteResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x00, false), BlueGigaFindByTypeValueResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x03, false), BlueGigaFindInformationResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x07, false), BlueGigaIndicateConfirmResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x09, false), BlueGigaPrepareWriteResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x01, false), BlueGigaReadByGroupTypeResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x04, false), BlueGigaReadByHandleResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x02, false), BlueGigaReadByTypeResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x08, false), BlueGigaReadLongResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x0B, false), BlueGigaReadMultipleResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x06, false), BlueGigaWriteCommandResponse.class);
-        packetMap.put(Objects.hash(0x04, 0x01, true), BlueGigaProcedureCompletedEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x05, true), BlueGigaAttributeValueEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x04, true), BlueGigaFindInformationFoundEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x02, true), BlueGigaGroupFoundEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x00, true), BlueGigaIndicatedEvent.class);
-        packetMap.put(Objects.hash(0x04, 0x00, true), BlueGigaReadMultipleResponseEvent.class);
-        packetMap.put(Objects.hash(0x02, 0x01, false), BlueGigaReadResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x02, false), BlueGigaReadTypeResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x02, false), BlueGigaSendAttributesResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x03, false), BlueGigaUserReadResponseResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x04, false), BlueGigaUserWriteResponseResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x00, false), BlueGigaWriteResponse.class);
-        packetMap.put(Objects.hash(0x02, 0x02, true), BlueGigaAttributeStatusEvent.class);
-        packetMap.put(Objects.hash(0x02, 0x01, true), BlueGigaUserReadRequestEvent.class);
-        packetMap.put(Objects.hash(0x02, 0x00, true), BlueGigaValueEvent.class);
-        packetMap.put(Objects.hash(0x03, 0x04, false), BlueGigaChannelMapGetResponse.class);
-        packetMap.put(Objects.hash(0x03, 0x00, false), BlueGigaDisconnectResponse.class);
-        packetMap.put(Objects.hash(0x03, 0x01, false), BlueGigaGetRssiResponse.class);
-        packetMap.put(Objects.hash(0x03, 0x07, false), BlueGigaGetStatusResponse.class);
-        packetMap.put(Objects.hash(0x03, 0x02, false), BlueGigaUpdateResponse.class);
-        packetMap.put(Objects.hash(0x03, 0x04, true), BlueGigaDisconnectedEvent.class);
-        packetMap.put(Objects.hash(0x03, 0x02, true), BlueGigaFeatureIndEvent.class);
-        packetMap.put(Objects.hash(0x03, 0x00, true), BlueGigaConnectionStatusEvent.class);
-        packetMap.put(Objects.hash(0x03, 0x01, true), BlueGigaVersionIndEvent.class);
-        packetMap.put(Objects.hash(0x06, 0x07, false), BlueGigaSetScanParametersResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x03, false), BlueGigaConnectDirectResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x05, false), BlueGigaConnectSelectiveResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x02, false), BlueGigaDiscoverResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x08, false), BlueGigaSetAdvParametersResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x09, false), BlueGigaSetAdvDataResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x04, false), BlueGigaEndProcedureResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x01, false), BlueGigaSetModeResponse.class);
-        packetMap.put(Objects.hash(0x06, 0x00, true), BlueGigaScanResponseEvent.class);
-        packetMap.put(Objects.hash(0x05, 0x02, false), BlueGigaDeleteBondingResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x00, false), BlueGigaEncryptStartResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x05, false), BlueGigaGetBondsResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x04, false), BlueGigaPassKeyResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x01, false), BlueGigaSetBondableModeResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x03, false), BlueGigaSetParametersResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x07, false), BlueGigaWhitelistBondsResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x0A, false), BlueGigaWhitelistAppendResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x0B, false), BlueGigaWhitelistRemoveResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x0C, false), BlueGigaWhitelistClearResponse.class);
-        packetMap.put(Objects.hash(0x05, 0x01, true), BlueGigaBondingFailEvent.class);
-        packetMap.put(Objects.hash(0x05, 0x04, true), BlueGigaBondStatusEvent.class);
-        packetMap.put(Objects.hash(0x05, 0x02, true), BlueGigaPasskeyDisplayEvent.class);
-        packetMap.put(Objects.hash(0x05, 0x03, true), BlueGigaPasskeyRequestEvent.class);
-        packetMap.put(Objects.hash(0x00, 0x02, false), BlueGigaAddressGetResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x01, false), BlueGigaHelloResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x00, false), BlueGigaResetResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x06, false), BlueGigaGetConnectionsResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x05, false), BlueGigaGetCountersResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x08, false), BlueGigaGetInfoResponse.class);
-        packetMap.put(Objects.hash(0x00, 0x00, true), BlueGigaBootEvent.class);
+        register(1, 0x00, 0x06, BlueGigaProtocolErrorEvent.class, BlueGigaProtocolErrorEvent::new);
+        register(1, 0x00, 0x02, BlueGigaEndpointWatermarkRxEvent.class, BlueGigaEndpointWatermarkRxEvent::new);
+        register(1, 0x00, 0x03, BlueGigaEndpointWatermarkTxEvent.class, BlueGigaEndpointWatermarkTxEvent::new);
+        register(1, 0x00, 0x05, BlueGigaNoLicenseKeyEvent.class, BlueGigaNoLicenseKeyEvent::new);
+        register(0, 0x04, 0x05, BlueGigaAttributeWriteResponse.class, BlueGigaAttributeWriteResponse::new);
+        register(0, 0x04, 0x0A, BlueGigaExecuteWriteResponse.class, BlueGigaExecuteWriteResponse::new);
+        register(0, 0x04, 0x00, BlueGigaFindByTypeValueResponse.class, BlueGigaFindByTypeValueResponse::new);
+        register(0, 0x04, 0x03, BlueGigaFindInformationResponse.class, BlueGigaFindInformationResponse::new);
+        register(0, 0x04, 0x07, BlueGigaIndicateConfirmResponse.class, BlueGigaIndicateConfirmResponse::new);
+        register(0, 0x04, 0x09, BlueGigaPrepareWriteResponse.class, BlueGigaPrepareWriteResponse::new);
+        register(0, 0x04, 0x01, BlueGigaReadByGroupTypeResponse.class, BlueGigaReadByGroupTypeResponse::new);
+        register(0, 0x04, 0x04, BlueGigaReadByHandleResponse.class, BlueGigaReadByHandleResponse::new);
+        register(0, 0x04, 0x02, BlueGigaReadByTypeResponse.class, BlueGigaReadByTypeResponse::new);
+        register(0, 0x04, 0x08, BlueGigaReadLongResponse.class, BlueGigaReadLongResponse::new);
+        register(0, 0x04, 0x0B, BlueGigaReadMultipleResponse.class, BlueGigaReadMultipleResponse::new);
+        register(0, 0x04, 0x06, BlueGigaWriteCommandResponse.class, BlueGigaWriteCommandResponse::new);
+        register(1, 0x04, 0x01, BlueGigaProcedureCompletedEvent.class, BlueGigaProcedureCompletedEvent::new);
+        register(1, 0x04, 0x05, BlueGigaAttributeValueEvent.class, BlueGigaAttributeValueEvent::new);
+        register(1, 0x04, 0x04, BlueGigaFindInformationFoundEvent.class, BlueGigaFindInformationFoundEvent::new);
+        register(1, 0x04, 0x02, BlueGigaGroupFoundEvent.class, BlueGigaGroupFoundEvent::new);
+        register(1, 0x04, 0x00, BlueGigaIndicatedEvent.class, BlueGigaIndicatedEvent::new);
+        register(1, 0x04, 0x06, BlueGigaReadMultipleResponseEvent.class, BlueGigaReadMultipleResponseEvent::new);
+        register(0, 0x02, 0x01, BlueGigaReadResponse.class, BlueGigaReadResponse::new);
+        register(0, 0x02, 0x02, BlueGigaReadTypeResponse.class, BlueGigaReadTypeResponse::new);
+        register(0, 0x02, 0x05, BlueGigaSendAttributesResponse.class, BlueGigaSendAttributesResponse::new);
+        register(0, 0x02, 0x03, BlueGigaUserReadResponseResponse.class, BlueGigaUserReadResponseResponse::new);
+        register(0, 0x02, 0x04, BlueGigaUserWriteResponseResponse.class, BlueGigaUserWriteResponseResponse::new);
+        register(0, 0x02, 0x00, BlueGigaWriteResponse.class, BlueGigaWriteResponse::new);
+        register(1, 0x02, 0x02, BlueGigaAttributeStatusEvent.class, BlueGigaAttributeStatusEvent::new);
+        register(1, 0x02, 0x01, BlueGigaUserReadRequestEvent.class, BlueGigaUserReadRequestEvent::new);
+        register(1, 0x02, 0x00, BlueGigaValueEvent.class, BlueGigaValueEvent::new);
+        register(0, 0x03, 0x04, BlueGigaChannelMapGetResponse.class, BlueGigaChannelMapGetResponse::new);
+        register(0, 0x03, 0x00, BlueGigaDisconnectResponse.class, BlueGigaDisconnectResponse::new);
+        register(0, 0x03, 0x01, BlueGigaGetRssiResponse.class, BlueGigaGetRssiResponse::new);
+        register(0, 0x03, 0x07, BlueGigaGetStatusResponse.class, BlueGigaGetStatusResponse::new);
+        register(0, 0x03, 0x02, BlueGigaUpdateResponse.class, BlueGigaUpdateResponse::new);
+        register(1, 0x03, 0x04, BlueGigaDisconnectedEvent.class, BlueGigaDisconnectedEvent::new);
+        register(1, 0x03, 0x02, BlueGigaFeatureIndEvent.class, BlueGigaFeatureIndEvent::new);
+        register(1, 0x03, 0x00, BlueGigaConnectionStatusEvent.class, BlueGigaConnectionStatusEvent::new);
+        register(1, 0x03, 0x01, BlueGigaVersionIndEvent.class, BlueGigaVersionIndEvent::new);
+        register(0, 0x06, 0x07, BlueGigaSetScanParametersResponse.class, BlueGigaSetScanParametersResponse::new);
+        register(0, 0x06, 0x03, BlueGigaConnectDirectResponse.class, BlueGigaConnectDirectResponse::new);
+        register(0, 0x06, 0x05, BlueGigaConnectSelectiveResponse.class, BlueGigaConnectSelectiveResponse::new);
+        register(0, 0x06, 0x02, BlueGigaDiscoverResponse.class, BlueGigaDiscoverResponse::new);
+        register(0, 0x06, 0x08, BlueGigaSetAdvParametersResponse.class, BlueGigaSetAdvParametersResponse::new);
+        register(0, 0x06, 0x09, BlueGigaSetAdvDataResponse.class, BlueGigaSetAdvDataResponse::new);
+        register(0, 0x06, 0x04, BlueGigaEndProcedureResponse.class, BlueGigaEndProcedureResponse::new);
+        register(0, 0x06, 0x01, BlueGigaSetModeResponse.class, BlueGigaSetModeResponse::new);
+        register(1, 0x06, 0x00, BlueGigaScanResponseEvent.class, BlueGigaScanResponseEvent::new);
+        register(0, 0x05, 0x02, BlueGigaDeleteBondingResponse.class, BlueGigaDeleteBondingResponse::new);
+        register(0, 0x05, 0x00, BlueGigaEncryptStartResponse.class, BlueGigaEncryptStartResponse::new);
+        register(0, 0x05, 0x05, BlueGigaGetBondsResponse.class, BlueGigaGetBondsResponse::new);
+        register(0, 0x05, 0x04, BlueGigaPassKeyResponse.class, BlueGigaPassKeyResponse::new);
+        register(0, 0x05, 0x01, BlueGigaSetBondableModeResponse.class, BlueGigaSetBondableModeResponse::new);
+        register(0, 0x05, 0x03, BlueGigaSetParametersResponse.class, BlueGigaSetParametersResponse::new);
+        register(0, 0x05, 0x07, BlueGigaWhitelistBondsResponse.class, BlueGigaWhitelistBondsResponse::new);
+        register(0, 0x00, 0x0A, BlueGigaWhitelistAppendResponse.class, BlueGigaWhitelistAppendResponse::new);
+        register(0, 0x00, 0x0B, BlueGigaWhitelistRemoveResponse.class, BlueGigaWhitelistRemoveResponse::new);
+        register(0, 0x00, 0x0C, BlueGigaWhitelistClearResponse.class, BlueGigaWhitelistClearResponse::new);
+        register(1, 0x05, 0x01, BlueGigaBondingFailEvent.class, BlueGigaBondingFailEvent::new);
+        register(1, 0x05, 0x04, BlueGigaBondStatusEvent.class, BlueGigaBondStatusEvent::new);
+        register(1, 0x05, 0x02, BlueGigaPasskeyDisplayEvent.class, BlueGigaPasskeyDisplayEvent::new);
+        register(1, 0x05, 0x03, BlueGigaPasskeyRequestEvent.class, BlueGigaPasskeyRequestEvent::new);
+        register(0, 0x00, 0x02, BlueGigaAddressGetResponse.class, BlueGigaAddressGetResponse::new);
+        register(0, 0x00, 0x01, BlueGigaHelloResponse.class, BlueGigaHelloResponse::new);
+        register(0, 0x00, 0x00, BlueGigaResetResponse.class, BlueGigaResetResponse::new);
+        register(0, 0x00, 0x06, BlueGigaGetConnectionsResponse.class, BlueGigaGetConnectionsResponse::new);
+        register(0, 0x00, 0x05, BlueGigaGetCountersResponse.class, BlueGigaGetCountersResponse::new);
+        register(0, 0x00, 0x08, BlueGigaGetInfoResponse.class, BlueGigaGetInfoResponse::new);
+        register(0, 0x00, 0x0E, BlueGigaEndpointSetWatermarksResponse.class, BlueGigaEndpointSetWatermarksResponse::new);
+        register(1, 0x00, 0x00, BlueGigaBootEvent.class, BlueGigaBootEvent::new);
     }
 
-    public static BlueGigaResponse getPacket(int[] data) {
-        int cmdClass = data[2];
-        int cmdMethod = data[3];
-        boolean isEvent = (data[0] & 0x80) != 0;
+    private static void register(int isEvent, int cmdClass, int cmdMethod,
+            Class<? extends BlueGigaResponse> packetClass, PacketFactory factory) {
+        int slot = (isEvent * CLASS_COUNT + cmdClass) * METHOD_COUNT + cmdMethod;
+        packetTable[slot] = factory;
+        connectionTable[slot] = BlueGigaConnectionEvent.class.isAssignableFrom(packetClass);
+        slotMapping.put(packetClass, slot);
+    }
+
+    /**
+     * Gets the dispatch slot for a received frame
+     *
+     * @param data the received frame
+     * @return the slot, or -1 if the frame header is outside the dispatch table
+     */
+    static int getSlot(byte[] data) {
+        int cmdClass = data[2] & 0xFF;
+        int cmdMethod = data[3] & 0xFF;
+        int isEvent = (data[0] & 0x80) >> 7;
+
+        if (cmdClass >= CLASS_COUNT || cmdMethod >= METHOD_COUNT) {
+            return -1;
+        }
 
-    	Class<?> bleClass = packetMap.get(Objects.hash(cmdClass, cmdMethod, isEvent));
+        return (isEvent * CLASS_COUNT + cmdClass) * METHOD_COUNT + cmdMethod;
+    }
 
-    	if (bleClass == null) {
-    		return null;
-    	}
+    /**
+     * Gets the dispatch slot for a packet class
+     *
+     * @param packetClass the response or event class
+     * @return the slot, or -1 if the class is not a known packet
+     */
+    static int getSlot(Class<?> packetClass) {
+        Integer slot = slotMapping.get(packetClass);
+        return slot == null ? -1 : slot;
+    }
 
-    	Constructor<?> ctor;
+    /**
+     * Checks if the packet in a dispatch slot is a {@link BlueGigaConnectionEvent}. The connection
+     * handle of these events is the first byte of the payload.
+     *
+     * @param slot the dispatch slot
+     * @return true if the packet relates to a single connection
+     */
+    static boolean isConnectionEvent(int slot) {
+        return connectionTable[slot];
+    }
 
-    	try {
-    		ctor = bleClass.getConstructor(int[].class);
-    		BlueGigaResponse bleFrame = (BlueGigaResponse) ctor.newInstance(data);
-    		return bleFrame;
-    	} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException
-    			| IllegalArgumentException | InvocationTargetException e) {
-    		logger.error("Error instantiating BLE class", e);
-    	}
+    public static BlueGigaResponse getPacket(byte[] data) {
+        int slot = getSlot(data);
+        if (slot == -1) {
+            return null;
+        }
+
+        PacketFactory factory = packetTable[slot];
+        if (factory == null) {
+            return null;
+        }
+
+        try {
+            return factory.create(data);
+        } catch (RuntimeException e) {
+            logger.error("Error instantiating BLE class", e);
+        }
 
         return null;
     }
+
+    /**
+     * Creates a response packet from a frame held as an int[].
+     *
+     * @deprecated use {@link #getPacket(byte[])}
+     */
+    @Deprecated
+    public static BlueGigaResponse getPacket(int[] data) {
+        byte[] bytes = new byte[data.length];
+        for (int cnt = 0; cnt < data.length; cnt++) {
+            bytes[cnt] = (byte) data[cnt];
+        }
+        return getPacket(bytes);
+    }
 }
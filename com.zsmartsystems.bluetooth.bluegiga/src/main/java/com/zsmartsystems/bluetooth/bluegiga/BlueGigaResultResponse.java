@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+
+/**
+ * Implemented by responses that report the result of their command. The {@link BlueGigaFlowController} uses the
+ * result to detect when the dongle is short of resources.
+ *
+ * @author Chris Jackson
+ *
+ */
+public interface BlueGigaResultResponse {
+    /**
+     * Gets the result of the command
+     *
+     * @return the {@link BgApiResponse}
+     */
+    BgApiResponse getResult();
+}
@@ -6,12 +6,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.LinkedList;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -19,6 +22,17 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureBuffer;
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaStreamTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransportListener;
 
 /**
  * The main handler class for interacting with the BlueGiga serial API. This class provides transaction management and
@@ -33,42 +47,136 @@ public class BlueGigaSerialHandler {
      */
     private final Logger logger = LoggerFactory.getLogger(BlueGigaSerialHandler.class);
 
-    private final int BLE_MAX_LENGTH = 64;
+    /**
+     * The transport to the dongle
+     */
+    private final BlueGigaTransport transport;
 
     /**
-     * The portName portName input stream.
+     * The name of the adapter, used to tag received responses, or null if the handler isn't named
      */
-    private InputStream inputStream;
+    private final String adapter;
 
     /**
-     * The portName portName output stream.
+     * The frame decoder. Only used while synchronised on the decoder, as the transport may notify from different
+     * threads.
      */
-    private OutputStream outputStream;
+    private final BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
 
-    private final Queue<BlueGigaCommand> sendQueue = new LinkedList<BlueGigaCommand>();
+    /**
+     * Count of errors from the transport. The handler is closed when this is exceeded.
+     */
+    private final AtomicInteger exceptionCnt = new AtomicInteger();
 
-    private final Timer timer = new Timer();
-    private TimerTask timerTask = null;
+    /**
+     * Commands waiting to be sent, in priority lanes. This may be added to from any thread, and is drained by the
+     * writer thread.
+     */
+    private final BlueGigaPriorityQueue<QueuedFrame> sendQueue = new BlueGigaPriorityQueue<QueuedFrame>();
 
-    private final int TRANSACTION_TIMEOUT_PERIOD = 50;
+    /**
+     * Size of the transmit buffer. Frames that are ready to send at the same time are combined into a single write
+     * up to this size.
+     */
+    private static final int TX_BUFFER_SIZE = 1024;
 
     /**
-     * The parser parserThread.
+     * Transactions waiting to be sent, in priority lanes. Transactions are only sent when no other transaction is
+     * outstanding.
      */
-    private Thread parserThread = null;
+    private final BlueGigaPriorityQueue<BlueGigaTransaction<?>> transactionQueue =
+            new BlueGigaPriorityQueue<BlueGigaTransaction<?>>();
 
-    private ExecutorService executor = Executors.newCachedThreadPool();
-    private ExecutorService notificationService = Executors.newCachedThreadPool();
+    /**
+     * Transactions that have been sent and are waiting for their response, indexed by the transaction key
+     */
+    private final BlueGigaTransaction<?>[] pendingTransactions =
+            new BlueGigaTransaction<?>[BlueGigaTransaction.KEY_COUNT];
 
     /**
-     * Transaction listeners are used internally to correlate the commands and responses
+     * Number of transactions that have been sent and are waiting for their response. The BGAPI protocol only allows a
+     * single outstanding command.
      */
-    private final List<BleListener> transactionListeners = new CopyOnWriteArrayList<BleListener>();
+    private int outstandingTransactions = 0;
+
+    private static final int MAX_OUTSTANDING_TRANSACTIONS = 1;
 
     /**
-     * The event listeners will be notified of any asynchronous events
+     * Paces the writer to the rate the dongle can sustain, and retries commands the dongle rejects for lack of
+     * resources
      */
-    private final List<BlueGigaEventListener> eventListeners = new CopyOnWriteArrayList<BlueGigaEventListener>();
+    private final BlueGigaFlowController flowController = new BlueGigaFlowController(this);
+
+    /**
+     * Transactions waiting for their backoff before being sent again
+     */
+    private final Set<BlueGigaTransaction<?>> retryingTransactions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Default time in milliseconds to wait for a transaction to complete
+     */
+    public static final long DEFAULT_TRANSACTION_TIMEOUT = 5000;
+
+    private volatile long transactionTimeout = DEFAULT_TRANSACTION_TIMEOUT;
+
+    /**
+     * Timer used for all deadlines managed by the handler
+     */
+    private final BlueGigaWheelTimer timer;
+
+    /**
+     * True if the timer and notification service are shared with a {@link BlueGigaHandlerGroup}, and are stopped by
+     * the group rather than the handler
+     */
+    private final boolean sharedResources;
+
+    /**
+     * Capture of the raw frames sent and received, or null if capture is disabled
+     */
+    private volatile BlueGigaCaptureBuffer capture = new BlueGigaCaptureBuffer();
+
+    /**
+     * The transaction that has been serialized into the transmit buffer, but not yet written to the transport. Only
+     * used by the writer thread.
+     */
+    private BlueGigaTransaction<?> unwrittenTransaction = null;
+
+    /**
+     * The writer thread.
+     */
+    private Thread writerThread = null;
+
+    private final ExecutorService notificationService;
+
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong framesExpired = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong transactionsCompleted = new AtomicLong();
+    private final AtomicLong transactionsTimedOut = new AtomicLong();
+    private final AtomicLong transportErrors = new AtomicLong();
+
+    /**
+     * The event listeners will be notified of any asynchronous events. Each listener has its own mailbox.
+     */
+    private final List<BlueGigaEventMailbox> eventListeners = new CopyOnWriteArrayList<BlueGigaEventMailbox>();
+
+    /**
+     * Listeners that have subscribed to specific event classes, indexed by the dispatch slot of the event class
+     */
+    private final AtomicReferenceArray<BlueGigaEventMailbox[]> typedEventListeners = new AtomicReferenceArray<>(
+            BlueGigaResponsePackets.SLOT_COUNT);
+
+    /**
+     * Listeners that have subscribed to the events of a single connection, indexed by the connection handle
+     */
+    private final AtomicReferenceArray<BlueGigaEventMailbox[]> connectionEventListeners = new AtomicReferenceArray<>(
+            256);
+
+    /**
+     * The mailboxes of all registered event listeners
+     */
+    private final Map<BlueGigaEventListener, BlueGigaEventMailbox> eventMailboxes = new ConcurrentHashMap<>();
 
     /**
      * The event listeners will be notified of any life-cycle events of the handler.
@@ -76,329 +184,830 @@ public class BlueGigaSerialHandler {
     private final List<BlueGigaHandlerListener> hanlerListeners = new CopyOnWriteArrayList<>();
 
     /**
-     * Flag reflecting that parser has been closed and parser parserThread
+     * Flag reflecting that the handler has been closed and the writer thread
      * should exit.
      */
-    private boolean close = false;
+    private volatile boolean close = false;
+
+    /**
+     * Set by the first call to {@link #shutdown(BlueGigaException)}, so the handler is only stopped once
+     */
+    private final AtomicBoolean shutdown = new AtomicBoolean();
 
+    /**
+     * Creates a handler using a pair of blocking streams. A thread is used to wait for data from the input stream. The
+     * end of the input stream is treated as a read timeout and ignored - use {@link BlueGigaStreamTransport} directly
+     * to close the handler at the end of the stream.
+     *
+     * @param inputStream the {@link InputStream} from the dongle
+     * @param outputStream the {@link OutputStream} to the dongle
+     */
     public BlueGigaSerialHandler(final InputStream inputStream, final OutputStream outputStream) {
-        this.inputStream = inputStream;
-        this.outputStream = outputStream;
+        this(new BlueGigaStreamTransport(inputStream, outputStream));
+    }
 
-        final int framecheckParams[] = new int[] { 0x00, 0x7F, 0xC0, 0xF8, 0xE0 };
+    /**
+     * Creates a handler using a {@link BlueGigaTransport}. The handler takes ownership of the transport, and closes it
+     * when the handler is closed.
+     *
+     * @param transport the {@link BlueGigaTransport} to the dongle
+     */
+    public BlueGigaSerialHandler(final BlueGigaTransport transport) {
+        this(transport, null, null, null);
+    }
 
-        parserThread = new Thread("BlueGigaBLEHandler") {
+    /**
+     * Creates a handler for a {@link BlueGigaHandlerGroup}. The timer and notification service are shared with the
+     * other handlers in the group, and are not stopped when the handler is closed. If they are null, the handler
+     * creates its own.
+     *
+     * @param transport the {@link BlueGigaTransport} to the dongle
+     * @param adapter the name of the adapter, or null
+     * @param timer the shared {@link BlueGigaWheelTimer}, or null
+     * @param notificationService the shared {@link ExecutorService} used to deliver events, or null
+     */
+    BlueGigaSerialHandler(final BlueGigaTransport transport, final String adapter, final BlueGigaWheelTimer timer,
+            final ExecutorService notificationService) {
+        this.transport = transport;
+        this.adapter = adapter;
+        this.sharedResources = timer != null;
+        this.timer = timer != null ? timer
+                : new BlueGigaWheelTimer("BlueGigaBLETimer", BlueGigaWheelTimer.DEFAULT_TICK_DURATION,
+                        BlueGigaWheelTimer.DEFAULT_WHEEL_SIZE);
+        this.notificationService = notificationService != null ? notificationService
+                : Executors.newCachedThreadPool();
+
+        writerThread = new Thread(adapter == null ? "BlueGigaBLEWriter" : "BlueGigaBLEWriter-" + adapter) {
             @Override
             public void run() {
-                int exceptionCnt = 0;
-                logger.trace("BlueGiga BLE thread started");
-                int[] inputBuffer = new int[BLE_MAX_LENGTH];
-                int inputCount = 0;
-                int inputLength = 0;
+                logger.trace("BlueGiga BLE writer thread started");
+                final ByteBuffer txBuffer = ByteBuffer.allocate(TX_BUFFER_SIZE);
 
                 while (!close) {
                     try {
-                        int val = inputStream.read();
-                        if (val == -1) {
-                            continue;
-                        }
-                        // logger.debug("BLE RX: " + String.format("%02X", val));
-
-                        inputBuffer[inputCount++] = val;
-
-                        if (inputCount < 4) {
-                            // The BGAPI protocol has no packet framing, and no error detection, so we do a few
-                            // sanity checks on the header to try and allow resyncronisation should there be an
-                            // error.
-                            // Byte 0: Check technology type is bluetooth and high length is 0
-                            // Byte 1: Check length is less than 64 bytes
-                            // Byte 2: Check class ID is less than 8
-                            // Byte 3: Check command ID is less than 16
-                            if ((val & framecheckParams[inputCount]) != 0) {
-                                logger.debug("BlueGiga framing error byte {} = {}", inputCount, val);
-                                inputCount = 0;
-                                continue;
-                            }
-                        } else if (inputCount == 4) {
-                            // Process the header to get the length
-                            inputLength = inputBuffer[1] + (inputBuffer[0] & 0x02 << 8) + 4;
-                            if (inputLength > 64) {
-                                logger.error("BLE length larger than 64 bytes ({})", inputLength);
-                            }
-                        }
-                        if (inputCount == inputLength) {
-                            // End of packet reached - process
-                            BlueGigaResponse responsePacket = BlueGigaResponsePackets.getPacket(inputBuffer);
-
-                            logger.debug("BLE RX: {}", printHex(inputBuffer, inputLength));
-                            logger.debug("BLE RX: {}", responsePacket);
-                            if (responsePacket != null) {
-                                if (responsePacket.isEvent()) {
-                                    notifyEventListeners(responsePacket);
-                                } else {
-                                    notifyTransactionComplete(responsePacket);
-                                }
+                        if (!sendFrames(txBuffer)) {
+                            long delay = flowController.getSendDelay();
+                            if (delay > 0) {
+                                // Frames are being paced by the flow controller
+                                LockSupport.parkNanos(this, delay);
+                            } else {
+                                // Wait for a new frame, or for the outstanding transaction to complete
+                                LockSupport.park(this);
                             }
-
-                            inputCount = 0;
-                        }
-
-                    } catch (final IOException e) {
-                        logger.error("BlueGiga BLE IOException: ", e);
-
-                        if (exceptionCnt++ > 10) {
-                            logger.error("BlueGiga BLE exception count exceeded");
-                            // if (!close) {
-                            // frameHandler.error(e);
-                            close = true;
-                            notifyClosed(e);
                         }
+                    } catch (IOException e) {
+                        logger.error("BlueGiga BLE error sending frame: ", e);
+                        writeFailed(e);
                     }
                 }
-                logger.debug("BlueGiga BLE exited.");
+                logger.debug("BlueGiga BLE writer exited.");
             }
         };
 
-        parserThread.setDaemon(true);
-        parserThread.start();
-        int tries = 0;
-        // wait until the daemon thread kicks off, e.g. when it is ready to receive any commands
-        while (parserThread.getState() == Thread.State.NEW) {
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        try {
+            transport.start(new BlueGigaTransportListener() {
+                @Override
+                public void transportReady() {
+                    receiveFrames();
+                }
+
+                @Override
+                public void transportError(IOException e) {
+                    handleTransportError(e);
+                }
+            });
+        } catch (IOException e) {
+            close = true;
+            LockSupport.unpark(writerThread);
+            throw new BlueGigaException("BlueGiga transport failed to start", e);
+        }
+    }
+
+    /**
+     * Reads all available data from the transport, and processes the received frames. This is called by the
+     * transport when data is available.
+     */
+    private void receiveFrames() {
+        synchronized (decoder) {
             try {
-                Thread.sleep(100);
-                tries++;
-                if (tries > 10) {
-                    throw new IllegalStateException("BlueGiga handler thread failed to start");
+                int length;
+                while (!close && (length = decoder.read(transport)) != 0) {
+                    if (length == -1) {
+                        logger.error("BlueGiga BLE end of stream reached");
+                        closeTransport(new IOException("End of stream reached"));
+                        return;
+                    }
+
+                    byte[] inputBuffer;
+                    while ((inputBuffer = decoder.nextFrame()) != null) {
+                        processFrame(inputBuffer);
+                    }
                 }
-            } catch (InterruptedException ignore) { /* ignore */ }
+            } catch (IOException e) {
+                handleTransportError(e);
+            }
+        }
+    }
+
+    private void processFrame(byte[] inputBuffer) {
+        BlueGigaCaptureBuffer currentCapture = capture;
+        if (currentCapture != null) {
+            currentCapture.capture(Direction.RX, inputBuffer, inputBuffer.length);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("BLE RX: {}", printHex(inputBuffer, 0, inputBuffer.length));
+        }
+        framesReceived.incrementAndGet();
+
+        if ((inputBuffer[0] & 0x80) != 0) {
+            eventsReceived.incrementAndGet();
+            flowController.eventReceived(BlueGigaResponsePackets.getSlot(inputBuffer));
+
+            // Don't create events that no listener has subscribed to
+            if (!hasEventListeners(inputBuffer)) {
+                return;
+            }
+        }
+
+        BlueGigaResponse responsePacket = BlueGigaResponsePackets.getPacket(inputBuffer);
+        logger.debug("BLE RX: {}", responsePacket);
+        if (responsePacket != null) {
+            responsePacket.setAdapter(adapter);
+            if (responsePacket.isEvent()) {
+                notifyEventListeners(responsePacket);
+            } else {
+                notifyTransactionComplete(inputBuffer, responsePacket);
+            }
+        }
+    }
+
+    private void handleTransportError(IOException e) {
+        if (close) {
+            return;
+        }
+        logger.error("BlueGiga BLE IOException: ", e);
+        transportErrors.incrementAndGet();
+
+        if (exceptionCnt.getAndIncrement() > 10) {
+            logger.error("BlueGiga BLE exception count exceeded");
+            closeTransport(e);
         }
     }
 
     /**
-     * Requests parser thread to shutdown. Waits forever while the parser thread is getting shut down.
+     * Closes the handler after a fatal transport error
+     */
+    private void closeTransport(Exception reason) {
+        shutdown(new BlueGigaException("BlueGiga handler closed: " + reason.getMessage(), reason));
+        notifyClosed(reason);
+    }
+
+    /**
+     * Closes the handler and its transport. Waits forever while the writer thread is getting shut down.
      */
     public void close() {
         close(0);
     }
 
     /**
-     * Requests parser thread to shutdown. Waits specified milliseconds while the parser thread is getting shut down.
+     * Closes the handler and its transport. Waits specified milliseconds while the writer thread is getting shut down.
      * @param timeout milliseconds to wait
      */
     public void close(long timeout) {
+        shutdown(new BlueGigaException("BlueGiga handler closed"));
+        try {
+            writerThread.join(timeout);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted in writer thread shutdown join.");
+        }
+    }
+
+    /**
+     * Stops the handler, whether it is closed by the application or after a fatal transport error. All queued,
+     * retrying and pending transactions are completed exceptionally, the event mailboxes are closed, and the timer
+     * and notification service are stopped unless they are shared with a {@link BlueGigaHandlerGroup}. Only the first
+     * call has any effect.
+     *
+     * @param closed the {@link BlueGigaException} used to fail the outstanding transactions
+     */
+    private void shutdown(BlueGigaException closed) {
+        if (!shutdown.compareAndSet(false, true)) {
+            return;
+        }
         close = true;
-        executor.shutdownNow();
-        notificationService.shutdownNow();
-        if (timerTask != null) {
-            timerTask.cancel();
-            timerTask = null;
+        for (BlueGigaEventMailbox mailbox : eventMailboxes.values()) {
+            mailbox.close();
+        }
+        if (!sharedResources) {
+            notificationService.shutdownNow();
+            timer.stop();
+        }
+
+        // Items are only taken by one thread at a time, and the writer thread takes transactions under this lock
+        synchronized (pendingTransactions) {
+            BlueGigaTransaction<?> transaction;
+            while ((transaction = transactionQueue.poll()) != null) {
+                transaction.getFuture().completeExceptionally(closed);
+            }
+        }
+        for (BlueGigaTransaction<?> retrying : retryingTransactions) {
+            retrying.getFuture().completeExceptionally(closed);
         }
-        timer.cancel();
+        synchronized (pendingTransactions) {
+            for (BlueGigaTransaction<?> pending : pendingTransactions) {
+                if (pending != null) {
+                    pending.getFuture().completeExceptionally(closed);
+                }
+            }
+        }
+        LockSupport.unpark(writerThread);
         try {
-            parserThread.interrupt();
-            parserThread.join(timeout);
-        } catch (InterruptedException e) {
-            logger.warn("Interrupted in packet parser thread shutdown join.");
+            transport.close();
+        } catch (IOException e) {
+            logger.debug("BlueGiga transport close error: ", e);
         }
     }
 
     /**
-     * Checks if parser thread is alive.
+     * Checks if the handler is alive.
      *
-     * @return true if parser thread is alive.
+     * @return true if the handler has not been closed.
      */
     public boolean isAlive() {
-        return parserThread != null && parserThread.isAlive() && !close;
+        return writerThread.isAlive() && !close;
     }
 
-    // Synchronize this method to ensure a packet gets sent as a block
-    private synchronized void sendFrame(BlueGigaCommand bleFrame) {
-        // Send the data
-        try {
-            int[] payload = bleFrame.serialize();
-            logger.debug("TX BLE frame: {}", printHex(payload, payload.length));
-
-            // outputStream.write(payload.length);
-            for (int b : payload) {
-                // result.append(" ");
-                // result.append(String.format("%02X", b));
-                // logger.debug("BLE TX: " + String.format("%02X", b));
-                outputStream.write(b);
+    /**
+     * Gets the number of frames and transactions waiting to be sent, including any transaction waiting for its
+     * response. This is a measure of how busy the dongle is.
+     *
+     * @return the depth of the transmit queue
+     */
+    public int getQueueDepth() {
+        int outstanding;
+        synchronized (pendingTransactions) {
+            outstanding = outstandingTransactions;
+        }
+        return sendQueue.size() + transactionQueue.size() + outstanding;
+    }
+
+    /**
+     * Sends all queued frames, and the next queued transaction if no transaction is outstanding. Frames and the
+     * transaction are sent in priority order, so a control transaction is sent ahead of queued bulk frames. Frames are
+     * serialized straight into the transmit buffer, and the buffer is written to the transport in a single call when it
+     * is full or when there is nothing more to send. This must only be called from the writer thread.
+     *
+     * @param txBuffer the transmit buffer
+     * @return true if any frames were sent
+     * @throws IOException if the frames can't be written
+     */
+    private boolean sendFrames(ByteBuffer txBuffer) throws IOException {
+        boolean sent = false;
+
+        while (flowController.getSendDelay() <= 0) {
+            int frameLane = sendQueue.nextLane();
+            BlueGigaTransaction<?> transaction = nextTransaction(frameLane);
+            if (transaction != null) {
+                if (transaction.isExpired(System.nanoTime())) {
+                    // The timer hasn't run yet, but the caller has stopped waiting
+                    timeoutTransaction(transaction);
+                    continue;
+                }
+                if (!addFrame(txBuffer, transaction.getCommand(), transaction)) {
+                    continue;
+                }
+                startTransaction(transaction);
+                unwrittenTransaction = transaction;
+            } else if (frameLane != -1) {
+                QueuedFrame queuedFrame = sendQueue.poll();
+                if (queuedFrame == null) {
+                    break;
+                }
+                if (queuedFrame.isExpired(System.nanoTime())) {
+                    logger.debug("BLE frame expired before sending: {}", queuedFrame.command);
+                    framesExpired.incrementAndGet();
+                    continue;
+                }
+                if (!addFrame(txBuffer, queuedFrame.command, null)) {
+                    continue;
+                }
+            } else {
+                break;
             }
-        } catch (IOException e) {
-            throw new BlueGigaException("Error sending BLE frame: ", e);
+            sent = true;
         }
 
-        // logger.debug(result.toString());
-        logger.debug("--> TX BLE frame: {}", bleFrame);
+        writeBuffer(txBuffer);
+        return sent;
     }
 
-    // Synchronize this method so we can do the window check without interruption.
-    // Otherwise this method could be called twice from different threads that could end up with
-    // more than the TX_WINDOW number of frames sent.
-    private synchronized void sendNextFrame() {
-        // We're not allowed to send if we're not connected
-        // if (!stateConnected) {
-        // logger.warn("Trying to send when not connected.");
-        // return;
-        // }
+    /**
+     * Serializes a frame straight into the transmit buffer. The buffer is written first if the frame may not fit. A
+     * command that can't be serialized is dropped, and its transaction completed exceptionally, without affecting the
+     * frames already in the buffer.
+     *
+     * @param txBuffer the transmit buffer
+     * @param bleFrame the {@link BlueGigaCommand} to send
+     * @param transaction the {@link BlueGigaTransaction} of the command, or null if it is sent without one
+     * @return true if the frame was added to the buffer
+     * @throws IOException if the buffer can't be written
+     */
+    private boolean addFrame(ByteBuffer txBuffer, BlueGigaCommand bleFrame, BlueGigaTransaction<?> transaction)
+            throws IOException {
+        if (txBuffer.remaining() < BlueGigaCommand.MAX_FRAME_LENGTH) {
+            writeBuffer(txBuffer);
+        }
+        int start = txBuffer.position();
+        try {
+            if (transaction == null) {
+                bleFrame.serializeFrame(txBuffer);
+            } else {
+                transaction.serialize(txBuffer);
+            }
+        } catch (RuntimeException e) {
+            txBuffer.position(start);
+            if (e instanceof BufferOverflowException && start != 0) {
+                // Longer than most frames, so it needs the buffer to itself
+                writeBuffer(txBuffer);
+                return addFrame(txBuffer, bleFrame, transaction);
+            }
+            logger.warn("Unable to serialize BLE frame {}", bleFrame.getClass().getSimpleName(), e);
+            if (transaction != null) {
+                transaction.getFuture().completeExceptionally(
+                        new BlueGigaException("Unable to serialize " + bleFrame.getClass().getSimpleName(), e));
+            }
+            return false;
+        }
 
-        // Check how many frames are outstanding
-        // if (sentQueue.size() >= TX_WINDOW) {
-        // logger.debug("Sent queue larger than window [{} > {}].",
-        // sentQueue.size(), TX_WINDOW);
-        // return;
-        // }
+        int length = txBuffer.position() - start;
+        BlueGigaCaptureBuffer currentCapture = capture;
+        if (currentCapture != null) {
+            currentCapture.capture(Direction.TX, txBuffer.array(), start, length);
+        }
+        framesSent.incrementAndGet();
+        flowController.frameSent();
+        if (logger.isDebugEnabled()) {
+            logger.debug("TX BLE frame: {}", printHex(txBuffer.array(), start, length));
+            logger.debug("--> TX BLE frame: {}", bleFrame);
+        }
+        return true;
+    }
 
-        BlueGigaCommand nextFrame = sendQueue.poll();
-        if (nextFrame == null) {
-            // Nothing to send
+    private void writeBuffer(ByteBuffer txBuffer) throws IOException {
+        if (txBuffer.position() == 0) {
             return;
         }
+        txBuffer.flip();
+        try {
+            transport.write(txBuffer);
+        } finally {
+            txBuffer.clear();
+        }
+        unwrittenTransaction = null;
+    }
 
-        sendFrame(nextFrame);
+    /**
+     * Handles a failed write. The frames in the transmit buffer are lost, so a transaction among them can't receive a
+     * response and is failed now rather than left to time out. The error counts towards closing the handler.
+     *
+     * @param e the {@link IOException} from the transport
+     */
+    private void writeFailed(IOException e) {
+        handleTransportError(e);
+        BlueGigaTransaction<?> transaction = unwrittenTransaction;
+        unwrittenTransaction = null;
+        if (transaction != null) {
+            transaction.getFuture().completeExceptionally(
+                    new BlueGigaException("Unable to send " + transaction.getCommand().getClass().getSimpleName(), e));
+        }
     }
 
     /**
-     * Add a {@link BlueGigaCommand} frame to the send queue. The sendQueue is a
-     * FIFO queue. This method queues a {@link BlueGigaCommand} frame without
+     * Gets the next transaction to send, skipping any that have already been cancelled or timed out. Returns null if
+     * a transaction is already outstanding, or if the next transaction has a lower priority than the next frame.
+     *
+     * @param frameLane the priority lane of the next frame, or -1 if no frames are waiting
+     * @return the next {@link BlueGigaTransaction} or null if no transaction can be sent
+     */
+    private BlueGigaTransaction<?> nextTransaction(int frameLane) {
+        synchronized (pendingTransactions) {
+            if (outstandingTransactions >= MAX_OUTSTANDING_TRANSACTIONS) {
+                return null;
+            }
+
+            int lane;
+            while ((lane = transactionQueue.nextLane()) != -1) {
+                if (frameLane != -1 && lane > frameLane) {
+                    return null;
+                }
+                BlueGigaTransaction<?> transaction = transactionQueue.poll();
+                if (transaction != null && !transaction.isDone()) {
+                    return transaction;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Registers a transaction as outstanding once it has been serialized for sending
+     *
+     * @param transaction the {@link BlueGigaTransaction} being sent
+     */
+    private void startTransaction(BlueGigaTransaction<?> transaction) {
+        synchronized (pendingTransactions) {
+            pendingTransactions[transaction.getKey()] = transaction;
+            outstandingTransactions++;
+        }
+
+        // The transaction may have timed out or been cancelled while it was being registered
+        if (transaction.isDone()) {
+            releaseTransaction(transaction);
+        }
+    }
+
+    /**
+     * Removes a completed transaction from the pending transactions, and wakes the writer to send the next
+     * transaction. This is called however the transaction completes, and may be called more than once.
+     *
+     * @param transaction the completed {@link BlueGigaTransaction}
+     */
+    private void releaseTransaction(BlueGigaTransaction<?> transaction) {
+        int key = transaction.getKey();
+        if (key == -1) {
+            // Not sent yet - the writer will discard it
+            return;
+        }
+        synchronized (pendingTransactions) {
+            if (pendingTransactions[key] != transaction) {
+                return;
+            }
+            pendingTransactions[key] = null;
+            outstandingTransactions--;
+        }
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Add a {@link BlueGigaCommand} frame to the send queue. Frames of the same {@link BlueGigaPriority} for the same
+     * connection are sent in order, and the priority is chosen from the command with
+     * {@link BlueGigaPriority#forCommand(BlueGigaCommand)}. This method queues a {@link BlueGigaCommand} frame without
      * waiting for a response.
+     * <p>
+     * The frame is sent by the writer thread, so this method never blocks on the output stream. The command is only
+     * serialized when it is sent, so it must not be changed until then. There is no notice of when a frame is sent, so
+     * a command that is changed and sent again should be sent as a transaction, and changed once it has completed.
      *
      * @param transaction
      *            {@link BlueGigaCommand}
      */
     public void queueFrame(BlueGigaCommand request) {
+        queueFrame(request, BlueGigaPriority.forCommand(request));
+    }
+
+    /**
+     * Add a {@link BlueGigaCommand} frame to the send queue with the specified priority. Frames are sent ahead of
+     * queued frames and transactions of a lower priority.
+     *
+     * @param request the {@link BlueGigaCommand}
+     * @param priority the {@link BlueGigaPriority} of the frame
+     */
+    public void queueFrame(BlueGigaCommand request, BlueGigaPriority priority) {
+        queueFrame(request, priority, 0);
+    }
+
+    /**
+     * Add a {@link BlueGigaCommand} frame to the send queue with the specified priority and a deadline. If the frame
+     * hasn't been sent within the timeout it is dropped rather than sent, so a backlog of frames that are no longer
+     * useful doesn't hold up the dongle. Dropped frames are counted in
+     * {@link BlueGigaHandlerMetrics#getFramesExpired()}.
+     *
+     * @param request the {@link BlueGigaCommand}
+     * @param priority the {@link BlueGigaPriority} of the frame
+     * @param timeout milliseconds to wait for the frame to be sent, or 0 to wait indefinitely
+     */
+    public void queueFrame(BlueGigaCommand request, BlueGigaPriority priority, long timeout) {
         logger.debug("TX BLE frame: {}", request);
 
         checkIfAlive();
 
-        sendQueue.add(request);
+        long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        sendQueue.add(new QueuedFrame(request, deadline), priority, getConnection(request));
+
+        // Wake the writer thread
+        LockSupport.unpark(writerThread);
+    }
 
-        logger.debug("TX BLE queue: {}", sendQueue.size());
+    /**
+     * Sets the share of the transmit bandwidth given to a connection. Within each {@link BlueGigaPriority}, the
+     * connections with frames or transactions waiting take turns, and each turn a connection may send as many
+     * commands as its weight. Commands that don't relate to a connection take their turn with a weight of 1.
+     * <p>
+     * The weight applies to the connection handle until it is changed, so it also applies to later connections that
+     * are given the same handle.
+     *
+     * @param connection the connection handle
+     * @param weight the weight of the connection, which must be at least 1. The default is 1.
+     */
+    public void setConnectionWeight(int connection, int weight) {
+        if (connection < 0) {
+            throw new IllegalArgumentException("Invalid connection handle " + connection);
+        }
+        sendQueue.setWeight(connection, weight);
+        transactionQueue.setWeight(connection, weight);
+    }
 
-        sendNextFrame();
+    private int getConnection(BlueGigaCommand command) {
+        if (command instanceof BlueGigaConnectionCommand) {
+            return ((BlueGigaConnectionCommand) command).getConnection();
+        }
+        return BlueGigaPriorityQueue.NO_CONNECTION;
     }
 
     /**
-     * Notify any transaction listeners when we receive a response.
+     * Completes the pending transaction when we receive a response. The transaction is found from the class and
+     * method IDs in the response.
      *
+     * @param frame
+     *            the received frame
      * @param response
      *            the response data received
      * @return true if the response was processed
      */
-    private boolean notifyTransactionComplete(final BlueGigaResponse response) {
-        boolean processed = false;
+    private boolean notifyTransactionComplete(final byte[] frame, final BlueGigaResponse response) {
+        BlueGigaTransaction<?> transaction;
+        synchronized (pendingTransactions) {
+            transaction = pendingTransactions[BlueGigaTransaction.getKey(frame)];
+        }
 
-        // logger.debug("NODE {}: notifyTransactionResponse {}",
-        // transaction.getNodeId(), transaction.getTransactionId());
-        synchronized (transactionListeners) {
-            for (BleListener listener : transactionListeners) {
-                if (listener.transactionEvent(response)) {
-                    processed = true;
-                }
-            }
+        if (flowController.responseReceived(response) && transaction != null && transaction.isExpected(response)
+                && retryTransaction(transaction)) {
+            return true;
         }
+        if (transaction != null && transaction.isExpected(response)) {
+            // Release the transaction, and queue the next step of a batch, before the callbacks of the caller run, so
+            // the writer can send the next transaction straight away
+            releaseTransaction(transaction);
+            BlueGigaTransaction<?> next = transaction.getNext();
+            if (next != null && BlueGigaTransactionBatch.isSuccess(response) && !transaction.isDone() && !close) {
+                queueTransaction(next);
+            }
 
-        return processed;
+            // Counted before completing, so the count includes the transaction when the caller sees the response
+            transactionsCompleted.incrementAndGet();
+            if (transaction.complete(response)) {
+                return true;
+            }
+            transactionsCompleted.decrementAndGet();
+        }
+        logger.debug("Ignoring {} response which has not been requested.", response.getClass().getSimpleName());
+        return false;
     }
 
-    private void addTransactionListener(BleListener listener) {
-        synchronized (transactionListeners) {
-            if (transactionListeners.contains(listener)) {
-                return;
+    /**
+     * Queues a transaction again after the dongle rejected it for lack of resources. The transaction is released so
+     * that other transactions can be sent during the backoff.
+     *
+     * @param transaction the rejected {@link BlueGigaTransaction}
+     * @return true if the transaction will be sent again, or false if it should be completed with the response
+     */
+    private boolean retryTransaction(final BlueGigaTransaction<?> transaction) {
+        long backoff = flowController.getRetryBackoff(transaction.getRetries(),
+                transaction.getTimeLeft(System.nanoTime()));
+        if (backoff < 0) {
+            return false;
+        }
+        logger.debug("BLE transaction rejected by dongle - retrying in {}us: {}",
+                TimeUnit.NANOSECONDS.toMicros(backoff), transaction.getCommand());
+
+        releaseTransaction(transaction);
+        transaction.retry();
+        retryingTransactions.add(transaction);
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                retryingTransactions.remove(transaction);
+                if (transaction.isDone() || close) {
+                    return;
+                }
+                transactionQueue.add(transaction, transaction.getPriority(), getConnection(transaction.getCommand()));
+                LockSupport.unpark(writerThread);
             }
+        }, backoff, TimeUnit.NANOSECONDS);
+        return true;
+    }
 
-            transactionListeners.add(listener);
-        }
+    /**
+     * Gets the {@link BlueGigaFlowController} that paces the transmit path
+     *
+     * @return the {@link BlueGigaFlowController}
+     */
+    public BlueGigaFlowController getFlowController() {
+        return flowController;
     }
 
-    private void removeTransactionListener(BleListener listener) {
-        synchronized (transactionListeners) {
-            transactionListeners.remove(listener);
-        }
+    /**
+     * Sets the default time to wait for a transaction to complete. This is used for transactions that don't specify
+     * their own timeout.
+     *
+     * @param transactionTimeout the timeout in milliseconds
+     */
+    public void setTransactionTimeout(long transactionTimeout) {
+        this.transactionTimeout = transactionTimeout;
     }
 
     /**
-     * Sends an BlueGiga request without waiting for the response.
+     * Sends a BlueGiga request without waiting for the response. The returned {@link CompletableFuture} is completed
+     * by the receive thread when the response arrives, so no thread is held while the transaction is outstanding. The
+     * transaction times out after {@link #DEFAULT_TRANSACTION_TIMEOUT} milliseconds, unless the default has been
+     * changed with {@link #setTransactionTimeout(long)}.
+     * <p>
+     * Dependent stages added with the non-async methods, such as {@link CompletableFuture#thenApply}, run on the
+     * thread that completes the future - normally the receive thread, or the timer thread if the transaction times
+     * out. They must not block, or wait for another transaction, as no further responses are received until they
+     * return. Use the async methods with an executor for work that may block.
+     * <p>
+     * Cancelling the future removes the transaction from the handler. If the request hasn't been sent yet, it is
+     * removed from the send queue and is never sent.
      *
      * @param bleCommand
      *            Request {@link BlueGigaCommand}
-     * @return response {@link Future} {@link BlueGigaResponse}
+     * @param expected
+     *            the class of the expected response
+     * @return response {@link CompletableFuture} {@link BlueGigaResponse}
      */
-    public <T extends BlueGigaResponse> Future<T> sendBleRequestAsync(final BlueGigaCommand bleCommand,
-                                                                      final Class<T> expected) {
+    public <T extends BlueGigaResponse> CompletableFuture<T> sendTransactionAsync(final BlueGigaCommand bleCommand,
+            final Class<T> expected) {
+        return sendTransactionAsync(bleCommand, expected, transactionTimeout);
+    }
+
+    /**
+     * Sends a BlueGiga request without waiting for the response. If the response isn't received within the timeout,
+     * the returned {@link CompletableFuture} is completed exceptionally with a {@link TimeoutException}. The timeout
+     * includes the time the request waits for earlier transactions to complete, and if it passes before the request is
+     * sent, the request is removed from the send queue rather than sent.
+     *
+     * @param bleCommand
+     *            Request {@link BlueGigaCommand}
+     * @param expected
+     *            the class of the expected response
+     * @param timeout
+     *            milliseconds to wait for the response
+     * @return response {@link CompletableFuture} {@link BlueGigaResponse}
+     */
+    public <T extends BlueGigaResponse> CompletableFuture<T> sendTransactionAsync(final BlueGigaCommand bleCommand,
+            final Class<T> expected, final long timeout) {
+        return sendTransactionAsync(bleCommand, expected, timeout, BlueGigaPriority.forCommand(bleCommand));
+    }
+
+    /**
+     * Sends a BlueGiga request with the specified priority without waiting for the response. The transaction is sent
+     * ahead of queued frames and transactions of a lower priority, but as the dongle only accepts one command at a
+     * time, it still waits for any outstanding transaction to complete.
+     *
+     * @param bleCommand
+     *            Request {@link BlueGigaCommand}
+     * @param expected
+     *            the class of the expected response
+     * @param timeout
+     *            milliseconds to wait for the response
+     * @param priority
+     *            the {@link BlueGigaPriority} of the transaction
+     * @return response {@link CompletableFuture} {@link BlueGigaResponse}
+     */
+    public <T extends BlueGigaResponse> CompletableFuture<T> sendTransactionAsync(final BlueGigaCommand bleCommand,
+            final Class<T> expected, final long timeout, final BlueGigaPriority priority) {
         checkIfAlive();
-        class TransactionWaiter implements Callable<T>, BleListener<T> {
-            private boolean complete;
-            private T response;
+        logger.debug("TX BLE transaction: {}", bleCommand);
 
-            @Override
-            public T call() {
-                // Register a listener
-                addTransactionListener(this);
-
-                // Send the transaction
-                queueFrame(bleCommand);
-
-                // Wait for the transaction to complete
-                synchronized (this) {
-                    while (!complete) {
-                        try {
-                            wait();
-                        } catch (InterruptedException e) {
-                            complete = true;
-                        }
-                    }
-                }
+        final BlueGigaTransaction<T> transaction = createTransaction(bleCommand, expected, timeout, priority);
+        queueTransaction(transaction);
 
-                // Remove the listener
-                removeTransactionListener(this);
+        return transaction.getFuture();
+    }
 
-                return response;
+    /**
+     * Sends a sequence of BlueGiga requests, such as the commands that set up a scan, without waiting for the
+     * responses. The whole sequence is queued at once, and each request is sent as soon as the response to the request
+     * before it is received. The sequence stops at the first request that fails, times out, or is rejected by the
+     * dongle with an error result, and the requests after it are never sent.
+     *
+     * @param bleCommands
+     *            the {@link BlueGigaCommand}s to send in order
+     * @return the {@link BlueGigaTransactionBatch} holding the future of each step and of the whole sequence
+     */
+    public BlueGigaTransactionBatch sendTransactions(final List<? extends BlueGigaCommand> bleCommands) {
+        return sendTransactions(bleCommands, transactionTimeout);
+    }
+
+    /**
+     * Sends a sequence of BlueGiga requests without waiting for the responses. Each request has the full timeout,
+     * starting from when the request before it completes.
+     *
+     * @param bleCommands
+     *            the {@link BlueGigaCommand}s to send in order
+     * @param timeout
+     *            milliseconds to wait for the response to each request
+     * @return the {@link BlueGigaTransactionBatch} holding the future of each step and of the whole sequence
+     */
+    public BlueGigaTransactionBatch sendTransactions(final List<? extends BlueGigaCommand> bleCommands,
+            final long timeout) {
+        if (bleCommands.isEmpty()) {
+            throw new IllegalArgumentException("No commands to send");
+        }
+        checkIfAlive();
+        logger.debug("TX BLE transaction batch: {}", bleCommands);
+
+        List<BlueGigaTransaction<BlueGigaResponse>> transactions = new ArrayList<>(bleCommands.size());
+        for (BlueGigaCommand bleCommand : bleCommands) {
+            BlueGigaTransaction<BlueGigaResponse> transaction = createTransaction(bleCommand, BlueGigaResponse.class,
+                    timeout, BlueGigaPriority.forCommand(bleCommand));
+            if (!transactions.isEmpty()) {
+                transactions.get(transactions.size() - 1).setNext(transaction);
             }
+            transactions.add(transaction);
+        }
 
-            @Override
-            public boolean transactionEvent(T bleResponse) {
-                // Check if this response completes our transaction
-                if (bleCommand.hashCode() == bleResponse.hashCode()) {
-                    return false;
-                }
+        List<CompletableFuture<BlueGigaResponse>> steps = new ArrayList<>(transactions.size());
+        for (BlueGigaTransaction<BlueGigaResponse> transaction : transactions) {
+            steps.add(transaction.getFuture());
+        }
+        BlueGigaTransactionBatch batch = new BlueGigaTransactionBatch(bleCommands, steps);
+        queueTransaction(transactions.get(0));
+        return batch;
+    }
 
-                if (!expected.isInstance(bleResponse)) {
-                    // ignoring response if it was not requested
-                    logger.warn("Ignoring {} response which has not been requested.",
-                            bleResponse.getClass().getSimpleName());
-                    return false;
-                }
+    /**
+     * Creates a transaction, and arranges for it to be released however it completes. If it hasn't been sent, it is
+     * removed from the queue.
+     */
+    private <T extends BlueGigaResponse> BlueGigaTransaction<T> createTransaction(final BlueGigaCommand bleCommand,
+            final Class<T> expected, final long timeout, final BlueGigaPriority priority) {
+        final BlueGigaTransaction<T> transaction = new BlueGigaTransaction<T>(bleCommand, expected, timeout,
+                priority);
+        transaction.getFuture().whenComplete((response, exception) -> {
+            transaction.cancelTimer();
+            if (transaction.getKey() == -1) {
+                transactionQueue.remove(transaction);
+            } else {
+                releaseTransaction(transaction);
+            }
+        });
+        return transaction;
+    }
 
-                response = bleResponse;
-                complete = true;
-                synchronized (this) {
-                    notify();
-                }
+    /**
+     * Starts the timeout of a transaction and queues it for the writer thread
+     *
+     * @param transaction the {@link BlueGigaTransaction} to queue
+     */
+    private void queueTransaction(final BlueGigaTransaction<?> transaction) {
+        transaction.start(timer.newTimeout(new TransactionTimer(transaction), transaction.getTimeout(),
+                TimeUnit.MILLISECONDS));
+        transactionQueue.add(transaction, transaction.getPriority(), getConnection(transaction.getCommand()));
 
-                return true;
-            }
-        }
+        // Wake the writer thread
+        LockSupport.unpark(writerThread);
+    }
 
-        Callable<T> worker = new TransactionWaiter();
-        return executor.submit(worker);
+    /**
+     * Sends an BlueGiga request without waiting for the response.
+     *
+     * @param bleCommand
+     *            Request {@link BlueGigaCommand}
+     * @return response {@link Future} {@link BlueGigaResponse}
+     * @deprecated use {@link #sendTransactionAsync(BlueGigaCommand, Class)}
+     */
+    @Deprecated
+    public <T extends BlueGigaResponse> Future<T> sendBleRequestAsync(final BlueGigaCommand bleCommand,
+                                                                      final Class<T> expected) {
+        return sendTransactionAsync(bleCommand, expected);
     }
 
     /**
      * Sends a {@link BlueGigaCommand} request to the NCP and waits for the response. The response is correlated with
      * the request and the returned {@link BlueGigaResponse} contains the request and response data.
+     * <p>
+     * The request times out after {@link #DEFAULT_TRANSACTION_TIMEOUT} (5000) milliseconds, unless the default has
+     * been changed with {@link #setTransactionTimeout(long)}. This must not be called from a non-async stage of a
+     * transaction future, as those run on the thread that receives the response. Event listeners may call it, but a
+     * listener with a {@link BlueGigaEventMailbox.OverflowPolicy#BLOCK} mailbox that waits here can fill its mailbox
+     * and stop the receive thread before the response arrives.
      *
      * @param bleCommand
      *            Request {@link BlueGigaCommand}
      * @return response {@link BlueGigaResponse}
+     * @throws BlueGigaException if the transaction fails or times out
      */
     public BlueGigaResponse sendTransaction(BlueGigaCommand bleCommand) {
-        checkIfAlive();
-        Future<BlueGigaResponse> futureResponse = sendBleRequestAsync(bleCommand, BlueGigaResponse.class);
+        Future<BlueGigaResponse> futureResponse = sendTransactionAsync(bleCommand, BlueGigaResponse.class);
         try {
             return futureResponse.get();
         } catch (InterruptedException | ExecutionException e) {
+            futureResponse.cancel(true);
             throw new BlueGigaException("Error sending BLE transaction to listeners: ", e);
         }
     }
@@ -416,75 +1025,410 @@ public class BlueGigaSerialHandler {
      */
     public <T extends BlueGigaResponse> T sendTransaction(BlueGigaCommand bleCommand, Class<T> expected, long timeout)
             throws TimeoutException {
-        Future<T> futureResponse = sendBleRequestAsync(bleCommand, expected);
+        Future<T> futureResponse = sendTransactionAsync(bleCommand, expected, timeout);
         try {
-            return futureResponse.get(timeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException e) {
+            return futureResponse.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+            }
+            throw new BlueGigaException("Error sending BLE transaction to listeners: ", e);
+        } catch (InterruptedException e) {
             futureResponse.cancel(true);
             throw new BlueGigaException("Error sending BLE transaction to listeners: ", e);
         }
     }
 
-    // TODO: Add a timeout mechanism
-    private synchronized void startTransactionTimer() {
-        // Stop any existing timer
-        resetTransactionTimer();
+    /**
+     * A frame in the send queue. The deadline is kept with the queue entry rather than the command, so the same
+     * command can be queued more than once with different deadlines.
+     */
+    private static class QueuedFrame {
+        private final BlueGigaCommand command;
 
-        // Create the timer task
-        timerTask = new TransactionTimer();
-        timer.schedule(timerTask, TRANSACTION_TIMEOUT_PERIOD);
-    }
+        /**
+         * The time the frame must be sent by, as {@link System#nanoTime()}, or 0 if it has no deadline
+         */
+        private final long deadline;
+
+        QueuedFrame(BlueGigaCommand command, long deadline) {
+            this.command = command;
+            this.deadline = deadline;
+        }
 
-    private synchronized void resetTransactionTimer() {
-        // Stop any existing timer
-        if (timerTask != null) {
-            timerTask.cancel();
-            timerTask = null;
+        boolean isExpired(long now) {
+            return deadline != 0 && now - deadline >= 0;
         }
     }
 
-    private class TransactionTimer extends TimerTask {
-        // private final Logger logger =
-        // LoggerFactory.getLogger(ZWaveTransactionTimer.class);
+    /**
+     * Times out a transaction if it hasn't completed
+     */
+    private class TransactionTimer implements Runnable {
+        private final BlueGigaTransaction<?> transaction;
+
+        TransactionTimer(BlueGigaTransaction<?> transaction) {
+            this.transaction = transaction;
+        }
 
         @Override
         public void run() {
+            timeoutTransaction(transaction);
+        }
+    }
 
+    private void timeoutTransaction(BlueGigaTransaction<?> transaction) {
+        if (transaction.getFuture().completeExceptionally(
+                new TimeoutException("Timeout waiting for response to " + transaction.getCommand()))) {
+            logger.debug("BLE transaction timed out: {}", transaction.getCommand());
+            transactionsTimedOut.incrementAndGet();
         }
     }
 
     /**
-     * Notify any transaction listeners when we receive a response.
-     * This uses a separate thread to separate the processing of the event.
+     * Checks if any listener will receive an event
+     *
+     * @param frame the received event frame
+     * @return true if the event has listeners
+     */
+    private boolean hasEventListeners(byte[] frame) {
+        if (!eventListeners.isEmpty()) {
+            return true;
+        }
+        int slot = BlueGigaResponsePackets.getSlot(frame);
+        if (slot == -1) {
+            return false;
+        }
+        if (typedEventListeners.get(slot) != null) {
+            return true;
+        }
+        return BlueGigaResponsePackets.isConnectionEvent(slot) && frame.length > 4
+                && connectionEventListeners.get(frame[4] & 0xFF) != null;
+    }
+
+    /**
+     * Notify any event listeners when we receive an event.
+     * The event is posted to the mailbox of each listener, and is delivered on a separate thread.
      *
      * @param response
      *            the response data received
-     * @return true if the response was processed
      */
     private void notifyEventListeners(final BlueGigaResponse response) {
-        synchronized (this) {
-            // Notify the listeners
-            for (final BlueGigaEventListener listener : eventListeners) {
-                notificationService.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        listener.bluegigaEventReceived(response);
-                    }
-                });
+        for (final BlueGigaEventMailbox mailbox : eventListeners) {
+            mailbox.post(response);
+        }
+
+        int slot = BlueGigaResponsePackets.getSlot(response.getClass());
+        if (slot == -1) {
+            return;
+        }
+        BlueGigaEventMailbox[] typedMailboxes = typedEventListeners.get(slot);
+        if (typedMailboxes != null) {
+            for (final BlueGigaEventMailbox mailbox : typedMailboxes) {
+                mailbox.post(response);
+            }
+        }
+
+        if (response instanceof BlueGigaConnectionEvent) {
+            BlueGigaEventMailbox[] connectionMailboxes = connectionEventListeners
+                    .get(((BlueGigaConnectionEvent) response).getConnection());
+            if (connectionMailboxes == null) {
+                return;
+            }
+            for (final BlueGigaEventMailbox mailbox : connectionMailboxes) {
+                // Don't deliver the event twice if the listener has also subscribed to the event class
+                if (typedMailboxes == null || !Arrays.asList(typedMailboxes).contains(mailbox)) {
+                    mailbox.post(response);
+                }
             }
         }
     }
 
+    /**
+     * Adds an event listener with the default mailbox capacity and {@link BlueGigaEventMailbox#DEFAULT_POLICY}. If the
+     * mailbox is full, the oldest event is dropped, so a slow listener never holds up the receive thread.
+     *
+     * @param listener the {@link BlueGigaEventListener} to add
+     */
     public void addEventListener(BlueGigaEventListener listener) {
+        addEventListener(listener, BlueGigaEventMailbox.DEFAULT_CAPACITY, BlueGigaEventMailbox.DEFAULT_POLICY);
+    }
+
+    /**
+     * Adds an event listener. Events are queued in a mailbox for the listener and delivered in order.
+     *
+     * @param listener the {@link BlueGigaEventListener} to add
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link BlueGigaEventMailbox.OverflowPolicy} to use when the mailbox is full
+     */
+    public void addEventListener(BlueGigaEventListener listener, int capacity,
+            BlueGigaEventMailbox.OverflowPolicy policy) {
         synchronized (eventListeners) {
-            if (eventListeners.contains(listener)) {
+            BlueGigaEventMailbox mailbox = eventMailboxes.get(listener);
+            if (mailbox == null) {
+                mailbox = new BlueGigaEventMailbox(listener, capacity, policy, notificationService);
+                eventMailboxes.put(listener, mailbox);
+            } else if (eventListeners.contains(mailbox)) {
                 return;
+            } else {
+                // The listener now receives all events, so remove any class and connection subscriptions
+                removeMailbox(typedEventListeners, mailbox);
+                removeMailbox(connectionEventListeners, mailbox);
             }
 
-            eventListeners.add(listener);
+            eventListeners.add(mailbox);
         }
     }
 
+    /**
+     * Adds an event listener that only receives events of the specified class. Events of other classes are not passed
+     * to the listener, and events that no listener has subscribed to are not decoded.
+     * <p>
+     * A listener may subscribe to several classes, and will receive all its events in order through a single mailbox.
+     * The mailbox uses the default capacity and {@link BlueGigaEventMailbox#DEFAULT_POLICY}, so the oldest event is
+     * dropped if it is full.
+     *
+     * @param eventClass the event class to subscribe to
+     * @param listener the {@link BlueGigaEventListener} to add
+     */
+    public <T extends BlueGigaResponse> void addEventListener(Class<T> eventClass, BlueGigaEventListener listener) {
+        addEventListener(eventClass, listener, BlueGigaEventMailbox.DEFAULT_CAPACITY,
+                BlueGigaEventMailbox.DEFAULT_POLICY);
+    }
+
+    /**
+     * Adds an event listener that only receives events of the specified class. If the listener is already registered,
+     * its existing mailbox is used and the capacity and policy are ignored.
+     *
+     * @param eventClass the event class to subscribe to
+     * @param listener the {@link BlueGigaEventListener} to add
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link BlueGigaEventMailbox.OverflowPolicy} to use when the mailbox is full
+     */
+    public <T extends BlueGigaResponse> void addEventListener(Class<T> eventClass, BlueGigaEventListener listener,
+            int capacity, BlueGigaEventMailbox.OverflowPolicy policy) {
+        if (eventClass == BlueGigaResponse.class) {
+            addEventListener(listener, capacity, policy);
+            return;
+        }
+
+        int slot = BlueGigaResponsePackets.getSlot(eventClass);
+        if (slot == -1) {
+            throw new IllegalArgumentException(eventClass.getSimpleName() + " is not a BlueGiga packet class");
+        }
+
+        synchronized (eventListeners) {
+            addMailbox(typedEventListeners, slot, listener, capacity, policy);
+        }
+    }
+
+    /**
+     * Adds a listener that receives the events of a single connection. Connection events are those implementing
+     * {@link BlueGigaConnectionEvent}, such as attribute values, procedure completions and disconnections.
+     * <p>
+     * The listener shares its mailbox with any other subscriptions it has, so it receives its events in order. The
+     * mailbox uses the default capacity and {@link BlueGigaEventMailbox#DEFAULT_POLICY}, so the oldest event is dropped
+     * if it is full.
+     *
+     * @param connection the connection handle
+     * @param listener the {@link BlueGigaEventListener} to add
+     */
+    public void addConnectionListener(int connection, BlueGigaEventListener listener) {
+        addConnectionListener(connection, listener, BlueGigaEventMailbox.DEFAULT_CAPACITY,
+                BlueGigaEventMailbox.DEFAULT_POLICY);
+    }
+
+    /**
+     * Adds a listener that receives the events of a single connection. If the listener is already registered, its
+     * existing mailbox is used and the capacity and policy are ignored.
+     *
+     * @param connection the connection handle
+     * @param listener the {@link BlueGigaEventListener} to add
+     * @param capacity the maximum number of events waiting for the listener
+     * @param policy the {@link BlueGigaEventMailbox.OverflowPolicy} to use when the mailbox is full
+     */
+    public void addConnectionListener(int connection, BlueGigaEventListener listener, int capacity,
+            BlueGigaEventMailbox.OverflowPolicy policy) {
+        if (connection < 0 || connection >= connectionEventListeners.length()) {
+            throw new IllegalArgumentException("Invalid connection handle " + connection);
+        }
+
+        synchronized (eventListeners) {
+            addMailbox(connectionEventListeners, connection, listener, capacity, policy);
+        }
+    }
+
+    /**
+     * Removes a listener from the events of a single connection. The listener remains registered for any other
+     * subscriptions it has.
+     *
+     * @param connection the connection handle
+     * @param listener the {@link BlueGigaEventListener} to remove
+     */
+    public void removeConnectionListener(int connection, BlueGigaEventListener listener) {
+        synchronized (eventListeners) {
+            BlueGigaEventMailbox mailbox = eventMailboxes.get(listener);
+            if (mailbox != null) {
+                removeMailbox(connectionEventListeners, connection, mailbox);
+            }
+        }
+    }
+
+    /**
+     * Adds the mailbox for a listener to an entry in a subscription table, creating the mailbox if the listener is not
+     * already registered. Must be called while synchronised on eventListeners.
+     */
+    private void addMailbox(AtomicReferenceArray<BlueGigaEventMailbox[]> table, int index,
+            BlueGigaEventListener listener, int capacity, BlueGigaEventMailbox.OverflowPolicy policy) {
+        BlueGigaEventMailbox mailbox = eventMailboxes.get(listener);
+        if (mailbox == null) {
+            mailbox = new BlueGigaEventMailbox(listener, capacity, policy, notificationService);
+            eventMailboxes.put(listener, mailbox);
+        } else if (eventListeners.contains(mailbox)) {
+            // Already receiving all events
+            return;
+        }
+        insertMailbox(table, index, mailbox);
+    }
+
+    /**
+     * Adds a mailbox to an entry in a subscription table. Must be called while synchronised on eventListeners.
+     */
+    private void insertMailbox(AtomicReferenceArray<BlueGigaEventMailbox[]> table, int index,
+            BlueGigaEventMailbox mailbox) {
+        BlueGigaEventMailbox[] mailboxes = table.get(index);
+        if (mailboxes == null) {
+            mailboxes = new BlueGigaEventMailbox[] { mailbox };
+        } else {
+            if (Arrays.asList(mailboxes).contains(mailbox)) {
+                return;
+            }
+            mailboxes = Arrays.copyOf(mailboxes, mailboxes.length + 1);
+            mailboxes[mailboxes.length - 1] = mailbox;
+        }
+        table.set(index, mailboxes);
+    }
+
+    /**
+     * Removes a mailbox from all entries in a subscription table. Must be called while synchronised on eventListeners.
+     */
+    private void removeMailbox(AtomicReferenceArray<BlueGigaEventMailbox[]> table, BlueGigaEventMailbox mailbox) {
+        for (int index = 0; index < table.length(); index++) {
+            removeMailbox(table, index, mailbox);
+        }
+    }
+
+    private void removeMailbox(AtomicReferenceArray<BlueGigaEventMailbox[]> table, int index,
+            BlueGigaEventMailbox mailbox) {
+        BlueGigaEventMailbox[] mailboxes = table.get(index);
+        if (mailboxes == null) {
+            return;
+        }
+        List<BlueGigaEventMailbox> remaining = new ArrayList<BlueGigaEventMailbox>(Arrays.asList(mailboxes));
+        if (remaining.remove(mailbox)) {
+            table.set(index,
+                    remaining.isEmpty() ? null : remaining.toArray(new BlueGigaEventMailbox[remaining.size()]));
+        }
+    }
+
+    /**
+     * Adds a mailbox owned by a {@link BlueGigaHandlerGroup}. The mailbox is shared by the handlers in the group, so
+     * it isn't closed when the handler is closed.
+     *
+     * @param slot the dispatch slot of the event class, or -1 to receive all events
+     * @param mailbox the group {@link BlueGigaEventMailbox}
+     */
+    void addGroupMailbox(int slot, BlueGigaEventMailbox mailbox) {
+        synchronized (eventListeners) {
+            if (eventListeners.contains(mailbox)) {
+                return;
+            }
+            if (slot == -1) {
+                removeMailbox(typedEventListeners, mailbox);
+                eventListeners.add(mailbox);
+            } else {
+                insertMailbox(typedEventListeners, slot, mailbox);
+            }
+        }
+    }
+
+    /**
+     * Removes a mailbox owned by a {@link BlueGigaHandlerGroup}
+     *
+     * @param mailbox the group {@link BlueGigaEventMailbox}
+     */
+    void removeGroupMailbox(BlueGigaEventMailbox mailbox) {
+        synchronized (eventListeners) {
+            eventListeners.remove(mailbox);
+            removeMailbox(typedEventListeners, mailbox);
+        }
+    }
+
+    /**
+     * Gets the mailbox for a listener. This can be used to monitor the depth of the mailbox and the number of dropped
+     * events.
+     *
+     * @param listener the {@link BlueGigaEventListener}
+     * @return the {@link BlueGigaEventMailbox} or null if the listener is not registered
+     */
+    public BlueGigaEventMailbox getEventMailbox(BlueGigaEventListener listener) {
+        return eventMailboxes.get(listener);
+    }
+
+    /**
+     * Gets the timer used by the handler. Applications can use this for their own deadlines, such as GATT procedures
+     * and reconnections, rather than creating timer threads. Tasks are run on the timer thread and must not block.
+     *
+     * @return the {@link BlueGigaWheelTimer}
+     */
+    public BlueGigaWheelTimer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Gets the name of the adapter. Responses received by the handler are tagged with this name.
+     *
+     * @return the adapter name, or null if the handler isn't named
+     */
+    public String getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * Gets a snapshot of the handler counters. Events dropped by mailboxes shared with a {@link BlueGigaHandlerGroup}
+     * are counted by the group.
+     *
+     * @return the {@link BlueGigaHandlerMetrics}
+     */
+    public BlueGigaHandlerMetrics getMetrics() {
+        long eventsDropped = 0;
+        for (BlueGigaEventMailbox mailbox : eventMailboxes.values()) {
+            eventsDropped += mailbox.getDropped();
+        }
+        return new BlueGigaHandlerMetrics(framesReceived.get(), framesSent.get(), framesExpired.get(),
+                eventsReceived.get(), eventsDropped, transactionsCompleted.get(), transactionsTimedOut.get(),
+                decoder.getFramingErrors(), transportErrors.get());
+    }
+
+    /**
+     * Gets the capture of the raw frames sent and received by the handler. Capture is enabled by default, holding the
+     * last {@link BlueGigaCaptureBuffer#DEFAULT_CAPACITY} frames.
+     *
+     * @return the {@link BlueGigaCaptureBuffer} or null if capture is disabled
+     */
+    public BlueGigaCaptureBuffer getCapture() {
+        return capture;
+    }
+
+    /**
+     * Sets the capture of the raw frames sent and received by the handler
+     *
+     * @param capture the {@link BlueGigaCaptureBuffer} or null to disable capture
+     */
+    public void setCapture(BlueGigaCaptureBuffer capture) {
+        this.capture = capture;
+    }
+
     /**
      * Adds a handler listener.
      * @param listener a new handler listener
@@ -501,15 +1445,21 @@ public class BlueGigaSerialHandler {
 
     public void removeEventListener(BlueGigaEventListener listener) {
         synchronized (eventListeners) {
-            eventListeners.remove(listener);
+            BlueGigaEventMailbox mailbox = eventMailboxes.remove(listener);
+            if (mailbox != null) {
+                eventListeners.remove(mailbox);
+                removeMailbox(typedEventListeners, mailbox);
+                removeMailbox(connectionEventListeners, mailbox);
+                mailbox.close();
+            }
         }
     }
 
-    private String printHex(int[] data, int len) {
+    private String printHex(byte[] data, int offset, int len) {
         StringBuilder builder = new StringBuilder();
 
-        for (int cnt = 0; cnt < len; cnt++) {
-            builder.append(String.format("%02X ", data[cnt]));
+        for (int cnt = offset; cnt < offset + len; cnt++) {
+            builder.append(String.format("%02X ", data[cnt] & 0xFF));
         }
 
         return builder.toString();
@@ -539,8 +1489,4 @@ public class BlueGigaSerialHandler {
             }
         }
     }
-
-    interface BleListener<T extends BlueGigaResponse> {
-        boolean transactionEvent(T bleResponse);
-    }
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the state of a single command and response transaction while it is managed by the
+ * {@link BlueGigaSerialHandler}.
+ * <p>
+ * The transaction is correlated with its response using the class and method IDs from the command header, which
+ * the response carries in the same positions.
+ *
+ * @author Chris Jackson
+ *
+ */
+class BlueGigaTransaction<T extends BlueGigaResponse> {
+    /**
+     * Number of transaction keys - 3 bits of class ID and 8 bits of method ID
+     */
+    static final int KEY_COUNT = 8 * 256;
+
+    private final BlueGigaCommand command;
+    private final Class<T> expected;
+    private final CompletableFuture<T> future = new CompletableFuture<T>();
+    private final long timeout;
+
+    /**
+     * The time the transaction times out, as {@link System#nanoTime()}. Set when the transaction is queued.
+     */
+    private volatile long deadline;
+
+    private volatile BlueGigaWheelTimer.Timeout timer;
+
+    /**
+     * The transaction queued when this transaction completes successfully, if it is a step in a batch
+     */
+    private volatile BlueGigaTransaction<?> next;
+
+    private final BlueGigaPriority priority;
+
+    /**
+     * Number of times the transaction has been sent again after a transient error
+     */
+    private int retries = 0;
+
+    private volatile int key = -1;
+
+    /**
+     * Creates a transaction
+     *
+     * @param command the {@link BlueGigaCommand} to send
+     * @param expected the class of the expected response
+     * @param timeout the time in milliseconds to wait for the response
+     * @param priority the {@link BlueGigaPriority} of the transaction
+     */
+    BlueGigaTransaction(BlueGigaCommand command, Class<T> expected, long timeout, BlueGigaPriority priority) {
+        this.command = command;
+        this.expected = expected;
+        this.timeout = timeout;
+        this.priority = priority;
+    }
+
+    /**
+     * Starts the timeout of the transaction as it is queued. Steps of a batch are created together, but each step has
+     * the full timeout from the time the step before it completes.
+     *
+     * @param timer the {@link BlueGigaWheelTimer.Timeout} that times out the transaction
+     */
+    void start(BlueGigaWheelTimer.Timeout timer) {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.timer = timer;
+    }
+
+    /**
+     * Cancels the timer once the transaction has completed
+     */
+    void cancelTimer() {
+        BlueGigaWheelTimer.Timeout current = timer;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /**
+     * Serializes the command into the transmit buffer and works out the transaction key. This is called by the writer
+     * thread when the transaction is about to be sent.
+     *
+     * @param buffer the {@link ByteBuffer} to write the frame to
+     */
+    void serialize(ByteBuffer buffer) {
+        int start = buffer.position();
+        command.serializeFrame(buffer);
+        key = ((buffer.get(start + 2) & 0x07) << 8) | (buffer.get(start + 3) & 0xFF);
+    }
+
+    /**
+     * Gets the transaction key for a frame
+     *
+     * @param frame a command or response frame
+     * @return the key combining the class and method IDs
+     */
+    static int getKey(byte[] frame) {
+        return ((frame[2] & 0x07) << 8) | (frame[3] & 0xFF);
+    }
+
+    /**
+     * Completes the transaction if the response is of the expected class
+     *
+     * @param response the {@link BlueGigaResponse}
+     * @return true if the response completed the transaction
+     */
+    boolean complete(BlueGigaResponse response) {
+        if (!expected.isInstance(response)) {
+            return false;
+        }
+        return future.complete(expected.cast(response));
+    }
+
+    /**
+     * Checks if a response is of the expected class
+     *
+     * @param response the {@link BlueGigaResponse}
+     * @return true if the response would complete the transaction
+     */
+    boolean isExpected(BlueGigaResponse response) {
+        return expected.isInstance(response);
+    }
+
+    BlueGigaCommand getCommand() {
+        return command;
+    }
+
+    CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    long getTimeout() {
+        return timeout;
+    }
+
+    BlueGigaPriority getPriority() {
+        return priority;
+    }
+
+    BlueGigaTransaction<?> getNext() {
+        return next;
+    }
+
+    void setNext(BlueGigaTransaction<?> next) {
+        this.next = next;
+    }
+
+    int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Prepares the transaction to be queued again after the dongle rejected it. The transaction key is cleared until
+     * the transaction is sent again.
+     */
+    void retry() {
+        retries++;
+        key = -1;
+    }
+
+    /**
+     * Gets the transaction key. This is only valid once the transaction has been serialized.
+     *
+     * @return the key
+     */
+    int getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if the timeout has passed. The transaction may not have been timed out yet, as the timer runs a little
+     * after the deadline.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return true if the timeout has passed
+     */
+    boolean isExpired(long now) {
+        return now - deadline >= 0;
+    }
+
+    /**
+     * Gets the time left before the transaction times out
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the time left in nanoseconds
+     */
+    long getTimeLeft(long now) {
+        return deadline - now;
+    }
+
+    boolean isDone() {
+        return future.isDone();
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+
+/**
+ * A sequence of transactions sent by {@link BlueGigaSerialHandler#sendTransactions(List)}. Each step is sent when the
+ * step before it succeeds, and the sequence stops at the first step that fails.
+ * <p>
+ * A step fails if it times out or is cancelled, or if its response has a result other than
+ * {@link BgApiResponse#SUCCESS}. A step rejected by the dongle still completes with its response, so the result can
+ * be read from the step, but the steps after it are completed exceptionally with a {@link BlueGigaException} and are
+ * never sent. The future of the whole batch is completed with the responses of all steps, or exceptionally with the
+ * first failure. Cancelling it cancels the steps that haven't completed.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaTransactionBatch {
+    private final List<CompletableFuture<BlueGigaResponse>> steps;
+    private final CompletableFuture<List<BlueGigaResponse>> future = new CompletableFuture<List<BlueGigaResponse>>();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    BlueGigaTransactionBatch(List<? extends BlueGigaCommand> commands,
+            List<CompletableFuture<BlueGigaResponse>> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<CompletableFuture<BlueGigaResponse>>(steps));
+
+        for (int step = 0; step < steps.size(); step++) {
+            final BlueGigaCommand command = commands.get(step);
+            final int later = step + 1;
+            steps.get(step).whenComplete((response, exception) -> {
+                Throwable failure = exception;
+                if (failure == null && !isSuccess(response)) {
+                    failure = new BlueGigaException(command + " failed with "
+                            + ((BlueGigaResultResponse) response).getResult());
+                }
+                if (failure == null) {
+                    if (later == this.steps.size()) {
+                        future.complete(getResponses());
+                    }
+                    return;
+                }
+                if (!stopped.compareAndSet(false, true)) {
+                    // Skipped as an earlier step failed
+                    return;
+                }
+                // The later steps are completed before the batch, so they are done once the batch fails
+                BlueGigaException skipped = new BlueGigaException("Not sent as an earlier step failed: " + command,
+                        failure);
+                for (CompletableFuture<BlueGigaResponse> pending : this.steps.subList(later, this.steps.size())) {
+                    pending.completeExceptionally(skipped);
+                }
+                future.completeExceptionally(failure);
+            });
+        }
+
+        future.whenComplete((responses, exception) -> {
+            if (future.isCancelled()) {
+                for (CompletableFuture<BlueGigaResponse> pending : this.steps) {
+                    pending.cancel(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks if a response allows the next step of a batch to be sent
+     *
+     * @param response the {@link BlueGigaResponse}
+     * @return true unless the response carries an error result
+     */
+    static boolean isSuccess(BlueGigaResponse response) {
+        return !(response instanceof BlueGigaResultResponse)
+                || ((BlueGigaResultResponse) response).getResult() == BgApiResponse.SUCCESS;
+    }
+
+    /**
+     * Gets the future of each step, in the order the commands were given
+     *
+     * @return the list of step futures
+     */
+    public List<CompletableFuture<BlueGigaResponse>> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the future of the whole batch
+     *
+     * @return a {@link CompletableFuture} completed with the responses of all steps in order
+     */
+    public CompletableFuture<List<BlueGigaResponse>> getFuture() {
+        return future;
+    }
+
+    private List<BlueGigaResponse> getResponses() {
+        List<BlueGigaResponse> responses = new ArrayList<BlueGigaResponse>(steps.size());
+        for (CompletableFuture<BlueGigaResponse> step : steps) {
+            responses.add(step.join());
+        }
+        return responses;
+    }
+}
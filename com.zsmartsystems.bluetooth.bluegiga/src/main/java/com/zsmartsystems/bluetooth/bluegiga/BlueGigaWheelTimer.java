@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed wheel timer used for the deadlines of the {@link BlueGigaSerialHandler} - transactions, procedures and
+ * reconnections.
+ * <p>
+ * Timeouts are hashed into a fixed number of buckets by their deadline, and a single thread visits one bucket per
+ * tick. Adding and cancelling a timeout are O(1) and don't take a lock, so many thousands of deadlines can be tracked
+ * cheaply. The cost is resolution - a timeout expires up to one tick after its deadline.
+ * <p>
+ * Timeout tasks are run on the timer thread, so they must be short and must not block.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaWheelTimer {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaWheelTimer.class);
+
+    /**
+     * Default tick duration in milliseconds
+     */
+    public static final long DEFAULT_TICK_DURATION = 10;
+
+    /**
+     * Default number of buckets in the wheel
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Maximum number of new timeouts added to the wheel in each tick, so a burst can't delay the expiry of others
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+
+    private final Thread workerThread;
+    private volatile boolean stopped = false;
+
+    /**
+     * The current tick. Only used by the timer thread.
+     */
+    private long tick = 0;
+
+    /**
+     * A scheduled task that can be cancelled
+     */
+    public static final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final BlueGigaWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // Only used by the timer thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(BlueGigaWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout so the task will not be run
+         *
+         * @return true if the timeout was cancelled, or false if it has already expired or been cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            timer.pendingTimeouts.decrementAndGet();
+
+            try {
+                task.run();
+            } catch (Exception e) {
+                timer.logger.warn("Execution error of a BlueGiga timeout task.", e);
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of the timeouts hashed to one position on the wheel
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    /**
+     * Creates a timer and starts its thread
+     *
+     * @param name the name of the timer thread
+     * @param tickDuration the tick duration in milliseconds
+     * @param wheelSize the number of buckets in the wheel. This is rounded up to a power of two.
+     */
+    BlueGigaWheelTimer(String name, long tickDuration, int wheelSize) {
+        if (tickDuration < 1) {
+            throw new IllegalArgumentException("Tick duration must be at least 1ms");
+        }
+        if (wheelSize < 1 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid wheel size " + wheelSize);
+        }
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        wheel = new Bucket[size];
+        for (int cnt = 0; cnt < size; cnt++) {
+            wheel[cnt] = new Bucket();
+        }
+        mask = size - 1;
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        startTime = System.nanoTime();
+
+        workerThread = new Thread(name) {
+            @Override
+            public void run() {
+                logger.trace("BlueGiga timer thread started");
+                runWheel();
+                logger.trace("BlueGiga timer thread exited");
+            }
+        };
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Schedules a task to run once the delay has passed
+     *
+     * @param task the task to run on the timer thread
+     * @param delay the delay before the task is run
+     * @param unit the {@link TimeUnit} of the delay
+     * @return the {@link Timeout} which can be used to cancel the task
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("BlueGiga timer is stopped");
+        }
+
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Gets the number of timeouts that are waiting to expire
+     *
+     * @return the number of pending timeouts
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Stops the timer. Pending timeouts will not expire.
+     */
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(workerThread);
+    }
+
+    private void runWheel() {
+        while (!stopped) {
+            long tickDeadline = (tick + 1) * tickNanos;
+            long sleepTime;
+            while (!stopped && (sleepTime = tickDeadline - (System.nanoTime() - startTime)) > 0) {
+                LockSupport.parkNanos(this, sleepTime);
+            }
+            if (stopped) {
+                break;
+            }
+
+            removeCancelledTimeouts();
+            transferTimeouts();
+            expireTimeouts(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            // Cancelled timeouts that are not yet on the wheel are dropped when they are transferred
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferTimeouts() {
+        for (int cnt = 0; cnt < MAX_TRANSFERS_PER_TICK; cnt++) {
+            Timeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+
+            // Timeouts that are already late expire on this tick
+            wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds <= 0) {
+                Timeout next = bucket.remove(timeout);
+                timeout.expire();
+                timeout = next;
+            } else if (timeout.isCancelled()) {
+                timeout = bucket.remove(timeout);
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+
+/**
+ * Immutable Bluetooth device address. The 48 bit address and the address type are packed into a single long, so
+ * addresses can be compared and hashed cheaply and used as map keys. The string form is only created when it is
+ * requested.
+ * <p>
+ * The address type is part of the identity of the address - a public and a random address with the same 48 bits are
+ * not equal.
+ *
+ * @author Chris Jackson
+ *
+ */
+public final class BluetoothAddress implements Comparable<BluetoothAddress> {
+    private static final long ADDRESS_MASK = 0xFFFFFFFFFFFFL;
+    private static final long RANDOM_FLAG = 1L << 48;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The address in the low 48 bits, with the most significant byte being the first byte of the string form. Bit 48
+     * is set for random addresses.
+     */
+    private final long value;
+
+    /**
+     * The string form of the address, created when first requested
+     */
+    private volatile String string;
+
+    /**
+     * Creates a public address
+     *
+     * @param address the 48 bit address
+     */
+    public BluetoothAddress(long address) {
+        this(address, BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC);
+    }
+
+    /**
+     * Creates an address with the specified address type
+     *
+     * @param address the 48 bit address
+     * @param addressType the {@link BluetoothAddressType}
+     */
+    public BluetoothAddress(long address, BluetoothAddressType addressType) {
+        value = (address & ADDRESS_MASK)
+                | (addressType == BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM ? RANDOM_FLAG : 0);
+    }
+
+    /**
+     * Creates a public address from its string form (eg 11:22:33:44:55:66)
+     *
+     * @param address the address string
+     * @return the {@link BluetoothAddress}
+     * @throws IllegalArgumentException if the string is not a valid address
+     */
+    public static BluetoothAddress fromString(String address) {
+        return fromString(address, BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC);
+    }
+
+    /**
+     * Creates an address from its string form (eg 11:22:33:44:55:66)
+     *
+     * @param address the address string
+     * @param addressType the {@link BluetoothAddressType}
+     * @return the {@link BluetoothAddress}
+     * @throws IllegalArgumentException if the string is not a valid address
+     */
+    public static BluetoothAddress fromString(String address, BluetoothAddressType addressType) {
+        if (address == null || address.length() != 17) {
+            throw new IllegalArgumentException("Invalid Bluetooth address: " + address);
+        }
+
+        long val = 0;
+        for (int cnt = 0; cnt < 6; cnt++) {
+            int position = cnt * 3;
+            int high = Character.digit(address.charAt(position), 16);
+            int low = Character.digit(address.charAt(position + 1), 16);
+            if (high == -1 || low == -1 || (cnt < 5 && address.charAt(position + 2) != ':')) {
+                throw new IllegalArgumentException("Invalid Bluetooth address: " + address);
+            }
+            val = (val << 8) | (high << 4) | low;
+        }
+
+        return new BluetoothAddress(val, addressType);
+    }
+
+    /**
+     * Gets the 48 bit address
+     *
+     * @return the address as a long
+     */
+    public long getAddress() {
+        return value & ADDRESS_MASK;
+    }
+
+    /**
+     * Gets the address type
+     *
+     * @return the {@link BluetoothAddressType}
+     */
+    public BluetoothAddressType getAddressType() {
+        return (value & RANDOM_FLAG) != 0 ? BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM
+                : BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC;
+    }
+
+    @Override
+    public int compareTo(BluetoothAddress other) {
+        return Long.compare(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof BluetoothAddress)) {
+            return false;
+        }
+        return value == ((BluetoothAddress) obj).value;
+    }
+
+    @Override
+    public String toString() {
+        String result = string;
+        if (result == null) {
+            char[] chars = new char[17];
+            for (int cnt = 0; cnt < 6; cnt++) {
+                int val = (int) (value >> ((5 - cnt) * 8)) & 0xFF;
+                int position = cnt * 3;
+                chars[position] = HEX_DIGITS[val >> 4];
+                chars[position + 1] = HEX_DIGITS[val & 0x0F];
+                if (cnt < 5) {
+                    chars[position + 2] = ':';
+                }
+            }
+            result = new String(chars);
+            string = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+
+/**
+ * A lock free ring buffer holding the most recent raw frames sent and received by a handler. Capturing a frame costs
+ * a copy of the frame and a few atomic operations, so the capture can be left running at full rate, and be dumped
+ * with {@link #dump(OutputStream)} or streamed with a {@link BlueGigaCaptureStream} when it is needed.
+ * <p>
+ * Each frame takes one slot in the ring. A writer claims the next slot by incrementing the claim counter, so the claim
+ * is also the sequence number of the frame. The slot stamp is cleared while the frame is copied in, and set to the
+ * sequence number once the frame is complete. Readers check the stamp before and after copying a frame out, so frames
+ * that are overwritten while they are being read are skipped. The frame data is not itself atomic, so a store fence
+ * orders the cleared stamp before the data is copied in, and a load fence orders the copy out before the stamp is
+ * checked again. Java 8 has no public fence API, so the fences of {@code sun.misc.Unsafe} are used, as in
+ * {@link java.util.concurrent.locks.StampedLock}. They are looked up at run time, so the class also compiles against
+ * the Java 8 API of a later JDK, which doesn't include {@code sun.misc}.
+ * <p>
+ * Any number of threads may capture and read at the same time.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaCaptureBuffer {
+    /**
+     * Default number of frames held
+     */
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    /**
+     * Maximum length of a captured frame. This is the size of the command serialisation buffer - longer frames are
+     * truncated.
+     */
+    public static final int MAX_FRAME_LENGTH = 131;
+
+    private static final int DIRECTION_TX = 0x100;
+    private static final int LENGTH_MASK = 0xFF;
+
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodType fence = MethodType.methodType(void.class);
+            STORE_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "storeFence", fence).bindTo(unsafe);
+            LOAD_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", fence).bindTo(unsafe);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * The sequence number of the next frame to be captured
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The stamp of each slot. This is the sequence number + 1 of a complete frame, the negative of that while the frame
+     * is being written, and 0 if the slot has never been used.
+     */
+    private final AtomicLongArray stamps;
+    private final long[] timestamps;
+    private final int[] info;
+    private final byte[] data;
+
+    /**
+     * Creates a capture buffer with the {@link #DEFAULT_CAPACITY}
+     */
+    public BlueGigaCaptureBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a capture buffer
+     *
+     * @param capacity the number of frames held. This is rounded up to a power of 2.
+     */
+    public BlueGigaCaptureBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capture capacity must be between 1 and " + (1 << 24));
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+
+        stamps = new AtomicLongArray(size);
+        timestamps = new long[size];
+        info = new int[size];
+        data = new byte[size * MAX_FRAME_LENGTH];
+    }
+
+    /**
+     * Captures a frame
+     *
+     * @param direction the {@link Direction} of the frame
+     * @param frame the array holding the frame from index 0
+     * @param length the length of the frame
+     */
+    public void capture(Direction direction, byte[] frame, int length) {
+        capture(direction, frame, 0, length);
+    }
+
+    /**
+     * Captures a frame held part way through an array, such as a frame in a transmit buffer
+     *
+     * @param direction the {@link Direction} of the frame
+     * @param frame the array holding the frame
+     * @param offset the index of the start of the frame
+     * @param length the length of the frame
+     */
+    public void capture(Direction direction, byte[] frame, int offset, int length) {
+        long timestamp = System.nanoTime();
+        long sequence = claimed.getAndIncrement();
+        int slot = (int) sequence & mask;
+        int captured = Math.min(length, MAX_FRAME_LENGTH);
+
+        long stamp;
+        do {
+            stamp = stamps.get(slot);
+            if (Math.abs(stamp) > sequence + 1) {
+                // A later frame has already claimed the slot
+                return;
+            }
+        } while (!stamps.compareAndSet(slot, stamp, -(sequence + 1)));
+        // The cleared stamp must be visible before any of the frame is overwritten
+        storeFence();
+        System.arraycopy(frame, offset, data, slot * MAX_FRAME_LENGTH, captured);
+        timestamps[slot] = timestamp;
+        info[slot] = (direction == Direction.TX ? DIRECTION_TX : 0) | captured;
+        // A later frame may have claimed the slot while this one was copied in
+        stamps.compareAndSet(slot, -(sequence + 1), sequence + 1);
+    }
+
+    private static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Store fence failed", e);
+        }
+    }
+
+    private static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Load fence failed", e);
+        }
+    }
+
+    /**
+     * Gets the number of frames held
+     *
+     * @return the capacity of the buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of frames captured since the buffer was created. This is also the sequence number of the next
+     * frame.
+     *
+     * @return the count of frames captured
+     */
+    public long getCaptured() {
+        return claimed.get();
+    }
+
+    /**
+     * Reads the frames captured from a sequence number. Frames that have been overwritten are skipped. Reading stops at
+     * a frame that is still being written, so the returned position can be used to continue reading later.
+     *
+     * @param position the sequence number of the first frame to read
+     * @param consumer the {@link Consumer} for the frames
+     * @return the sequence number of the next frame to read
+     */
+    public long read(long position, Consumer<BlueGigaCaptureFrame> consumer) {
+        long end = claimed.get();
+        for (long sequence = Math.max(position, end - capacity); sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            long stamp = stamps.get(slot);
+            if (stamp != sequence + 1) {
+                if (stamp == -(sequence + 1) || Math.abs(stamp) <= sequence) {
+                    // Not complete yet - either still being written, or the slot still holds an older frame
+                    return sequence;
+                }
+                // Overwritten
+                continue;
+            }
+
+            int frameInfo = info[slot];
+            long timestamp = timestamps[slot];
+            byte[] frame = new byte[frameInfo & LENGTH_MASK];
+            System.arraycopy(data, slot * MAX_FRAME_LENGTH, frame, 0, frame.length);
+            // The copy must be complete before the stamp is checked again
+            loadFence();
+            if (stamps.get(slot) != sequence + 1) {
+                // Overwritten while it was copied
+                continue;
+            }
+
+            Direction direction = (frameInfo & DIRECTION_TX) != 0 ? Direction.TX : Direction.RX;
+            consumer.accept(new BlueGigaCaptureFrame(direction, sequence, timestamp, frame));
+        }
+        return end;
+    }
+
+    /**
+     * Gets a snapshot of the frames held in the buffer
+     *
+     * @return a list of {@link BlueGigaCaptureFrame}s, oldest first
+     */
+    public List<BlueGigaCaptureFrame> getFrames() {
+        final List<BlueGigaCaptureFrame> frames = new ArrayList<BlueGigaCaptureFrame>(capacity);
+        read(0, new Consumer<BlueGigaCaptureFrame>() {
+            @Override
+            public void accept(BlueGigaCaptureFrame frame) {
+                frames.add(frame);
+            }
+        });
+        return frames;
+    }
+
+    /**
+     * Writes the frames held in the buffer to a stream in the capture file format. The stream is not closed.
+     *
+     * @param outputStream the {@link OutputStream} to write to
+     * @return the number of frames written
+     * @throws IOException if the stream can't be written
+     */
+    public int dump(OutputStream outputStream) throws IOException {
+        BlueGigaCaptureWriter writer = new BlueGigaCaptureWriter();
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        writer.writeHeader(buffer);
+
+        List<BlueGigaCaptureFrame> frames = getFrames();
+        for (BlueGigaCaptureFrame frame : frames) {
+            if (buffer.remaining() < BlueGigaCaptureWriter.MAX_RECORD_LENGTH) {
+                outputStream.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            writer.write(buffer, frame);
+        }
+        outputStream.write(buffer.array(), 0, buffer.position());
+        outputStream.flush();
+        return frames.size();
+    }
+}
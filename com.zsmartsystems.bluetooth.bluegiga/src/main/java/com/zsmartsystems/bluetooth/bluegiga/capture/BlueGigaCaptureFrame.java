@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+/**
+ * A raw BGAPI frame taken from a capture
+ *
+ * @author Chris Jackson
+ *
+ */
+public final class BlueGigaCaptureFrame {
+    /**
+     * The direction of a frame. RX frames are received from the dongle, and TX frames are sent to it.
+     */
+    public enum Direction {
+        RX,
+        TX
+    }
+
+    private final Direction direction;
+    private final long sequence;
+    private final long timestamp;
+    private final byte[] frame;
+
+    /**
+     * Creates a captured frame
+     *
+     * @param direction the {@link Direction} of the frame
+     * @param sequence the capture sequence number
+     * @param timestamp the capture time from {@link System#nanoTime()}
+     * @param frame the raw frame. The array is not copied.
+     */
+    public BlueGigaCaptureFrame(Direction direction, long sequence, long timestamp, byte[] frame) {
+        this.direction = direction;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.frame = frame;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the sequence number. Frames are numbered from 0 in the order they were captured, across both directions.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the capture time in nanoseconds. This uses the {@link System#nanoTime()} clock, so is only meaningful
+     * relative to other frames, or to the reference time of a capture file.
+     *
+     * @return the capture time in nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the raw frame, including the BGAPI header. The array is shared, and must not be changed.
+     *
+     * @return the frame
+     */
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(direction);
+        builder.append(" #");
+        builder.append(sequence);
+        builder.append(" @");
+        builder.append(timestamp);
+        builder.append(':');
+        for (byte value : frame) {
+            builder.append(String.format(" %02X", value & 0xFF));
+        }
+        return builder.toString();
+    }
+}
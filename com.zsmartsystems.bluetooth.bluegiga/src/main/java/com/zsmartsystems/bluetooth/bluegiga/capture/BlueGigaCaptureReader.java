@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+
+/**
+ * Reads frames from a capture file written by {@link BlueGigaCaptureBuffer#dump(java.io.OutputStream)} or a
+ * {@link BlueGigaCaptureStream}. See {@link BlueGigaCaptureWriter} for the format.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaCaptureReader implements Closeable {
+    private final InputStream inputStream;
+
+    private final long referenceTime;
+    private final long referenceNanos;
+
+    private long lastSequence = 0;
+    private long lastTimestamp;
+    private boolean finished = false;
+
+    /**
+     * Creates a reader, and reads the file header
+     *
+     * @param inputStream the {@link InputStream} holding the capture
+     * @throws IOException if the header can't be read, or the stream is not a capture
+     */
+    public BlueGigaCaptureReader(InputStream inputStream) throws IOException {
+        this.inputStream = new BufferedInputStream(inputStream);
+
+        byte[] magic = new byte[BlueGigaCaptureWriter.MAGIC.length];
+        for (int cnt = 0; cnt < magic.length; cnt++) {
+            magic[cnt] = (byte) readByte();
+        }
+        int version = readByte();
+        if (!Arrays.equals(magic, BlueGigaCaptureWriter.MAGIC) || version != BlueGigaCaptureWriter.VERSION) {
+            throw new IOException("Not a BlueGiga capture");
+        }
+        referenceTime = readLong();
+        referenceNanos = readLong();
+        lastTimestamp = referenceNanos;
+    }
+
+    /**
+     * Gets the wall clock reference time of the capture
+     *
+     * @return the reference time in milliseconds since the epoch
+     */
+    public long getReferenceTime() {
+        return referenceTime;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} clock at the reference time. Frame timestamps use this clock.
+     *
+     * @return the reference time in nanoseconds
+     */
+    public long getReferenceNanos() {
+        return referenceNanos;
+    }
+
+    /**
+     * Reads the next frame
+     *
+     * @return the next {@link BlueGigaCaptureFrame} or null at the end of the capture
+     * @throws IOException if the capture can't be read, or is truncated in the middle of a frame
+     */
+    public BlueGigaCaptureFrame read() throws IOException {
+        if (finished) {
+            return null;
+        }
+        int flags = inputStream.read();
+        if (flags <= 0) {
+            finished = true;
+            return null;
+        }
+        if ((flags & BlueGigaCaptureWriter.FLAG_VALID) == 0) {
+            throw new IOException("Invalid capture frame flags " + flags);
+        }
+
+        lastSequence += readVarint();
+        lastTimestamp += readVarint();
+        byte[] frame = new byte[readByte()];
+        for (int cnt = 0; cnt < frame.length; cnt++) {
+            frame[cnt] = (byte) readByte();
+        }
+
+        Direction direction = (flags & BlueGigaCaptureWriter.FLAG_TX) != 0 ? Direction.TX : Direction.RX;
+        return new BlueGigaCaptureFrame(direction, lastSequence, lastTimestamp, frame);
+    }
+
+    /**
+     * Reads all remaining frames
+     *
+     * @return the list of {@link BlueGigaCaptureFrame}s
+     * @throws IOException if the capture can't be read
+     */
+    public List<BlueGigaCaptureFrame> readAll() throws IOException {
+        List<BlueGigaCaptureFrame> frames = new ArrayList<BlueGigaCaptureFrame>();
+        BlueGigaCaptureFrame frame;
+        while ((frame = read()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private int readByte() throws IOException {
+        int value = inputStream.read();
+        if (value == -1) {
+            throw new EOFException("Capture is truncated");
+        }
+        return value;
+    }
+
+    private long readLong() throws IOException {
+        long value = 0;
+        for (int cnt = 0; cnt < 8; cnt++) {
+            value |= (long) readByte() << (cnt * 8);
+        }
+        return value;
+    }
+
+    private long readVarint() throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int value = readByte();
+            zigzag |= (long) (value & 0x7F) << shift;
+            if ((value & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Invalid capture varint");
+    }
+}
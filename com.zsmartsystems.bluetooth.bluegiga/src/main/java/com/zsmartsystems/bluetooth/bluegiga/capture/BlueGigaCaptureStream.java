@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the frames from a {@link BlueGigaCaptureBuffer} to a memory mapped capture file. A background thread
+ * follows the buffer and copies new frames into the mapped file, so capturing stays lock free and the file is kept up
+ * to date by the operating system even if the process dies. The file is mapped in chunks as it grows, and is
+ * truncated to the frames written when the stream is closed.
+ * <p>
+ * Streaming starts with the frames still held in the buffer. If the stream falls more than the buffer capacity behind
+ * the capture, frames are lost - see {@link #getLost()}.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaCaptureStream implements Closeable {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaCaptureStream.class);
+
+    /**
+     * Size of each mapped chunk of the file
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Time to wait when there are no new frames
+     */
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BlueGigaCaptureBuffer buffer;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final BlueGigaCaptureWriter writer = new BlueGigaCaptureWriter();
+    private final Thread thread;
+
+    private MappedByteBuffer mapped;
+    private long mappedOffset = 0;
+    private long position = 0;
+
+    /**
+     * The sequence number of the next frame expected from the buffer, or -1 before the first read. Frames skipped
+     * between this and the frames the buffer returns were overwritten before they could be streamed.
+     */
+    private long next = -1;
+    private long written = 0;
+    private long lost = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a stream with the {@link #DEFAULT_CHUNK_SIZE} and starts streaming
+     *
+     * @param buffer the {@link BlueGigaCaptureBuffer} to stream
+     * @param captureFile the capture {@link File}. Any existing file is overwritten.
+     * @throws IOException if the file can't be created
+     */
+    public BlueGigaCaptureStream(BlueGigaCaptureBuffer buffer, File captureFile) throws IOException {
+        this(buffer, captureFile, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a stream and starts streaming
+     *
+     * @param buffer the {@link BlueGigaCaptureBuffer} to stream
+     * @param captureFile the capture {@link File}. Any existing file is overwritten.
+     * @param chunkSize the size of each mapped chunk of the file
+     * @throws IOException if the file can't be created
+     */
+    public BlueGigaCaptureStream(BlueGigaCaptureBuffer buffer, File captureFile, int chunkSize) throws IOException {
+        if (chunkSize < BlueGigaCaptureWriter.HEADER_LENGTH + BlueGigaCaptureWriter.MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Capture chunk size is too small");
+        }
+        this.buffer = buffer;
+        this.chunkSize = chunkSize;
+
+        file = new RandomAccessFile(captureFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, chunkSize);
+        writer.writeHeader(mapped);
+
+        thread = new Thread("BlueGigaCaptureStream") {
+            @Override
+            public void run() {
+                while (!closed) {
+                    try {
+                        if (!drain()) {
+                            LockSupport.parkNanos(this, IDLE_WAIT);
+                        }
+                    } catch (IOException e) {
+                        logger.error("BlueGiga capture stream error: ", e);
+                        closed = true;
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the number of frames written to the file
+     *
+     * @return the count of frames written
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * Gets the number of frames that were overwritten in the buffer before they could be streamed
+     *
+     * @return the count of lost frames
+     */
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    /**
+     * Writes the frames captured since the last call to the file
+     *
+     * @return true if any frames were written
+     */
+    private synchronized boolean drain() throws IOException {
+        final long start = position;
+        final IOException[] error = new IOException[1];
+        if (next == -1) {
+            // The first read starts with whatever the buffer still holds
+            next = Math.max(0, buffer.getCaptured() - buffer.getCapacity());
+        }
+        position = buffer.read(position, new Consumer<BlueGigaCaptureFrame>() {
+            @Override
+            public void accept(BlueGigaCaptureFrame frame) {
+                lost += frame.getSequence() - next;
+                next = frame.getSequence() + 1;
+                if (error[0] != null) {
+                    return;
+                }
+                try {
+                    if (mapped.remaining() < BlueGigaCaptureWriter.MAX_RECORD_LENGTH) {
+                        mappedOffset += mapped.position();
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE, mappedOffset, chunkSize);
+                    }
+                    writer.write(mapped, frame);
+                    written++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+
+        // Frames after the last one returned were skipped if the read moved past them
+        if (position > next) {
+            lost += position - next;
+            next = position;
+        }
+        return position != start;
+    }
+
+    /**
+     * Writes any remaining frames, and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            drain();
+            mapped.force();
+            channel.truncate(mappedOffset + mapped.position());
+            file.close();
+        }
+    }
+}
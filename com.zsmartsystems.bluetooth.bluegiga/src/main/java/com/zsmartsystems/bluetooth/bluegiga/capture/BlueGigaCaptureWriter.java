@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+
+/**
+ * Encodes frames in the capture file format.
+ * <p>
+ * The file starts with a header of the magic "BGCF", a version byte, and a reference time - the wall clock time in
+ * milliseconds and the {@link System#nanoTime()} clock in nanoseconds, taken at the same moment. All integers are
+ * little endian. Each frame is then written as:
+ * <ul>
+ * <li>a flags byte - bit 7 is always set, and bit 0 is set for TX frames</li>
+ * <li>the sequence number, as a zigzag varint difference from the previous frame</li>
+ * <li>the timestamp, as a zigzag varint difference from the previous frame, or from the reference time</li>
+ * <li>the frame length byte, and the frame</li>
+ * </ul>
+ * A typical frame is stored with 5 or 6 bytes of overhead. A zero flags byte ends the frames, so a preallocated file
+ * can be read while it is being written.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaCaptureWriter {
+    static final byte[] MAGIC = { 'B', 'G', 'C', 'F' };
+    static final int VERSION = 1;
+
+    static final int FLAG_VALID = 0x80;
+    static final int FLAG_TX = 0x01;
+
+    /**
+     * Length of the file header
+     */
+    public static final int HEADER_LENGTH = 4 + 1 + 8 + 8;
+
+    /**
+     * Longest encoding of a single frame
+     */
+    public static final int MAX_RECORD_LENGTH = 1 + 10 + 10 + 1 + BlueGigaCaptureBuffer.MAX_FRAME_LENGTH;
+
+    private final long referenceTime;
+    private final long referenceNanos;
+
+    private long lastSequence = 0;
+    private long lastTimestamp;
+
+    /**
+     * Creates a writer with the current time as the reference time
+     */
+    public BlueGigaCaptureWriter() {
+        this(System.currentTimeMillis(), System.nanoTime());
+    }
+
+    /**
+     * Creates a writer
+     *
+     * @param referenceTime the wall clock reference time in milliseconds
+     * @param referenceNanos the {@link System#nanoTime()} clock at the reference time
+     */
+    public BlueGigaCaptureWriter(long referenceTime, long referenceNanos) {
+        this.referenceTime = referenceTime;
+        this.referenceNanos = referenceNanos;
+        this.lastTimestamp = referenceNanos;
+    }
+
+    /**
+     * Writes the file header
+     *
+     * @param buffer the {@link ByteBuffer} to write to. At least {@link #HEADER_LENGTH} bytes must remain.
+     */
+    public void writeHeader(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putLong(referenceTime);
+        buffer.putLong(referenceNanos);
+        buffer.order(order);
+    }
+
+    /**
+     * Writes a frame
+     *
+     * @param buffer the {@link ByteBuffer} to write to. At least {@link #MAX_RECORD_LENGTH} bytes must remain.
+     * @param frame the {@link BlueGigaCaptureFrame} to write
+     */
+    public void write(ByteBuffer buffer, BlueGigaCaptureFrame frame) {
+        byte[] data = frame.getFrame();
+        int length = Math.min(data.length, BlueGigaCaptureBuffer.MAX_FRAME_LENGTH);
+
+        buffer.put((byte) (FLAG_VALID | (frame.getDirection() == Direction.TX ? FLAG_TX : 0)));
+        putVarint(buffer, frame.getSequence() - lastSequence);
+        putVarint(buffer, frame.getTimestamp() - lastTimestamp);
+        buffer.put((byte) length);
+        buffer.put(data, 0, length);
+
+        lastSequence = frame.getSequence();
+        lastTimestamp = frame.getTimestamp();
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+}
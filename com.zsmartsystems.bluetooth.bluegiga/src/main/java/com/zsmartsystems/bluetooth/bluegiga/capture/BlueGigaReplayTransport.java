@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaFrameDecoder;
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransportListener;
+
+/**
+ * A {@link BlueGigaTransport} that replays a captured session to a handler in place of a dongle.
+ * <p>
+ * The captured frames are played in order. Received frames are delivered to the handler, and each captured command
+ * gates the replay - the replay waits until the handler sends a command with the same class and method before it
+ * continues, so the captured response is the answer to that command. Application logic above the handler therefore
+ * runs unchanged, and sees the frames in the same order every time. Commands that don't match the next captured
+ * command are not answered, and are counted by {@link #getMismatches()}.
+ * <p>
+ * The speed sets the timing of the received frames. A speed of {@link #REALTIME} keeps the captured timing, other
+ * speeds scale it, and {@link #AS_FAST_AS_POSSIBLE} delivers frames as soon as the handler is ready for them. Time
+ * spent waiting for the handler to send a command, or while paused, is added to the timeline, so the gaps between
+ * frames are kept.
+ * <p>
+ * The replay starts when the handler starts the transport. To register listeners before any events are delivered,
+ * call {@link #pause()} before the handler is created, and {@link #resume()} once the listeners are registered.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaReplayTransport implements BlueGigaTransport {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaReplayTransport.class);
+
+    /**
+     * Replays with the captured timing
+     */
+    public static final double REALTIME = 1.0;
+
+    /**
+     * Replays without waiting between frames
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    /**
+     * Size of the receive buffer. Frames are delivered in batches of up to this size when they are due together.
+     */
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Time in nanoseconds to wait for the handler to read the inbound buffer when a frame doesn't fit
+     */
+    private static final long DELIVERY_RETRY_DELAY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<BlueGigaCaptureFrame> frames;
+    private final double speed;
+
+    /**
+     * Received frames waiting to be read by the handler. This is left in write mode, and guarded by this transport.
+     */
+    private final ByteBuffer inbound = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Partial command frame written by the handler
+     */
+    private final ByteBuffer outbound = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Commands written by the handler, and waiting to be matched with the captured commands
+     */
+    private final BlockingQueue<byte[]> commands = new LinkedBlockingQueue<byte[]>();
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private BlueGigaTransportListener listener;
+    private Thread replayThread = null;
+    private volatile boolean paused = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a replay of captured frames
+     *
+     * @param frames the captured {@link BlueGigaCaptureFrame}s, in capture order
+     * @param speed the replay speed - {@link #REALTIME}, a multiple of it, or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public BlueGigaReplayTransport(List<BlueGigaCaptureFrame> frames, double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative");
+        }
+        this.frames = new ArrayList<BlueGigaCaptureFrame>(frames);
+        this.speed = speed;
+    }
+
+    /**
+     * Creates a replay of a capture file
+     *
+     * @param captureFile the capture {@link File}
+     * @param speed the replay speed - {@link #REALTIME}, a multiple of it, or {@link #AS_FAST_AS_POSSIBLE}
+     * @return the {@link BlueGigaReplayTransport}
+     * @throws IOException if the capture can't be read
+     */
+    public static BlueGigaReplayTransport fromFile(File captureFile, double speed) throws IOException {
+        try (BlueGigaCaptureReader reader = new BlueGigaCaptureReader(new FileInputStream(captureFile))) {
+            return new BlueGigaReplayTransport(reader.readAll(), speed);
+        }
+    }
+
+    /**
+     * Gets the number of captured frames that have been replayed, including the matched commands
+     *
+     * @return the count of frames replayed
+     */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * Gets the number of commands sent by the handler that didn't match the next captured command
+     *
+     * @return the count of mismatched commands
+     */
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    /**
+     * Waits for all the captured frames to be replayed
+     *
+     * @param timeout the time to wait
+     * @param unit the {@link TimeUnit} of the timeout
+     * @return true if the replay finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Pauses the replay before the next frame
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes a paused replay
+     */
+    public synchronized void resume() {
+        paused = false;
+        if (replayThread != null) {
+            LockSupport.unpark(replayThread);
+        }
+    }
+
+    @Override
+    public synchronized void start(BlueGigaTransportListener listener) {
+        if (replayThread != null) {
+            throw new IllegalStateException("Replay transport already started");
+        }
+        this.listener = listener;
+        replayThread = new Thread("BlueGigaReplay") {
+            @Override
+            public void run() {
+                try {
+                    replay();
+                } catch (InterruptedException e) {
+                    logger.debug("BlueGiga replay interrupted");
+                } catch (RuntimeException e) {
+                    logger.error("BlueGiga replay failed: ", e);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    private void replay() throws InterruptedException {
+        if (frames.isEmpty()) {
+            return;
+        }
+
+        final boolean paced = speed != AS_FAST_AS_POSSIBLE;
+        final long captureStart = frames.get(0).getTimestamp();
+        long replayStart = System.nanoTime();
+
+        for (BlueGigaCaptureFrame frame : frames) {
+            if (paused) {
+                deliver();
+                long pauseStart = System.nanoTime();
+                while (paused && !closed) {
+                    LockSupport.park(this);
+                }
+                replayStart += System.nanoTime() - pauseStart;
+            }
+            if (closed) {
+                return;
+            }
+            long due = paced ? replayStart + (long) ((frame.getTimestamp() - captureStart) / speed) : 0;
+
+            if (frame.getDirection() == Direction.TX) {
+                deliver();
+                if (!awaitCommand(frame.getFrame())) {
+                    return;
+                }
+                // Time spent waiting for the handler moves the rest of the timeline
+                long now = System.nanoTime();
+                if (paced && now - due > 0) {
+                    replayStart += now - due;
+                }
+            } else {
+                if (paced) {
+                    deliver();
+                    long wait;
+                    while (!closed && (wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(this, wait);
+                    }
+                }
+                if (!queue(frame.getFrame())) {
+                    return;
+                }
+            }
+            replayed.incrementAndGet();
+        }
+        deliver();
+    }
+
+    /**
+     * Waits for the handler to send a command with the class and method of the captured command
+     *
+     * @return false if the transport was closed while waiting
+     */
+    private boolean awaitCommand(byte[] expected) throws InterruptedException {
+        while (!closed) {
+            byte[] command = commands.poll(100, TimeUnit.MILLISECONDS);
+            if (command == null) {
+                continue;
+            }
+            if ((command[2] & 0x07) == (expected[2] & 0x07) && command[3] == expected[3]) {
+                return true;
+            }
+            logger.debug("BlueGiga replay mismatch: expected class {} method {}, received class {} method {}",
+                    expected[2] & 0x07, expected[3] & 0xFF, command[2] & 0x07, command[3] & 0xFF);
+            mismatches.incrementAndGet();
+        }
+        return false;
+    }
+
+    /**
+     * Adds a received frame to the inbound buffer. If the buffer is full it is delivered first, and the replay waits
+     * until the handler has read enough of it for the frame to fit.
+     *
+     * @return false if the transport was closed while waiting
+     */
+    private boolean queue(byte[] frame) {
+        if (frame.length > inbound.capacity()) {
+            logger.warn("BlueGiga replay frame of {} bytes is too long to deliver", frame.length);
+            return true;
+        }
+
+        boolean delivered = false;
+        while (!closed) {
+            synchronized (this) {
+                if (inbound.remaining() >= frame.length) {
+                    inbound.put(frame);
+                    return true;
+                }
+            }
+            if (delivered) {
+                // The handler hasn't read the frames delivered so far
+                LockSupport.parkNanos(this, DELIVERY_RETRY_DELAY);
+            }
+            deliver();
+            delivered = true;
+        }
+        return false;
+    }
+
+    /**
+     * Notifies the listener of any frames in the inbound buffer. The handler reads them before it returns.
+     */
+    private void deliver() {
+        synchronized (this) {
+            if (inbound.position() == 0) {
+                return;
+            }
+        }
+        listener.transportReady();
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer buffer) {
+        if (inbound.position() == 0) {
+            return closed ? -1 : 0;
+        }
+
+        inbound.flip();
+        int length = Math.min(inbound.remaining(), buffer.remaining());
+        int limit = inbound.limit();
+        inbound.limit(inbound.position() + length);
+        buffer.put(inbound);
+        inbound.limit(limit);
+        inbound.compact();
+        return length;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        if (closed) {
+            throw new IOException("Replay transport closed");
+        }
+
+        // Split the data into command frames. This is only called from the handler writer thread.
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), outbound.remaining());
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + length);
+            outbound.put(slice);
+            buffer.position(buffer.position() + length);
+
+            outbound.flip();
+            while (outbound.remaining() >= BlueGigaFrameDecoder.HEADER_LENGTH) {
+                int position = outbound.position();
+                int frameLength = BlueGigaFrameDecoder.HEADER_LENGTH
+                        + (((outbound.get(position) & 0x07) << 8) | (outbound.get(position + 1) & 0xFF));
+                if (outbound.remaining() < frameLength) {
+                    break;
+                }
+                byte[] command = new byte[frameLength];
+                outbound.get(command);
+                commands.add(command);
+            }
+            outbound.compact();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread;
+        synchronized (this) {
+            thread = replayThread;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeValueType;
 
@@ -24,52 +25,32 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeValueType;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
+public class BlueGigaAttributeValueEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x05;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Attribute handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int attHandle;
-
     /**
      * Attribute type
      * <p>
      * BlueGiga API type is <i>AttributeValueType</i> - Java type is {@link AttributeValueType}
      */
-    private AttributeValueType type;
+    private volatile AttributeValueType type;
 
     /**
      * Attribute value (data)
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] value;
+    private volatile int[] value;
 
     /**
      * Event constructor
      */
-    public BlueGigaAttributeValueEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaAttributeValueEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        attHandle = deserializeUInt16();
-        type = deserializeAttributeValueType();
-        value = deserializeUInt8Array();
     }
 
     /**
@@ -80,7 +61,7 @@ public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Attribute handle
@@ -90,7 +71,7 @@ public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
      * @return the current att_handle as {@link int}
      */
     public int getAttHandle() {
-        return attHandle;
+        return deserializeUInt16(5);
     }
     /**
      * Attribute type
@@ -100,6 +81,9 @@ public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
      * @return the current type as {@link AttributeValueType}
      */
     public AttributeValueType getType() {
+        if (type == null) {
+            type = deserializeAttributeValueType(7);
+        }
         return type;
     }
     /**
@@ -110,6 +94,9 @@ public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
      * @return the current value as {@link int[]}
      */
     public int[] getValue() {
+        if (value == null) {
+            value = deserializeUInt8Array(8);
+        }
         return value;
     }
 
@@ -117,12 +104,13 @@ public class BlueGigaAttributeValueEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaAttributeValueEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", attHandle=");
-        builder.append(attHandle);
+        builder.append(getAttHandle());
         builder.append(", type=");
-        builder.append(type);
+        builder.append(getType());
         builder.append(", value=");
+        int[] value = getValue();
         for (int c = 0; c < value.length; c++) {
             if (c > 0) {
                 builder.append(' ');
@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>executeWrite</b>.
@@ -22,10 +24,15 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaExecuteWriteCommand extends BlueGigaCommand {
+public class BlueGigaExecuteWriteCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x0A;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x04, 0x0A };
+
     /**
      * Connection handle
      * <p>
@@ -58,15 +65,20 @@ public class BlueGigaExecuteWriteCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
-        serializeUInt8(commit);
+        serializeUInt8(buffer, connection);
+        serializeUInt8(buffer, commit);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
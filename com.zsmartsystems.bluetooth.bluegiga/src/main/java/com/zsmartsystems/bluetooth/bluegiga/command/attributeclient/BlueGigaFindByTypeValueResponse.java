@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -23,36 +24,25 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaFindByTypeValueResponse extends BlueGigaResponse {
+public class BlueGigaFindByTypeValueResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * 0 : the operation was successful. Otherwise error occurred
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
+    private volatile BgApiResponse result;
 
     /**
      * Response constructor
      */
-    public BlueGigaFindByTypeValueResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaFindByTypeValueResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        result = deserializeBgApiResponse();
     }
 
     /**
@@ -63,7 +53,7 @@ public class BlueGigaFindByTypeValueResponse extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * 0 : the operation was successful. Otherwise error occurred
@@ -73,6 +63,9 @@ public class BlueGigaFindByTypeValueResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(5);
+        }
         return result;
     }
 
@@ -80,9 +73,9 @@ public class BlueGigaFindByTypeValueResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaFindByTypeValueResponse [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(']');
         return builder.toString();
     }
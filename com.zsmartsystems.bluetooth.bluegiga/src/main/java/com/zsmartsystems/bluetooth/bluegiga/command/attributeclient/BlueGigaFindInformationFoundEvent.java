@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import java.util.UUID;
 
@@ -24,44 +25,25 @@ import java.util.UUID;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse {
+public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x04;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Characteristics handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int chrHandle;
-
     /**
      * Characteristics type (UUID)
      * <p>
      * BlueGiga API type is <i>uuid</i> - Java type is {@link UUID}
      */
-    private UUID uuid;
+    private volatile UUID uuid;
 
     /**
      * Event constructor
      */
-    public BlueGigaFindInformationFoundEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaFindInformationFoundEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        chrHandle = deserializeUInt16();
-        uuid = deserializeUuid();
     }
 
     /**
@@ -72,7 +54,7 @@ public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Characteristics handle
@@ -82,7 +64,7 @@ public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse {
      * @return the current chr_handle as {@link int}
      */
     public int getChrHandle() {
-        return chrHandle;
+        return deserializeUInt16(5);
     }
     /**
      * Characteristics type (UUID)
@@ -92,6 +74,9 @@ public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse {
      * @return the current uuid as {@link UUID}
      */
     public UUID getUuid() {
+        if (uuid == null) {
+            uuid = deserializeUuid(7);
+        }
         return uuid;
     }
 
@@ -99,11 +84,11 @@ public class BlueGigaFindInformationFoundEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaFindInformationFoundEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", chrHandle=");
-        builder.append(chrHandle);
+        builder.append(getChrHandle());
         builder.append(", uuid=");
-        builder.append(uuid);
+        builder.append(getUuid());
         builder.append(']');
         return builder.toString();
     }
@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import java.util.UUID;
 
@@ -23,52 +24,25 @@ import java.util.UUID;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
+public class BlueGigaGroupFoundEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Starting handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int start;
-
-    /**
-     * Ending handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int end;
-
     /**
      * UUID of a service. Length is 0 if no services are found.
      * <p>
      * BlueGiga API type is <i>uuid</i> - Java type is {@link UUID}
      */
-    private UUID uuid;
+    private volatile UUID uuid;
 
     /**
      * Event constructor
      */
-    public BlueGigaGroupFoundEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGroupFoundEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        start = deserializeUInt16();
-        end = deserializeUInt16();
-        uuid = deserializeUuid();
     }
 
     /**
@@ -79,7 +53,7 @@ public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Starting handle
@@ -89,7 +63,7 @@ public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
      * @return the current start as {@link int}
      */
     public int getStart() {
-        return start;
+        return deserializeUInt16(5);
     }
     /**
      * Ending handle
@@ -99,7 +73,7 @@ public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
      * @return the current end as {@link int}
      */
     public int getEnd() {
-        return end;
+        return deserializeUInt16(7);
     }
     /**
      * UUID of a service. Length is 0 if no services are found.
@@ -109,6 +83,9 @@ public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
      * @return the current uuid as {@link UUID}
      */
     public UUID getUuid() {
+        if (uuid == null) {
+            uuid = deserializeUuid(9);
+        }
         return uuid;
     }
 
@@ -116,13 +93,13 @@ public class BlueGigaGroupFoundEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGroupFoundEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", start=");
-        builder.append(start);
+        builder.append(getStart());
         builder.append(", end=");
-        builder.append(end);
+        builder.append(getEnd());
         builder.append(", uuid=");
-        builder.append(uuid);
+        builder.append(getUuid());
         builder.append(']');
         return builder.toString();
     }
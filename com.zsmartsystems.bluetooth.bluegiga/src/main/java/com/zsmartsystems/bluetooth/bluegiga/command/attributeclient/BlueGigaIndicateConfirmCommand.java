@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>indicateConfirm</b>.
@@ -25,10 +27,15 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaIndicateConfirmCommand extends BlueGigaCommand {
+public class BlueGigaIndicateConfirmCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x07;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x04, 0x07 };
+
     /**
      * Connection handle
      * <p>
@@ -46,14 +53,19 @@ public class BlueGigaIndicateConfirmCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
+        serializeUInt8(buffer, connection);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
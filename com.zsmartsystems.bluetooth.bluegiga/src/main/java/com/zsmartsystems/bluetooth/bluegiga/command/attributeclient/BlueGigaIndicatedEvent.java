@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -23,36 +24,18 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaIndicatedEvent extends BlueGigaResponse {
+public class BlueGigaIndicatedEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Attribute handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int attrhandle;
-
     /**
      * Event constructor
      */
-    public BlueGigaIndicatedEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaIndicatedEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        attrhandle = deserializeUInt16();
     }
 
     /**
@@ -63,7 +46,7 @@ public class BlueGigaIndicatedEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Attribute handle
@@ -73,16 +56,16 @@ public class BlueGigaIndicatedEvent extends BlueGigaResponse {
      * @return the current attrhandle as {@link int}
      */
     public int getAttrhandle() {
-        return attrhandle;
+        return deserializeUInt16(5);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaIndicatedEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", attrhandle=");
-        builder.append(attrhandle);
+        builder.append(getAttrhandle());
         builder.append(']');
         return builder.toString();
     }
@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
@@ -23,45 +24,26 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaProcedureCompletedEvent extends BlueGigaResponse {
+public class BlueGigaProcedureCompletedEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x01;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * 0: The operation was successful. Otherwise: attribute protocol error code returned by
      * remote device
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
-
-    /**
-     * Characteristic handle at which the event ended
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int chrHandle;
+    private volatile BgApiResponse result;
 
     /**
      * Event constructor
      */
-    public BlueGigaProcedureCompletedEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaProcedureCompletedEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        result = deserializeBgApiResponse();
-        chrHandle = deserializeUInt16();
     }
 
     /**
@@ -72,7 +54,7 @@ public class BlueGigaProcedureCompletedEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * 0: The operation was successful. Otherwise: attribute protocol error code returned by
@@ -83,6 +65,9 @@ public class BlueGigaProcedureCompletedEvent extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(5);
+        }
         return result;
     }
     /**
@@ -93,18 +78,18 @@ public class BlueGigaProcedureCompletedEvent extends BlueGigaResponse {
      * @return the current chr_handle as {@link int}
      */
     public int getChrHandle() {
-        return chrHandle;
+        return deserializeUInt16(7);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaProcedureCompletedEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", chrHandle=");
-        builder.append(chrHandle);
+        builder.append(getChrHandle());
         builder.append(']');
         return builder.toString();
     }
@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 /**
@@ -25,10 +27,15 @@ import java.util.UUID;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaReadByGroupTypeCommand extends BlueGigaCommand {
+public class BlueGigaReadByGroupTypeCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x04;
     public static int COMMAND_METHOD = 0x01;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x04, 0x01 };
+
     /**
      * Connection handle
      * <p>
@@ -91,17 +98,22 @@ public class BlueGigaReadByGroupTypeCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
-        serializeUInt16(start);
-        serializeUInt16(end);
-        serializeUuid(uuid);
+        serializeUInt8(buffer, connection);
+        serializeUInt16(buffer, start);
+        serializeUInt16(buffer, end);
+        serializeUuid(buffer, uuid);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
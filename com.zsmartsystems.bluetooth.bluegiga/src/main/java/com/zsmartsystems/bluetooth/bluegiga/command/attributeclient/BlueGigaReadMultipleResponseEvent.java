@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributeclient;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -21,16 +22,9 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse {
+public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x04;
-    public static int COMMAND_METHOD = 0x00;
-
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
+    public static int COMMAND_METHOD = 0x06;
 
     /**
      * This array contains the concatenated data from the multiple attributes that have been read,
@@ -38,20 +32,16 @@ public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse {
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] handles;
+    private volatile int[] handles;
 
     /**
      * Event constructor
      */
-    public BlueGigaReadMultipleResponseEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaReadMultipleResponseEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        handles = deserializeUInt8Array();
     }
 
     /**
@@ -62,7 +52,7 @@ public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * This array contains the concatenated data from the multiple attributes that have been read,
@@ -73,6 +63,9 @@ public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse {
      * @return the current handles as {@link int[]}
      */
     public int[] getHandles() {
+        if (handles == null) {
+            handles = deserializeUInt8Array(5);
+        }
         return handles;
     }
 
@@ -80,8 +73,9 @@ public class BlueGigaReadMultipleResponseEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaReadMultipleResponseEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", handles=");
+        int[] handles = getHandles();
         for (int c = 0; c < handles.length; c++) {
             if (c > 0) {
                 builder.append(' ');
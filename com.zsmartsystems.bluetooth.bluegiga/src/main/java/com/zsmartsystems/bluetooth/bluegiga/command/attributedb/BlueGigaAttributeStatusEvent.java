@@ -28,32 +28,14 @@ public class BlueGigaAttributeStatusEvent extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Attribute handle
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int handle;
-
-    /**
-     * Attribute status flags. See: Attribute Status Flags
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int flags;
-
     /**
      * Event constructor
      */
-    public BlueGigaAttributeStatusEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaAttributeStatusEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt16();
-        flags = deserializeUInt8();
     }
 
     /**
@@ -64,7 +46,7 @@ public class BlueGigaAttributeStatusEvent extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt16(4);
     }
     /**
      * Attribute status flags. See: Attribute Status Flags
@@ -74,16 +56,16 @@ public class BlueGigaAttributeStatusEvent extends BlueGigaResponse {
      * @return the current flags as {@link int}
      */
     public int getFlags() {
-        return flags;
+        return deserializeUInt8(6);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaAttributeStatusEvent [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", flags=");
-        builder.append(flags);
+        builder.append(getFlags());
         builder.append(']');
         return builder.toString();
     }
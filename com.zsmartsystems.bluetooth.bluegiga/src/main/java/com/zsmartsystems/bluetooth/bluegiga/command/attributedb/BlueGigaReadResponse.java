@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -24,52 +25,32 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaReadResponse extends BlueGigaResponse {
+public class BlueGigaReadResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x01;
 
-    /**
-     * Handle of the attribute which was read
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int handle;
-
-    /**
-     * Offset read from
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int offset;
-
     /**
      * 0 : the command was successful. Otherwise an error occurred
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
+    private volatile BgApiResponse result;
 
     /**
      * Value of the attribute
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] value;
+    private volatile int[] value;
 
     /**
      * Response constructor
      */
-    public BlueGigaReadResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaReadResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt16();
-        offset = deserializeUInt16();
-        result = deserializeBgApiResponse();
-        value = deserializeUInt8Array();
     }
 
     /**
@@ -80,7 +61,7 @@ public class BlueGigaReadResponse extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt16(4);
     }
     /**
      * Offset read from
@@ -90,7 +71,7 @@ public class BlueGigaReadResponse extends BlueGigaResponse {
      * @return the current offset as {@link int}
      */
     public int getOffset() {
-        return offset;
+        return deserializeUInt16(6);
     }
     /**
      * 0 : the command was successful. Otherwise an error occurred
@@ -100,6 +81,9 @@ public class BlueGigaReadResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(8);
+        }
         return result;
     }
     /**
@@ -110,6 +94,9 @@ public class BlueGigaReadResponse extends BlueGigaResponse {
      * @return the current value as {@link int[]}
      */
     public int[] getValue() {
+        if (value == null) {
+            value = deserializeUInt8Array(10);
+        }
         return value;
     }
 
@@ -117,12 +104,13 @@ public class BlueGigaReadResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaReadResponse [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", offset=");
-        builder.append(offset);
+        builder.append(getOffset());
         builder.append(", result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", value=");
+        int[] value = getValue();
         for (int c = 0; c < value.length; c++) {
             if (c > 0) {
                 builder.append(' ');
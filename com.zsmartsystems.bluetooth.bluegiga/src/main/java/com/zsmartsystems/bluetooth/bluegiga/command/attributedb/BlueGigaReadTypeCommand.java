@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>readType</b>.
@@ -25,6 +26,11 @@ public class BlueGigaReadTypeCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x02;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x02, 0x02 };
+
     /**
      * Handle of the attribute to read
      * <p>
@@ -42,14 +48,14 @@ public class BlueGigaReadTypeCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt16(handle);
+        serializeUInt16(buffer, handle);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -22,44 +23,32 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaReadTypeResponse extends BlueGigaResponse {
+public class BlueGigaReadTypeResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Handle of the attribute which was read
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int handle;
-
     /**
      * 0 : the command was successful. Otherwise an error occurred
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
+    private volatile BgApiResponse result;
 
     /**
      * Value of the attribute type (UUID)
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] value;
+    private volatile int[] value;
 
     /**
      * Response constructor
      */
-    public BlueGigaReadTypeResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaReadTypeResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt16();
-        result = deserializeBgApiResponse();
-        value = deserializeUInt8Array();
     }
 
     /**
@@ -70,7 +59,7 @@ public class BlueGigaReadTypeResponse extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt16(4);
     }
     /**
      * 0 : the command was successful. Otherwise an error occurred
@@ -80,6 +69,9 @@ public class BlueGigaReadTypeResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(6);
+        }
         return result;
     }
     /**
@@ -90,6 +82,9 @@ public class BlueGigaReadTypeResponse extends BlueGigaResponse {
      * @return the current value as {@link int[]}
      */
     public int[] getValue() {
+        if (value == null) {
+            value = deserializeUInt8Array(8);
+        }
         return value;
     }
 
@@ -97,10 +92,11 @@ public class BlueGigaReadTypeResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaReadTypeResponse [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", value=");
+        int[] value = getValue();
         for (int c = 0; c < value.length; c++) {
             if (c > 0) {
                 builder.append(' ');
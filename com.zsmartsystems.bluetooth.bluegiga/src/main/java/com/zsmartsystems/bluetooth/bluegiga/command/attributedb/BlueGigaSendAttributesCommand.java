@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>sendAttributes</b>.
@@ -25,9 +27,14 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaSendAttributesCommand extends BlueGigaCommand {
+public class BlueGigaSendAttributesCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x02;
-    public static int COMMAND_METHOD = 0x02;
+    public static int COMMAND_METHOD = 0x05;
+
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x02, 0x05 };
 
     /**
      * Connection handle to send to. Use 0xFF to send to all connected clients which have subscribed
@@ -80,16 +87,21 @@ public class BlueGigaSendAttributesCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
-        serializeUInt16(handle);
-        serializeUInt8Array(value);
+        serializeUInt8(buffer, connection);
+        serializeUInt16(buffer, handle);
+        serializeUInt8Array(buffer, value);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
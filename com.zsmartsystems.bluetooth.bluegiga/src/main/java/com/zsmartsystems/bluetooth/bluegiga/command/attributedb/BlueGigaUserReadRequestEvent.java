@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -23,53 +24,18 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaUserReadRequestEvent extends BlueGigaResponse {
+public class BlueGigaUserReadRequestEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x01;
 
-    /**
-     * Connection ID which requested attribute
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Attribute handle requested
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int handle;
-
-    /**
-     * Attribute offset to send data from
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int offset;
-
-    /**
-     * Maximum data size to respond with. If more data is sent than indicated by this parameter, the
-     * extra bytes will be ignored.
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int maxsize;
-
     /**
      * Event constructor
      */
-    public BlueGigaUserReadRequestEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaUserReadRequestEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        handle = deserializeUInt16();
-        offset = deserializeUInt16();
-        maxsize = deserializeUInt8();
     }
 
     /**
@@ -80,7 +46,7 @@ public class BlueGigaUserReadRequestEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Attribute handle requested
@@ -90,7 +56,7 @@ public class BlueGigaUserReadRequestEvent extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt16(5);
     }
     /**
      * Attribute offset to send data from
@@ -100,7 +66,7 @@ public class BlueGigaUserReadRequestEvent extends BlueGigaResponse {
      * @return the current offset as {@link int}
      */
     public int getOffset() {
-        return offset;
+        return deserializeUInt16(7);
     }
     /**
      * Maximum data size to respond with. If more data is sent than indicated by this parameter, the
@@ -111,20 +77,20 @@ public class BlueGigaUserReadRequestEvent extends BlueGigaResponse {
      * @return the current maxsize as {@link int}
      */
     public int getMaxsize() {
-        return maxsize;
+        return deserializeUInt8(9);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaUserReadRequestEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", offset=");
-        builder.append(offset);
+        builder.append(getOffset());
         builder.append(", maxsize=");
-        builder.append(maxsize);
+        builder.append(getMaxsize());
         builder.append(']');
         return builder.toString();
     }
@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>userReadResponse</b>.
@@ -28,10 +30,15 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaUserReadResponseCommand extends BlueGigaCommand {
+public class BlueGigaUserReadResponseCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x03;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x02, 0x03 };
+
     /**
      * Connection handle to response to.
      * <p>
@@ -81,16 +88,21 @@ public class BlueGigaUserReadResponseCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
-        serializeUInt8(attError);
-        serializeUInt8Array(value);
+        serializeUInt8(buffer, connection);
+        serializeUInt8(buffer, attError);
+        serializeUInt8Array(buffer, value);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
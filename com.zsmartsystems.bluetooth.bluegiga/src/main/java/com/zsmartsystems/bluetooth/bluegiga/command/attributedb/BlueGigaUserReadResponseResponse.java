@@ -35,13 +35,11 @@ public class BlueGigaUserReadResponseResponse extends BlueGigaResponse {
     /**
      * Response constructor
      */
-    public BlueGigaUserReadResponseResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaUserReadResponseResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
@@ -34,13 +34,11 @@ public class BlueGigaUserWriteResponseResponse extends BlueGigaResponse {
     /**
      * Response constructor
      */
-    public BlueGigaUserWriteResponseResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaUserWriteResponseResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeChangeReason;
 
@@ -23,60 +24,32 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeChangeReason;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaValueEvent extends BlueGigaResponse {
+public class BlueGigaValueEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * Reason why value has changed see: enum Attribute Change Reason
      * <p>
      * BlueGiga API type is <i>AttributeChangeReason</i> - Java type is {@link AttributeChangeReason}
      */
-    private AttributeChangeReason reason;
-
-    /**
-     * Attribute handle, which was changed
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int handle;
-
-    /**
-     * Offset into attribute value where data starts
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int offset;
+    private volatile AttributeChangeReason reason;
 
     /**
      * Attribute value
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] value;
+    private volatile int[] value;
 
     /**
      * Event constructor
      */
-    public BlueGigaValueEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaValueEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        reason = deserializeAttributeChangeReason();
-        handle = deserializeUInt16();
-        offset = deserializeUInt16();
-        value = deserializeUInt8Array();
     }
 
     /**
@@ -87,7 +60,7 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Reason why value has changed see: enum Attribute Change Reason
@@ -97,6 +70,9 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
      * @return the current reason as {@link AttributeChangeReason}
      */
     public AttributeChangeReason getReason() {
+        if (reason == null) {
+            reason = deserializeAttributeChangeReason(5);
+        }
         return reason;
     }
     /**
@@ -107,7 +83,7 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt16(6);
     }
     /**
      * Offset into attribute value where data starts
@@ -117,7 +93,7 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
      * @return the current offset as {@link int}
      */
     public int getOffset() {
-        return offset;
+        return deserializeUInt16(8);
     }
     /**
      * Attribute value
@@ -127,6 +103,9 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
      * @return the current value as {@link int[]}
      */
     public int[] getValue() {
+        if (value == null) {
+            value = deserializeUInt8Array(10);
+        }
         return value;
     }
 
@@ -134,14 +113,15 @@ public class BlueGigaValueEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaValueEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", reason=");
-        builder.append(reason);
+        builder.append(getReason());
         builder.append(", handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", offset=");
-        builder.append(offset);
+        builder.append(getOffset());
         builder.append(", value=");
+        int[] value = getValue();
         for (int c = 0; c < value.length; c++) {
             if (c > 0) {
                 builder.append(' ');
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.attributedb;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>write</b>.
@@ -25,6 +26,11 @@ public class BlueGigaWriteCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x02;
     public static int COMMAND_METHOD = 0x00;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x02, 0x00 };
+
     /**
      * Handle of the attribute to write.
      * <p>
@@ -72,16 +78,16 @@ public class BlueGigaWriteCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt16(handle);
-        serializeUInt8(offset);
-        serializeUInt8Array(value);
+        serializeUInt16(buffer, handle);
+        serializeUInt8(buffer, offset);
+        serializeUInt8Array(buffer, value);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
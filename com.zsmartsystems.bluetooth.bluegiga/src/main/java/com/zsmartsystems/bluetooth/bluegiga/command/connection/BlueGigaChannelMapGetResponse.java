@@ -25,33 +25,22 @@ public class BlueGigaChannelMapGetResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x04;
 
-    /**
-     * Connection handle.
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * Current Channel Map. Each bit corresponds to one channel. 0-bit corresponds to 0 channel.
      * Size of Channel Map is 5 bytes. Channel range: 0-36
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] map;
+    private volatile int[] map;
 
     /**
      * Response constructor
      */
-    public BlueGigaChannelMapGetResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaChannelMapGetResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        map = deserializeUInt8Array();
     }
 
     /**
@@ -62,7 +51,7 @@ public class BlueGigaChannelMapGetResponse extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Current Channel Map. Each bit corresponds to one channel. 0-bit corresponds to 0 channel.
@@ -73,6 +62,9 @@ public class BlueGigaChannelMapGetResponse extends BlueGigaResponse {
      * @return the current map as {@link int[]}
      */
     public int[] getMap() {
+        if (map == null) {
+            map = deserializeUInt8Array(5);
+        }
         return map;
     }
 
@@ -80,8 +72,9 @@ public class BlueGigaChannelMapGetResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaChannelMapGetResponse [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", map=");
+        int[] map = getMap();
         for (int c = 0; c < map.length; c++) {
             if (c > 0) {
                 builder.append(' ');
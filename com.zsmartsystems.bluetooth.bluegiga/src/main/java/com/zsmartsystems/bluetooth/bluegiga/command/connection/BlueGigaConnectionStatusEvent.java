@@ -8,10 +8,11 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.ConnectionStatusFlag;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -25,85 +26,40 @@ import java.util.Set;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
+public class BlueGigaConnectionStatusEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * Connection status flags use connstatus-enumerator
      * <p>
      * BlueGiga API type is <i>ConnectionStatusFlag</i> - Java type is {@link ConnectionStatusFlag}
      * Parameter allows multiple options so implemented as a {@link Set}.
      */
-    private Set<ConnectionStatusFlag> flags = new HashSet<ConnectionStatusFlag>();
+    private volatile Set<ConnectionStatusFlag> flags;
 
     /**
      * Remote devices Bluetooth address
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      */
-    private String address;
+    private volatile BluetoothAddress address;
 
     /**
      * Remote address type see: Bluetooth Address Types--gap
      * <p>
      * BlueGiga API type is <i>BluetoothAddressType</i> - Java type is {@link BluetoothAddressType}
      */
-    private BluetoothAddressType addressType;
-
-    /**
-     * Current connection interval (units of 1.25ms)
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int connInterval;
-
-    /**
-     * Current supervision timeout (units of 10ms)
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int timeout;
-
-    /**
-     * Slave latency which tells how many connection intervals the slave may skip.
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int latency;
-
-    /**
-     * Bonding handle if the device has been bonded with. Otherwise: 0xFF
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int bonding;
+    private volatile BluetoothAddressType addressType;
 
     /**
      * Event constructor
      */
-    public BlueGigaConnectionStatusEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaConnectionStatusEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        flags = deserializeConnectionStatusFlag();
-        address = deserializeAddress();
-        addressType = deserializeBluetoothAddressType();
-        connInterval = deserializeUInt16();
-        timeout = deserializeUInt16();
-        latency = deserializeUInt16();
-        bonding = deserializeUInt8();
     }
 
     /**
@@ -114,7 +70,7 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Connection status flags use connstatus-enumerator
@@ -124,16 +80,22 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current flags as {@link Set} of {@link ConnectionStatusFlag}
      */
     public Set<ConnectionStatusFlag> getFlags() {
+        if (flags == null) {
+            flags = deserializeConnectionStatusFlag(5);
+        }
         return flags;
     }
     /**
      * Remote devices Bluetooth address
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      *
-     * @return the current address as {@link String}
+     * @return the current address as {@link BluetoothAddress}
      */
-    public String getAddress() {
+    public BluetoothAddress getAddress() {
+        if (address == null) {
+            address = deserializeAddress(6, 12);
+        }
         return address;
     }
     /**
@@ -144,6 +106,9 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current address_type as {@link BluetoothAddressType}
      */
     public BluetoothAddressType getAddressType() {
+        if (addressType == null) {
+            addressType = deserializeBluetoothAddressType(12);
+        }
         return addressType;
     }
     /**
@@ -154,7 +119,7 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current conn_interval as {@link int}
      */
     public int getConnInterval() {
-        return connInterval;
+        return deserializeUInt16(13);
     }
     /**
      * Current supervision timeout (units of 10ms)
@@ -164,7 +129,7 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current timeout as {@link int}
      */
     public int getTimeout() {
-        return timeout;
+        return deserializeUInt16(15);
     }
     /**
      * Slave latency which tells how many connection intervals the slave may skip.
@@ -174,7 +139,7 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current latency as {@link int}
      */
     public int getLatency() {
-        return latency;
+        return deserializeUInt16(17);
     }
     /**
      * Bonding handle if the device has been bonded with. Otherwise: 0xFF
@@ -184,28 +149,28 @@ public class BlueGigaConnectionStatusEvent extends BlueGigaResponse {
      * @return the current bonding as {@link int}
      */
     public int getBonding() {
-        return bonding;
+        return deserializeUInt8(19);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaConnectionStatusEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", flags=");
-        builder.append(flags);
+        builder.append(getFlags());
         builder.append(", address=");
-        builder.append(address);
+        builder.append(getAddress());
         builder.append(", addressType=");
-        builder.append(addressType);
+        builder.append(getAddressType());
         builder.append(", connInterval=");
-        builder.append(connInterval);
+        builder.append(getConnInterval());
         builder.append(", timeout=");
-        builder.append(timeout);
+        builder.append(getTimeout());
         builder.append(", latency=");
-        builder.append(latency);
+        builder.append(getLatency());
         builder.append(", bonding=");
-        builder.append(bonding);
+        builder.append(getBonding());
         builder.append(']');
         return builder.toString();
     }
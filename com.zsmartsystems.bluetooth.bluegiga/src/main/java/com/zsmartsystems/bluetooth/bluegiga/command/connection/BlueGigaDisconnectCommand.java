@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>disconnect</b>.
@@ -22,10 +24,15 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaDisconnectCommand extends BlueGigaCommand {
+public class BlueGigaDisconnectCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x00;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x03, 0x00 };
+
     /**
      * Connection handle to close.
      * <p>
@@ -43,14 +50,19 @@ public class BlueGigaDisconnectCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
+        serializeUInt8(buffer, connection);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
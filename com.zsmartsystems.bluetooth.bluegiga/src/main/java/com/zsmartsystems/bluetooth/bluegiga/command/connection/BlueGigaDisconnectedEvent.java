@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
@@ -22,36 +23,25 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaDisconnectedEvent extends BlueGigaResponse {
+public class BlueGigaDisconnectedEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x04;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * Disconnection reason code. 0 : disconnected by local user
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse reason;
+    private volatile BgApiResponse reason;
 
     /**
      * Event constructor
      */
-    public BlueGigaDisconnectedEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaDisconnectedEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        reason = deserializeBgApiResponse();
     }
 
     /**
@@ -62,7 +52,7 @@ public class BlueGigaDisconnectedEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Disconnection reason code. 0 : disconnected by local user
@@ -72,6 +62,9 @@ public class BlueGigaDisconnectedEvent extends BlueGigaResponse {
      * @return the current reason as {@link BgApiResponse}
      */
     public BgApiResponse getReason() {
+        if (reason == null) {
+            reason = deserializeBgApiResponse(5);
+        }
         return reason;
     }
 
@@ -79,9 +72,9 @@ public class BlueGigaDisconnectedEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaDisconnectedEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", reason=");
-        builder.append(reason);
+        builder.append(getReason());
         builder.append(']');
         return builder.toString();
     }
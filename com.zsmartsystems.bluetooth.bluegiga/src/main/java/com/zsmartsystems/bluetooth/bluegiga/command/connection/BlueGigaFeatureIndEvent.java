@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -21,36 +22,25 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaFeatureIndEvent extends BlueGigaResponse {
+public class BlueGigaFeatureIndEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * CtrData field from LL_FEATURE_RSP - packet
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] features;
+    private volatile int[] features;
 
     /**
      * Event constructor
      */
-    public BlueGigaFeatureIndEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaFeatureIndEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        features = deserializeUInt8Array();
     }
 
     /**
@@ -61,7 +51,7 @@ public class BlueGigaFeatureIndEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * CtrData field from LL_FEATURE_RSP - packet
@@ -71,6 +61,9 @@ public class BlueGigaFeatureIndEvent extends BlueGigaResponse {
      * @return the current features as {@link int[]}
      */
     public int[] getFeatures() {
+        if (features == null) {
+            features = deserializeUInt8Array(5);
+        }
         return features;
     }
 
@@ -78,8 +71,9 @@ public class BlueGigaFeatureIndEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaFeatureIndEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", features=");
+        int[] features = getFeatures();
         for (int c = 0; c < features.length; c++) {
             if (c > 0) {
                 builder.append(' ');
@@ -26,32 +26,14 @@ public class BlueGigaGetRssiResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x01;
 
-    /**
-     * Connection handle.
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * RSSI value of the connection in dBm. Range: -103 to -38
-     * <p>
-     * BlueGiga API type is <i>int8</i> - Java type is {@link int}
-     */
-    private int rssi;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetRssiResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetRssiResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        rssi = deserializeInt8();
     }
 
     /**
@@ -62,7 +44,7 @@ public class BlueGigaGetRssiResponse extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * RSSI value of the connection in dBm. Range: -103 to -38
@@ -72,16 +54,16 @@ public class BlueGigaGetRssiResponse extends BlueGigaResponse {
      * @return the current rssi as {@link int}
      */
     public int getRssi() {
-        return rssi;
+        return deserializeInt8(5);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetRssiResponse [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", rssi=");
-        builder.append(rssi);
+        builder.append(getRssi());
         builder.append(']');
         return builder.toString();
     }
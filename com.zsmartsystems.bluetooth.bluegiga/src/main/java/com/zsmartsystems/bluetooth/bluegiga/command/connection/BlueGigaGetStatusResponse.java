@@ -25,24 +25,14 @@ public class BlueGigaGetStatusResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x07;
 
-    /**
-     * Connection handle.
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetStatusResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetStatusResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
     }
 
     /**
@@ -53,14 +43,14 @@ public class BlueGigaGetStatusResponse extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetStatusResponse [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(']');
         return builder.toString();
     }
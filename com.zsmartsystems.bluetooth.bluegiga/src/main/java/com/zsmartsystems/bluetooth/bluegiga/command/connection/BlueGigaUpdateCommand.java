@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>update</b>.
@@ -27,10 +29,15 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaUpdateCommand extends BlueGigaCommand {
+public class BlueGigaUpdateCommand extends BlueGigaCommand implements BlueGigaConnectionCommand {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x02;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x03, 0x02 };
+
     /**
      * Connection handle.
      * <p>
@@ -108,18 +115,23 @@ public class BlueGigaUpdateCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public int getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(connection);
-        serializeUInt16(intervalMin);
-        serializeUInt16(intervalMax);
-        serializeUInt16(latency);
-        serializeUInt16(timeout);
+        serializeUInt8(buffer, connection);
+        serializeUInt16(buffer, intervalMin);
+        serializeUInt16(buffer, intervalMax);
+        serializeUInt16(buffer, latency);
+        serializeUInt16(buffer, timeout);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.connection;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -21,52 +22,18 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaVersionIndEvent extends BlueGigaResponse {
+public class BlueGigaVersionIndEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x03;
     public static int COMMAND_METHOD = 0x01;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connection;
-
-    /**
-     * Bluetooth controller specification version
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int versNr;
-
-    /**
-     * Manufacturer of the controller
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int compId;
-
-    /**
-     * Bluetooth controller version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int subVersNr;
-
     /**
      * Event constructor
      */
-    public BlueGigaVersionIndEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaVersionIndEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        connection = deserializeUInt8();
-        versNr = deserializeUInt8();
-        compId = deserializeUInt16();
-        subVersNr = deserializeUInt16();
     }
 
     /**
@@ -77,7 +44,7 @@ public class BlueGigaVersionIndEvent extends BlueGigaResponse {
      * @return the current connection as {@link int}
      */
     public int getConnection() {
-        return connection;
+        return deserializeUInt8(4);
     }
     /**
      * Bluetooth controller specification version
@@ -87,7 +54,7 @@ public class BlueGigaVersionIndEvent extends BlueGigaResponse {
      * @return the current vers_nr as {@link int}
      */
     public int getVersNr() {
-        return versNr;
+        return deserializeUInt8(5);
     }
     /**
      * Manufacturer of the controller
@@ -97,7 +64,7 @@ public class BlueGigaVersionIndEvent extends BlueGigaResponse {
      * @return the current comp_id as {@link int}
      */
     public int getCompId() {
-        return compId;
+        return deserializeUInt16(6);
     }
     /**
      * Bluetooth controller version
@@ -107,20 +74,20 @@ public class BlueGigaVersionIndEvent extends BlueGigaResponse {
      * @return the current sub_vers_nr as {@link int}
      */
     public int getSubVersNr() {
-        return subVersNr;
+        return deserializeUInt16(8);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaVersionIndEvent [connection=");
-        builder.append(connection);
+        builder.append(getConnection());
         builder.append(", versNr=");
-        builder.append(versNr);
+        builder.append(getVersNr());
         builder.append(", compId=");
-        builder.append(compId);
+        builder.append(getCompId());
         builder.append(", subVersNr=");
-        builder.append(subVersNr);
+        builder.append(getSubVersNr());
         builder.append(']');
         return builder.toString();
     }
@@ -9,7 +9,9 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>connectDirect</b>.
@@ -36,12 +38,17 @@ public class BlueGigaConnectDirectCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x03;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x03 };
+
     /**
      * Bluetooth address of the target device.
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      */
-    private String address;
+    private BluetoothAddress address;
 
     /**
      * see: Bluetooth Address Types.
@@ -92,11 +99,22 @@ public class BlueGigaConnectDirectCommand extends BlueGigaCommand {
     /**
      * Bluetooth address of the target device.
      *
-     * @param address the address to set as {@link String}
+     * @param address the address to set as {@link BluetoothAddress}
      */
-    public void setAddress(String address) {
+    public void setAddress(BluetoothAddress address) {
         this.address = address;
     }
+
+    /**
+     * Bluetooth address of the target device.
+     *
+     * @param address the address to set as a {@link String}
+     * @deprecated use {@link #setAddress(BluetoothAddress)}
+     */
+    @Deprecated
+    public void setAddress(String address) {
+        this.address = BluetoothAddress.fromString(address);
+    }
     /**
      * see: Bluetooth Address Types.
      *
@@ -150,19 +168,19 @@ public class BlueGigaConnectDirectCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeAddress(address);
-        serializeBluetoothAddressType(addrType);
-        serializeUInt16(connIntervalMin);
-        serializeUInt16(connIntervalMax);
-        serializeUInt16(timeout);
-        serializeUInt16(latency);
+        serializeAddress(buffer, address);
+        serializeBluetoothAddressType(buffer, addrType);
+        serializeUInt16(buffer, connIntervalMin);
+        serializeUInt16(buffer, connIntervalMax);
+        serializeUInt16(buffer, timeout);
+        serializeUInt16(buffer, latency);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
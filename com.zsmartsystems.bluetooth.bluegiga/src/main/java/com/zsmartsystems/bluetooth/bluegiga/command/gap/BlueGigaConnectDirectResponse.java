@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -32,7 +33,7 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaConnectDirectResponse extends BlueGigaResponse {
+public class BlueGigaConnectDirectResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x03;
 
@@ -41,27 +42,16 @@ public class BlueGigaConnectDirectResponse extends BlueGigaResponse {
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
-
-    /**
-     * Connection handle that is reserved for new connection
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connectionHandle;
+    private volatile BgApiResponse result;
 
     /**
      * Response constructor
      */
-    public BlueGigaConnectDirectResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaConnectDirectResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        result = deserializeBgApiResponse();
-        connectionHandle = deserializeUInt8();
     }
 
     /**
@@ -72,6 +62,9 @@ public class BlueGigaConnectDirectResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(4);
+        }
         return result;
     }
     /**
@@ -82,16 +75,16 @@ public class BlueGigaConnectDirectResponse extends BlueGigaResponse {
      * @return the current connection_handle as {@link int}
      */
     public int getConnectionHandle() {
-        return connectionHandle;
+        return deserializeUInt8(6);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaConnectDirectResponse [result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", connectionHandle=");
-        builder.append(connectionHandle);
+        builder.append(getConnectionHandle());
         builder.append(']');
         return builder.toString();
     }
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>connectSelective</b>.
@@ -32,6 +33,11 @@ public class BlueGigaConnectSelectiveCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x05;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x05 };
+
     /**
      * Minimum Connection Interval (in units of 1.25ms). Range: 6 - 3200 The lowest possible
      * Connection Interval is 7.50ms and the largest is 4000ms.
@@ -116,17 +122,17 @@ public class BlueGigaConnectSelectiveCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt16(connIntervalMin);
-        serializeUInt16(connIntervalMax);
-        serializeUInt16(timeout);
-        serializeUInt16(latency);
+        serializeUInt16(buffer, connIntervalMin);
+        serializeUInt16(buffer, connIntervalMax);
+        serializeUInt16(buffer, timeout);
+        serializeUInt16(buffer, latency);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -29,7 +30,7 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaConnectSelectiveResponse extends BlueGigaResponse {
+public class BlueGigaConnectSelectiveResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x05;
 
@@ -38,27 +39,16 @@ public class BlueGigaConnectSelectiveResponse extends BlueGigaResponse {
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
-
-    /**
-     * Connection handle that is reserved for new connection
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int connectionHandle;
+    private volatile BgApiResponse result;
 
     /**
      * Response constructor
      */
-    public BlueGigaConnectSelectiveResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaConnectSelectiveResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        result = deserializeBgApiResponse();
-        connectionHandle = deserializeUInt8();
     }
 
     /**
@@ -69,6 +59,9 @@ public class BlueGigaConnectSelectiveResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(4);
+        }
         return result;
     }
     /**
@@ -79,16 +72,16 @@ public class BlueGigaConnectSelectiveResponse extends BlueGigaResponse {
      * @return the current connection_handle as {@link int}
      */
     public int getConnectionHandle() {
-        return connectionHandle;
+        return deserializeUInt8(6);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaConnectSelectiveResponse [result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", connectionHandle=");
-        builder.append(connectionHandle);
+        builder.append(getConnectionHandle());
         builder.append(']');
         return builder.toString();
     }
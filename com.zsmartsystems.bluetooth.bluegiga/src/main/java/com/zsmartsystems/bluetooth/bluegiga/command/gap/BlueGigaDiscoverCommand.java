@@ -10,6 +10,7 @@ package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>discover</b>.
@@ -29,6 +30,11 @@ public class BlueGigaDiscoverCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x02;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x02 };
+
     /**
      * see:GAP Discover Mode.
      * <p>
@@ -46,14 +52,14 @@ public class BlueGigaDiscoverCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeGapDiscoverMode(mode);
+        serializeGapDiscoverMode(buffer, mode);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.ScanResponseType;
 
@@ -28,65 +29,43 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * RSSI value (dBm). Range: -103 to -38
-     * <p>
-     * BlueGiga API type is <i>int8</i> - Java type is {@link int}
-     */
-    private int rssi;
-
     /**
      * Scan response header. 0: Connectable Advertisement packet. 2: Non Connectable
      * Advertisement packet. 4: Scan response packet. 6: Discoverable advertisement packet
      * <p>
      * BlueGiga API type is <i>ScanResponseType</i> - Java type is {@link ScanResponseType}
      */
-    private ScanResponseType packetType;
+    private volatile ScanResponseType packetType;
 
     /**
      * Advertisers address
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      */
-    private String sender;
+    private volatile BluetoothAddress sender;
 
     /**
      * Advertiser address type. 1: random address. 0: public address
      * <p>
      * BlueGiga API type is <i>BluetoothAddressType</i> - Java type is {@link BluetoothAddressType}
      */
-    private BluetoothAddressType addressType;
-
-    /**
-     * Bond handle if there is known bond for this device, 0xff otherwise
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int bond;
+    private volatile BluetoothAddressType addressType;
 
     /**
      * Scan response data
      * <p>
      * BlueGiga API type is <i>uint8array</i> - Java type is {@link int[]}
      */
-    private int[] data;
+    private volatile int[] data;
 
     /**
      * Event constructor
      */
-    public BlueGigaScanResponseEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaScanResponseEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        rssi = deserializeInt8();
-        packetType = deserializeScanResponseType();
-        sender = deserializeAddress();
-        addressType = deserializeBluetoothAddressType();
-        bond = deserializeUInt8();
-        data = deserializeUInt8Array();
     }
 
     /**
@@ -97,7 +76,7 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
      * @return the current rssi as {@link int}
      */
     public int getRssi() {
-        return rssi;
+        return deserializeInt8(4);
     }
     /**
      * Scan response header. 0: Connectable Advertisement packet. 2: Non Connectable
@@ -108,16 +87,22 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
      * @return the current packet_type as {@link ScanResponseType}
      */
     public ScanResponseType getPacketType() {
+        if (packetType == null) {
+            packetType = deserializeScanResponseType(5);
+        }
         return packetType;
     }
     /**
      * Advertisers address
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      *
-     * @return the current sender as {@link String}
+     * @return the current sender as {@link BluetoothAddress}
      */
-    public String getSender() {
+    public BluetoothAddress getSender() {
+        if (sender == null) {
+            sender = deserializeAddress(6, 12);
+        }
         return sender;
     }
     /**
@@ -128,6 +113,9 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
      * @return the current address_type as {@link BluetoothAddressType}
      */
     public BluetoothAddressType getAddressType() {
+        if (addressType == null) {
+            addressType = deserializeBluetoothAddressType(12);
+        }
         return addressType;
     }
     /**
@@ -138,7 +126,7 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
      * @return the current bond as {@link int}
      */
     public int getBond() {
-        return bond;
+        return deserializeUInt8(13);
     }
     /**
      * Scan response data
@@ -148,6 +136,9 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
      * @return the current data as {@link int[]}
      */
     public int[] getData() {
+        if (data == null) {
+            data = deserializeUInt8Array(14);
+        }
         return data;
     }
 
@@ -155,16 +146,17 @@ public class BlueGigaScanResponseEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaScanResponseEvent [rssi=");
-        builder.append(rssi);
+        builder.append(getRssi());
         builder.append(", packetType=");
-        builder.append(packetType);
+        builder.append(getPacketType());
         builder.append(", sender=");
-        builder.append(sender);
+        builder.append(getSender());
         builder.append(", addressType=");
-        builder.append(addressType);
+        builder.append(getAddressType());
         builder.append(", bond=");
-        builder.append(bond);
+        builder.append(getBond());
         builder.append(", data=");
+        int[] data = getData();
         for (int c = 0; c < data.length; c++) {
             if (c > 0) {
                 builder.append(' ');
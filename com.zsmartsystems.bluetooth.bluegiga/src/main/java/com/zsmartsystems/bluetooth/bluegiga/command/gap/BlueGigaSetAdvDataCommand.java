@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setAdvData</b>.
@@ -30,6 +31,11 @@ public class BlueGigaSetAdvDataCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x09;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x09 };
+
     /**
      * Advertisement data type. 0 : sets advertisement data. 1 : sets scan response data
      * <p>
@@ -62,15 +68,15 @@ public class BlueGigaSetAdvDataCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(setScanrsp);
-        serializeUInt8Array(advData);
+        serializeUInt8(buffer, setScanrsp);
+        serializeUInt8Array(buffer, advData);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setAdvParameters</b>.
@@ -28,6 +29,11 @@ public class BlueGigaSetAdvParametersCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x08;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x08 };
+
     /**
      * Minimum advertisement interval in units of 625us. Range: 0x20 to 0x4000. Default: 0x200
      * (320ms) Explanation: 0x200 = 512 512 * 625us = 320000us = 320ms
@@ -83,16 +89,16 @@ public class BlueGigaSetAdvParametersCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt16(advIntervalMin);
-        serializeUInt16(advIntervalMax);
-        serializeUInt8(advChannels);
+        serializeUInt16(buffer, advIntervalMin);
+        serializeUInt16(buffer, advIntervalMax);
+        serializeUInt8(buffer, advChannels);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -11,6 +11,7 @@ package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapConnectableMode;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverableMode;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setMode</b>.
@@ -29,6 +30,11 @@ public class BlueGigaSetModeCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x01;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x01 };
+
     /**
      * see:GAP Discoverable Mode
      * <p>
@@ -61,15 +67,15 @@ public class BlueGigaSetModeCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeGapDiscoverableMode(discover);
-        serializeGapConnectableMode(connect);
+        serializeGapDiscoverableMode(buffer, discover);
+        serializeGapConnectableMode(buffer, connect);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
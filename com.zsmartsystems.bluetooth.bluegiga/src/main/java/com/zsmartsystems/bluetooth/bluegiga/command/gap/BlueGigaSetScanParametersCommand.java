@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.gap;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setScanParameters</b>.
@@ -25,6 +26,11 @@ public class BlueGigaSetScanParametersCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x06;
     public static int COMMAND_METHOD = 0x07;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x06, 0x07 };
+
     /**
      * Scan interval defines the interval when scanning is re-started in units of 625us. Range: 0x4
      * - 0x4000. Default: (46,875ms) 0x4B After every scan interval the scanner will change the
@@ -94,16 +100,16 @@ public class BlueGigaSetScanParametersCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt16(scanInterval);
-        serializeUInt16(scanWindow);
-        serializeBoolean(activeScanning);
+        serializeUInt16(buffer, scanInterval);
+        serializeUInt16(buffer, scanWindow);
+        serializeBoolean(buffer, activeScanning);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
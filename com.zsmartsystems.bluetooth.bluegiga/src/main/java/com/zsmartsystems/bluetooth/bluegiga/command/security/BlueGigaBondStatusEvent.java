@@ -25,48 +25,14 @@ public class BlueGigaBondStatusEvent extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x04;
 
-    /**
-     * Bonding handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int bond;
-
-    /**
-     * Encryption key size used in long-term key
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int keysize;
-
-    /**
-     * Was Man-in-the-Middle mode was used in pairing. 0: No MITM used. 1: MITM was used
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int mitm;
-
-    /**
-     * Keys stored for bonding. See: Bonding Keys
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int keys;
-
     /**
      * Event constructor
      */
-    public BlueGigaBondStatusEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaBondStatusEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        bond = deserializeUInt8();
-        keysize = deserializeUInt8();
-        mitm = deserializeUInt8();
-        keys = deserializeUInt8();
     }
 
     /**
@@ -77,7 +43,7 @@ public class BlueGigaBondStatusEvent extends BlueGigaResponse {
      * @return the current bond as {@link int}
      */
     public int getBond() {
-        return bond;
+        return deserializeUInt8(4);
     }
     /**
      * Encryption key size used in long-term key
@@ -87,7 +53,7 @@ public class BlueGigaBondStatusEvent extends BlueGigaResponse {
      * @return the current keysize as {@link int}
      */
     public int getKeysize() {
-        return keysize;
+        return deserializeUInt8(5);
     }
     /**
      * Was Man-in-the-Middle mode was used in pairing. 0: No MITM used. 1: MITM was used
@@ -97,7 +63,7 @@ public class BlueGigaBondStatusEvent extends BlueGigaResponse {
      * @return the current mitm as {@link int}
      */
     public int getMitm() {
-        return mitm;
+        return deserializeUInt8(6);
     }
     /**
      * Keys stored for bonding. See: Bonding Keys
@@ -107,20 +73,20 @@ public class BlueGigaBondStatusEvent extends BlueGigaResponse {
      * @return the current keys as {@link int}
      */
     public int getKeys() {
-        return keys;
+        return deserializeUInt8(7);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaBondStatusEvent [bond=");
-        builder.append(bond);
+        builder.append(getBond());
         builder.append(", keysize=");
-        builder.append(keysize);
+        builder.append(getKeysize());
         builder.append(", mitm=");
-        builder.append(mitm);
+        builder.append(getMitm());
         builder.append(", keys=");
-        builder.append(keys);
+        builder.append(getKeys());
         builder.append(']');
         return builder.toString();
     }
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>deleteBonding</b>.
@@ -27,6 +28,11 @@ public class BlueGigaDeleteBondingCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x02;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x05, 0x02 };
+
     /**
      * Bonding handle of a device. This handle can be obtained for example from events like: Scan
      * Response Status - If handle is 0xFF, all bondings will be deleted
@@ -46,14 +52,14 @@ public class BlueGigaDeleteBondingCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeUInt8(handle);
+        serializeUInt8(buffer, handle);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -22,36 +23,25 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaEncryptStartResponse extends BlueGigaResponse {
+public class BlueGigaEncryptStartResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x00;
 
-    /**
-     * Connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int handle;
-
     /**
      * 0 : the encryption was started successfully
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
+    private volatile BgApiResponse result;
 
     /**
      * Response constructor
      */
-    public BlueGigaEncryptStartResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaEncryptStartResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt8();
-        result = deserializeBgApiResponse();
     }
 
     /**
@@ -62,7 +52,7 @@ public class BlueGigaEncryptStartResponse extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt8(4);
     }
     /**
      * 0 : the encryption was started successfully
@@ -72,6 +62,9 @@ public class BlueGigaEncryptStartResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(5);
+        }
         return result;
     }
 
@@ -79,9 +72,9 @@ public class BlueGigaEncryptStartResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaEncryptStartResponse [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(']');
         return builder.toString();
     }
@@ -27,24 +27,14 @@ public class BlueGigaGetBondsResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x05;
 
-    /**
-     * Num of currently bonded devices
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int bonds;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetBondsResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetBondsResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        bonds = deserializeUInt8();
     }
 
     /**
@@ -55,14 +45,14 @@ public class BlueGigaGetBondsResponse extends BlueGigaResponse {
      * @return the current bonds as {@link int}
      */
     public int getBonds() {
-        return bonds;
+        return deserializeUInt8(4);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetBondsResponse [bonds=");
-        builder.append(bonds);
+        builder.append(getBonds());
         builder.append(']');
         return builder.toString();
     }
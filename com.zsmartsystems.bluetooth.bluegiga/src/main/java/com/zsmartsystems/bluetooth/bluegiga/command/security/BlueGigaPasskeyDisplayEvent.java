@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -22,36 +23,18 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaPasskeyDisplayEvent extends BlueGigaResponse {
+public class BlueGigaPasskeyDisplayEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Bluetooth connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int handle;
-
-    /**
-     * Passkey range: 000000-999999
-     * <p>
-     * BlueGiga API type is <i>uint32</i> - Java type is {@link long}
-     */
-    private long passkey;
-
     /**
      * Event constructor
      */
-    public BlueGigaPasskeyDisplayEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaPasskeyDisplayEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt8();
-        passkey = deserializeUInt32();
     }
 
     /**
@@ -62,7 +45,7 @@ public class BlueGigaPasskeyDisplayEvent extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt8(4);
     }
     /**
      * Passkey range: 000000-999999
@@ -72,16 +55,21 @@ public class BlueGigaPasskeyDisplayEvent extends BlueGigaResponse {
      * @return the current passkey as {@link long}
      */
     public long getPasskey() {
-        return passkey;
+        return deserializeUInt32(5);
+    }
+
+    @Override
+    public int getConnection() {
+        return getHandle();
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaPasskeyDisplayEvent [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(", passkey=");
-        builder.append(passkey);
+        builder.append(getPasskey());
         builder.append(']');
         return builder.toString();
     }
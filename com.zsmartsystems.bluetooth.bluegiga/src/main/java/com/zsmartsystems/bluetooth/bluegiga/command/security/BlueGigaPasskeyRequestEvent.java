@@ -8,6 +8,7 @@
  */
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaConnectionEvent;
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
 
 /**
@@ -23,28 +24,18 @@ import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaPasskeyRequestEvent extends BlueGigaResponse {
+public class BlueGigaPasskeyRequestEvent extends BlueGigaResponse implements BlueGigaConnectionEvent {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x03;
 
-    /**
-     * Bluetooth connection handle
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int handle;
-
     /**
      * Event constructor
      */
-    public BlueGigaPasskeyRequestEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaPasskeyRequestEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        handle = deserializeUInt8();
     }
 
     /**
@@ -55,14 +46,19 @@ public class BlueGigaPasskeyRequestEvent extends BlueGigaResponse {
      * @return the current handle as {@link int}
      */
     public int getHandle() {
-        return handle;
+        return deserializeUInt8(4);
+    }
+
+    @Override
+    public int getConnection() {
+        return getHandle();
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaPasskeyRequestEvent [handle=");
-        builder.append(handle);
+        builder.append(getHandle());
         builder.append(']');
         return builder.toString();
     }
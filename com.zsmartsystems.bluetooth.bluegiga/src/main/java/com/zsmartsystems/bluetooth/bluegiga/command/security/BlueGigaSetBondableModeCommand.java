@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setBondableMode</b>.
@@ -26,6 +27,11 @@ public class BlueGigaSetBondableModeCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x01;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x05, 0x01 };
+
     /**
      * Enables or disables bonding mode. 0 : the device is not bondable. 1 : the device is bondable
      * <p>
@@ -43,14 +49,14 @@ public class BlueGigaSetBondableModeCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeBoolean(bondable);
+        serializeBoolean(buffer, bondable);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
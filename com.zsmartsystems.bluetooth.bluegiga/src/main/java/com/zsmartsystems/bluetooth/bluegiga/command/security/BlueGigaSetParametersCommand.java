@@ -10,6 +10,7 @@ package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.SmpIoCapabilities;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>setParameters</b>.
@@ -26,6 +27,11 @@ public class BlueGigaSetParametersCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x03;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x05, 0x03 };
+
     /**
      * 1: Man-in-the-middle protection required. 0: No Man-in-the-middle protection. Default:
      * 0
@@ -77,16 +83,16 @@ public class BlueGigaSetParametersCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeBoolean(requireMitm);
-        serializeUInt8(minKeySize);
-        serializeSmpIoCapabilities(ioCapabilities);
+        serializeBoolean(buffer, requireMitm);
+        serializeUInt8(buffer, minKeySize);
+        serializeSmpIoCapabilities(buffer, ioCapabilities);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
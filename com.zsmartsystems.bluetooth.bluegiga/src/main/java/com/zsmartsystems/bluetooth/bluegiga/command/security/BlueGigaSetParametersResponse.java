@@ -28,13 +28,11 @@ public class BlueGigaSetParametersResponse extends BlueGigaResponse {
     /**
      * Response constructor
      */
-    public BlueGigaSetParametersResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaSetParametersResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
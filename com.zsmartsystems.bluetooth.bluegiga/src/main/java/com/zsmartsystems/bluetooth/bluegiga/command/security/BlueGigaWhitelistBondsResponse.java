@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.security;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
 import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
 
 /**
@@ -24,7 +25,7 @@ import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
  *
  * @author Chris Jackson - Initial contribution of Java code generator
  */
-public class BlueGigaWhitelistBondsResponse extends BlueGigaResponse {
+public class BlueGigaWhitelistBondsResponse extends BlueGigaResponse implements BlueGigaResultResponse {
     public static int COMMAND_CLASS = 0x05;
     public static int COMMAND_METHOD = 0x07;
 
@@ -33,27 +34,16 @@ public class BlueGigaWhitelistBondsResponse extends BlueGigaResponse {
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse result;
-
-    /**
-     * Number of whitelisted bonds
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int count;
+    private volatile BgApiResponse result;
 
     /**
      * Response constructor
      */
-    public BlueGigaWhitelistBondsResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaWhitelistBondsResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        result = deserializeBgApiResponse();
-        count = deserializeUInt8();
     }
 
     /**
@@ -64,6 +54,9 @@ public class BlueGigaWhitelistBondsResponse extends BlueGigaResponse {
      * @return the current result as {@link BgApiResponse}
      */
     public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(4);
+        }
         return result;
     }
     /**
@@ -74,16 +67,16 @@ public class BlueGigaWhitelistBondsResponse extends BlueGigaResponse {
      * @return the current count as {@link int}
      */
     public int getCount() {
-        return count;
+        return deserializeUInt8(6);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaWhitelistBondsResponse [result=");
-        builder.append(result);
+        builder.append(getResult());
         builder.append(", count=");
-        builder.append(count);
+        builder.append(getCount());
         builder.append(']');
         return builder.toString();
     }
@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.system;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>addressGet</b>.
@@ -25,13 +26,18 @@ public class BlueGigaAddressGetCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x02;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x00, 0x02 };
+
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
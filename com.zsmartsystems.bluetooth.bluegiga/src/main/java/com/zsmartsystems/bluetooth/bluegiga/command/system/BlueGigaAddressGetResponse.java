@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.system;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
 
 /**
  * Class to implement the BlueGiga command <b>addressGet</b>.
@@ -28,31 +29,31 @@ public class BlueGigaAddressGetResponse extends BlueGigaResponse {
     /**
      * Bluetooth address of the local device
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      */
-    private String address;
+    private volatile BluetoothAddress address;
 
     /**
      * Response constructor
      */
-    public BlueGigaAddressGetResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaAddressGetResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        address = deserializeAddress();
     }
 
     /**
      * Bluetooth address of the local device
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      *
-     * @return the current address as {@link String}
+     * @return the current address as {@link BluetoothAddress}
      */
-    public String getAddress() {
+    public BluetoothAddress getAddress() {
+        if (address == null) {
+            address = deserializeAddress(4);
+        }
         return address;
     }
 
@@ -60,7 +61,7 @@ public class BlueGigaAddressGetResponse extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaAddressGetResponse [address=");
-        builder.append(address);
+        builder.append(getAddress());
         builder.append(']');
         return builder.toString();
     }
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.command.system;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
+
+/**
+ * Class to implement the BlueGiga command <b>endpointSetWatermarks</b>.
+ * <p>
+ * Set watermarks on both input and output side of an endpoint. The watermark events are
+ * generated when the buffers reach the watermark positions.
+ * <p>
+ * This class provides methods for processing BlueGiga API commands.
+ * <p>
+ * Note that this code is autogenerated. Manual changes may be overwritten.
+ *
+ * @author Chris Jackson - Initial contribution of Java code generator
+ */
+public class BlueGigaEndpointSetWatermarksCommand extends BlueGigaCommand {
+    public static int COMMAND_CLASS = 0x00;
+    public static int COMMAND_METHOD = 0x0E;
+
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x00, 0x0E };
+
+    /**
+     * Endpoint index to set watermarks
+     * <p>
+     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
+     */
+    private int endpoint;
+
+    /**
+     * Watermark position on receive buffer. 0xFF : watermark is not modified. 0x00 : disables
+     * watermark. 1-63 : sets watermark position.
+     * <p>
+     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
+     */
+    private int rx;
+
+    /**
+     * Watermark position on transmit buffer. 0xFF : watermark is not modified. 0x00 : disables
+     * watermark. 1-63 : sets watermark position.
+     * <p>
+     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
+     */
+    private int tx;
+
+    /**
+     * Endpoint index to set watermarks
+     *
+     * @param endpoint the endpoint to set as {@link int}
+     */
+    public void setEndpoint(int endpoint) {
+        this.endpoint = endpoint;
+    }
+    /**
+     * Watermark position on receive buffer. 0xFF : watermark is not modified. 0x00 : disables
+     * watermark. 1-63 : sets watermark position.
+     *
+     * @param rx the rx to set as {@link int}
+     */
+    public void setRx(int rx) {
+        this.rx = rx;
+    }
+    /**
+     * Watermark position on transmit buffer. 0xFF : watermark is not modified. 0x00 : disables
+     * watermark. 1-63 : sets watermark position.
+     *
+     * @param tx the tx to set as {@link int}
+     */
+    public void setTx(int tx) {
+        this.tx = tx;
+    }
+
+    @Override
+    public void serializeFrame(ByteBuffer buffer) {
+        // Serialize the header
+        int frameStart = serializeHeader(buffer, HEADER);
+
+        // Serialize the fields
+        serializeUInt8(buffer, endpoint);
+        serializeUInt8(buffer, rx);
+        serializeUInt8(buffer, tx);
+
+        completeFrame(buffer, frameStart);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("BlueGigaEndpointSetWatermarksCommand [endpoint=");
+        builder.append(endpoint);
+        builder.append(", rx=");
+        builder.append(rx);
+        builder.append(", tx=");
+        builder.append(tx);
+        builder.append(']');
+        return builder.toString();
+    }
+}
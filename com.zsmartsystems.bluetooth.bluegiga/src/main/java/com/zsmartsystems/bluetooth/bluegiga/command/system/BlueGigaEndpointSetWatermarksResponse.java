@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.command.system;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResultResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+
+/**
+ * Class to implement the BlueGiga command <b>endpointSetWatermarks</b>.
+ * <p>
+ * Set watermarks on both input and output side of an endpoint. The watermark events are
+ * generated when the buffers reach the watermark positions.
+ * <p>
+ * This class provides methods for processing BlueGiga API commands.
+ * <p>
+ * Note that this code is autogenerated. Manual changes may be overwritten.
+ *
+ * @author Chris Jackson - Initial contribution of Java code generator
+ */
+public class BlueGigaEndpointSetWatermarksResponse extends BlueGigaResponse implements BlueGigaResultResponse {
+    public static int COMMAND_CLASS = 0x00;
+    public static int COMMAND_METHOD = 0x0E;
+
+    /**
+     * 0 : the command was successful. Otherwise an error occurred
+     * <p>
+     * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
+     */
+    private volatile BgApiResponse result;
+
+    /**
+     * Response constructor
+     */
+    public BlueGigaEndpointSetWatermarksResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
+        super(inputBuffer);
+
+        event = (inputBuffer[0] & 0x80) != 0;
+    }
+
+    /**
+     * 0 : the command was successful. Otherwise an error occurred
+     * <p>
+     * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
+     *
+     * @return the current result as {@link BgApiResponse}
+     */
+    public BgApiResponse getResult() {
+        if (result == null) {
+            result = deserializeBgApiResponse(4);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("BlueGigaEndpointSetWatermarksResponse [result=");
+        builder.append(getResult());
+        builder.append(']');
+        return builder.toString();
+    }
+}
@@ -28,32 +28,14 @@ public class BlueGigaEndpointWatermarkRxEvent extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x02;
 
-    /**
-     * Endpoint index where data was received
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int endpoint;
-
-    /**
-     * Space available
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int data;
-
     /**
      * Event constructor
      */
-    public BlueGigaEndpointWatermarkRxEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaEndpointWatermarkRxEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        endpoint = deserializeUInt8();
-        data = deserializeUInt8();
     }
 
     /**
@@ -64,7 +46,7 @@ public class BlueGigaEndpointWatermarkRxEvent extends BlueGigaResponse {
      * @return the current endpoint as {@link int}
      */
     public int getEndpoint() {
-        return endpoint;
+        return deserializeUInt8(4);
     }
     /**
      * Space available
@@ -74,16 +56,16 @@ public class BlueGigaEndpointWatermarkRxEvent extends BlueGigaResponse {
      * @return the current data as {@link int}
      */
     public int getData() {
-        return data;
+        return deserializeUInt8(5);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaEndpointWatermarkRxEvent [endpoint=");
-        builder.append(endpoint);
+        builder.append(getEndpoint());
         builder.append(", data=");
-        builder.append(data);
+        builder.append(getData());
         builder.append(']');
         return builder.toString();
     }
@@ -25,24 +25,14 @@ public class BlueGigaGetConnectionsResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x06;
 
-    /**
-     * Max supported connections
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int maxconn;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetConnectionsResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetConnectionsResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        maxconn = deserializeUInt8();
     }
 
     /**
@@ -53,14 +43,14 @@ public class BlueGigaGetConnectionsResponse extends BlueGigaResponse {
      * @return the current maxconn as {@link int}
      */
     public int getMaxconn() {
-        return maxconn;
+        return deserializeUInt8(4);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetConnectionsResponse [maxconn=");
-        builder.append(maxconn);
+        builder.append(getMaxconn());
         builder.append(']');
         return builder.toString();
     }
@@ -25,56 +25,14 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x05;
 
-    /**
-     * Number of transmitted packets
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int txok;
-
-    /**
-     * Number of retransmitted packets
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int txretry;
-
-    /**
-     * Number of received packets where CRC was OK
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int rxok;
-
-    /**
-     * Number of received packets with CRC error
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int rxfail;
-
-    /**
-     * Number of available packet buffers
-     * <p>
-     * BlueGiga API type is <i>uint8</i> - Java type is {@link int}
-     */
-    private int mbuf;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetCountersResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetCountersResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        txok = deserializeUInt8();
-        txretry = deserializeUInt8();
-        rxok = deserializeUInt8();
-        rxfail = deserializeUInt8();
-        mbuf = deserializeUInt8();
     }
 
     /**
@@ -85,7 +43,7 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
      * @return the current txok as {@link int}
      */
     public int getTxok() {
-        return txok;
+        return deserializeUInt8(4);
     }
     /**
      * Number of retransmitted packets
@@ -95,7 +53,7 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
      * @return the current txretry as {@link int}
      */
     public int getTxretry() {
-        return txretry;
+        return deserializeUInt8(5);
     }
     /**
      * Number of received packets where CRC was OK
@@ -105,7 +63,7 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
      * @return the current rxok as {@link int}
      */
     public int getRxok() {
-        return rxok;
+        return deserializeUInt8(6);
     }
     /**
      * Number of received packets with CRC error
@@ -115,7 +73,7 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
      * @return the current rxfail as {@link int}
      */
     public int getRxfail() {
-        return rxfail;
+        return deserializeUInt8(7);
     }
     /**
      * Number of available packet buffers
@@ -125,22 +83,22 @@ public class BlueGigaGetCountersResponse extends BlueGigaResponse {
      * @return the current mbuf as {@link int}
      */
     public int getMbuf() {
-        return mbuf;
+        return deserializeUInt8(8);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetCountersResponse [txok=");
-        builder.append(txok);
+        builder.append(getTxok());
         builder.append(", txretry=");
-        builder.append(txretry);
+        builder.append(getTxretry());
         builder.append(", rxok=");
-        builder.append(rxok);
+        builder.append(getRxok());
         builder.append(", rxfail=");
-        builder.append(rxfail);
+        builder.append(getRxfail());
         builder.append(", mbuf=");
-        builder.append(mbuf);
+        builder.append(getMbuf());
         builder.append(']');
         return builder.toString();
     }
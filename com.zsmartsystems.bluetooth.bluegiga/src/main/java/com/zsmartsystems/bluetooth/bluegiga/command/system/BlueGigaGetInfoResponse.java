@@ -25,72 +25,14 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x08;
 
-    /**
-     * Major software version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int major;
-
-    /**
-     * Minor software version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int minor;
-
-    /**
-     * Patch ID
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int patch;
-
-    /**
-     * Build version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int build;
-
-    /**
-     * Link layer version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int llVersion;
-
-    /**
-     * Protocol version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int protocolVersion;
-
-    /**
-     * Hardware version
-     * <p>
-     * BlueGiga API type is <i>uint16</i> - Java type is {@link int}
-     */
-    private int hardware;
-
     /**
      * Response constructor
      */
-    public BlueGigaGetInfoResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaGetInfoResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        major = deserializeUInt16();
-        minor = deserializeUInt16();
-        patch = deserializeUInt16();
-        build = deserializeUInt16();
-        llVersion = deserializeUInt16();
-        protocolVersion = deserializeUInt16();
-        hardware = deserializeUInt16();
     }
 
     /**
@@ -101,7 +43,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current major as {@link int}
      */
     public int getMajor() {
-        return major;
+        return deserializeUInt16(4);
     }
     /**
      * Minor software version
@@ -111,7 +53,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current minor as {@link int}
      */
     public int getMinor() {
-        return minor;
+        return deserializeUInt16(6);
     }
     /**
      * Patch ID
@@ -121,7 +63,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current patch as {@link int}
      */
     public int getPatch() {
-        return patch;
+        return deserializeUInt16(8);
     }
     /**
      * Build version
@@ -131,7 +73,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current build as {@link int}
      */
     public int getBuild() {
-        return build;
+        return deserializeUInt16(10);
     }
     /**
      * Link layer version
@@ -141,7 +83,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current ll_version as {@link int}
      */
     public int getLlVersion() {
-        return llVersion;
+        return deserializeUInt16(12);
     }
     /**
      * Protocol version
@@ -151,7 +93,7 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current protocol_version as {@link int}
      */
     public int getProtocolVersion() {
-        return protocolVersion;
+        return deserializeUInt16(14);
     }
     /**
      * Hardware version
@@ -161,26 +103,26 @@ public class BlueGigaGetInfoResponse extends BlueGigaResponse {
      * @return the current hardware as {@link int}
      */
     public int getHardware() {
-        return hardware;
+        return deserializeUInt16(16);
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaGetInfoResponse [major=");
-        builder.append(major);
+        builder.append(getMajor());
         builder.append(", minor=");
-        builder.append(minor);
+        builder.append(getMinor());
         builder.append(", patch=");
-        builder.append(patch);
+        builder.append(getPatch());
         builder.append(", build=");
-        builder.append(build);
+        builder.append(getBuild());
         builder.append(", llVersion=");
-        builder.append(llVersion);
+        builder.append(getLlVersion());
         builder.append(", protocolVersion=");
-        builder.append(protocolVersion);
+        builder.append(getProtocolVersion());
         builder.append(", hardware=");
-        builder.append(hardware);
+        builder.append(getHardware());
         builder.append(']');
         return builder.toString();
     }
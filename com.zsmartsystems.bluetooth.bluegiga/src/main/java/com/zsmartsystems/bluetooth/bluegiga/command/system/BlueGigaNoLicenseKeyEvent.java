@@ -30,13 +30,11 @@ public class BlueGigaNoLicenseKeyEvent extends BlueGigaResponse {
     /**
      * Event constructor
      */
-    public BlueGigaNoLicenseKeyEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaNoLicenseKeyEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
@@ -34,19 +34,16 @@ public class BlueGigaProtocolErrorEvent extends BlueGigaResponse {
      * <p>
      * BlueGiga API type is <i>BgApiResponse</i> - Java type is {@link BgApiResponse}
      */
-    private BgApiResponse reason;
+    private volatile BgApiResponse reason;
 
     /**
      * Event constructor
      */
-    public BlueGigaProtocolErrorEvent(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaProtocolErrorEvent(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
-        reason = deserializeBgApiResponse();
     }
 
     /**
@@ -57,6 +54,9 @@ public class BlueGigaProtocolErrorEvent extends BlueGigaResponse {
      * @return the current reason as {@link BgApiResponse}
      */
     public BgApiResponse getReason() {
+        if (reason == null) {
+            reason = deserializeBgApiResponse(4);
+        }
         return reason;
     }
 
@@ -64,7 +64,7 @@ public class BlueGigaProtocolErrorEvent extends BlueGigaResponse {
     public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("BlueGigaProtocolErrorEvent [reason=");
-        builder.append(reason);
+        builder.append(getReason());
         builder.append(']');
         return builder.toString();
     }
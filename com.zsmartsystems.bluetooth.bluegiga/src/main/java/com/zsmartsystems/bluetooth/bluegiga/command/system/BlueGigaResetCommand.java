@@ -9,6 +9,7 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.system;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>reset</b>.
@@ -25,6 +26,11 @@ public class BlueGigaResetCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x00;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x00, 0x00 };
+
     /**
      * Selects the boot mode. 0 : boot to main program. 1 : boot to DFU
      * <p>
@@ -42,14 +48,14 @@ public class BlueGigaResetCommand extends BlueGigaCommand {
     }
 
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeBoolean(bootInDfu);
+        serializeBoolean(buffer, bootInDfu);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
@@ -28,13 +28,11 @@ public class BlueGigaResetResponse extends BlueGigaResponse {
     /**
      * Response constructor
      */
-    public BlueGigaResetResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaResetResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
@@ -9,6 +9,8 @@
 package com.zsmartsystems.bluetooth.bluegiga.command.system;
 
 import com.zsmartsystems.bluetooth.bluegiga.BlueGigaCommand;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
+import java.nio.ByteBuffer;
 
 /**
  * Class to implement the BlueGiga command <b>whitelistAppend</b>.
@@ -29,33 +31,50 @@ public class BlueGigaWhitelistAppendCommand extends BlueGigaCommand {
     public static int COMMAND_CLASS = 0x00;
     public static int COMMAND_METHOD = 0x0A;
 
+    /**
+     * The constant bytes of the frame header. The payload length is filled in as the frame is serialized.
+     */
+    private static final byte[] HEADER = { 0x00, 0x00, 0x00, 0x0A };
+
     /**
      * Bluetooth device address to add to the running white list. Maximum of 8 can be stored before
      * you must clear or remove entries.
      * <p>
-     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link String}
+     * BlueGiga API type is <i>bd_addr</i> - Java type is {@link BluetoothAddress}
      */
-    private String address;
+    private BluetoothAddress address;
 
     /**
      * Bluetooth device address to add to the running white list. Maximum of 8 can be stored before
      * you must clear or remove entries.
      *
-     * @param address the address to set as {@link String}
+     * @param address the address to set as {@link BluetoothAddress}
      */
-    public void setAddress(String address) {
+    public void setAddress(BluetoothAddress address) {
         this.address = address;
     }
 
+    /**
+     * Bluetooth device address to add to the running white list. Maximum of 8 can be stored before
+     * you must clear or remove entries.
+     *
+     * @param address the address to set as a {@link String}
+     * @deprecated use {@link #setAddress(BluetoothAddress)}
+     */
+    @Deprecated
+    public void setAddress(String address) {
+        this.address = BluetoothAddress.fromString(address);
+    }
+
     @Override
-    public int[] serialize() {
+    public void serializeFrame(ByteBuffer buffer) {
         // Serialize the header
-        serializeHeader(COMMAND_CLASS, COMMAND_METHOD);
+        int frameStart = serializeHeader(buffer, HEADER);
 
         // Serialize the fields
-        serializeAddress(address);
+        serializeAddress(buffer, address);
 
-        return getPayload();
+        completeFrame(buffer, frameStart);
     }
 
     @Override
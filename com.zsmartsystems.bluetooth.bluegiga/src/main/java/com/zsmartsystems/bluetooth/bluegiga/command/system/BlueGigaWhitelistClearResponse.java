@@ -29,13 +29,11 @@ public class BlueGigaWhitelistClearResponse extends BlueGigaResponse {
     /**
      * Response constructor
      */
-    public BlueGigaWhitelistClearResponse(int[] inputBuffer) {
-        // Super creates deserializer and reads header fields
+    public BlueGigaWhitelistClearResponse(byte[] inputBuffer) {
+        // Super holds the frame - fields are deserialized when they are first requested
         super(inputBuffer);
 
         event = (inputBuffer[0] & 0x80) != 0;
-
-        // Deserialize the fields
     }
 
 
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link BlueGigaTransport} using a {@link SelectableChannel}. The channel is served by a
+ * {@link BlueGigaSelectorPool}, so no thread is held per dongle while waiting for data.
+ * <p>
+ * Note that the JDK can't select on a {@link java.nio.channels.FileChannel}, so a serial device that is only available
+ * as a file or pty can't be used directly. Such devices need a serial library that provides a selectable channel, a
+ * bridge to a socket (eg ser2net or socat with {@link BlueGigaTcpTransport}), or the {@link BlueGigaStreamTransport}.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaChannelTransport implements BlueGigaTransport {
+    /**
+     * Maximum time in milliseconds to wait for the channel to become writable before trying the write again
+     */
+    private static final long WRITE_WAIT = 100;
+
+    private final SelectableChannel selectable;
+    private final ReadableByteChannel source;
+    private final WritableByteChannel sink;
+    private final BlueGigaSelectorPool pool;
+
+    /**
+     * Selector used to wait until a non-blocking sink is writable. Only used by the writing thread.
+     */
+    private Selector writeSelector;
+
+    /**
+     * Creates a transport that reads and writes the same channel
+     *
+     * @param channel the channel
+     * @param pool the {@link BlueGigaSelectorPool} to serve the channel
+     */
+    public <C extends SelectableChannel & ReadableByteChannel & WritableByteChannel> BlueGigaChannelTransport(
+            C channel, BlueGigaSelectorPool pool) {
+        this(channel, channel, pool);
+    }
+
+    /**
+     * Creates a transport that reads and writes separate channels, such as the two ends of a
+     * {@link java.nio.channels.Pipe}
+     *
+     * @param source the channel to read
+     * @param sink the channel to write
+     * @param pool the {@link BlueGigaSelectorPool} to serve the source channel
+     */
+    public <R extends SelectableChannel & ReadableByteChannel> BlueGigaChannelTransport(R source,
+            WritableByteChannel sink, BlueGigaSelectorPool pool) {
+        this.selectable = source;
+        this.source = source;
+        this.sink = sink;
+        this.pool = pool;
+    }
+
+    @Override
+    public void start(final BlueGigaTransportListener listener) throws IOException {
+        selectable.configureBlocking(false);
+        pool.register(selectable, new Runnable() {
+            @Override
+            public void run() {
+                listener.transportReady();
+            }
+        });
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        return source.read(buffer);
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (sink.write(buffer) == 0) {
+                waitWritable();
+            }
+        }
+    }
+
+    private void waitWritable() throws IOException {
+        if (!(sink instanceof SelectableChannel)) {
+            return;
+        }
+        if (writeSelector == null) {
+            writeSelector = Selector.open();
+            ((SelectableChannel) sink).register(writeSelector, SelectionKey.OP_WRITE);
+        }
+        writeSelector.select(WRITE_WAIT);
+        writeSelector.selectedKeys().clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            source.close();
+            sink.close();
+        } finally {
+            if (writeSelector != null) {
+                writeSelector.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in memory {@link BlueGigaTransport} for tests and benchmarks. Transports are created in connected pairs - data
+ * written to one end is read from its peer.
+ * <p>
+ * Each end delivers its notifications from its own thread, so a listener may write to the peer from its
+ * notification without waiting for itself.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaLoopbackTransport implements BlueGigaTransport {
+    /**
+     * Default size of the receive buffer of each end
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /**
+     * Data written by the peer and waiting to be read. This is left in write mode, and guarded by this transport.
+     */
+    private final ByteBuffer inbound;
+
+    private final BlueGigaLoopbackTransport peer;
+
+    private Thread notifyThread = null;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates one end of a loopback pair with the default buffer size. The other end is available from
+     * {@link #getPeer()}.
+     */
+    public BlueGigaLoopbackTransport() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates one end of a loopback pair. The other end is available from {@link #getPeer()}.
+     *
+     * @param bufferSize the size of the receive buffer of each end
+     */
+    public BlueGigaLoopbackTransport(int bufferSize) {
+        inbound = ByteBuffer.allocate(bufferSize);
+        peer = new BlueGigaLoopbackTransport(this, bufferSize);
+    }
+
+    private BlueGigaLoopbackTransport(BlueGigaLoopbackTransport peer, int bufferSize) {
+        inbound = ByteBuffer.allocate(bufferSize);
+        this.peer = peer;
+    }
+
+    /**
+     * Gets the other end of the loopback pair
+     *
+     * @return the peer {@link BlueGigaLoopbackTransport}
+     */
+    public BlueGigaLoopbackTransport getPeer() {
+        return peer;
+    }
+
+    @Override
+    public synchronized void start(final BlueGigaTransportListener listener) {
+        if (notifyThread != null) {
+            throw new IllegalStateException("Loopback transport already started");
+        }
+        notifyThread = new Thread("BlueGigaLoopback") {
+            @Override
+            public void run() {
+                while (!closed) {
+                    if (isReadable()) {
+                        listener.transportReady();
+                        if (isEndOfStream()) {
+                            break;
+                        }
+                    } else {
+                        // Woken by the peer when data is written, or by close
+                        LockSupport.park(this);
+                    }
+                }
+            }
+        };
+        notifyThread.setDaemon(true);
+        notifyThread.start();
+    }
+
+    private synchronized boolean isReadable() {
+        return inbound.position() != 0 || peer.closed;
+    }
+
+    private synchronized boolean isEndOfStream() {
+        return inbound.position() == 0 && peer.closed;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer buffer) {
+        if (inbound.position() == 0) {
+            return closed || peer.closed ? -1 : 0;
+        }
+
+        inbound.flip();
+        int length = Math.min(inbound.remaining(), buffer.remaining());
+        int limit = inbound.limit();
+        inbound.limit(inbound.position() + length);
+        buffer.put(inbound);
+        inbound.limit(limit);
+        inbound.compact();
+
+        // Wake the peer if it's waiting for space
+        notifyAll();
+        return length;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            peer.receive(buffer);
+            peer.wake();
+        }
+    }
+
+    /**
+     * Copies data from the peer into the receive buffer, waiting for space if the buffer is full
+     */
+    private synchronized void receive(ByteBuffer buffer) throws IOException {
+        while (!inbound.hasRemaining()) {
+            if (closed || peer.closed) {
+                throw new IOException("Loopback transport closed");
+            }
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted writing to loopback transport");
+            }
+        }
+        if (closed || peer.closed) {
+            throw new IOException("Loopback transport closed");
+        }
+
+        int length = Math.min(inbound.remaining(), buffer.remaining());
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(slice.position() + length);
+        inbound.put(slice);
+        buffer.position(buffer.position() + length);
+    }
+
+    private synchronized void wake() {
+        if (notifyThread != null) {
+            LockSupport.unpark(notifyThread);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        wake();
+        // The peer sees the end of the stream
+        peer.wake();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small pool of selector threads shared by the channel based transports. Each channel is served by a single
+ * selector thread, so the notifications for a channel are never concurrent, and a few threads can serve many
+ * dongles.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaSelectorPool {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaSelectorPool.class);
+
+    /**
+     * Number of threads in the default pool
+     */
+    public static final int DEFAULT_THREADS = 2;
+
+    private static BlueGigaSelectorPool defaultPool;
+
+    private final SelectorThread[] threads;
+    private final AtomicInteger nextThread = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    private class SelectorThread extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> registrations = new ConcurrentLinkedQueue<Runnable>();
+
+        SelectorThread(String name) throws IOException {
+            super(name);
+            selector = Selector.open();
+            setDaemon(true);
+        }
+
+        void register(final SelectableChannel channel, final Runnable readyTask) {
+            registrations.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        channel.register(selector, SelectionKey.OP_READ, readyTask);
+                    } catch (ClosedChannelException e) {
+                        logger.debug("BlueGiga channel closed before it was registered");
+                    }
+                }
+            });
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            logger.trace("BlueGiga selector thread started");
+            while (!closed) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    logger.error("BlueGiga selector error: ", e);
+                    break;
+                }
+
+                Runnable registration;
+                while ((registration = registrations.poll()) != null) {
+                    registration.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    try {
+                        ((Runnable) key.attachment()).run();
+                    } catch (Exception e) {
+                        logger.warn("Execution error of a BlueGiga transport listener.", e);
+                    }
+                }
+            }
+
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.debug("BlueGiga selector close error: ", e);
+            }
+            logger.trace("BlueGiga selector thread exited");
+        }
+    }
+
+    /**
+     * Creates a selector pool and starts its threads
+     *
+     * @param threadCount the number of selector threads
+     * @throws IOException if a selector can't be opened
+     */
+    public BlueGigaSelectorPool(int threadCount) throws IOException {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Selector pool needs at least 1 thread");
+        }
+        threads = new SelectorThread[threadCount];
+        for (int cnt = 0; cnt < threadCount; cnt++) {
+            threads[cnt] = new SelectorThread("BlueGigaSelector-" + cnt);
+            threads[cnt].start();
+        }
+    }
+
+    /**
+     * Gets the pool shared by all transports that aren't given their own pool
+     *
+     * @return the default {@link BlueGigaSelectorPool}
+     * @throws IOException if the pool can't be created
+     */
+    public static synchronized BlueGigaSelectorPool getDefault() throws IOException {
+        if (defaultPool == null) {
+            defaultPool = new BlueGigaSelectorPool(DEFAULT_THREADS);
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Registers a channel for read notifications. The channel must be in non-blocking mode. The registration is
+     * removed when the channel is closed.
+     *
+     * @param channel the {@link SelectableChannel} to register
+     * @param readyTask the task to run on the selector thread when the channel is readable
+     */
+    public void register(SelectableChannel channel, Runnable readyTask) {
+        if (closed) {
+            throw new IllegalStateException("BlueGiga selector pool is closed");
+        }
+        threads[Math.abs(nextThread.getAndIncrement() % threads.length)].register(channel, readyTask);
+    }
+
+    /**
+     * Stops the selector threads. Registered channels are no longer notified.
+     */
+    public void close() {
+        closed = true;
+        for (SelectorThread thread : threads) {
+            thread.selector.wakeup();
+        }
+    }
+}
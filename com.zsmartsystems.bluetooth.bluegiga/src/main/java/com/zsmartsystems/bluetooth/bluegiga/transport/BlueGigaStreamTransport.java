@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BlueGigaTransport} using a blocking {@link InputStream} and {@link OutputStream}, such as those provided
+ * by serial port libraries. A thread is used for each transport to wait for data.
+ * <p>
+ * The streams belong to the caller, and are not closed when the transport is closed.
+ * <p>
+ * Some serial port libraries return -1 from a read that times out, so by default the end of the input stream is
+ * ignored and the transport carries on reading. Streams that really end, such as sockets, can be created with
+ * {@link #BlueGigaStreamTransport(InputStream, OutputStream, boolean)} so the end of the stream closes the handler.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaStreamTransport implements BlueGigaTransport {
+    /**
+     * The logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaStreamTransport.class);
+
+    /**
+     * Time in milliseconds to wait before reading again after a read fails, or returns -1 when the end of the stream is
+     * ignored, so a stream that keeps failing doesn't keep the reader thread spinning
+     */
+    private static final int READ_RETRY_DELAY = 100;
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final boolean closeOnEndOfStream;
+
+    private Thread readerThread = null;
+    private volatile boolean closed = false;
+
+    /**
+     * The byte received by the blocking read in the reader thread, or -1 if it has been consumed. Only used by the
+     * reader thread.
+     */
+    private int firstByte = -1;
+    private boolean endOfStream = false;
+
+    /**
+     * Creates a transport for a pair of streams
+     *
+     * @param inputStream the {@link InputStream} to read
+     * @param outputStream the {@link OutputStream} to write
+     */
+    public BlueGigaStreamTransport(InputStream inputStream, OutputStream outputStream) {
+        this(inputStream, outputStream, false);
+    }
+
+    /**
+     * Creates a transport for a pair of streams
+     *
+     * @param inputStream the {@link InputStream} to read
+     * @param outputStream the {@link OutputStream} to write
+     * @param closeOnEndOfStream true if a read returning -1 is the end of the stream and closes the handler, or false
+     *            if it is ignored as a read timeout
+     */
+    public BlueGigaStreamTransport(InputStream inputStream, OutputStream outputStream, boolean closeOnEndOfStream) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.closeOnEndOfStream = closeOnEndOfStream;
+    }
+
+    @Override
+    public void start(final BlueGigaTransportListener listener) {
+        readerThread = new Thread("BlueGigaBLEHandler") {
+            @Override
+            public void run() {
+                logger.trace("BlueGiga BLE thread started");
+                while (!closed && !endOfStream) {
+                    try {
+                        // Block until data arrives - the listener will then read everything available
+                        int val = inputStream.read();
+                        if (val == -1) {
+                            if (!closeOnEndOfStream) {
+                                // Read timeout
+                                waitToRetry();
+                                continue;
+                            }
+                            endOfStream = true;
+                        } else {
+                            firstByte = val;
+                        }
+                        listener.transportReady();
+                    } catch (IOException e) {
+                        if (!closed) {
+                            listener.transportError(e);
+                            waitToRetry();
+                        }
+                    }
+                }
+                logger.debug("BlueGiga BLE exited.");
+            }
+        };
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    private void waitToRetry() {
+        try {
+            Thread.sleep(READ_RETRY_DELAY);
+        } catch (InterruptedException e) {
+            // Interrupted by close
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        int count = 0;
+        if (firstByte != -1 && buffer.hasRemaining()) {
+            buffer.put((byte) firstByte);
+            firstByte = -1;
+            count++;
+        }
+        if (endOfStream) {
+            return count == 0 ? -1 : count;
+        }
+
+        int available = Math.min(inputStream.available(), buffer.remaining());
+        if (available <= 0) {
+            return count;
+        }
+
+        if (buffer.hasArray()) {
+            int length = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), available);
+            if (length > 0) {
+                buffer.position(buffer.position() + length);
+                count += length;
+            }
+        } else {
+            byte[] data = new byte[available];
+            int length = inputStream.read(data);
+            if (length > 0) {
+                buffer.put(data, 0, length);
+                count += length;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            outputStream.write(data);
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+    }
+}
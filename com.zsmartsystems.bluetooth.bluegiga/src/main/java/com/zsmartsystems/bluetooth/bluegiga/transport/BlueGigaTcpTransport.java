@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link BlueGigaTransport} for a dongle that is shared over TCP in raw mode, eg with ser2net on a gateway.
+ *
+ * @author Chris Jackson
+ *
+ */
+public class BlueGigaTcpTransport extends BlueGigaChannelTransport {
+    /**
+     * Creates a transport for a connected socket
+     *
+     * @param channel the connected {@link SocketChannel}
+     * @param pool the {@link BlueGigaSelectorPool} to serve the channel
+     */
+    public BlueGigaTcpTransport(SocketChannel channel, BlueGigaSelectorPool pool) {
+        super(channel, pool);
+    }
+
+    /**
+     * Connects to a dongle, and creates a transport served by the default {@link BlueGigaSelectorPool}
+     *
+     * @param host the host name or address
+     * @param port the TCP port
+     * @return the {@link BlueGigaTcpTransport}
+     * @throws IOException if the connection fails
+     */
+    public static BlueGigaTcpTransport connect(String host, int port) throws IOException {
+        return connect(host, port, BlueGigaSelectorPool.getDefault());
+    }
+
+    /**
+     * Connects to a dongle, and creates a transport served by the specified {@link BlueGigaSelectorPool}
+     *
+     * @param host the host name or address
+     * @param port the TCP port
+     * @param pool the {@link BlueGigaSelectorPool} to serve the channel
+     * @return the {@link BlueGigaTcpTransport}
+     * @throws IOException if the connection fails
+     */
+    public static BlueGigaTcpTransport connect(String host, int port, BlueGigaSelectorPool pool) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            // Commands are small, so don't wait to combine them
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BlueGigaTcpTransport(channel, pool);
+    }
+}
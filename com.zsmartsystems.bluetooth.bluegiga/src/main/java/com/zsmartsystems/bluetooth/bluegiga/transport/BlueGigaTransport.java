@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The link between the {@link com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler} and the BlueGiga dongle.
+ * <p>
+ * A transport doesn't block when reading. Instead, it notifies its {@link BlueGigaTransportListener} when data may be
+ * available, and the listener then reads everything that is available in bulk. This allows transports that are
+ * backed by a selector to share a small number of threads between many dongles.
+ *
+ * @author Chris Jackson
+ *
+ */
+public interface BlueGigaTransport extends Closeable {
+    /**
+     * Starts the transport. From this point the listener is notified whenever data may be available to read.
+     * Notifications for a transport are never delivered concurrently.
+     *
+     * @param listener the {@link BlueGigaTransportListener} to notify
+     * @throws IOException if the transport can't be started
+     */
+    void start(BlueGigaTransportListener listener) throws IOException;
+
+    /**
+     * Reads the data that is available into the buffer without blocking
+     *
+     * @param buffer the {@link ByteBuffer} to read into
+     * @return the number of bytes read, which may be 0, or -1 if the end of the stream has been reached
+     * @throws IOException if there is an error reading the data
+     */
+    int read(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Writes all remaining data in the buffer, blocking until it has been written. This is only called from a single
+     * thread.
+     *
+     * @param buffer the {@link ByteBuffer} to write
+     * @throws IOException if there is an error writing the data
+     */
+    void write(ByteBuffer buffer) throws IOException;
+}
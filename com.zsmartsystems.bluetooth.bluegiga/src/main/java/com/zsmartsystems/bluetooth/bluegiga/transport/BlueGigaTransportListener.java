@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2014-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import java.io.IOException;
+
+/**
+ * Receives readiness notifications from a {@link BlueGigaTransport}
+ *
+ * @author Chris Jackson
+ *
+ */
+public interface BlueGigaTransportListener {
+    /**
+     * Called when data may be available to read. The listener should read until {@link BlueGigaTransport#read}
+     * returns 0.
+     */
+    void transportReady();
+
+    /**
+     * Called when the transport has an error outside of a call to {@link BlueGigaTransport#read}
+     *
+     * @param e the {@link IOException}
+     */
+    void transportError(IOException e);
+}
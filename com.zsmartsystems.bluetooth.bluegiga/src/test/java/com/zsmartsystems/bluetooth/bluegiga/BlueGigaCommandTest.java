@@ -0,0 +1,175 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+
+public class BlueGigaCommandTest {
+    private static final int WRITES = 10000;
+
+    private BlueGigaAttributeWriteCommand attributeWrite(int[] data) {
+        BlueGigaAttributeWriteCommand command = new BlueGigaAttributeWriteCommand();
+        command.setConnection(1);
+        command.setAttHandle(0x1234);
+        command.setData(data);
+        return command;
+    }
+
+    @Test
+    public void testSerializeIntoBuffer() {
+        BlueGigaAttributeWriteCommand command = attributeWrite(new int[] { 0xAA, 0xBB });
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 0x55);
+
+        command.serializeFrame(buffer);
+        byte[] expected = { 0x00, 0x06, 0x04, 0x05, 0x01, 0x34, 0x12, 0x02, (byte) 0xAA, (byte) 0xBB };
+        assertEquals(11, buffer.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 1, 11));
+        assertArrayEquals(expected, command.serializeFrame());
+
+        // The same command is reused with new data
+        command.setData(new int[] { 0xCC });
+        command.serializeFrame(buffer);
+        assertArrayEquals(new byte[] { 0x00, 0x05, 0x04, 0x05, 0x01, 0x34, 0x12, 0x01, (byte) 0xCC },
+                Arrays.copyOfRange(buffer.array(), 11, 20));
+    }
+
+    @Test
+    public void testSerializeWithoutAllocation() {
+        ThreadAllocation allocation = ThreadAllocation.get();
+        Assume.assumeTrue(allocation != null);
+
+        int[] data = new int[20];
+        BlueGigaAttributeWriteCommand command = attributeWrite(data);
+        ByteBuffer buffer = ByteBuffer.allocate(BlueGigaCommand.MAX_FRAME_LENGTH);
+
+        // Let the JIT compile the serializers before measuring
+        for (int cnt = 0; cnt < WRITES * 10; cnt++) {
+            writeAttribute(command, buffer, data, cnt);
+        }
+
+        long start = allocation.getAllocatedBytes();
+        for (int cnt = 0; cnt < WRITES; cnt++) {
+            writeAttribute(command, buffer, data, cnt);
+        }
+        long allocated = allocation.getAllocatedBytes() - start;
+        assertTrue("Allocated " + allocated + " bytes in " + WRITES + " writes", allocated < WRITES);
+    }
+
+    private void writeAttribute(BlueGigaAttributeWriteCommand command, ByteBuffer buffer, int[] data, int value) {
+        data[0] = value & 0xFF;
+        command.setAttHandle(value & 0xFFFF);
+        buffer.clear();
+        command.serializeFrame(buffer);
+    }
+
+    @Test
+    public void testSerializationErrorFailsTransaction() throws Exception {
+        PipedOutputStream rxStream = new PipedOutputStream();
+        ByteArrayOutputStream txStream = new ByteArrayOutputStream();
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(new PipedInputStream(rxStream, 1024), txStream);
+
+        try {
+            // The command has no data, so it can't be serialized
+            CompletableFuture<BlueGigaAttributeWriteResponse> future = handler
+                    .sendTransactionAsync(attributeWrite(null), BlueGigaAttributeWriteResponse.class, 1000);
+            try {
+                future.get(1, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof BlueGigaException);
+            }
+            assertTrue(future.isCompletedExceptionally());
+
+            // The writer carries on with the next frame
+            handler.queueFrame(new BlueGigaHelloCommand());
+            for (int cnt = 0; cnt < 100 && txStream.size() < 4; cnt++) {
+                Thread.sleep(10);
+            }
+            assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01 }, txStream.toByteArray());
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    public void testReuseCommandOnceTransactionCompletes() throws Exception {
+        PipedOutputStream rxStream = new PipedOutputStream();
+        ByteArrayOutputStream txStream = new ByteArrayOutputStream();
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(new PipedInputStream(rxStream, 1024), txStream);
+        byte[] writeResponse = { 0x00, 0x03, 0x04, 0x05, 0x01, 0x00, 0x00 };
+
+        try {
+            // The same instance is queued twice with different data, changing it only once the first is complete
+            BlueGigaAttributeWriteCommand command = attributeWrite(new int[] { 0xAA, 0xBB });
+            CompletableFuture<BlueGigaAttributeWriteResponse> first = handler.sendTransactionAsync(command,
+                    BlueGigaAttributeWriteResponse.class, 1000);
+            for (int cnt = 0; cnt < 100 && txStream.size() < 10; cnt++) {
+                Thread.sleep(10);
+            }
+            rxStream.write(writeResponse);
+            rxStream.flush();
+            first.get(1, TimeUnit.SECONDS);
+
+            command.setData(new int[] { 0xCC });
+            CompletableFuture<BlueGigaAttributeWriteResponse> second = handler.sendTransactionAsync(command,
+                    BlueGigaAttributeWriteResponse.class, 1000);
+            for (int cnt = 0; cnt < 100 && txStream.size() < 19; cnt++) {
+                Thread.sleep(10);
+            }
+            rxStream.write(writeResponse);
+            rxStream.flush();
+            second.get(1, TimeUnit.SECONDS);
+
+            assertArrayEquals(new byte[] { 0x00, 0x06, 0x04, 0x05, 0x01, 0x34, 0x12, 0x02, (byte) 0xAA, (byte) 0xBB,
+                    0x00, 0x05, 0x04, 0x05, 0x01, 0x34, 0x12, 0x01, (byte) 0xCC }, txStream.toByteArray());
+        } finally {
+            handler.close();
+        }
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread, where the JVM supports it
+     */
+    private static class ThreadAllocation {
+        private final com.sun.management.ThreadMXBean threadBean;
+        private final long threadId = Thread.currentThread().getId();
+
+        private ThreadAllocation(com.sun.management.ThreadMXBean threadBean) {
+            this.threadBean = threadBean;
+        }
+
+        private static ThreadAllocation get() {
+            if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+            if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+                return null;
+            }
+            return new ThreadAllocation(threadBean);
+        }
+
+        private long getAllocatedBytes() {
+            return threadBean.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
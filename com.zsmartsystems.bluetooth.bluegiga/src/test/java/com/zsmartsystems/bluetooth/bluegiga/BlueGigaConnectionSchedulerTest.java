@@ -0,0 +1,155 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.simulator.BlueGigaDongleSimulator;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+public class BlueGigaConnectionSchedulerTest {
+    private final BlueGigaHandlerGroup group = new BlueGigaHandlerGroup();
+    private final List<BlueGigaDongleSimulator> simulators = new ArrayList<BlueGigaDongleSimulator>();
+
+    private BlueGigaDongleSimulator addAdapter(String adapter) throws Exception {
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        simulators.add(simulator);
+        group.addHandler(adapter, transport);
+        return simulator;
+    }
+
+    @After
+    public void close() {
+        group.close(1000);
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void testConnectionsSpreadAcrossAdapters() throws Exception {
+        for (String adapter : new String[] { "hci0", "hci1", "hci2" }) {
+            addAdapter(adapter).setMaxConnections(2);
+        }
+        BlueGigaConnectionScheduler scheduler = new BlueGigaConnectionScheduler(group);
+
+        List<CompletableFuture<BlueGigaConnectionStatusEvent>> futures = new ArrayList<>();
+        for (int cnt = 0; cnt < 6; cnt++) {
+            futures.add(scheduler.connect(new BluetoothAddress(0x112233440000L + cnt)));
+        }
+        Map<String, Integer> perAdapter = new HashMap<String, Integer>();
+        for (CompletableFuture<BlueGigaConnectionStatusEvent> future : futures) {
+            perAdapter.merge(future.get(1, TimeUnit.SECONDS).getAdapter(), 1, Integer::sum);
+        }
+        assertEquals(3, perAdapter.size());
+        for (int connections : perAdapter.values()) {
+            assertEquals(2, connections);
+        }
+        assertEquals(2, scheduler.getConnections("hci1"));
+
+        // All adapters are full, so the next request waits for a connection to close
+        CompletableFuture<BlueGigaConnectionStatusEvent> waiting = scheduler
+                .connect(new BluetoothAddress(0x112233440010L));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        assertEquals(1, scheduler.getWaiting());
+
+        BlueGigaConnectionStatusEvent connected = futures.get(0).get();
+        BlueGigaDisconnectCommand disconnect = new BlueGigaDisconnectCommand();
+        disconnect.setConnection(connected.getConnection());
+        group.getHandler(connected.getAdapter()).sendTransaction(disconnect, BlueGigaDisconnectResponse.class, 1000);
+
+        BlueGigaConnectionStatusEvent event = waiting.get(1, TimeUnit.SECONDS);
+        assertEquals(connected.getAdapter(), event.getAdapter());
+        assertEquals(0, scheduler.getWaiting());
+        scheduler.close();
+    }
+
+    @Test
+    public void testStrongestAdapterPreferred() throws Exception {
+        // Both adapters hear the same device, one much more strongly
+        BlueGigaDongleSimulator weak = addAdapter("weak");
+        BlueGigaDongleSimulator strong = addAdapter("strong");
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.setSeed(1);
+            simulator.setDevicePopulation(1);
+            simulator.setScanRate(200);
+        }
+        weak.setRssiDistribution(-90, 0);
+        strong.setRssiDistribution(-50, 0);
+
+        final AtomicReference<BluetoothAddress> device = new AtomicReference<BluetoothAddress>();
+        group.addEventListener(BlueGigaScanResponseEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                device.set(((BlueGigaScanResponseEvent) event).getSender());
+            }
+        });
+        BlueGigaConnectionScheduler scheduler = new BlueGigaConnectionScheduler(group);
+
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+            discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+            handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000);
+        }
+        Thread.sleep(100);
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            handler.sendTransaction(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 1000);
+        }
+        Thread.sleep(50);
+
+        assertTrue(scheduler.getRssi("strong", device.get()) > scheduler.getRssi("weak", device.get()));
+        assertEquals(BlueGigaConnectionScheduler.UNKNOWN_RSSI,
+                scheduler.getRssi("strong", new BluetoothAddress(0x010203040506L)));
+        assertEquals("strong", scheduler.connect(device.get()).get(1, TimeUnit.SECONDS).getAdapter());
+        scheduler.close();
+    }
+
+    @Test
+    public void testConnectionQueryRetried() throws Exception {
+        // The dongle doesn't answer the first request for its connections
+        final AtomicInteger queries = new AtomicInteger();
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer()) {
+            @Override
+            protected void handleCommand(byte[] frame) throws IOException {
+                if (frame[2] == 0x00 && frame[3] == 0x06 && queries.getAndIncrement() == 0) {
+                    return;
+                }
+                super.handleCommand(frame);
+            }
+        };
+        simulators.add(simulator);
+        group.addHandler("hci0", transport).setTransactionTimeout(100);
+
+        BlueGigaConnectionScheduler scheduler = new BlueGigaConnectionScheduler(group);
+        BlueGigaConnectionStatusEvent event = scheduler.connect(new BluetoothAddress(0x112233440000L)).get(2,
+                TimeUnit.SECONDS);
+        assertEquals("hci0", event.getAdapter());
+        assertEquals(2, queries.get());
+        scheduler.close();
+    }
+}
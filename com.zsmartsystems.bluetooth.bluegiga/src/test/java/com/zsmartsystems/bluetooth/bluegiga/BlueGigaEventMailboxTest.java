@@ -0,0 +1,108 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class BlueGigaEventMailboxTest {
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private final List<BlueGigaResponse> received = new ArrayList<BlueGigaResponse>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    private final BlueGigaEventListener listener = new BlueGigaEventListener() {
+        @Override
+        public void bluegigaEventReceived(BlueGigaResponse event) {
+            received.add(event);
+        }
+    };
+
+    private BlueGigaResponse[] createEvents(int count) {
+        BlueGigaResponse[] events = new BlueGigaResponse[count];
+        for (int cnt = 0; cnt < count; cnt++) {
+            events[cnt] = new BlueGigaResponse(new byte[] { (byte) 0x80, 0, 0, (byte) cnt });
+        }
+        return events;
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testOrdering() {
+        BlueGigaEventMailbox mailbox = new BlueGigaEventMailbox(listener, 10,
+                BlueGigaEventMailbox.OverflowPolicy.BLOCK, executor);
+        BlueGigaResponse[] events = createEvents(5);
+        for (BlueGigaResponse event : events) {
+            mailbox.post(event);
+        }
+
+        // Only one drain task is scheduled however many events are waiting
+        assertEquals(1, tasks.size());
+        assertEquals(5, mailbox.getDepth());
+
+        runTasks();
+        assertEquals(5, received.size());
+        for (int cnt = 0; cnt < events.length; cnt++) {
+            assertEquals(events[cnt], received.get(cnt));
+        }
+        assertEquals(0, mailbox.getDepth());
+        assertEquals(5, mailbox.getDelivered());
+    }
+
+    @Test
+    public void testDropOldest() {
+        BlueGigaEventMailbox mailbox = new BlueGigaEventMailbox(listener, 3,
+                BlueGigaEventMailbox.OverflowPolicy.DROP_OLDEST, executor);
+        BlueGigaResponse[] events = createEvents(5);
+        for (BlueGigaResponse event : events) {
+            mailbox.post(event);
+        }
+        assertEquals(2, mailbox.getDropped());
+
+        runTasks();
+        assertEquals(3, received.size());
+        assertEquals(events[2], received.get(0));
+        assertEquals(events[4], received.get(2));
+    }
+
+    @Test
+    public void testDropNewest() {
+        BlueGigaEventMailbox mailbox = new BlueGigaEventMailbox(listener, 3,
+                BlueGigaEventMailbox.OverflowPolicy.DROP_NEWEST, executor);
+        BlueGigaResponse[] events = createEvents(5);
+        for (BlueGigaResponse event : events) {
+            mailbox.post(event);
+        }
+        assertEquals(2, mailbox.getDropped());
+
+        runTasks();
+        assertEquals(3, received.size());
+        assertEquals(events[0], received.get(0));
+        assertEquals(events[2], received.get(2));
+    }
+
+    @Test
+    public void testClose() {
+        BlueGigaEventMailbox mailbox = new BlueGigaEventMailbox(listener, 3,
+                BlueGigaEventMailbox.OverflowPolicy.BLOCK, executor);
+        mailbox.post(createEvents(1)[0]);
+        mailbox.close();
+        mailbox.post(createEvents(1)[0]);
+
+        runTasks();
+        assertEquals(0, received.size());
+    }
+}
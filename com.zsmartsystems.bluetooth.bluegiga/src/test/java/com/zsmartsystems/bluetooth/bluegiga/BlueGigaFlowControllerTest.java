@@ -0,0 +1,123 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.security.BlueGigaDeleteBondingCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.security.BlueGigaDeleteBondingResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+
+public class BlueGigaFlowControllerTest {
+    private static final int[] DELETE_BONDING_OUT_OF_MEMORY = { 0x00, 0x02, 0x05, 0x02, 0x82, 0x01 };
+    private static final int[] DELETE_BONDING_SUCCESS = { 0x00, 0x02, 0x05, 0x02, 0x00, 0x00 };
+    private static final int[] PROTOCOL_ERROR = { 0x80, 0x02, 0x00, 0x06, 0x82, 0x01 };
+    private static final int[] WATERMARK_TX = { 0x80, 0x02, 0x00, 0x03, 0x04, 0x20 };
+
+    private PipedOutputStream rxStream;
+    private ByteArrayOutputStream txStream;
+    private BlueGigaSerialHandler handler;
+
+    @Before
+    public void setUp() throws IOException {
+        rxStream = new PipedOutputStream();
+        txStream = new ByteArrayOutputStream();
+        handler = new BlueGigaSerialHandler(new PipedInputStream(rxStream, 1024), txStream);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close();
+    }
+
+    private void waitForTx(int length) throws InterruptedException {
+        for (int cnt = 0; cnt < 100 && txStream.size() < length; cnt++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void receive(int[] frame) throws IOException {
+        for (int val : frame) {
+            rxStream.write(val);
+        }
+        rxStream.flush();
+    }
+
+    private CompletableFuture<BlueGigaDeleteBondingResponse> deleteBonding() {
+        BlueGigaDeleteBondingCommand command = new BlueGigaDeleteBondingCommand();
+        command.setHandle(1);
+        return handler.sendTransactionAsync(command, BlueGigaDeleteBondingResponse.class, 1000);
+    }
+
+    @Test
+    public void testTransientErrorRetried() throws Exception {
+        BlueGigaFlowController flowController = handler.getFlowController();
+        CompletableFuture<BlueGigaDeleteBondingResponse> future = deleteBonding();
+        waitForTx(5);
+
+        // The rejected command is sent again after a backoff, and the writer slows down
+        receive(DELETE_BONDING_OUT_OF_MEMORY);
+        waitForTx(10);
+        assertEquals(10, txStream.size());
+        assertFalse(future.isDone());
+        assertEquals(1, flowController.getRetries());
+        assertEquals(1, flowController.getPressureEvents());
+        assertTrue(flowController.getSendInterval() > 0);
+        byte[] sent = txStream.toByteArray();
+        assertArrayEquals(Arrays.copyOfRange(sent, 0, 5), Arrays.copyOfRange(sent, 5, 10));
+
+        // Success brings the writer back up to speed
+        receive(DELETE_BONDING_SUCCESS);
+        assertEquals(BgApiResponse.SUCCESS, future.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals(0, flowController.getSendInterval());
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        handler.getFlowController().setMaxRetries(0);
+        CompletableFuture<BlueGigaDeleteBondingResponse> future = deleteBonding();
+        waitForTx(5);
+
+        receive(DELETE_BONDING_OUT_OF_MEMORY);
+        assertEquals(BgApiResponse.OUT_OF_MEMORY, future.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals(0, handler.getFlowController().getRetries());
+    }
+
+    @Test
+    public void testPressureEvents() throws Exception {
+        BlueGigaFlowController flowController = handler.getFlowController();
+        flowController.setMaxSendInterval(1);
+
+        // Events are acted on even when no listener has subscribed to them
+        for (int cnt = 0; cnt < 4; cnt++) {
+            receive(PROTOCOL_ERROR);
+        }
+        Thread.sleep(50);
+        assertEquals(4, flowController.getPressureEvents());
+        assertEquals(1000, flowController.getSendInterval());
+
+        receive(WATERMARK_TX);
+        Thread.sleep(50);
+        assertEquals(0, flowController.getSendInterval());
+    }
+
+    @Test
+    public void testConfigureWatermarks() throws Exception {
+        handler.getFlowController().configureWatermarks(4, 32, 16);
+        waitForTx(7);
+        assertArrayEquals(new byte[] { 0x00, 0x03, 0x00, 0x0E, 0x04, 0x20, 0x10 }, txStream.toByteArray());
+    }
+}
@@ -0,0 +1,130 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Benchmark comparing the bulk {@link BlueGigaFrameDecoder} against the original byte-at-a-time receive loop. Both
+ * loops parse a stream of scan response events and pass each frame to {@link BlueGigaResponsePackets}.
+ * <p>
+ * This is not run as part of the unit tests - run the main method with the test classpath of this project.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaFrameDecoderBenchmark {
+    private static final int[] SCAN_RESPONSE = { 0x80, 0x19, 0x06, 0x00, 0xC5, 0x00, 0x11, 0x22, 0x33, 0x44, 0x55,
+            0x66, 0x00, 0xFF, 0x0E, 0x02, 0x01, 0x06, 0x0A, 0x09, 0x42, 0x6C, 0x75, 0x65, 0x47, 0x69, 0x67, 0x61,
+            0x00 };
+
+    private static final int FRAMES = 200000;
+    private static final int ITERATIONS = 10;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private interface ReceiveLoop {
+        int run(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * The original receive loop from {@link BlueGigaSerialHandler}, reading the stream one byte at a time
+     */
+    private static class ByteLoop implements ReceiveLoop {
+        private final int framecheckParams[] = new int[] { 0x00, 0x7F, 0xC0, 0xF8, 0xE0 };
+
+        @Override
+        public int run(InputStream inputStream) throws IOException {
+            int frames = 0;
+            byte[] inputBuffer = new byte[64];
+            int inputCount = 0;
+            int inputLength = 0;
+
+            while (true) {
+                int val = inputStream.read();
+                if (val == -1) {
+                    return frames;
+                }
+
+                inputBuffer[inputCount++] = (byte) val;
+
+                if (inputCount < 4) {
+                    if ((val & framecheckParams[inputCount]) != 0) {
+                        inputCount = 0;
+                        continue;
+                    }
+                } else if (inputCount == 4) {
+                    inputLength = (inputBuffer[1] & 0xFF) + 4;
+                }
+                if (inputCount == inputLength) {
+                    if (BlueGigaResponsePackets.getPacket(inputBuffer) != null) {
+                        frames++;
+                    }
+                    inputCount = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * The bulk receive loop using {@link BlueGigaFrameDecoder}
+     */
+    private static class BulkLoop implements ReceiveLoop {
+        @Override
+        public int run(InputStream inputStream) throws IOException {
+            int frames = 0;
+            BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+
+            while (decoder.read(inputStream) != -1) {
+                byte[] frame;
+                while ((frame = decoder.nextFrame()) != null) {
+                    if (BlueGigaResponsePackets.getPacket(frame) != null) {
+                        frames++;
+                    }
+                }
+            }
+            return frames;
+        }
+    }
+
+    private static byte[] createStream() {
+        byte[] stream = new byte[SCAN_RESPONSE.length * FRAMES];
+        for (int frame = 0; frame < FRAMES; frame++) {
+            for (int cnt = 0; cnt < SCAN_RESPONSE.length; cnt++) {
+                stream[frame * SCAN_RESPONSE.length + cnt] = (byte) SCAN_RESPONSE[cnt];
+            }
+        }
+        return stream;
+    }
+
+    private static void measure(String name, ReceiveLoop loop, byte[] stream) throws IOException {
+        long bestWall = Long.MAX_VALUE;
+        long bestCpu = Long.MAX_VALUE;
+        int frames = 0;
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long cpuStart = threadBean.getCurrentThreadCpuTime();
+            long wallStart = System.nanoTime();
+            frames = loop.run(new ByteArrayInputStream(stream));
+            bestWall = Math.min(bestWall, System.nanoTime() - wallStart);
+            bestCpu = Math.min(bestCpu, threadBean.getCurrentThreadCpuTime() - cpuStart);
+        }
+
+        System.out.println(String.format("%-12s %8d frames  %12.0f frames/sec  %8.1f ns CPU/frame", name, frames,
+                frames * 1000000000.0 / bestWall, (double) bestCpu / frames));
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] stream = createStream();
+
+        // Warm up both loops before measuring
+        for (int cnt = 0; cnt < 3; cnt++) {
+            new ByteLoop().run(new ByteArrayInputStream(stream));
+            new BulkLoop().run(new ByteArrayInputStream(stream));
+        }
+
+        measure("Byte loop", new ByteLoop(), stream);
+        measure("Bulk loop", new BulkLoop(), stream);
+    }
+}
@@ -0,0 +1,76 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BlueGigaFrameDecoderTest {
+    private static final int[] HELLO_RESPONSE = { 0x00, 0x00, 0x00, 0x01 };
+    private static final int[] SCAN_RESPONSE = { 0x80, 0x0E, 0x06, 0x00, 0xC5, 0x00, 0x11, 0x22, 0x33, 0x44, 0x55,
+            0x66, 0x00, 0xFF, 0x03, 0x02, 0x01, 0x06 };
+
+    private byte[] toBytes(int[]... frames) {
+        int length = 0;
+        for (int[] frame : frames) {
+            length += frame.length;
+        }
+        byte[] bytes = new byte[length];
+        int position = 0;
+        for (int[] frame : frames) {
+            for (int val : frame) {
+                bytes[position++] = (byte) val;
+            }
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testMultipleFramesInOneRead() throws IOException {
+        BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+        byte[] bytes = toBytes(SCAN_RESPONSE, HELLO_RESPONSE, SCAN_RESPONSE);
+
+        assertEquals(bytes.length, decoder.read(new ByteArrayInputStream(bytes)));
+        assertArrayEquals(toBytes(SCAN_RESPONSE), decoder.nextFrame());
+        assertArrayEquals(toBytes(HELLO_RESPONSE), decoder.nextFrame());
+        assertArrayEquals(toBytes(SCAN_RESPONSE), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+        assertEquals(0, decoder.getPending());
+    }
+
+    @Test
+    public void testPartialFrame() {
+        BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+        byte[] bytes = toBytes(SCAN_RESPONSE);
+
+        decoder.write(ByteBuffer.wrap(bytes, 0, 7));
+        assertNull(decoder.nextFrame());
+        assertEquals(7, decoder.getPending());
+
+        decoder.write(ByteBuffer.wrap(bytes, 7, bytes.length - 7));
+        assertArrayEquals(toBytes(SCAN_RESPONSE), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    public void testResynchronisation() throws IOException {
+        BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+        byte[] bytes = toBytes(new int[] { 0x55, 0xFF }, SCAN_RESPONSE);
+
+        decoder.read(new ByteArrayInputStream(bytes));
+        assertArrayEquals(toBytes(SCAN_RESPONSE), decoder.nextFrame());
+        assertNull(decoder.nextFrame());
+        assertEquals(2, decoder.getFramingErrors());
+    }
+
+    @Test
+    public void testEndOfStream() throws IOException {
+        BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+        assertEquals(-1, decoder.read(new ByteArrayInputStream(new byte[0])));
+    }
+}
@@ -0,0 +1,182 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.simulator.BlueGigaDongleSimulator;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+public class BlueGigaHandlerGroupTest {
+    private static final String[] ADAPTERS = { "hci0", "hci1", "hci2" };
+
+    private List<BlueGigaDongleSimulator> addAdapters(BlueGigaHandlerGroup group) throws Exception {
+        List<BlueGigaDongleSimulator> simulators = new ArrayList<BlueGigaDongleSimulator>();
+        for (String adapter : ADAPTERS) {
+            BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+            BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+            simulator.setScanRate(200);
+            simulators.add(simulator);
+            group.addHandler(adapter, transport);
+        }
+        return simulators;
+    }
+
+    @Test
+    public void testEventsTaggedWithAdapter() throws Exception {
+        BlueGigaHandlerGroup group = new BlueGigaHandlerGroup();
+        List<BlueGigaDongleSimulator> simulators = addAdapters(group);
+
+        final Map<String, AtomicInteger> received = new ConcurrentHashMap<String, AtomicInteger>();
+        BlueGigaEventListener listener = new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                received.computeIfAbsent(event.getAdapter(), key -> new AtomicInteger()).incrementAndGet();
+            }
+        };
+        group.addEventListener(BlueGigaScanResponseEvent.class, listener);
+
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            // The handlers share the group threads
+            assertSame(group.getTimer(), handler.getTimer());
+
+            BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+            discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+            handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000);
+        }
+        Thread.sleep(200);
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            handler.sendTransaction(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 1000);
+        }
+        Thread.sleep(50);
+
+        assertEquals(ADAPTERS.length, received.size());
+        long events = 0;
+        for (String adapter : ADAPTERS) {
+            assertTrue(received.get(adapter).get() > 0);
+            events += received.get(adapter).get();
+        }
+
+        // The events of all adapters are delivered through a single mailbox
+        assertEquals(events, group.getEventMailbox(listener).getDelivered());
+
+        BlueGigaHandlerMetrics metrics = group.getMetrics();
+        assertTrue(metrics.getEventsReceived() >= events);
+        assertEquals(0, metrics.getEventsDropped());
+
+        group.close(1000);
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void testMetricsAndRemoval() throws Exception {
+        BlueGigaHandlerGroup group = new BlueGigaHandlerGroup();
+        List<BlueGigaDongleSimulator> simulators = addAdapters(group);
+
+        for (int cnt = 0; cnt < ADAPTERS.length; cnt++) {
+            BlueGigaSerialHandler handler = group.getHandler(ADAPTERS[cnt]);
+            for (int request = 0; request <= cnt; request++) {
+                BlueGigaHelloResponse response = handler.sendTransaction(new BlueGigaHelloCommand(),
+                        BlueGigaHelloResponse.class, 1000);
+                assertEquals(ADAPTERS[cnt], response.getAdapter());
+            }
+        }
+
+        for (int cnt = 0; cnt < ADAPTERS.length; cnt++) {
+            BlueGigaHandlerMetrics metrics = group.getMetrics(ADAPTERS[cnt]);
+            assertEquals(cnt + 1, metrics.getFramesSent());
+            assertEquals(cnt + 1, metrics.getFramesReceived());
+            assertEquals(cnt + 1, metrics.getTransactionsCompleted());
+        }
+        assertEquals(6, group.getMetrics().getTransactionsCompleted());
+        assertEquals(6, group.getMetrics().getFramesSent());
+
+        // Closing one adapter leaves the shared threads running for the others
+        assertTrue(group.removeHandler(ADAPTERS[0], 1000));
+        assertFalse(group.removeHandler(ADAPTERS[0], 1000));
+        assertNull(group.getHandler(ADAPTERS[0]));
+
+        final CountDownLatch timerLatch = new CountDownLatch(1);
+        group.getTimer().newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                timerLatch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(timerLatch.await(1, TimeUnit.SECONDS));
+        group.getHandler(ADAPTERS[1]).sendTransaction(new BlueGigaHelloCommand(), BlueGigaHelloResponse.class,
+                1000);
+
+        group.close(1000);
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.close();
+        }
+    }
+
+    @Test
+    public void testSlowGroupListenerDoesNotBlockAdapters() throws Exception {
+        BlueGigaHandlerGroup group = new BlueGigaHandlerGroup();
+        List<BlueGigaDongleSimulator> simulators = addAdapters(group);
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.setScanRate(0);
+        }
+
+        final CountDownLatch release = new CountDownLatch(1);
+        BlueGigaEventListener slowListener = new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        group.addEventListener(BlueGigaScanResponseEvent.class, slowListener);
+        BlueGigaEventMailbox mailbox = group.getEventMailbox(slowListener);
+        assertEquals(BlueGigaEventMailbox.DEFAULT_POLICY, mailbox.getPolicy());
+
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+            discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+            handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000);
+        }
+        for (int cnt = 0; cnt < 200 && mailbox.getDropped() == 0; cnt++) {
+            Thread.sleep(10);
+        }
+        assertTrue(mailbox.getDropped() > 0);
+
+        // The stuck listener doesn't hold up the responses of any adapter
+        for (BlueGigaSerialHandler handler : group.getHandlers().values()) {
+            handler.sendTransaction(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 1000);
+        }
+
+        release.countDown();
+        group.close(1000);
+        for (BlueGigaDongleSimulator simulator : simulators) {
+            simulator.close();
+        }
+    }
+}
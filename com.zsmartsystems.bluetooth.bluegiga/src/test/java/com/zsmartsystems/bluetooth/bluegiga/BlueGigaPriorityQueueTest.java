@@ -0,0 +1,184 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaWriteCommandCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+
+public class BlueGigaPriorityQueueTest {
+    @Test
+    public void testPriorityOrder() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        queue.add("bulk1", BlueGigaPriority.BULK);
+        queue.add("interactive", BlueGigaPriority.INTERACTIVE);
+        queue.add("bulk2", BlueGigaPriority.BULK);
+        queue.add("control", BlueGigaPriority.CONTROL);
+        assertEquals(4, queue.size());
+
+        assertEquals(BlueGigaPriority.CONTROL.ordinal(), queue.nextLane());
+        assertEquals("control", queue.poll());
+        assertEquals("interactive", queue.poll());
+        assertEquals("bulk1", queue.poll());
+        assertEquals("bulk2", queue.poll());
+        assertEquals(-1, queue.nextLane());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testStarvationProtection() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        for (int cnt = 0; cnt < 100; cnt++) {
+            queue.add("interactive", BlueGigaPriority.INTERACTIVE);
+        }
+        queue.add("bulk", BlueGigaPriority.BULK);
+
+        // The bulk lane is served once it has been passed over enough times
+        for (int cnt = 0; cnt < BlueGigaPriorityQueue.STARVATION_LIMIT; cnt++) {
+            assertEquals("interactive", queue.poll());
+        }
+        assertEquals("bulk", queue.poll());
+
+        // Control traffic is never held back by a starving lane
+        queue.add("bulk", BlueGigaPriority.BULK);
+        for (int cnt = 0; cnt < BlueGigaPriorityQueue.STARVATION_LIMIT; cnt++) {
+            assertEquals("interactive", queue.poll());
+        }
+        queue.add("control", BlueGigaPriority.CONTROL);
+        assertEquals("control", queue.poll());
+        assertEquals("bulk", queue.poll());
+    }
+
+    @Test
+    public void testConnectionsTakeTurns() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        for (int cnt = 0; cnt < 4; cnt++) {
+            queue.add("a" + cnt, BlueGigaPriority.BULK, 0);
+        }
+        queue.add("b0", BlueGigaPriority.BULK, 1);
+        queue.add("b1", BlueGigaPriority.BULK, 1);
+        queue.add("none", BlueGigaPriority.BULK);
+
+        for (String expected : new String[] { "a0", "b0", "none", "a1", "b1", "a2", "a3" }) {
+            assertEquals(expected, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testConnectionWeights() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        queue.setWeight(0, 3);
+        assertEquals(3, queue.getWeight(0));
+        assertEquals(BlueGigaPriorityQueue.DEFAULT_WEIGHT, queue.getWeight(1));
+        for (int cnt = 0; cnt < 6; cnt++) {
+            queue.add("a" + cnt, BlueGigaPriority.INTERACTIVE, 0);
+        }
+        for (int cnt = 0; cnt < 3; cnt++) {
+            queue.add("b" + cnt, BlueGigaPriority.INTERACTIVE, 1);
+        }
+
+        for (String expected : new String[] { "a0", "a1", "a2", "b0", "a3", "a4", "a5", "b1", "b2" }) {
+            assertEquals(expected, queue.poll());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRemove() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        queue.add("a0", BlueGigaPriority.BULK, 0);
+        queue.add("b0", BlueGigaPriority.BULK, 1);
+        queue.add("a1", BlueGigaPriority.BULK, 0);
+
+        assertTrue(queue.remove("b0"));
+        assertFalse(queue.remove("b0"));
+        assertEquals(2, queue.size());
+        assertEquals("a0", queue.poll());
+        assertEquals("a1", queue.poll());
+        assertEquals(-1, queue.nextLane());
+    }
+
+    @Test
+    public void testRemoveEmptiesConnection() {
+        BlueGigaPriorityQueue<String> queue = new BlueGigaPriorityQueue<String>();
+        queue.add("a0", BlueGigaPriority.BULK, 0);
+        queue.add("b0", BlueGigaPriority.BULK, 1);
+        assertEquals("a0", queue.poll());
+
+        assertTrue(queue.remove("b0"));
+        assertEquals(-1, queue.nextLane());
+        assertNull(queue.poll());
+
+        queue.add("b1", BlueGigaPriority.BULK, 1);
+        assertEquals("b1", queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final BlueGigaPriorityQueue<int[]> queue = new BlueGigaPriorityQueue<int[]>();
+        final int producers = 4;
+        final int items = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int cnt = 0; cnt < producers; cnt++) {
+            final int connection = cnt;
+            threads[cnt] = new Thread() {
+                @Override
+                public void run() {
+                    for (int item = 0; item < items; item++) {
+                        queue.add(new int[] { connection, item }, BlueGigaPriority.values()[item % 3], connection);
+                    }
+                }
+            };
+            threads[cnt].start();
+        }
+
+        // Items for each connection and lane are taken in the order they were added
+        int[][] last = new int[producers][3];
+        for (int[] row : last) {
+            Arrays.fill(row, -1);
+        }
+        int taken = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (taken < producers * items && System.currentTimeMillis() < deadline) {
+            int[] item = queue.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(item[1] > last[item[0]][item[1] % 3]);
+            last[item[0]][item[1] % 3] = item[1];
+            taken++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * items, taken);
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testConnectionCommand() {
+        BlueGigaWriteCommandCommand command = new BlueGigaWriteCommandCommand();
+        command.setConnection(3);
+        assertEquals(3, ((BlueGigaConnectionCommand) command).getConnection());
+    }
+
+    @Test
+    public void testDefaultPriorities() {
+        assertEquals(BlueGigaPriority.CONTROL, BlueGigaPriority.forCommand(new BlueGigaDisconnectCommand()));
+        assertEquals(BlueGigaPriority.BULK, BlueGigaPriority.forCommand(new BlueGigaAttributeWriteCommand()));
+        assertEquals(BlueGigaPriority.INTERACTIVE, BlueGigaPriority.forCommand(new BlueGigaHelloCommand()));
+    }
+}
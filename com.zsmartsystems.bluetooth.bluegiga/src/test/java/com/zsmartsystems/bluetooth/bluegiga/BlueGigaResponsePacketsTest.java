@@ -0,0 +1,100 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaIndicatedEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadMultipleResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.ConnectionStatusFlag;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.ScanResponseType;
+
+public class BlueGigaResponsePacketsTest {
+    private byte[] toBytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int cnt = 0; cnt < values.length; cnt++) {
+            bytes[cnt] = (byte) values[cnt];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testScanResponseEvent() {
+        BlueGigaResponse response = BlueGigaResponsePackets.getPacket(toBytes(0x80, 0x0E, 0x06, 0x00, 0xC5, 0x00,
+                0x66, 0x55, 0x44, 0x33, 0x22, 0x11, 0x01, 0xFF, 0x03, 0x02, 0x01, 0x06));
+
+        assertTrue(response instanceof BlueGigaScanResponseEvent);
+        assertTrue(response.isEvent());
+        BlueGigaScanResponseEvent event = (BlueGigaScanResponseEvent) response;
+        assertEquals(-59, event.getRssi());
+        assertEquals(ScanResponseType.CONNECTABLE_ADVERTISEMENT, event.getPacketType());
+        assertEquals(BluetoothAddress.fromString("11:22:33:44:55:66", BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM),
+                event.getSender());
+        assertEquals(BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM, event.getAddressType());
+        assertEquals(255, event.getBond());
+        assertArrayEquals(new int[] { 0x02, 0x01, 0x06 }, event.getData());
+    }
+
+    @Test
+    public void testConnectionStatusEvent() {
+        BlueGigaResponse response = BlueGigaResponsePackets.getPacket(toBytes(0x80, 0x10, 0x03, 0x00, 0x02, 0x05,
+                0x66, 0x55, 0x44, 0x33, 0x22, 0x11, 0x00, 0x3C, 0x00, 0x64, 0x00, 0x01, 0x00, 0xFF));
+
+        assertTrue(response instanceof BlueGigaConnectionStatusEvent);
+        BlueGigaConnectionStatusEvent event = (BlueGigaConnectionStatusEvent) response;
+        assertEquals(2, event.getConnection());
+        assertTrue(event.getFlags().contains(ConnectionStatusFlag.CONNECTION_CONNECTED));
+        assertEquals("11:22:33:44:55:66", event.getAddress().toString());
+        assertEquals(BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC, event.getAddressType());
+        assertEquals(60, event.getConnInterval());
+        assertEquals(100, event.getTimeout());
+        assertEquals(1, event.getLatency());
+        assertEquals(255, event.getBonding());
+    }
+
+    @Test
+    public void testGetInfoResponse() {
+        BlueGigaResponse response = BlueGigaResponsePackets.getPacket(toBytes(0x00, 0x0E, 0x00, 0x08, 0x01, 0x00,
+                0x03, 0x00, 0x00, 0x00, 0x81, 0x00, 0x05, 0x00, 0x01, 0x00, 0x01, 0x00));
+
+        assertTrue(response instanceof BlueGigaGetInfoResponse);
+        BlueGigaGetInfoResponse info = (BlueGigaGetInfoResponse) response;
+        assertEquals(1, info.getMajor());
+        assertEquals(3, info.getMinor());
+        assertEquals(0x81, info.getBuild());
+    }
+
+    @Test
+    public void testUnknownPacket() {
+        assertNull(BlueGigaResponsePackets.getPacket(toBytes(0x80, 0x00, 0x07, 0x0F)));
+    }
+
+    @Test
+    public void testAttributeClientEvents() {
+        assertTrue(BlueGigaResponsePackets.getPacket(
+                toBytes(0x80, 0x03, 0x04, 0x00, 0x01, 0x34, 0x12)) instanceof BlueGigaIndicatedEvent);
+        assertTrue(BlueGigaResponsePackets.getPacket(
+                toBytes(0x80, 0x02, 0x04, 0x06, 0x01, 0x00)) instanceof BlueGigaReadMultipleResponseEvent);
+    }
+
+    @Test
+    public void testCommandSerialization() {
+        BlueGigaAttributeWriteCommand command = new BlueGigaAttributeWriteCommand();
+        command.setConnection(1);
+        command.setAttHandle(0x1234);
+        command.setData(new int[] { 0xAA, 0x55 });
+
+        byte[] expected = toBytes(0x00, 0x06, 0x04, 0x05, 0x01, 0x34, 0x12, 0x02, 0xAA, 0x55);
+        assertArrayEquals(expected, command.serializeFrame());
+        // Serialising a second time must give the same frame
+        assertArrayEquals(expected, command.serializeFrame());
+    }
+}
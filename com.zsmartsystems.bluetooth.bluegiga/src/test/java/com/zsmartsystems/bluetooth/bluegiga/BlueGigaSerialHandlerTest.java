@@ -0,0 +1,368 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloResponse;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaStreamTransport;
+
+public class BlueGigaSerialHandlerTest {
+    private static final int[] SCAN_RESPONSE = { 0x80, 0x0E, 0x06, 0x00, 0xC5, 0x00, 0x11, 0x22, 0x33, 0x44, 0x55,
+            0x66, 0x00, 0xFF, 0x03, 0x02, 0x01, 0x06 };
+    private static final int[] HELLO_RESPONSE = { 0x00, 0x00, 0x00, 0x01 };
+    private static final int[] GET_INFO_RESPONSE = { 0x00, 0x0C, 0x00, 0x08, 0x01, 0x00, 0x03, 0x00, 0x00, 0x00,
+            0x81, 0x00, 0x05, 0x00, 0x01, 0x00 };
+    private static final int[] CONNECTION_STATUS = { 0x80, 0x10, 0x03, 0x00, 0x02, 0x05, 0x66, 0x55, 0x44, 0x33,
+            0x22, 0x11, 0x00, 0x3C, 0x00, 0x64, 0x00, 0x01, 0x00, 0xFF };
+
+    private PipedOutputStream rxStream;
+    private ByteArrayOutputStream txStream;
+    private BlueGigaSerialHandler handler;
+
+    private class QueueListener implements BlueGigaEventListener {
+        private final BlockingQueue<BlueGigaResponse> events = new ArrayBlockingQueue<BlueGigaResponse>(10);
+
+        @Override
+        public void bluegigaEventReceived(BlueGigaResponse event) {
+            events.add(event);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        rxStream = new PipedOutputStream();
+        txStream = new ByteArrayOutputStream();
+        handler = new BlueGigaSerialHandler(new PipedInputStream(rxStream, 1024), txStream);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close(1000);
+    }
+
+    private void waitForTx(int length) throws InterruptedException {
+        for (int cnt = 0; cnt < 100 && txStream.size() < length; cnt++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void receive(int[]... frames) throws IOException {
+        for (int[] frame : frames) {
+            for (int val : frame) {
+                rxStream.write(val);
+            }
+        }
+        rxStream.flush();
+    }
+
+    @Test
+    public void testTypedEventListener() throws Exception {
+        QueueListener scanListener = new QueueListener();
+        QueueListener allListener = new QueueListener();
+        handler.addEventListener(BlueGigaScanResponseEvent.class, scanListener);
+        handler.addEventListener(allListener);
+
+        receive(CONNECTION_STATUS, SCAN_RESPONSE);
+
+        assertTrue(allListener.events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaConnectionStatusEvent);
+        assertTrue(allListener.events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaScanResponseEvent);
+        assertTrue(scanListener.events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaScanResponseEvent);
+        assertEquals(0, scanListener.events.size());
+    }
+
+    @Test
+    public void testConnectionListener() throws Exception {
+        QueueListener connection1Listener = new QueueListener();
+        QueueListener connection2Listener = new QueueListener();
+        handler.addConnectionListener(1, connection1Listener);
+        handler.addConnectionListener(2, connection2Listener);
+
+        // Scan response is not connection related, and connection status is for connection 2
+        receive(SCAN_RESPONSE, CONNECTION_STATUS);
+
+        BlueGigaResponse event = connection2Listener.events.poll(1, TimeUnit.SECONDS);
+        assertTrue(event instanceof BlueGigaConnectionStatusEvent);
+        assertEquals(2, ((BlueGigaConnectionEvent) event).getConnection());
+        assertEquals(0, connection2Listener.events.size());
+        assertEquals(0, connection1Listener.events.size());
+    }
+
+    @Test
+    public void testQueueFrame() throws Exception {
+        handler.queueFrame(new BlueGigaHelloCommand());
+        handler.queueFrame(new BlueGigaGetInfoCommand());
+        handler.queueFrame(new BlueGigaHelloCommand());
+
+        byte[] expected = new byte[] { 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x08, 0x00, 0x00, 0x00, 0x01 };
+        for (int cnt = 0; cnt < 100 && txStream.size() < expected.length; cnt++) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(expected, txStream.toByteArray());
+    }
+
+    @Test
+    public void testSendTransactionAsync() throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> future = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        assertFalse(future.isDone());
+
+        waitForTx(4);
+        receive(HELLO_RESPONSE);
+        assertTrue(future.get(1, TimeUnit.SECONDS) instanceof BlueGigaHelloResponse);
+    }
+
+    @Test
+    public void testTransactionsSentInTurn() throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> hello = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        CompletableFuture<BlueGigaGetInfoResponse> info = handler.sendTransactionAsync(new BlueGigaGetInfoCommand(),
+                BlueGigaGetInfoResponse.class);
+
+        // Only the first command is sent until its response is received
+        waitForTx(4);
+        Thread.sleep(50);
+        assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01 }, txStream.toByteArray());
+
+        receive(HELLO_RESPONSE);
+        assertTrue(hello.get(1, TimeUnit.SECONDS) instanceof BlueGigaHelloResponse);
+        assertFalse(info.isDone());
+
+        waitForTx(8);
+        assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x08 }, txStream.toByteArray());
+
+        receive(GET_INFO_RESPONSE);
+        assertEquals(3, info.get(1, TimeUnit.SECONDS).getMinor());
+    }
+
+    @Test
+    public void testControlTransactionSentFirst() throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> hello = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        waitForTx(4);
+        handler.sendTransactionAsync(new BlueGigaGetInfoCommand(), BlueGigaGetInfoResponse.class);
+        handler.sendTransactionAsync(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class);
+
+        // The control transaction is sent next, ahead of the queued get info
+        receive(HELLO_RESPONSE);
+        hello.get(1, TimeUnit.SECONDS);
+        waitForTx(8);
+        Thread.sleep(50);
+        assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x06, 0x04 }, txStream.toByteArray());
+    }
+
+    @Test
+    public void testTransactionTimeout() throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> hello = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class, 50);
+        CompletableFuture<BlueGigaGetInfoResponse> info = handler.sendTransactionAsync(new BlueGigaGetInfoCommand(),
+                BlueGigaGetInfoResponse.class);
+
+        try {
+            hello.get(1, TimeUnit.SECONDS);
+            fail("Transaction did not time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // The timeout releases the next transaction
+        waitForTx(8);
+        receive(GET_INFO_RESPONSE);
+        assertEquals(3, info.get(1, TimeUnit.SECONDS).getMinor());
+    }
+
+    @Test
+    public void testWriteErrorFailsTransaction() throws Exception {
+        OutputStream failingStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Write failed");
+            }
+        };
+        BlueGigaSerialHandler failing = new BlueGigaSerialHandler(new PipedInputStream(new PipedOutputStream()),
+                failingStream);
+
+        // The transaction fails as soon as the write fails, rather than when it times out
+        CompletableFuture<BlueGigaHelloResponse> hello = failing.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        try {
+            hello.get(1, TimeUnit.SECONDS);
+            fail("Transaction did not fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BlueGigaException);
+            assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+        assertEquals(1, failing.getMetrics().getTransportErrors());
+        assertTrue(failing.isAlive());
+        failing.close(1000);
+    }
+
+    @Test
+    public void testEndOfStreamFailsPendingTransaction() throws Exception {
+        handler.close(1000);
+        rxStream = new PipedOutputStream();
+        handler = new BlueGigaSerialHandler(
+                new BlueGigaStreamTransport(new PipedInputStream(rxStream, 1024), txStream, true));
+        final CountDownLatch closed = new CountDownLatch(1);
+        handler.addHandlerListener(new BlueGigaHandlerListener() {
+            @Override
+            public void bluegigaClosed(Exception reason) {
+                closed.countDown();
+            }
+        });
+
+        CompletableFuture<BlueGigaHelloResponse> hello = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        CompletableFuture<BlueGigaGetInfoResponse> info = handler.sendTransactionAsync(new BlueGigaGetInfoCommand(),
+                BlueGigaGetInfoResponse.class);
+        waitForTx(4);
+        rxStream.close();
+
+        // Both the pending and the queued transaction fail well before their timeout
+        try {
+            hello.get(1, TimeUnit.SECONDS);
+            fail("Transaction did not fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BlueGigaException);
+        }
+        assertTrue(info.isCompletedExceptionally());
+        assertTrue(closed.await(1, TimeUnit.SECONDS));
+        assertFalse(handler.isAlive());
+    }
+
+    @Test
+    public void testEndOfStreamIgnoredByDefault() throws Exception {
+        rxStream.close();
+        Thread.sleep(200);
+        assertTrue(handler.isAlive());
+    }
+
+    @Test
+    public void testCancelledTransactionNotSent() throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> hello = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        waitForTx(4);
+        CompletableFuture<BlueGigaGetInfoResponse> info = handler.sendTransactionAsync(new BlueGigaGetInfoCommand(),
+                BlueGigaGetInfoResponse.class);
+        handler.sendTransactionAsync(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 20);
+        assertEquals(3, handler.getQueueDepth());
+
+        // Cancelled and expired requests are removed from the queue
+        info.cancel(false);
+        Thread.sleep(100);
+        assertEquals(1, handler.getQueueDepth());
+
+        receive(HELLO_RESPONSE);
+        hello.get(1, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01 }, txStream.toByteArray());
+        assertEquals(0, handler.getQueueDepth());
+        assertEquals(1, handler.getMetrics().getTransactionsTimedOut());
+    }
+
+    @Test
+    public void testExpiredFrameNotSent() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        OutputStream blockingStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                sent.write(b);
+            }
+        };
+        BlueGigaSerialHandler blocked = new BlueGigaSerialHandler(new PipedInputStream(new PipedOutputStream()),
+                blockingStream);
+
+        // Hold the writer while frames are queued behind it
+        blocked.queueFrame(new BlueGigaHelloCommand());
+        assertTrue(writing.await(1, TimeUnit.SECONDS));
+        BlueGigaGetInfoCommand getInfo = new BlueGigaGetInfoCommand();
+        blocked.queueFrame(getInfo, BlueGigaPriority.INTERACTIVE, 10);
+        blocked.queueFrame(new BlueGigaHelloCommand(), BlueGigaPriority.INTERACTIVE, 5000);
+        // Queueing the same command again without a deadline doesn't stop the first from expiring
+        blocked.queueFrame(getInfo, BlueGigaPriority.INTERACTIVE, 0);
+        Thread.sleep(50);
+        release.countDown();
+
+        for (int cnt = 0; cnt < 100 && sent.size() < 12; cnt++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertArrayEquals(new byte[] { 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x08 },
+                sent.toByteArray());
+        assertEquals(1, blocked.getMetrics().getFramesExpired());
+        blocked.close();
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlockReceive() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        BlueGigaEventListener slowListener = new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        handler.addEventListener(slowListener);
+
+        // Overfill the mailbox of the stuck listener, then check that responses are still read
+        for (int cnt = 0; cnt < BlueGigaEventMailbox.DEFAULT_CAPACITY + 10; cnt++) {
+            receive(SCAN_RESPONSE);
+        }
+        CompletableFuture<BlueGigaHelloResponse> future = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class);
+        waitForTx(4);
+        receive(HELLO_RESPONSE);
+        assertTrue(future.get(1, TimeUnit.SECONDS) instanceof BlueGigaHelloResponse);
+        assertTrue(handler.getEventMailbox(slowListener).getDropped() > 0);
+        release.countDown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEventClass() {
+        handler.addEventListener(UnknownEvent.class, new QueueListener());
+    }
+
+    private static class UnknownEvent extends BlueGigaResponse {
+        UnknownEvent(byte[] inputBuffer) {
+            super(inputBuffer);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaSetModeCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaSetModeResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaSetScanParametersCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaSetScanParametersResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapConnectableMode;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverableMode;
+
+public class BlueGigaTransactionBatchTest {
+    private static final int[] SET_SCAN_PARAMETERS_SUCCESS = { 0x00, 0x02, 0x06, 0x07, 0x00, 0x00 };
+    private static final int[] SET_MODE_SUCCESS = { 0x00, 0x02, 0x06, 0x01, 0x00, 0x00 };
+    private static final int[] SET_MODE_WRONG_STATE = { 0x00, 0x02, 0x06, 0x01, 0x81, 0x01 };
+    private static final int[] DISCOVER_SUCCESS = { 0x00, 0x02, 0x06, 0x02, 0x00, 0x00 };
+
+    private PipedOutputStream rxStream;
+    private ByteArrayOutputStream txStream;
+    private BlueGigaSerialHandler handler;
+
+    @Before
+    public void setUp() throws IOException {
+        rxStream = new PipedOutputStream();
+        txStream = new ByteArrayOutputStream();
+        handler = new BlueGigaSerialHandler(new PipedInputStream(rxStream, 1024), txStream);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close();
+    }
+
+    private void waitForTx(int length) throws InterruptedException {
+        for (int cnt = 0; cnt < 100 && txStream.size() < length; cnt++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void receive(int[] frame) throws IOException {
+        for (int val : frame) {
+            rxStream.write(val);
+        }
+        rxStream.flush();
+    }
+
+    private List<BlueGigaCommand> discoverySequence() {
+        BlueGigaSetScanParametersCommand scan = new BlueGigaSetScanParametersCommand();
+        scan.setScanInterval(0x40);
+        scan.setScanWindow(0x20);
+        BlueGigaSetModeCommand mode = new BlueGigaSetModeCommand();
+        mode.setDiscover(GapDiscoverableMode.GAP_NON_DISCOVERABLE);
+        mode.setConnect(GapConnectableMode.GAP_NON_CONNECTABLE);
+        BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+        discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+        return Arrays.asList(scan, mode, discover);
+    }
+
+    @Test
+    public void testSequenceSentInOrder() throws Exception {
+        BlueGigaTransactionBatch batch = handler.sendTransactions(discoverySequence(), 1000);
+
+        // Each step waits for the response to the step before it
+        waitForTx(9);
+        Thread.sleep(50);
+        assertEquals(9, txStream.size());
+        receive(SET_SCAN_PARAMETERS_SUCCESS);
+        waitForTx(15);
+        Thread.sleep(50);
+        assertEquals(15, txStream.size());
+        assertTrue(batch.getSteps().get(0).isDone());
+        assertFalse(batch.getSteps().get(1).isDone());
+        receive(SET_MODE_SUCCESS);
+        waitForTx(20);
+        receive(DISCOVER_SUCCESS);
+
+        List<BlueGigaResponse> responses = batch.getFuture().get(1, TimeUnit.SECONDS);
+        assertEquals(3, responses.size());
+        assertTrue(responses.get(0) instanceof BlueGigaSetScanParametersResponse);
+        assertTrue(responses.get(1) instanceof BlueGigaSetModeResponse);
+        assertTrue(responses.get(2) instanceof BlueGigaDiscoverResponse);
+        assertEquals(20, txStream.size());
+    }
+
+    @Test
+    public void testSequenceStopsAtFailure() throws Exception {
+        BlueGigaTransactionBatch batch = handler.sendTransactions(discoverySequence(), 1000);
+        waitForTx(9);
+        receive(SET_SCAN_PARAMETERS_SUCCESS);
+        waitForTx(15);
+        receive(SET_MODE_WRONG_STATE);
+
+        try {
+            batch.getFuture().get(1, TimeUnit.SECONDS);
+            fail("Batch should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BlueGigaException);
+        }
+        BlueGigaSetModeResponse response = (BlueGigaSetModeResponse) batch.getSteps().get(1).get();
+        assertEquals(BgApiResponse.WRONG_STATE, response.getResult());
+        assertTrue(batch.getSteps().get(2).isCompletedExceptionally());
+
+        // The discover command is never sent
+        Thread.sleep(50);
+        assertEquals(15, txStream.size());
+    }
+
+    @Test
+    public void testCancelBatch() throws Exception {
+        BlueGigaTransactionBatch batch = handler.sendTransactions(discoverySequence(), 1000);
+        waitForTx(9);
+        batch.getFuture().cancel(false);
+        assertTrue(batch.getSteps().get(0).isCancelled());
+        assertTrue(batch.getSteps().get(2).isCompletedExceptionally());
+
+        // The handler is free for the next transaction once the batch is cancelled
+        BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+        discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+        handler.sendTransactionAsync(discover, BlueGigaDiscoverResponse.class);
+        waitForTx(14);
+        assertEquals(14, txStream.size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlueGigaWheelTimerTest {
+    private BlueGigaWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new BlueGigaWheelTimer("TestTimer", 1, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testExpiryOrder() throws Exception {
+        final BlockingQueue<Integer> expired = new ArrayBlockingQueue<Integer>(10);
+
+        // Delays longer than the wheel must wait for more than one round
+        timer.newTimeout(() -> expired.add(3), 50, TimeUnit.MILLISECONDS);
+        timer.newTimeout(() -> expired.add(1), 5, TimeUnit.MILLISECONDS);
+        timer.newTimeout(() -> expired.add(2), 20, TimeUnit.MILLISECONDS);
+
+        assertEquals(Integer.valueOf(1), expired.poll(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), expired.poll(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(3), expired.poll(1, TimeUnit.SECONDS));
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        BlueGigaWheelTimer.Timeout cancelled = timer.newTimeout(() -> latch.countDown(), 10, TimeUnit.MILLISECONDS);
+        BlueGigaWheelTimer.Timeout expired = timer.newTimeout(() -> { }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, timer.getPendingTimeouts());
+
+        assertFalse(latch.await(100, TimeUnit.MILLISECONDS));
+        assertTrue(cancelled.isCancelled());
+        assertTrue(expired.isExpired());
+        assertFalse(expired.cancel());
+    }
+
+    @Test
+    public void testManyTimeouts() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(10000);
+        for (int cnt = 0; cnt < 10000; cnt++) {
+            timer.newTimeout(() -> latch.countDown(), cnt % 100, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,46 @@
+package com.zsmartsystems.bluetooth.bluegiga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaWhitelistAppendCommand;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+
+public class BluetoothAddressTest {
+    @Test
+    public void testFromString() {
+        BluetoothAddress address = BluetoothAddress.fromString("00:1A:7d:DA:71:13");
+        assertEquals(0x001A7DDA7113L, address.getAddress());
+        assertEquals(BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC, address.getAddressType());
+        assertEquals("00:1A:7D:DA:71:13", address.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidString() {
+        BluetoothAddress.fromString("00:1A:7D:DA:71");
+    }
+
+    @Test
+    public void testEquals() {
+        BluetoothAddress address1 = new BluetoothAddress(0x112233445566L);
+        BluetoothAddress address2 = BluetoothAddress.fromString("11:22:33:44:55:66");
+        BluetoothAddress random = new BluetoothAddress(0x112233445566L, BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM);
+
+        assertEquals(address1, address2);
+        assertEquals(address1.hashCode(), address2.hashCode());
+        assertFalse(address1.equals(random));
+        assertTrue(address1.compareTo(random) < 0);
+    }
+
+    @Test
+    public void testSerialize() {
+        BlueGigaWhitelistAppendCommand command = new BlueGigaWhitelistAppendCommand();
+        command.setAddress(BluetoothAddress.fromString("11:22:33:44:55:66"));
+        byte[] frame = command.serializeFrame();
+        assertEquals(0x66, frame[4] & 0xFF);
+        assertEquals(0x11, frame[9] & 0xFF);
+    }
+}
@@ -0,0 +1,183 @@
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloResponse;
+import com.zsmartsystems.bluetooth.bluegiga.simulator.BlueGigaDongleSimulator;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+public class BlueGigaCaptureBufferTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] frame(int value) {
+        return new byte[] { (byte) 0x80, 0x01, 0x06, 0x00, (byte) value };
+    }
+
+    @Test
+    public void testCaptureWraps() {
+        BlueGigaCaptureBuffer buffer = new BlueGigaCaptureBuffer(6);
+        assertEquals(8, buffer.getCapacity());
+
+        for (int cnt = 0; cnt < 20; cnt++) {
+            buffer.capture(cnt % 2 == 0 ? Direction.RX : Direction.TX, frame(cnt), 5);
+        }
+        assertEquals(20, buffer.getCaptured());
+
+        // Only the most recent frames are held
+        List<BlueGigaCaptureFrame> frames = buffer.getFrames();
+        assertEquals(8, frames.size());
+        for (int cnt = 0; cnt < frames.size(); cnt++) {
+            BlueGigaCaptureFrame frame = frames.get(cnt);
+            assertEquals(12 + cnt, frame.getSequence());
+            assertEquals(cnt % 2 == 0 ? Direction.RX : Direction.TX, frame.getDirection());
+            assertArrayEquals(frame(12 + cnt), frame.getFrame());
+            if (cnt > 0) {
+                assertTrue(frame.getTimestamp() >= frames.get(cnt - 1).getTimestamp());
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsSeeWholeFrames() throws Exception {
+        final BlueGigaCaptureBuffer buffer = new BlueGigaCaptureBuffer(16);
+        final byte[] frame = new byte[BlueGigaCaptureBuffer.MAX_FRAME_LENGTH];
+        final CountDownLatch reading = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    reading.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Every byte of a frame holds the low byte of its sequence number
+                for (int cnt = 0; cnt < 200000; cnt++) {
+                    Arrays.fill(frame, (byte) cnt);
+                    buffer.capture(Direction.RX, frame, frame.length);
+                }
+            }
+        };
+        writer.start();
+
+        final AtomicInteger torn = new AtomicInteger();
+        final AtomicInteger read = new AtomicInteger();
+        Consumer<BlueGigaCaptureFrame> consumer = new Consumer<BlueGigaCaptureFrame>() {
+            @Override
+            public void accept(BlueGigaCaptureFrame captured) {
+                read.incrementAndGet();
+                for (byte value : captured.getFrame()) {
+                    if (value != (byte) captured.getSequence()) {
+                        torn.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+        };
+
+        // The writer only starts once the reader is running
+        long position = 0;
+        reading.countDown();
+        while (writer.isAlive()) {
+            position = buffer.read(position, consumer);
+        }
+        writer.join();
+        buffer.read(position, consumer);
+        assertTrue(read.get() > 0);
+        assertEquals(0, torn.get());
+    }
+
+    @Test
+    public void testDumpAndRead() throws Exception {
+        BlueGigaCaptureBuffer buffer = new BlueGigaCaptureBuffer(16);
+        for (int cnt = 0; cnt < 10; cnt++) {
+            buffer.capture(Direction.TX, frame(cnt), 5);
+        }
+        byte[] longFrame = new byte[200];
+        buffer.capture(Direction.RX, longFrame, longFrame.length);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(11, buffer.dump(outputStream));
+        // Compact - 5 or 6 bytes of overhead for each frame
+        assertTrue(outputStream.size() < BlueGigaCaptureWriter.HEADER_LENGTH + 10 * 11 + 6 + 131);
+
+        BlueGigaCaptureReader reader = new BlueGigaCaptureReader(
+                new ByteArrayInputStream(outputStream.toByteArray()));
+        List<BlueGigaCaptureFrame> expected = buffer.getFrames();
+        List<BlueGigaCaptureFrame> frames = reader.readAll();
+        assertEquals(expected.size(), frames.size());
+        for (int cnt = 0; cnt < frames.size(); cnt++) {
+            assertEquals(expected.get(cnt).getSequence(), frames.get(cnt).getSequence());
+            assertEquals(expected.get(cnt).getTimestamp(), frames.get(cnt).getTimestamp());
+            assertEquals(expected.get(cnt).getDirection(), frames.get(cnt).getDirection());
+            assertArrayEquals(expected.get(cnt).getFrame(), frames.get(cnt).getFrame());
+        }
+        // Frames longer than the slot are truncated
+        assertEquals(BlueGigaCaptureBuffer.MAX_FRAME_LENGTH, frames.get(10).getFrame().length);
+        reader.close();
+    }
+
+    @Test
+    public void testStreamStartsWithHeldFrames() throws Exception {
+        BlueGigaCaptureBuffer buffer = new BlueGigaCaptureBuffer(16);
+        for (int cnt = 0; cnt < 40; cnt++) {
+            buffer.capture(Direction.RX, frame(cnt), 5);
+        }
+
+        // Frames overwritten before streaming started aren't counted as lost
+        BlueGigaCaptureStream stream = new BlueGigaCaptureStream(buffer, folder.newFile("held.bgc"));
+        stream.close();
+        assertEquals(16, stream.getWritten());
+        assertEquals(0, stream.getLost());
+    }
+
+    @Test
+    public void testHandlerCaptureStream() throws Exception {
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport);
+
+        File file = folder.newFile("capture.bgc");
+        BlueGigaCaptureStream stream = new BlueGigaCaptureStream(handler.getCapture(), file, 512);
+        for (int cnt = 0; cnt < 100; cnt++) {
+            handler.sendTransaction(new BlueGigaHelloCommand(), BlueGigaHelloResponse.class, 1000);
+        }
+        handler.close(1000);
+        simulator.close();
+        stream.close();
+
+        assertEquals(200, stream.getWritten());
+        assertEquals(0, stream.getLost());
+
+        BlueGigaCaptureReader reader = new BlueGigaCaptureReader(new FileInputStream(file));
+        List<BlueGigaCaptureFrame> frames = reader.readAll();
+        reader.close();
+        assertEquals(200, frames.size());
+        // The file was mapped in several chunks, and truncated to the frames written
+        assertTrue(file.length() > 512 && file.length() < 200 * 12);
+        for (int cnt = 0; cnt < frames.size(); cnt++) {
+            assertEquals(cnt, frames.get(cnt).getSequence());
+            assertEquals(cnt % 2 == 0 ? Direction.TX : Direction.RX, frames.get(cnt).getDirection());
+            assertArrayEquals(new byte[] { 0, 0, 0, 1 }, frames.get(cnt).getFrame());
+        }
+    }
+}
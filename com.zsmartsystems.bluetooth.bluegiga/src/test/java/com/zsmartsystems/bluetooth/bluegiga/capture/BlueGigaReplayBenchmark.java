@@ -0,0 +1,69 @@
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventMailbox;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+
+/**
+ * Benchmark of the receive path using a captured session. The events in the capture are replayed through a handler as
+ * fast as possible, and the throughput is reported. Commands and responses are left out, so the replay doesn't wait
+ * for the application.
+ * <p>
+ * This is not run as part of the unit tests - run the main method with the test classpath of this project. The
+ * arguments are the capture file, and the optional number of repetitions.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaReplayBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: BlueGigaReplayBenchmark <capture file> [repetitions]");
+            return;
+        }
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<BlueGigaCaptureFrame> frames = new ArrayList<BlueGigaCaptureFrame>();
+        try (BlueGigaCaptureReader reader = new BlueGigaCaptureReader(new FileInputStream(new File(args[0])))) {
+            for (BlueGigaCaptureFrame frame : reader.readAll()) {
+                if (frame.getDirection() == Direction.RX && (frame.getFrame()[0] & 0x80) != 0) {
+                    frames.add(frame);
+                }
+            }
+        }
+        System.out.println(String.format("Loaded %d events", frames.size()));
+
+        for (int run = 1; run <= repetitions; run++) {
+            BlueGigaReplayTransport replay = new BlueGigaReplayTransport(frames,
+                    BlueGigaReplayTransport.AS_FAST_AS_POSSIBLE);
+            replay.pause();
+            BlueGigaSerialHandler handler = new BlueGigaSerialHandler(replay);
+            handler.setCapture(null);
+
+            final AtomicLong events = new AtomicLong();
+            handler.addEventListener(new BlueGigaEventListener() {
+                @Override
+                public void bluegigaEventReceived(BlueGigaResponse event) {
+                    events.incrementAndGet();
+                }
+            }, 1000000, BlueGigaEventMailbox.OverflowPolicy.BLOCK);
+
+            long start = System.nanoTime();
+            replay.resume();
+            replay.awaitFinished(1, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("%3d  %8d frames in %8.1f ms  %12.0f frames/sec  %8d events", run,
+                    replay.getReplayed(), elapsed / 1000000.0, replay.getReplayed() * 1000000000.0 / elapsed,
+                    events.get()));
+            handler.close(1000);
+        }
+    }
+}
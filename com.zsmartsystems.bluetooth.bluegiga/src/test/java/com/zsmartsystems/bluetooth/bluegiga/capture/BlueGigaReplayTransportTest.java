@@ -0,0 +1,202 @@
+package com.zsmartsystems.bluetooth.bluegiga.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.capture.BlueGigaCaptureFrame.Direction;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.simulator.BlueGigaDongleSimulator;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransportListener;
+
+public class BlueGigaReplayTransportTest {
+    private static List<BlueGigaCaptureFrame> recording;
+    private static List<Long> recordedScanTimes;
+
+    /**
+     * Application logic run against both the simulator and the replay
+     *
+     * @return the times the scan responses were received
+     */
+    private static List<Long> runSession(BlueGigaSerialHandler handler) throws Exception {
+        final List<Long> scanTimes = Collections.synchronizedList(new ArrayList<Long>());
+        handler.addEventListener(BlueGigaScanResponseEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                scanTimes.add(System.nanoTime());
+            }
+        });
+
+        handler.sendTransaction(new BlueGigaHelloCommand(), BlueGigaHelloResponse.class, 1000);
+        assertEquals(3, handler.sendTransaction(new BlueGigaGetInfoCommand(), BlueGigaGetInfoResponse.class, 1000)
+                .getMinor());
+
+        BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+        discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+        handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000);
+        Thread.sleep(300);
+        handler.sendTransaction(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 1000);
+
+        // Allow the mailbox to drain
+        Thread.sleep(50);
+        return new ArrayList<Long>(scanTimes);
+    }
+
+    @BeforeClass
+    public static void record() throws Exception {
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        simulator.setScanRate(100);
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport);
+
+        recordedScanTimes = runSession(handler);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        handler.getCapture().dump(outputStream);
+        handler.close(1000);
+        simulator.close();
+
+        BlueGigaCaptureReader reader = new BlueGigaCaptureReader(new ByteArrayInputStream(outputStream.toByteArray()));
+        recording = reader.readAll();
+        reader.close();
+    }
+
+    @Test
+    public void testReplayAsFastAsPossible() throws Exception {
+        BlueGigaReplayTransport replay = new BlueGigaReplayTransport(recording,
+                BlueGigaReplayTransport.AS_FAST_AS_POSSIBLE);
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(replay);
+
+        List<Long> scanTimes = runSession(handler);
+        assertTrue(replay.awaitFinished(1, TimeUnit.SECONDS));
+        handler.close(1000);
+
+        assertEquals(recording.size(), replay.getReplayed());
+        assertEquals(0, replay.getMismatches());
+        assertTrue(recordedScanTimes.size() > 10);
+        assertEquals(recordedScanTimes.size(), scanTimes.size());
+    }
+
+    @Test
+    public void testReplayScaledTiming() throws Exception {
+        // Received frames captured 20ms apart, replayed at twice the speed
+        final int frameCount = 11;
+        List<BlueGigaCaptureFrame> frames = new ArrayList<BlueGigaCaptureFrame>();
+        for (int cnt = 0; cnt < frameCount; cnt++) {
+            frames.add(new BlueGigaCaptureFrame(Direction.RX, cnt, TimeUnit.MILLISECONDS.toNanos(20 * cnt),
+                    new byte[] { (byte) 0x80, 0x01, 0x06, 0x00, (byte) cnt }));
+        }
+        final BlueGigaReplayTransport replay = new BlueGigaReplayTransport(frames,
+                2 * BlueGigaReplayTransport.REALTIME);
+
+        // Record when each frame is handed to the listener
+        final long[] delivered = new long[frameCount];
+        final ByteBuffer buffer = ByteBuffer.allocate(frameCount * 5);
+        long started = System.nanoTime();
+        replay.start(new BlueGigaTransportListener() {
+            @Override
+            public void transportReady() {
+                int before = buffer.position() / 5;
+                replay.read(buffer);
+                long now = System.nanoTime();
+                for (int cnt = before; cnt < buffer.position() / 5; cnt++) {
+                    delivered[cnt] = now;
+                }
+            }
+
+            @Override
+            public void transportError(IOException e) {
+            }
+        });
+        assertTrue(replay.awaitFinished(2, TimeUnit.SECONDS));
+        replay.close();
+        assertEquals(frameCount * 5, buffer.position());
+
+        // No frame is delivered before it is due, and the replay is faster than the captured timing
+        for (int cnt = 0; cnt < frameCount; cnt++) {
+            assertTrue(delivered[cnt] - started >= TimeUnit.MILLISECONDS.toNanos(10 * cnt));
+        }
+        assertTrue(delivered[frameCount - 1] - delivered[0] < TimeUnit.MILLISECONDS.toNanos(20 * (frameCount - 1)));
+    }
+
+    @Test
+    public void testCommandMismatch() throws Exception {
+        BlueGigaReplayTransport replay = new BlueGigaReplayTransport(recording,
+                BlueGigaReplayTransport.AS_FAST_AS_POSSIBLE);
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(replay);
+
+        // The capture starts with hello, so get info isn't answered
+        try {
+            handler.sendTransaction(new BlueGigaGetInfoCommand(), BlueGigaGetInfoResponse.class, 200);
+        } catch (Exception e) {
+            // Expected timeout
+        }
+        assertEquals(1, replay.getMismatches());
+
+        // The replay continues with the captured command
+        handler.sendTransaction(new BlueGigaHelloCommand(), BlueGigaHelloResponse.class, 1000);
+        assertEquals(2, replay.getReplayed());
+        handler.close(1000);
+    }
+
+    @Test
+    public void testReplayWaitsForSlowReader() throws Exception {
+        // More frames than the receive buffer holds, all due at once
+        List<BlueGigaCaptureFrame> frames = new ArrayList<BlueGigaCaptureFrame>();
+        byte[] frame = new byte[BlueGigaCaptureBuffer.MAX_FRAME_LENGTH];
+        for (int cnt = 0; cnt < 200; cnt++) {
+            frames.add(new BlueGigaCaptureFrame(Direction.RX, cnt, cnt, frame));
+        }
+        BlueGigaReplayTransport replay = new BlueGigaReplayTransport(frames,
+                BlueGigaReplayTransport.AS_FAST_AS_POSSIBLE);
+
+        // The listener doesn't read when it is notified, so the buffer fills up
+        replay.start(new BlueGigaTransportListener() {
+            @Override
+            public void transportReady() {
+            }
+
+            @Override
+            public void transportError(IOException e) {
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(replay.awaitFinished(0, TimeUnit.SECONDS));
+
+        ByteBuffer buffer = ByteBuffer.allocate(frames.size() * frame.length);
+        for (int cnt = 0; cnt < 100 && buffer.hasRemaining(); cnt++) {
+            replay.read(buffer);
+            Thread.sleep(10);
+        }
+        assertTrue(replay.awaitFinished(1, TimeUnit.SECONDS));
+        replay.read(buffer);
+        assertEquals(frames.size(), replay.getReplayed());
+        assertEquals(frames.size() * frame.length, buffer.position());
+        replay.close();
+    }
+}
@@ -0,0 +1,922 @@
+package com.zsmartsystems.bluetooth.bluegiga.simulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaFrameDecoder;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeValueType;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.ConnectionStatusFlag;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.ScanResponseType;
+import com.zsmartsystems.bluetooth.bluegiga.simulator.BlueGigaSimulatedPeripheral.Attribute;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransport;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaTransportListener;
+
+/**
+ * A simulated BlueGiga NCP for tests and benchmarks. The simulator sits on the dongle side of a
+ * {@link BlueGigaTransport} - normally the peer of a {@link BlueGigaLoopbackTransport} - and answers the system, gap
+ * and connection commands the way a dongle does.
+ * <p>
+ * While a discovery is running, the simulator floods scan response events at the configured rate. The adverts come
+ * from a population of devices, each with its own address, EIR payload from the advertisement mix, and mean RSSI
+ * from the RSSI distribution. Frames for each device are built once, so the simulator can generate tens of thousands
+ * of adverts per second without becoming the bottleneck.
+ * <p>
+ * Connections are made to {@link BlueGigaSimulatedPeripheral}s. The simulator answers the attribute client commands
+ * from the peripheral GATT database, with the latencies of the peripheral, and sends notifications or indications at
+ * the peripheral notification rate once they are enabled through the client characteristic configuration. Addresses
+ * without a peripheral connect to a default peripheral with the generic access and battery services.
+ * <p>
+ * The configuration should be set before discovery is started.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaDongleSimulator implements BlueGigaTransportListener {
+    private final Logger logger = LoggerFactory.getLogger(BlueGigaDongleSimulator.class);
+
+    private static final int CLASS_SYSTEM = 0x00;
+    private static final int CLASS_CONNECTION = 0x03;
+    private static final int CLASS_ATTCLIENT = 0x04;
+    private static final int CLASS_GAP = 0x06;
+
+    /**
+     * Size of the buffer used to send scan responses in bulk
+     */
+    private static final int SCAN_BATCH_SIZE = 4096;
+
+    /**
+     * Maximum length of advertising data
+     */
+    private static final int MAX_ADVERTISEMENT_LENGTH = 31;
+
+    private final BlueGigaTransport transport;
+    private final BlueGigaFrameDecoder decoder = new BlueGigaFrameDecoder();
+    private final Object writeLock = new Object();
+
+    private int scanRate = 10000;
+    private int devicePopulation = 100;
+    private int rssiMean = -70;
+    private int rssiDeviation = 10;
+    private long seed = 0;
+    private int maxConnections = 8;
+    private long address = 0x000780123456L;
+    private final List<Advertisement> advertisements = new ArrayList<Advertisement>();
+
+    private Device[] devices;
+    private final AtomicReferenceArray<Connection> connections = new AtomicReferenceArray<Connection>(256);
+    private final Map<Long, BlueGigaSimulatedPeripheral> peripherals =
+            new ConcurrentHashMap<Long, BlueGigaSimulatedPeripheral>();
+
+    /**
+     * Sends the delayed events for connections and GATT procedures, and the notifications
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BlueGigaSimulatorEvents");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Thread scanThread = null;
+    private volatile boolean scanning = false;
+    private volatile boolean closed = false;
+
+    private final AtomicLong advertsSent = new AtomicLong();
+    private final AtomicLong commandsReceived = new AtomicLong();
+
+    /**
+     * An advertisement payload in the advertisement mix
+     */
+    private static class Advertisement {
+        final ScanResponseType packetType;
+        final int weight;
+        final int[] data;
+
+        Advertisement(ScanResponseType packetType, int weight, int[] data) {
+            this.packetType = packetType;
+            this.weight = weight;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A simulated remote device
+     */
+    private static class Device {
+        final long address;
+        final boolean random;
+        final int rssi;
+
+        /**
+         * The complete scan response event frame for this device. Only the RSSI changes between adverts.
+         */
+        final byte[] frame;
+
+        Device(long address, boolean random, int rssi, Advertisement advertisement) {
+            this.address = address;
+            this.random = random;
+            this.rssi = rssi;
+
+            int[] data = advertisement.data;
+            frame = new byte[4 + 11 + 1 + data.length];
+            frame[0] = (byte) 0x80;
+            frame[1] = (byte) (frame.length - 4);
+            frame[2] = (byte) CLASS_GAP;
+            frame[3] = 0x00;
+            frame[4] = (byte) rssi;
+            frame[5] = (byte) advertisement.packetType.getKey();
+            putAddress(frame, 6, address);
+            frame[12] = (byte) (random ? 1 : 0);
+            frame[13] = (byte) 0xFF;
+            frame[14] = (byte) data.length;
+            for (int cnt = 0; cnt < data.length; cnt++) {
+                frame[15 + cnt] = (byte) data[cnt];
+            }
+        }
+    }
+
+    /**
+     * A connection to a simulated peripheral
+     */
+    private static class Connection {
+        final Device device;
+        final BlueGigaSimulatedPeripheral peripheral;
+
+        /**
+         * True while a GATT procedure is running - BlueGiga allows one procedure at a time on each connection
+         */
+        volatile boolean procedure = false;
+
+        /**
+         * True while an indication is waiting for the host to confirm it
+         */
+        volatile boolean awaitingConfirm = false;
+
+        /**
+         * The notification or indication tasks, keyed by the characteristic value handle
+         */
+        final Map<Integer, ScheduledFuture<?>> notifiers = new ConcurrentHashMap<Integer, ScheduledFuture<?>>();
+
+        Connection(Device device, BlueGigaSimulatedPeripheral peripheral) {
+            this.device = device;
+            this.peripheral = peripheral;
+        }
+
+        void stopNotifiers() {
+            for (ScheduledFuture<?> notifier : notifiers.values()) {
+                notifier.cancel(false);
+            }
+            notifiers.clear();
+        }
+    }
+
+    /**
+     * Creates a simulator on the dongle side of a transport, and starts the transport
+     *
+     * @param transport the {@link BlueGigaTransport} to the host
+     * @throws IOException if the transport can't be started
+     */
+    public BlueGigaDongleSimulator(BlueGigaTransport transport) throws IOException {
+        this.transport = transport;
+        transport.start(this);
+    }
+
+    /**
+     * Sets the number of scan responses sent per second while discovery is running. 0 sends as fast as possible.
+     *
+     * @param scanRate adverts per second
+     */
+    public void setScanRate(int scanRate) {
+        this.scanRate = scanRate;
+    }
+
+    /**
+     * Sets the number of different devices that are advertising
+     *
+     * @param devicePopulation the number of devices
+     */
+    public void setDevicePopulation(int devicePopulation) {
+        this.devicePopulation = devicePopulation;
+        devices = null;
+    }
+
+    /**
+     * Sets the distribution of the mean RSSI of the devices. Each advert varies a little around the device mean.
+     *
+     * @param mean the mean RSSI in dBm
+     * @param deviation the standard deviation in dB
+     */
+    public void setRssiDistribution(int mean, int deviation) {
+        this.rssiMean = mean;
+        this.rssiDeviation = deviation;
+        devices = null;
+    }
+
+    /**
+     * Adds an advertising payload to the mix. Each device is given one payload, chosen by weight. If no payloads are
+     * added, a default mix of named sensors, beacons and service advertisements is used.
+     *
+     * @param packetType the {@link ScanResponseType}
+     * @param weight the relative weight of this payload
+     * @param data the EIR data
+     */
+    public void addAdvertisement(ScanResponseType packetType, int weight, int... data) {
+        if (data.length > MAX_ADVERTISEMENT_LENGTH) {
+            throw new IllegalArgumentException("Advertisement data is limited to " + MAX_ADVERTISEMENT_LENGTH);
+        }
+        advertisements.add(new Advertisement(packetType, weight, data));
+        devices = null;
+    }
+
+    /**
+     * Sets the seed used to create the device population and adverts, so runs can be repeated
+     *
+     * @param seed the random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        devices = null;
+    }
+
+    /**
+     * Sets the number of connections the dongle supports
+     *
+     * @param maxConnections the maximum number of connections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = Math.min(maxConnections, connections.length());
+    }
+
+    /**
+     * Adds a peripheral that can be connected to. Connections to an address without a peripheral use a default
+     * peripheral.
+     *
+     * @param peripheral the {@link BlueGigaSimulatedPeripheral}
+     */
+    public void addPeripheral(BlueGigaSimulatedPeripheral peripheral) {
+        peripherals.put(peripheral.getAddress().getAddress(), peripheral);
+    }
+
+    /**
+     * Gets the number of scan responses sent
+     *
+     * @return the count of adverts
+     */
+    public long getAdvertsSent() {
+        return advertsSent.get();
+    }
+
+    /**
+     * Gets the number of commands received
+     *
+     * @return the count of commands
+     */
+    public long getCommandsReceived() {
+        return commandsReceived.get();
+    }
+
+    /**
+     * Checks if a discovery is running
+     *
+     * @return true if scan responses are being sent
+     */
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    /**
+     * Stops the simulator and closes the transport
+     */
+    public void close() {
+        closed = true;
+        stopScan();
+        for (int cnt = 0; cnt < connections.length(); cnt++) {
+            disconnect(cnt);
+        }
+        scheduler.shutdownNow();
+        try {
+            transport.close();
+        } catch (IOException e) {
+            logger.debug("Simulator transport close error", e);
+        }
+    }
+
+    @Override
+    public void transportReady() {
+        try {
+            int length;
+            while ((length = decoder.read(transport)) > 0) {
+                byte[] frame;
+                while ((frame = decoder.nextFrame()) != null) {
+                    commandsReceived.incrementAndGet();
+                    handleCommand(frame);
+                }
+            }
+            if (length == -1) {
+                close();
+            }
+        } catch (IOException e) {
+            transportError(e);
+        }
+    }
+
+    @Override
+    public void transportError(IOException e) {
+        if (!closed) {
+            logger.debug("Simulator transport error", e);
+        }
+    }
+
+    /**
+     * Processes a command from the host. Commands that the simulator doesn't know are not answered, as with a real
+     * dongle.
+     *
+     * @param frame the command frame
+     * @throws IOException if the response can't be sent
+     */
+    protected void handleCommand(byte[] frame) throws IOException {
+        int cmdClass = frame[2] & 0xFF;
+        int cmdMethod = frame[3] & 0xFF;
+
+        switch (cmdClass) {
+            case CLASS_SYSTEM:
+                handleSystemCommand(cmdMethod, frame);
+                break;
+            case CLASS_CONNECTION:
+                handleConnectionCommand(cmdMethod, frame);
+                break;
+            case CLASS_ATTCLIENT:
+                handleAttributeClientCommand(cmdMethod, frame);
+                break;
+            case CLASS_GAP:
+                handleGapCommand(cmdMethod, frame);
+                break;
+            default:
+                logger.debug("Simulator ignoring command {}:{}", cmdClass, cmdMethod);
+                break;
+        }
+    }
+
+    private void handleSystemCommand(int cmdMethod, byte[] frame) throws IOException {
+        switch (cmdMethod) {
+            case 0x00:
+                // Reset - there's no response, just the boot event
+                stopScan();
+                for (int cnt = 0; cnt < connections.length(); cnt++) {
+                    disconnect(cnt);
+                }
+                send(event(CLASS_SYSTEM, 0x00, 1, 0, 3, 0, 0, 0, 0x81, 0, 5, 0, 1, 0, 1, 0));
+                break;
+            case 0x01:
+                // Hello
+                send(response(CLASS_SYSTEM, 0x01));
+                break;
+            case 0x02:
+                // Address get
+                byte[] addressResponse = response(CLASS_SYSTEM, 0x02, 0, 0, 0, 0, 0, 0);
+                putAddress(addressResponse, 4, address);
+                send(addressResponse);
+                break;
+            case 0x06:
+                // Get connections
+                send(response(CLASS_SYSTEM, 0x06, maxConnections));
+                break;
+            case 0x08:
+                // Get info
+                send(response(CLASS_SYSTEM, 0x08, 1, 0, 3, 0, 0, 0, 0x81, 0, 5, 0, 1, 0, 1, 0));
+                break;
+            default:
+                logger.debug("Simulator ignoring system command {}", cmdMethod);
+                break;
+        }
+    }
+
+    private void handleGapCommand(int cmdMethod, byte[] frame) throws IOException {
+        switch (cmdMethod) {
+            case 0x01:
+                // Set mode
+            case 0x07:
+                // Set scan parameters
+                send(response(CLASS_GAP, cmdMethod, result(BgApiResponse.SUCCESS)));
+                break;
+            case 0x02:
+                // Discover
+                if (scanning) {
+                    send(response(CLASS_GAP, 0x02, result(BgApiResponse.WRONG_STATE)));
+                    break;
+                }
+                // The scan is running as soon as the host sees the response
+                scanning = true;
+                send(response(CLASS_GAP, 0x02, result(BgApiResponse.SUCCESS)));
+                startScan();
+                break;
+            case 0x03:
+                // Connect direct
+                connectDirect(frame);
+                break;
+            case 0x04:
+                // End procedure
+                if (!scanning) {
+                    send(response(CLASS_GAP, 0x04, result(BgApiResponse.WRONG_STATE)));
+                    break;
+                }
+                stopScan();
+                send(response(CLASS_GAP, 0x04, result(BgApiResponse.SUCCESS)));
+                break;
+            default:
+                logger.debug("Simulator ignoring gap command {}", cmdMethod);
+                break;
+        }
+    }
+
+    private void handleConnectionCommand(int cmdMethod, byte[] frame) throws IOException {
+        int connection = frame[4] & 0xFF;
+        Connection current = connections.get(connection);
+        Device device = current == null ? null : current.device;
+
+        switch (cmdMethod) {
+            case 0x00:
+                // Disconnect
+                if (disconnect(connection) == null) {
+                    send(response(CLASS_CONNECTION, 0x00, connection, result(BgApiResponse.NOT_CONNECTED)));
+                    break;
+                }
+                send(response(CLASS_CONNECTION, 0x00, connection, result(BgApiResponse.SUCCESS)));
+                send(event(CLASS_CONNECTION, 0x04, connection,
+                        result(BgApiResponse.CONNECTION_TERMINATED_BY_LOCAL_HOST)));
+                break;
+            case 0x01:
+                // Get RSSI
+                send(response(CLASS_CONNECTION, 0x01, connection, device == null ? 0 : device.rssi));
+                break;
+            case 0x07:
+                // Get status
+                send(response(CLASS_CONNECTION, 0x07, connection));
+                if (device != null) {
+                    sendConnectionStatus(connection, device);
+                }
+                break;
+            default:
+                logger.debug("Simulator ignoring connection command {}", cmdMethod);
+                break;
+        }
+    }
+
+    private void connectDirect(byte[] frame) throws IOException {
+        if (scanning) {
+            send(response(CLASS_GAP, 0x03, result(BgApiResponse.WRONG_STATE), 0));
+            return;
+        }
+
+        int connection = -1;
+        for (int cnt = 0; cnt < maxConnections; cnt++) {
+            if (connections.get(cnt) == null) {
+                connection = cnt;
+                break;
+            }
+        }
+        if (connection == -1) {
+            send(response(CLASS_GAP, 0x03, result(BgApiResponse.CONNECTION_LIMIT_EXCEEDED), 0));
+            return;
+        }
+
+        long remote = 0;
+        for (int cnt = 5; cnt >= 0; cnt--) {
+            remote = (remote << 8) | (frame[4 + cnt] & 0xFF);
+        }
+        BlueGigaSimulatedPeripheral peripheral = peripherals.get(remote);
+        if (peripheral == null) {
+            peripheral = BlueGigaSimulatedPeripheral.createDefault(new BluetoothAddress(remote));
+        }
+        final Device device = new Device(remote, frame[10] != 0, peripheral.getRssi(), defaultAdvertisements().get(0));
+        connections.set(connection, new Connection(device, peripheral));
+
+        send(response(CLASS_GAP, 0x03, result(BgApiResponse.SUCCESS), connection));
+        sendLater(peripheral.getConnectLatency(), null, connectionStatus(connection, device));
+    }
+
+    /**
+     * Removes a connection and stops its notifications
+     *
+     * @param connection the connection handle
+     * @return the removed {@link Connection} or null if the handle was not connected
+     */
+    private Connection disconnect(int connection) {
+        Connection removed = connections.getAndSet(connection, null);
+        if (removed != null) {
+            removed.stopNotifiers();
+        }
+        return removed;
+    }
+
+    private void sendConnectionStatus(int connection, Device device) throws IOException {
+        send(connectionStatus(connection, device));
+    }
+
+    private byte[] connectionStatus(int connection, Device device) {
+        int flags = ConnectionStatusFlag.CONNECTION_CONNECTED.getKey()
+                | ConnectionStatusFlag.CONNECTION_COMPLETED.getKey();
+        byte[] status = event(CLASS_CONNECTION, 0x00, connection, flags, 0, 0, 0, 0, 0, 0, device.random ? 1 : 0, 0x3C,
+                0x00, 0x64, 0x00, 0x00, 0x00, 0xFF);
+        putAddress(status, 6, device.address);
+        return status;
+    }
+
+    private void handleAttributeClientCommand(int cmdMethod, byte[] frame) throws IOException {
+        int connection = frame[4] & 0xFF;
+        Connection current = connections.get(connection);
+
+        if (cmdMethod == 0x07) {
+            // Indicate confirm
+            if (current == null || !current.awaitingConfirm) {
+                send(response(CLASS_ATTCLIENT, 0x07, result(BgApiResponse.WRONG_STATE)));
+                return;
+            }
+            current.awaitingConfirm = false;
+            send(response(CLASS_ATTCLIENT, 0x07, result(BgApiResponse.SUCCESS)));
+            return;
+        }
+        if (cmdMethod < 0x01 || cmdMethod > 0x06) {
+            logger.debug("Simulator ignoring attribute client command {}", cmdMethod);
+            return;
+        }
+        if (current == null) {
+            send(response(CLASS_ATTCLIENT, cmdMethod, connection, result(BgApiResponse.INVALID_CONN_HANDLE)));
+            return;
+        }
+        if (current.procedure) {
+            send(response(CLASS_ATTCLIENT, cmdMethod, connection, result(BgApiResponse.WRONG_STATE)));
+            return;
+        }
+
+        BlueGigaSimulatedPeripheral peripheral = current.peripheral;
+        int handle = u16(frame, 5);
+        List<byte[]> events = new ArrayList<byte[]>();
+
+        switch (cmdMethod) {
+            case 0x01:
+                // Read by group type
+                UUID groupType = BlueGigaSimulatedPeripheral.toUuid(array(frame, 9));
+                for (Attribute attribute : peripheral.getAttributes()) {
+                    if (attribute.handle >= handle && attribute.handle <= u16(frame, 7)
+                            && attribute.type.equals(groupType)) {
+                        events.add(event(CLASS_ATTCLIENT, 0x02, connection, u16(attribute.handle),
+                                u16(peripheral.getServiceEnd(attribute.handle)), attribute.value.length,
+                                attribute.value));
+                    }
+                }
+                events.add(procedureCompleted(connection, events.isEmpty(), 0));
+                break;
+            case 0x02:
+                // Read by type
+                UUID type = BlueGigaSimulatedPeripheral.toUuid(array(frame, 9));
+                for (Attribute attribute : peripheral.getAttributes()) {
+                    if (attribute.handle >= handle && attribute.handle <= u16(frame, 7)
+                            && attribute.type.equals(type)) {
+                        events.add(attributeValue(connection, attribute,
+                                AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_READ_BY_TYPE));
+                    }
+                }
+                events.add(procedureCompleted(connection, events.isEmpty(), 0));
+                break;
+            case 0x03:
+                // Find information
+                for (Attribute attribute : peripheral.getAttributes()) {
+                    if (attribute.handle >= handle && attribute.handle <= u16(frame, 7)) {
+                        int[] uuid = BlueGigaSimulatedPeripheral.uuidBytes(attribute.type);
+                        events.add(event(CLASS_ATTCLIENT, 0x04, connection, u16(attribute.handle), uuid.length, uuid));
+                    }
+                }
+                events.add(procedureCompleted(connection, events.isEmpty(), 0));
+                break;
+            case 0x04:
+                // Read by handle - a successful read ends with the value, not a procedure completed event
+                Attribute read = peripheral.getAttribute(handle);
+                if (read == null) {
+                    send(response(CLASS_ATTCLIENT, 0x04, connection, result(BgApiResponse.INVALID_HANDLE)));
+                    return;
+                }
+                events.add(attributeValue(connection, read, AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_READ));
+                break;
+            case 0x05:
+            case 0x06:
+                // Attribute write and write command. A write command has no events.
+                Attribute written = peripheral.getAttribute(handle);
+                if (written == null) {
+                    send(response(CLASS_ATTCLIENT, cmdMethod, connection, result(BgApiResponse.INVALID_HANDLE)));
+                    return;
+                }
+                written.value = array(frame, 7);
+                if (written.type.equals(BlueGigaSimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIGURATION)) {
+                    configureNotifications(connection, current, written);
+                }
+                if (cmdMethod == 0x05) {
+                    events.add(event(CLASS_ATTCLIENT, 0x01, connection, result(BgApiResponse.SUCCESS), u16(handle)));
+                }
+                break;
+            default:
+                break;
+        }
+
+        send(response(CLASS_ATTCLIENT, cmdMethod, connection, result(BgApiResponse.SUCCESS)));
+        if (!events.isEmpty()) {
+            current.procedure = true;
+            sendLater(peripheral.getProcedureLatency(), current, events.toArray(new byte[events.size()][]));
+        }
+    }
+
+    /**
+     * Starts or stops the notifications or indications for a characteristic after its client characteristic
+     * configuration is written
+     */
+    private void configureNotifications(final int connection, final Connection current, Attribute configuration) {
+        final Attribute characteristic = current.peripheral.getAttribute(configuration.characteristic);
+        ScheduledFuture<?> notifier = current.notifiers.remove(characteristic.handle);
+        if (notifier != null) {
+            notifier.cancel(false);
+        }
+
+        int rate = current.peripheral.getNotificationRate();
+        int value = configuration.value.length == 0 ? 0 : configuration.value[0];
+        final boolean indicate = (value & 0x02) != 0;
+        if (rate <= 0 || (value & 0x03) == 0 || closed) {
+            return;
+        }
+
+        final AttributeValueType type = indicate ? AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_INDICATE_RSP_REQ
+                : AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_NOTIFY;
+        // The first notification follows the write procedure
+        long period = Math.max(1, 1000000000L / rate);
+        long delay = TimeUnit.MILLISECONDS.toNanos(current.peripheral.getProcedureLatency()) + period;
+        current.notifiers.put(characteristic.handle, scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                if (connections.get(connection) != current || (indicate && current.awaitingConfirm)) {
+                    return;
+                }
+                if (indicate) {
+                    current.awaitingConfirm = true;
+                }
+                try {
+                    send(attributeValue(connection, characteristic, type));
+                } catch (IOException e) {
+                    transportError(e);
+                }
+            }
+        }, delay, period, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Sends frames after a delay. The frames are sent immediately if there's no delay.
+     *
+     * @param delay the delay in milliseconds
+     * @param procedure the {@link Connection} whose procedure ends with the last frame, or null
+     * @param frames the frames to send
+     */
+    private void sendLater(long delay, final Connection procedure, final byte[]... frames) throws IOException {
+        if (delay <= 0) {
+            sendFrames(procedure, frames);
+            return;
+        }
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendFrames(procedure, frames);
+                } catch (IOException e) {
+                    transportError(e);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendFrames(Connection procedure, byte[]... frames) throws IOException {
+        for (int cnt = 0; cnt < frames.length; cnt++) {
+            if (procedure != null && cnt == frames.length - 1) {
+                // The procedure ends before the host sees the last event, so it can start the next one straight away
+                procedure.procedure = false;
+            }
+            send(frames[cnt]);
+        }
+    }
+
+    private static byte[] procedureCompleted(int connection, boolean notFound, int handle) {
+        return event(CLASS_ATTCLIENT, 0x01, connection,
+                result(notFound ? BgApiResponse.ATT_NOT_FOUND : BgApiResponse.SUCCESS), u16(handle));
+    }
+
+    private static byte[] attributeValue(int connection, Attribute attribute, AttributeValueType type) {
+        int[] value = attribute.value;
+        return event(CLASS_ATTCLIENT, 0x05, connection, u16(attribute.handle), type.getKey(), value.length, value);
+    }
+
+    private static int u16(byte[] frame, int offset) {
+        return (frame[offset] & 0xFF) | ((frame[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int[] u16(int value) {
+        return new int[] { value & 0xFF, (value >> 8) & 0xFF };
+    }
+
+    /**
+     * Reads a uint8array - a length followed by the bytes
+     */
+    private static int[] array(byte[] frame, int offset) {
+        int[] array = new int[frame[offset] & 0xFF];
+        for (int cnt = 0; cnt < array.length; cnt++) {
+            array[cnt] = frame[offset + 1 + cnt] & 0xFF;
+        }
+        return array;
+    }
+
+    private synchronized void startScan() {
+        if (devices == null) {
+            devices = createDevices();
+        }
+        scanThread = new Thread("BlueGigaSimulatorScan") {
+            @Override
+            public void run() {
+                sendScanResponses(devices);
+            }
+        };
+        scanThread.setDaemon(true);
+        scanThread.start();
+    }
+
+    private void stopScan() {
+        Thread thread;
+        synchronized (this) {
+            scanning = false;
+            thread = scanThread;
+            scanThread = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sendScanResponses(Device[] devices) {
+        final Random random = new Random(seed);
+        final ByteBuffer batch = ByteBuffer.allocate(SCAN_BATCH_SIZE);
+        final long start = System.nanoTime();
+        long sent = 0;
+
+        while (scanning && !closed) {
+            long due = scanRate == 0 ? Long.MAX_VALUE : (System.nanoTime() - start) * scanRate / 1000000000L - sent;
+            if (due <= 0) {
+                LockSupport.parkNanos(200000);
+                continue;
+            }
+
+            batch.clear();
+            while (due > 0 && batch.remaining() >= BlueGigaFrameDecoder.MAX_FRAME_LENGTH) {
+                Device device = devices[random.nextInt(devices.length)];
+                int position = batch.position();
+                batch.put(device.frame);
+                batch.put(position + 4, (byte) clampRssi(device.rssi + (int) (random.nextGaussian() * 2)));
+                due--;
+                sent++;
+            }
+            batch.flip();
+
+            try {
+                synchronized (writeLock) {
+                    transport.write(batch);
+                }
+            } catch (IOException e) {
+                transportError(e);
+                break;
+            }
+            advertsSent.set(sent);
+        }
+    }
+
+    private Device[] createDevices() {
+        List<Advertisement> mix = advertisements.isEmpty() ? defaultAdvertisements() : advertisements;
+        int totalWeight = 0;
+        for (Advertisement advertisement : mix) {
+            totalWeight += advertisement.weight;
+        }
+
+        Random random = new Random(seed);
+        Device[] population = new Device[devicePopulation];
+        for (int cnt = 0; cnt < devicePopulation; cnt++) {
+            int choice = random.nextInt(totalWeight);
+            Advertisement selected = mix.get(0);
+            for (Advertisement advertisement : mix) {
+                choice -= advertisement.weight;
+                if (choice < 0) {
+                    selected = advertisement;
+                    break;
+                }
+            }
+
+            int rssi = clampRssi(rssiMean + (int) (random.nextGaussian() * rssiDeviation));
+            population[cnt] = new Device(random.nextLong() & 0xFFFFFFFFFFFFL, random.nextBoolean(), rssi, selected);
+        }
+        return population;
+    }
+
+    private static List<Advertisement> defaultAdvertisements() {
+        List<Advertisement> mix = new ArrayList<Advertisement>();
+        // Flags and complete local name "BG-Sensor"
+        mix.add(new Advertisement(ScanResponseType.CONNECTABLE_ADVERTISEMENT, 4,
+                new int[] { 0x02, 0x01, 0x06, 0x0A, 0x09, 0x42, 0x47, 0x2D, 0x53, 0x65, 0x6E, 0x73, 0x6F, 0x72 }));
+        // Flags and iBeacon manufacturer data
+        mix.add(new Advertisement(ScanResponseType.NON_CONNECTABLE_ADVERTISEMENT, 3,
+                new int[] { 0x02, 0x01, 0x04, 0x1A, 0xFF, 0x4C, 0x00, 0x02, 0x15, 0xE2, 0xC5, 0x6D, 0xB5, 0xDF, 0xFB,
+                        0x48, 0xD2, 0xB0, 0x60, 0xD0, 0xF5, 0xA7, 0x10, 0x96, 0xE0, 0x00, 0x01, 0x00, 0x02, 0xC5 }));
+        // Flags and 16 bit service UUIDs for battery and device information
+        mix.add(new Advertisement(ScanResponseType.CONNECTABLE_ADVERTISEMENT, 2,
+                new int[] { 0x02, 0x01, 0x06, 0x05, 0x03, 0x0F, 0x18, 0x0A, 0x18 }));
+        // Scan response with shortened local name and TX power
+        mix.add(new Advertisement(ScanResponseType.SCAN_RESPONSE, 1,
+                new int[] { 0x05, 0x08, 0x42, 0x47, 0x2D, 0x53, 0x02, 0x0A, 0x04 }));
+        return mix;
+    }
+
+    private static int clampRssi(int rssi) {
+        return Math.max(-127, Math.min(-10, rssi));
+    }
+
+    private static int[] result(BgApiResponse result) {
+        return new int[] { result.getKey() & 0xFF, result.getKey() >> 8 };
+    }
+
+    private static void putAddress(byte[] frame, int offset, long address) {
+        for (int cnt = 0; cnt < 6; cnt++) {
+            frame[offset + cnt] = (byte) (address >> (cnt * 8));
+        }
+    }
+
+    private static byte[] response(int cmdClass, int cmdMethod, Object... payload) {
+        return frame(0x00, cmdClass, cmdMethod, payload);
+    }
+
+    private static byte[] event(int cmdClass, int cmdMethod, Object... payload) {
+        return frame(0x80, cmdClass, cmdMethod, payload);
+    }
+
+    /**
+     * Builds a frame from a payload of integers and integer arrays
+     */
+    private static byte[] frame(int type, int cmdClass, int cmdMethod, Object... payload) {
+        List<Integer> values = new ArrayList<Integer>();
+        for (Object value : payload) {
+            if (value instanceof int[]) {
+                for (int val : (int[]) value) {
+                    values.add(val);
+                }
+            } else {
+                values.add((Integer) value);
+            }
+        }
+
+        byte[] frame = new byte[4 + values.size()];
+        frame[0] = (byte) type;
+        frame[1] = (byte) values.size();
+        frame[2] = (byte) cmdClass;
+        frame[3] = (byte) cmdMethod;
+        for (int cnt = 0; cnt < values.size(); cnt++) {
+            frame[4 + cnt] = values.get(cnt).byteValue();
+        }
+        return frame;
+    }
+
+    /**
+     * Sends a frame to the host
+     *
+     * @param frame the frame to send
+     * @throws IOException if the frame can't be written
+     */
+    protected void send(byte[] frame) throws IOException {
+        synchronized (writeLock) {
+            transport.write(ByteBuffer.wrap(frame));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.zsmartsystems.bluetooth.bluegiga.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventMailbox;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeValueEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaFindInformationCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaFindInformationFoundEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaFindInformationResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaGroupFoundEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaProcedureCompletedEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByGroupTypeCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByGroupTypeResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByHandleCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByHandleResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaDisconnectedEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetConnectionsCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetConnectionsResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaGetInfoResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.AttributeValueType;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BgApiResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+public class BlueGigaDongleSimulatorTest {
+    private BlueGigaDongleSimulator simulator;
+    private BlueGigaSerialHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        handler = new BlueGigaSerialHandler(transport);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close(1000);
+        simulator.close();
+    }
+
+    @Test
+    public void testSystemCommands() throws Exception {
+        BlueGigaGetInfoResponse info = handler.sendTransaction(new BlueGigaGetInfoCommand(),
+                BlueGigaGetInfoResponse.class, 1000);
+        assertEquals(1, info.getMajor());
+        assertEquals(3, info.getMinor());
+
+        simulator.setMaxConnections(4);
+        assertEquals(4, handler.sendTransaction(new BlueGigaGetConnectionsCommand(),
+                BlueGigaGetConnectionsResponse.class, 1000).getMaxconn());
+    }
+
+    @Test
+    public void testConnectAndDisconnect() throws Exception {
+        final BlockingQueue<BlueGigaResponse> events = new ArrayBlockingQueue<BlueGigaResponse>(10);
+        handler.addConnectionListener(0, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                events.add(event);
+            }
+        });
+
+        BluetoothAddress address = BluetoothAddress.fromString("11:22:33:44:55:66",
+                BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM);
+        BlueGigaConnectDirectCommand connect = new BlueGigaConnectDirectCommand();
+        connect.setAddress(address);
+        connect.setAddrType(BluetoothAddressType.GAP_ADDRESS_TYPE_RANDOM);
+        BlueGigaConnectDirectResponse connectResponse = handler.sendTransaction(connect,
+                BlueGigaConnectDirectResponse.class, 1000);
+        assertEquals(BgApiResponse.SUCCESS, connectResponse.getResult());
+        assertEquals(0, connectResponse.getConnectionHandle());
+
+        BlueGigaResponse event = events.poll(1, TimeUnit.SECONDS);
+        assertTrue(event instanceof BlueGigaConnectionStatusEvent);
+        assertEquals(address, ((BlueGigaConnectionStatusEvent) event).getAddress());
+
+        BlueGigaDisconnectCommand disconnect = new BlueGigaDisconnectCommand();
+        disconnect.setConnection(0);
+        assertEquals(BgApiResponse.SUCCESS,
+                handler.sendTransaction(disconnect, BlueGigaDisconnectResponse.class, 1000).getResult());
+
+        event = events.poll(1, TimeUnit.SECONDS);
+        assertTrue(event instanceof BlueGigaDisconnectedEvent);
+        assertEquals(BgApiResponse.CONNECTION_TERMINATED_BY_LOCAL_HOST,
+                ((BlueGigaDisconnectedEvent) event).getReason());
+
+        // A second disconnect fails as the connection is closed
+        assertEquals(BgApiResponse.NOT_CONNECTED,
+                handler.sendTransaction(disconnect, BlueGigaDisconnectResponse.class, 1000).getResult());
+    }
+
+    @Test
+    public void testScanFlood() throws Exception {
+        final AtomicInteger adverts = new AtomicInteger();
+        final Set<BluetoothAddress> senders = ConcurrentHashMap.newKeySet();
+        handler.addEventListener(BlueGigaScanResponseEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                BlueGigaScanResponseEvent scanResponse = (BlueGigaScanResponseEvent) event;
+                assertTrue(scanResponse.getRssi() < 0);
+                senders.add(scanResponse.getSender());
+                adverts.incrementAndGet();
+            }
+        }, 100000, BlueGigaEventMailbox.OverflowPolicy.DROP_NEWEST);
+
+        simulator.setScanRate(20000);
+        simulator.setDevicePopulation(50);
+        simulator.setRssiDistribution(-60, 8);
+
+        BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+        discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+        assertEquals(BgApiResponse.SUCCESS,
+                handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000).getResult());
+        assertTrue(simulator.isScanning());
+
+        Thread.sleep(500);
+
+        assertEquals(BgApiResponse.SUCCESS, handler.sendTransaction(new BlueGigaEndProcedureCommand(),
+                BlueGigaEndProcedureResponse.class, 1000).getResult());
+        assertFalse(simulator.isScanning());
+
+        // Allow for a slow build machine - the rate is checked by the benchmark
+        long sent = simulator.getAdvertsSent();
+        assertTrue(sent > 2000);
+        for (int cnt = 0; cnt < 100 && adverts.get() < sent; cnt++) {
+            Thread.sleep(10);
+        }
+        assertEquals(sent, adverts.get());
+        assertTrue(senders.size() > 1 && senders.size() <= 50);
+    }
+
+    @Test
+    public void testGattProcedures() throws Exception {
+        final BlockingQueue<BlueGigaResponse> events = new ArrayBlockingQueue<BlueGigaResponse>(100);
+        handler.addConnectionListener(0, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                events.add(event);
+            }
+        });
+
+        UUID service = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+        BluetoothAddress address = new BluetoothAddress(0x112233445566L);
+        BlueGigaSimulatedPeripheral peripheral = new BlueGigaSimulatedPeripheral(address);
+        assertEquals(1, peripheral.addService(service));
+        int value = peripheral.addCharacteristic(BlueGigaSimulatedPeripheral.uuid16(0x2A19),
+                BlueGigaSimulatedPeripheral.PROPERTY_READ | BlueGigaSimulatedPeripheral.PROPERTY_NOTIFY, 55);
+        peripheral.setProcedureLatency(20);
+        peripheral.setNotificationRate(100);
+        simulator.addPeripheral(peripheral);
+
+        BlueGigaConnectDirectCommand connect = new BlueGigaConnectDirectCommand();
+        connect.setAddress(address);
+        connect.setAddrType(BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC);
+        assertEquals(BgApiResponse.SUCCESS,
+                handler.sendTransaction(connect, BlueGigaConnectDirectResponse.class, 1000).getResult());
+        assertTrue(events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaConnectionStatusEvent);
+
+        // Service discovery
+        BlueGigaReadByGroupTypeCommand groups = new BlueGigaReadByGroupTypeCommand();
+        groups.setStart(1);
+        groups.setEnd(0xFFFF);
+        groups.setUuid(BlueGigaSimulatedPeripheral.PRIMARY_SERVICE);
+        assertEquals(BgApiResponse.SUCCESS,
+                handler.sendTransaction(groups, BlueGigaReadByGroupTypeResponse.class, 1000).getResult());
+        BlueGigaGroupFoundEvent group = (BlueGigaGroupFoundEvent) events.poll(1, TimeUnit.SECONDS);
+        assertEquals(service, group.getUuid());
+        assertEquals(1, group.getStart());
+        assertEquals(4, group.getEnd());
+        assertEquals(BgApiResponse.SUCCESS,
+                ((BlueGigaProcedureCompletedEvent) events.poll(1, TimeUnit.SECONDS)).getResult());
+
+        // Attribute discovery - the service, characteristic declaration, value and configuration descriptor
+        BlueGigaFindInformationCommand find = new BlueGigaFindInformationCommand();
+        find.setStart(2);
+        find.setEnd(4);
+        handler.sendTransaction(find, BlueGigaFindInformationResponse.class, 1000);
+        assertEquals(BlueGigaSimulatedPeripheral.CHARACTERISTIC,
+                ((BlueGigaFindInformationFoundEvent) events.poll(1, TimeUnit.SECONDS)).getUuid());
+        assertEquals(BlueGigaSimulatedPeripheral.uuid16(0x2A19),
+                ((BlueGigaFindInformationFoundEvent) events.poll(1, TimeUnit.SECONDS)).getUuid());
+        BlueGigaFindInformationFoundEvent descriptor = (BlueGigaFindInformationFoundEvent) events.poll(1,
+                TimeUnit.SECONDS);
+        assertEquals(BlueGigaSimulatedPeripheral.CLIENT_CHARACTERISTIC_CONFIGURATION, descriptor.getUuid());
+        assertTrue(events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaProcedureCompletedEvent);
+
+        // Read
+        BlueGigaReadByHandleCommand read = new BlueGigaReadByHandleCommand();
+        read.setChrHandle(value);
+        handler.sendTransaction(read, BlueGigaReadByHandleResponse.class, 1000);
+        BlueGigaAttributeValueEvent readValue = (BlueGigaAttributeValueEvent) events.poll(1, TimeUnit.SECONDS);
+        assertEquals(AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_READ, readValue.getType());
+        assertEquals(55, readValue.getValue()[0]);
+
+        // Only one procedure can run at a time
+        BlueGigaAttributeWriteCommand write = new BlueGigaAttributeWriteCommand();
+        write.setAttHandle(descriptor.getChrHandle());
+        write.setData(new int[] { 1, 0 });
+        handler.sendTransaction(read, BlueGigaReadByHandleResponse.class, 1000);
+        assertEquals(BgApiResponse.WRONG_STATE,
+                handler.sendTransaction(write, BlueGigaAttributeWriteResponse.class, 1000).getResult());
+        assertTrue(events.poll(1, TimeUnit.SECONDS) instanceof BlueGigaAttributeValueEvent);
+
+        // Enable notifications
+        assertEquals(BgApiResponse.SUCCESS,
+                handler.sendTransaction(write, BlueGigaAttributeWriteResponse.class, 1000).getResult());
+        assertEquals(descriptor.getChrHandle(),
+                ((BlueGigaProcedureCompletedEvent) events.poll(1, TimeUnit.SECONDS)).getChrHandle());
+        for (int cnt = 0; cnt < 3; cnt++) {
+            BlueGigaAttributeValueEvent notification = (BlueGigaAttributeValueEvent) events.poll(1,
+                    TimeUnit.SECONDS);
+            assertEquals(AttributeValueType.ATTCLIENT_ATTRIBUTE_VALUE_TYPE_NOTIFY, notification.getType());
+            assertEquals(value, notification.getAttHandle());
+        }
+
+        // Notifications stop when the connection is closed
+        BlueGigaDisconnectCommand disconnect = new BlueGigaDisconnectCommand();
+        handler.sendTransaction(disconnect, BlueGigaDisconnectResponse.class, 1000);
+        BlueGigaResponse event;
+        while (!((event = events.poll(1, TimeUnit.SECONDS)) instanceof BlueGigaDisconnectedEvent)) {
+            assertTrue(event instanceof BlueGigaAttributeValueEvent);
+        }
+        Thread.sleep(50);
+        assertTrue(events.isEmpty());
+    }
+}
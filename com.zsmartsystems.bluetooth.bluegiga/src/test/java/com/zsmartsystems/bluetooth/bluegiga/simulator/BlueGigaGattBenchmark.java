@@ -0,0 +1,134 @@
+package com.zsmartsystems.bluetooth.bluegiga.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeValueEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaAttributeWriteResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaProcedureCompletedEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByGroupTypeCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.attributeclient.BlueGigaReadByGroupTypeResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.connection.BlueGigaConnectionStatusEvent;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaConnectDirectResponse;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.BluetoothAddressType;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+/**
+ * Benchmark of connection handling and attribute client procedures across a population of
+ * {@link BlueGigaSimulatedPeripheral}s. Each peripheral is connected, its services are discovered, and battery level
+ * notifications are enabled. The notification throughput is then measured.
+ * <p>
+ * This is not run as part of the unit tests - run the main method with the test classpath of this project. The
+ * optional arguments are the number of peripherals, the notification rate of each peripheral, the procedure latency
+ * in milliseconds, and the run time in seconds.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaGattBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int notificationRate = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport);
+        simulator.setMaxConnections(count);
+
+        final Semaphore connected = new Semaphore(0);
+        final Semaphore completed = new Semaphore(0);
+        final AtomicLong notifications = new AtomicLong();
+        handler.addEventListener(BlueGigaConnectionStatusEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                connected.release();
+            }
+        });
+        handler.addEventListener(BlueGigaProcedureCompletedEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                completed.release();
+            }
+        });
+        handler.addEventListener(BlueGigaAttributeValueEvent.class, new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                notifications.incrementAndGet();
+            }
+        });
+
+        List<BlueGigaSimulatedPeripheral> peripherals = new ArrayList<BlueGigaSimulatedPeripheral>();
+        for (int cnt = 0; cnt < count; cnt++) {
+            BlueGigaSimulatedPeripheral peripheral = BlueGigaSimulatedPeripheral
+                    .createDefault(new BluetoothAddress(0x0007800000L + cnt));
+            peripheral.setConnectLatency(latency);
+            peripheral.setProcedureLatency(latency);
+            peripheral.setNotificationRate(notificationRate);
+            simulator.addPeripheral(peripheral);
+            peripherals.add(peripheral);
+        }
+
+        long start = System.nanoTime();
+        for (BlueGigaSimulatedPeripheral peripheral : peripherals) {
+            BlueGigaConnectDirectCommand connect = new BlueGigaConnectDirectCommand();
+            connect.setAddress(peripheral.getAddress());
+            connect.setAddrType(BluetoothAddressType.GAP_ADDRESS_TYPE_PUBLIC);
+            handler.sendTransaction(connect, BlueGigaConnectDirectResponse.class, 1000);
+        }
+        connected.acquire(count);
+        report("Connected", count, start);
+
+        start = System.nanoTime();
+        List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>();
+        for (int cnt = 0; cnt < count; cnt++) {
+            BlueGigaReadByGroupTypeCommand discover = new BlueGigaReadByGroupTypeCommand();
+            discover.setConnection(cnt);
+            discover.setStart(1);
+            discover.setEnd(0xFFFF);
+            discover.setUuid(BlueGigaSimulatedPeripheral.PRIMARY_SERVICE);
+            futures.add(handler.sendTransactionAsync(discover, BlueGigaReadByGroupTypeResponse.class));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).get(10, TimeUnit.SECONDS);
+        completed.acquire(count);
+        report("Discovered services on", count, start);
+
+        // The battery level configuration descriptor of the default peripheral
+        start = System.nanoTime();
+        futures.clear();
+        for (int cnt = 0; cnt < count; cnt++) {
+            BlueGigaAttributeWriteCommand enable = new BlueGigaAttributeWriteCommand();
+            enable.setConnection(cnt);
+            enable.setAttHandle(7);
+            enable.setData(new int[] { 1, 0 });
+            futures.add(handler.sendTransactionAsync(enable, BlueGigaAttributeWriteResponse.class));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).get(10, TimeUnit.SECONDS);
+        completed.acquire(count);
+        report("Enabled notifications on", count, start);
+
+        for (int second = 1; second <= seconds; second++) {
+            long received = notifications.get();
+            Thread.sleep(1000);
+            System.out.println(String.format("%3d s  %10d notifications/sec", second, notifications.get() - received));
+        }
+
+        handler.close(1000);
+        simulator.close();
+    }
+
+    private static void report(String phase, int count, long start) {
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%s %d peripherals in %.1f ms", phase, count, elapsed / 1000000.0));
+    }
+}
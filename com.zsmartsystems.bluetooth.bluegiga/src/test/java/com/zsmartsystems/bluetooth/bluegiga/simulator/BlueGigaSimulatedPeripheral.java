@@ -0,0 +1,258 @@
+package com.zsmartsystems.bluetooth.bluegiga.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.zsmartsystems.bluetooth.bluegiga.BluetoothAddress;
+
+/**
+ * A simulated GATT peripheral for the {@link BlueGigaDongleSimulator}. The peripheral holds a GATT database, and the
+ * latencies and notification rate used when a connection to it is simulated.
+ * <p>
+ * 16 bit UUIDs use the same form as the command and response classes, with the short UUID in bits 32 to 47 of the
+ * most significant long. Use {@link #uuid16(int)} to create them.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaSimulatedPeripheral {
+    public static final UUID PRIMARY_SERVICE = uuid16(0x2800);
+    public static final UUID CHARACTERISTIC = uuid16(0x2803);
+    public static final UUID CLIENT_CHARACTERISTIC_CONFIGURATION = uuid16(0x2902);
+
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE_NO_RESPONSE = 0x04;
+    public static final int PROPERTY_WRITE = 0x08;
+    public static final int PROPERTY_NOTIFY = 0x10;
+    public static final int PROPERTY_INDICATE = 0x20;
+
+    private final BluetoothAddress address;
+    private final List<Attribute> attributes = new ArrayList<Attribute>();
+
+    private long connectLatency = 0;
+    private long procedureLatency = 0;
+    private int notificationRate = 10;
+    private int rssi = -60;
+
+    /**
+     * An attribute in the GATT database
+     */
+    static class Attribute {
+        final int handle;
+        final UUID type;
+        final int properties;
+
+        /**
+         * The value handle of the characteristic this attribute belongs to, or 0
+         */
+        final int characteristic;
+
+        volatile int[] value;
+
+        Attribute(int handle, UUID type, int properties, int characteristic, int[] value) {
+            this.handle = handle;
+            this.type = type;
+            this.properties = properties;
+            this.characteristic = characteristic;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Creates a peripheral with an empty GATT database
+     *
+     * @param address the {@link BluetoothAddress} of the peripheral
+     */
+    public BlueGigaSimulatedPeripheral(BluetoothAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Creates a peripheral with the generic access and battery services. The battery level supports notifications.
+     *
+     * @param address the {@link BluetoothAddress} of the peripheral
+     * @return the {@link BlueGigaSimulatedPeripheral}
+     */
+    public static BlueGigaSimulatedPeripheral createDefault(BluetoothAddress address) {
+        BlueGigaSimulatedPeripheral peripheral = new BlueGigaSimulatedPeripheral(address);
+        peripheral.addService(uuid16(0x1800));
+        peripheral.addCharacteristic(uuid16(0x2A00), PROPERTY_READ, 0x42, 0x47, 0x2D, 0x53, 0x65, 0x6E, 0x73, 0x6F,
+                0x72);
+        peripheral.addService(uuid16(0x180F));
+        peripheral.addCharacteristic(uuid16(0x2A19), PROPERTY_READ | PROPERTY_NOTIFY, 100);
+        return peripheral;
+    }
+
+    /**
+     * Creates a 16 bit UUID
+     *
+     * @param uuid the short UUID
+     * @return the {@link UUID}
+     */
+    public static UUID uuid16(int uuid) {
+        return new UUID((long) (uuid & 0xFFFF) << 32, 0);
+    }
+
+    /**
+     * Adds a primary service to the end of the database
+     *
+     * @param uuid the service {@link UUID}
+     * @return the handle of the service declaration
+     */
+    public synchronized int addService(UUID uuid) {
+        int handle = attributes.size() + 1;
+        attributes.add(new Attribute(handle, PRIMARY_SERVICE, 0, 0, uuidBytes(uuid)));
+        return handle;
+    }
+
+    /**
+     * Adds a characteristic to the last service. A client characteristic configuration descriptor is added if the
+     * characteristic supports notifications or indications.
+     *
+     * @param uuid the characteristic {@link UUID}
+     * @param properties the characteristic properties
+     * @param value the initial value
+     * @return the handle of the characteristic value
+     */
+    public synchronized int addCharacteristic(UUID uuid, int properties, int... value) {
+        int declaration = attributes.size() + 1;
+        int valueHandle = declaration + 1;
+
+        int[] uuidBytes = uuidBytes(uuid);
+        int[] declarationValue = new int[3 + uuidBytes.length];
+        declarationValue[0] = properties;
+        declarationValue[1] = valueHandle & 0xFF;
+        declarationValue[2] = valueHandle >> 8;
+        System.arraycopy(uuidBytes, 0, declarationValue, 3, uuidBytes.length);
+
+        attributes.add(new Attribute(declaration, CHARACTERISTIC, 0, valueHandle, declarationValue));
+        attributes.add(new Attribute(valueHandle, uuid, properties, valueHandle, value));
+        if ((properties & (PROPERTY_NOTIFY | PROPERTY_INDICATE)) != 0) {
+            attributes.add(new Attribute(valueHandle + 1, CLIENT_CHARACTERISTIC_CONFIGURATION, 0, valueHandle,
+                    new int[] { 0, 0 }));
+        }
+        return valueHandle;
+    }
+
+    /**
+     * Sets the delay between a connection request and the connection being established
+     *
+     * @param connectLatency the latency in milliseconds
+     */
+    public void setConnectLatency(long connectLatency) {
+        this.connectLatency = connectLatency;
+    }
+
+    /**
+     * Sets the delay between a GATT procedure being requested and its events
+     *
+     * @param procedureLatency the latency in milliseconds
+     */
+    public void setProcedureLatency(long procedureLatency) {
+        this.procedureLatency = procedureLatency;
+    }
+
+    /**
+     * Sets the number of notifications or indications sent per second by each enabled characteristic
+     *
+     * @param notificationRate notifications per second
+     */
+    public void setNotificationRate(int notificationRate) {
+        this.notificationRate = notificationRate;
+    }
+
+    public void setRssi(int rssi) {
+        this.rssi = rssi;
+    }
+
+    public BluetoothAddress getAddress() {
+        return address;
+    }
+
+    public long getConnectLatency() {
+        return connectLatency;
+    }
+
+    public long getProcedureLatency() {
+        return procedureLatency;
+    }
+
+    public int getNotificationRate() {
+        return notificationRate;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Gets the attributes in handle order
+     */
+    synchronized List<Attribute> getAttributes() {
+        return Collections.unmodifiableList(new ArrayList<Attribute>(attributes));
+    }
+
+    /**
+     * Gets an attribute
+     *
+     * @param handle the attribute handle
+     * @return the {@link Attribute} or null if the handle is not in the database
+     */
+    synchronized Attribute getAttribute(int handle) {
+        if (handle < 1 || handle > attributes.size()) {
+            return null;
+        }
+        return attributes.get(handle - 1);
+    }
+
+    /**
+     * Gets the handle of the last attribute in the service that starts at the specified handle
+     */
+    synchronized int getServiceEnd(int serviceHandle) {
+        for (int handle = serviceHandle + 1; handle <= attributes.size(); handle++) {
+            if (attributes.get(handle - 1).type.equals(PRIMARY_SERVICE)) {
+                return handle - 1;
+            }
+        }
+        return attributes.size();
+    }
+
+    /**
+     * Converts a UUID to its little endian over the air form
+     */
+    static int[] uuidBytes(UUID uuid) {
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        if (low == 0 && (high & 0xFFFF0000FFFFFFFFL) == 0) {
+            int shortUuid = (int) (high >> 32);
+            return new int[] { shortUuid & 0xFF, shortUuid >> 8 };
+        }
+
+        int[] bytes = new int[16];
+        for (int cnt = 0; cnt < 8; cnt++) {
+            bytes[cnt] = (int) (low >> (cnt * 8)) & 0xFF;
+            bytes[cnt + 8] = (int) (high >> (cnt * 8)) & 0xFF;
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts the over the air form of a UUID to a {@link UUID}
+     */
+    static UUID toUuid(int[] bytes) {
+        long high = 0;
+        long low = 0;
+        if (bytes.length == 16) {
+            for (int cnt = 7; cnt >= 0; cnt--) {
+                low = (low << 8) | bytes[cnt];
+                high = (high << 8) | bytes[cnt + 8];
+            }
+            return new UUID(high, low);
+        }
+        for (int cnt = bytes.length - 1; cnt >= 0; cnt--) {
+            high = (high << 8) | bytes[cnt];
+        }
+        return new UUID(high << 32, 0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.zsmartsystems.bluetooth.bluegiga.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventListener;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaEventMailbox;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaResponse;
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaDiscoverResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaEndProcedureResponse;
+import com.zsmartsystems.bluetooth.bluegiga.command.gap.BlueGigaScanResponseEvent;
+import com.zsmartsystems.bluetooth.bluegiga.enumeration.GapDiscoverMode;
+import com.zsmartsystems.bluetooth.bluegiga.transport.BlueGigaLoopbackTransport;
+
+/**
+ * Benchmark of the end to end receive path - transport, frame decoder, packet factory and event dispatch - using
+ * scan response floods from the {@link BlueGigaDongleSimulator}.
+ * <p>
+ * This is not run as part of the unit tests - run the main method with the test classpath of this project. The
+ * optional arguments are the scan rate (0 for unlimited), the device population, and the run time in seconds.
+ *
+ * @author Chris Jackson
+ */
+public class BlueGigaSimulatorBenchmark {
+    public static void main(String[] args) throws Exception {
+        int scanRate = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int population = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        BlueGigaDongleSimulator simulator = new BlueGigaDongleSimulator(transport.getPeer());
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport);
+
+        simulator.setScanRate(scanRate);
+        simulator.setDevicePopulation(population);
+
+        final AtomicLong received = new AtomicLong();
+        BlueGigaEventListener listener = new BlueGigaEventListener() {
+            @Override
+            public void bluegigaEventReceived(BlueGigaResponse event) {
+                ((BlueGigaScanResponseEvent) event).getSender();
+                received.incrementAndGet();
+            }
+        };
+        handler.addEventListener(BlueGigaScanResponseEvent.class, listener, 100000,
+                BlueGigaEventMailbox.OverflowPolicy.DROP_NEWEST);
+
+        BlueGigaDiscoverCommand discover = new BlueGigaDiscoverCommand();
+        discover.setMode(GapDiscoverMode.GAP_DISCOVER_OBSERVATION);
+        handler.sendTransaction(discover, BlueGigaDiscoverResponse.class, 1000);
+
+        for (int second = 1; second <= seconds; second++) {
+            long start = received.get();
+            Thread.sleep(1000);
+            System.out.println(String.format("%3d s  %10d adverts/sec  %12d sent  %12d received", second,
+                    received.get() - start, simulator.getAdvertsSent(), received.get()));
+        }
+
+        handler.sendTransaction(new BlueGigaEndProcedureCommand(), BlueGigaEndProcedureResponse.class, 1000);
+        Thread.sleep(100);
+        System.out.println(String.format("Dropped by mailbox: %d", handler.getEventMailbox(listener).getDropped()));
+
+        handler.close(1000);
+        simulator.close();
+    }
+}
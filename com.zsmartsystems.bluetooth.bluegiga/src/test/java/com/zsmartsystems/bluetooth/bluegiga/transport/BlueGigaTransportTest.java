@@ -0,0 +1,109 @@
+package com.zsmartsystems.bluetooth.bluegiga.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.zsmartsystems.bluetooth.bluegiga.BlueGigaSerialHandler;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloCommand;
+import com.zsmartsystems.bluetooth.bluegiga.command.system.BlueGigaHelloResponse;
+
+public class BlueGigaTransportTest {
+    private static final byte[] HELLO_COMMAND = { 0x00, 0x00, 0x00, 0x01 };
+    private static final byte[] HELLO_RESPONSE = { 0x00, 0x00, 0x00, 0x01 };
+
+    /**
+     * Answers hello commands received on a transport
+     */
+    private static class HelloResponder implements BlueGigaTransportListener {
+        private final BlueGigaTransport transport;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64);
+        private final BlockingQueue<IOException> errors = new ArrayBlockingQueue<IOException>(10);
+
+        HelloResponder(BlueGigaTransport transport) throws IOException {
+            this.transport = transport;
+            transport.start(this);
+        }
+
+        @Override
+        public void transportReady() {
+            try {
+                while (transport.read(buffer) > 0) {
+                    while (buffer.position() >= HELLO_COMMAND.length) {
+                        buffer.flip();
+                        byte[] command = new byte[HELLO_COMMAND.length];
+                        buffer.get(command);
+                        buffer.compact();
+                        assertArrayEquals(HELLO_COMMAND, command);
+                        transport.write(ByteBuffer.wrap(HELLO_RESPONSE));
+                    }
+                }
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        }
+
+        @Override
+        public void transportError(IOException e) {
+            errors.add(e);
+        }
+    }
+
+    private void sendHello(BlueGigaSerialHandler handler) throws Exception {
+        CompletableFuture<BlueGigaHelloResponse> future = handler.sendTransactionAsync(new BlueGigaHelloCommand(),
+                BlueGigaHelloResponse.class, 1000);
+        assertTrue(future.get(2, TimeUnit.SECONDS) instanceof BlueGigaHelloResponse);
+    }
+
+    @Test
+    public void testLoopbackTransport() throws Exception {
+        BlueGigaLoopbackTransport transport = new BlueGigaLoopbackTransport();
+        HelloResponder responder = new HelloResponder(transport.getPeer());
+        BlueGigaSerialHandler handler = new BlueGigaSerialHandler(transport);
+
+        sendHello(handler);
+        sendHello(handler);
+
+        handler.close(1000);
+        assertEquals(0, responder.errors.size());
+
+        // The peer sees the end of the stream
+        assertEquals(-1, transport.getPeer().read(ByteBuffer.allocate(10)));
+    }
+
+    @Test
+    public void testChannelTransportsShareSelectorPool() throws Exception {
+        BlueGigaSelectorPool pool = new BlueGigaSelectorPool(1);
+        BlueGigaSerialHandler[] handlers = new BlueGigaSerialHandler[3];
+        HelloResponder[] responders = new HelloResponder[handlers.length];
+
+        for (int cnt = 0; cnt < handlers.length; cnt++) {
+            Pipe toDongle = Pipe.open();
+            Pipe fromDongle = Pipe.open();
+            responders[cnt] = new HelloResponder(
+                    new BlueGigaChannelTransport(toDongle.source(), fromDongle.sink(), pool));
+            handlers[cnt] = new BlueGigaSerialHandler(
+                    new BlueGigaChannelTransport(fromDongle.source(), toDongle.sink(), pool));
+        }
+
+        for (BlueGigaSerialHandler handler : handlers) {
+            sendHello(handler);
+        }
+
+        for (int cnt = 0; cnt < handlers.length; cnt++) {
+            handlers[cnt].close(1000);
+            assertEquals(0, responders[cnt].errors.size());
+        }
+        pool.close();
+    }
+}